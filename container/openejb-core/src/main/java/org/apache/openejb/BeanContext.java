@@ -42,6 +42,7 @@ import org.apache.openejb.util.Duration;
 import org.apache.openejb.util.Index;
 import org.apache.openejb.util.LogCategory;
 import org.apache.openejb.util.Logger;
+import org.apache.openejb.util.StartupTracer;
 import org.apache.openejb.util.proxy.DynamicProxyImplFactory;
 import org.apache.openejb.util.proxy.LocalBeanProxyFactory;
 import org.apache.openejb.util.reflection.Reflections;
@@ -231,6 +232,7 @@ public class BeanContext extends DeploymentContext {
     private final List<InterceptorInstance> systemInterceptors = new ArrayList<InterceptorInstance>();
     private final List<InterceptorInstance> userInterceptors = new ArrayList<InterceptorInstance>();
     private final List<Injection> injections = new ArrayList<Injection>();
+    private final Map<Class<?>, InjectionPlan> injectionPlans = new ConcurrentHashMap<Class<?>, InjectionPlan>();
     private final Map<Class, InterfaceType> interfaces = new HashMap<Class, InterfaceType>();
     private final Map<Class, ExceptionType> exceptions = new ConcurrentHashMap<Class, ExceptionType>();
 
@@ -651,6 +653,18 @@ public class BeanContext extends DeploymentContext {
         return injections;
     }
 
+    /**
+     * @return the injections of the bean class or of an interceptor class compiled once
+     */
+    public InjectionPlan getInjectionPlan(final Class<?> clazz) {
+        InjectionPlan plan = injectionPlans.get(clazz);
+        if (plan == null) {
+            plan = InjectionPlan.compile(clazz, injections);
+            injectionPlans.put(clazz, plan);
+        }
+        return plan;
+    }
+
     public Index<EntityManagerFactory, Map> getExtendedEntityManagerFactories() {
         return getStateful().extendedEntityManagerFactories;
     }
@@ -1484,10 +1498,8 @@ public class BeanContext extends DeploymentContext {
             // Create bean instance
             Object beanInstance;
 
-            final InjectionProcessor injectionProcessor;
             if (!dynamicallyImplemented) {
-                injectionProcessor = new InjectionProcessor(rootInstance, getInjections(), InjectionProcessor.unwrap(ctx));
-                beanInstance = injectionProcessor.createInstance();
+                beanInstance = getInjectionPlan(rootInstance.getClass()).inject(rootInstance, InjectionProcessor.unwrap(ctx));
                 inject(beanInstance, creationalContext);
             } else {
                 // update target
@@ -1503,7 +1515,7 @@ public class BeanContext extends DeploymentContext {
                 injections.clear();
                 injections.addAll(newInjections);
 
-                injectionProcessor = new InjectionProcessor(rootInstance, injections, InjectionProcessor.unwrap(ctx));
+                final InjectionProcessor injectionProcessor = new InjectionProcessor(rootInstance, injections, InjectionProcessor.unwrap(ctx));
                 final InvocationHandler handler = (InvocationHandler) injectionProcessor.createInstance();
                 beanInstance = DynamicProxyImplFactory.newProxy(this, handler);
                 inject(handler, creationalContext);
@@ -1542,9 +1554,8 @@ public class BeanContext extends DeploymentContext {
                     iInstance = clazz.newInstance();
                 }
 
-                final InjectionProcessor interceptorInjector = new InjectionProcessor(iInstance, this.getInjections(), InjectionProcessor.unwrap(ctx));
                 try {
-                    final Object interceptorInstance = interceptorInjector.createInstance();
+                    final Object interceptorInstance = getInjectionPlan(iInstance.getClass()).inject(iInstance, InjectionProcessor.unwrap(ctx));
                     if (webBeansContext != null) {
                         try {
                             OWBInjector.inject(webBeansContext.getBeanManagerImpl(), interceptorInstance, creationalContext);
@@ -1831,10 +1842,34 @@ public class BeanContext extends DeploymentContext {
     }
 
     public static final class ProxyClass {
-        private final Class<?> proxy;
+        private final BeanContext beanContext;
+        private final Class<?>[] interfaces;
+        private volatile boolean generated;
+        private volatile Class<?> proxy;
 
         public ProxyClass(final BeanContext beanContext,
                           final Class<?>[] interfaces) {
+            this(beanContext, interfaces, false);
+        }
+
+        /**
+         * @param lazy true to generate the proxy class on first use instead of now
+         */
+        public ProxyClass(final BeanContext beanContext,
+                          final Class<?>[] interfaces,
+                          final boolean lazy) {
+            this.beanContext = beanContext;
+            this.interfaces = interfaces;
+            if (!lazy) {
+                generate();
+            }
+        }
+
+        private synchronized void generate() {
+            if (generated) {
+                return;
+            }
+
             Class<?> clazz;
             try {
                 clazz = LocalBeanProxyFactory.createProxy(
@@ -1846,9 +1881,23 @@ public class BeanContext extends DeploymentContext {
                 clazz = null;
             }
             this.proxy = clazz;
+            this.generated = true;
+        }
+
+        public boolean isGenerated() {
+            return generated;
         }
 
         public Class<?> getProxy() {
+            if (!generated) { // lazy initialization
+                final StartupTracer.Span span = StartupTracer.start("lazy proxy class", String.valueOf(beanContext.getDeploymentID()));
+                try {
+                    generate();
+                } finally {
+                    span.stop();
+                }
+                StartupTracer.report("lazy initialization of " + beanContext.getDeploymentID());
+            }
             return proxy; // let it generate a NPE if null, shouldn't occur (tested elsewhere) excepted for test where we don't use it
         }
     }
@@ -0,0 +1,239 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb;
+
+import org.apache.openejb.util.LogCategory;
+import org.apache.openejb.util.Logger;
+import org.apache.openejb.util.PassthroughFactory;
+import org.apache.xbean.recipe.ObjectRecipe;
+import org.apache.xbean.recipe.Option;
+
+import javax.naming.Context;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Field and setter injection of an existing instance compiled once per class: which injections target the
+ * class, which setters and fields they write and the env entry values (immutable) are resolved at the first
+ * injection, then injecting an instance only costs the lookups of the other references and a field store or a
+ * setter call per injection.
+ *
+ * Values needing a conversion are still injected through an ObjectRecipe, as {@link InjectionProcessor} does
+ * for a supplied instance, so both inject the same way.
+ */
+public class InjectionPlan {
+    private static final Logger logger = Logger.getInstance(LogCategory.OPENEJB, InjectionPlan.class);
+
+    private static final Map<String, Object> NO_BINDING = Collections.emptyMap();
+    private static final Map<Class<?>, Class<?>> PRIMITIVES = new HashMap<Class<?>, Class<?>>();
+
+    static {
+        PRIMITIVES.put(boolean.class, Boolean.class);
+        PRIMITIVES.put(byte.class, Byte.class);
+        PRIMITIVES.put(char.class, Character.class);
+        PRIMITIVES.put(short.class, Short.class);
+        PRIMITIVES.put(int.class, Integer.class);
+        PRIMITIVES.put(long.class, Long.class);
+        PRIMITIVES.put(float.class, Float.class);
+        PRIMITIVES.put(double.class, Double.class);
+    }
+
+    private final Class<?> clazz;
+    private final List<Step> steps;
+
+    private InjectionPlan(final Class<?> clazz, final List<Step> steps) {
+        this.clazz = clazz;
+        this.steps = steps;
+    }
+
+    public static InjectionPlan compile(final Class<?> clazz, final Collection<Injection> injections) {
+        final List<Step> steps = new ArrayList<Step>();
+        if (injections != null) {
+            for (final Injection injection : injections) {
+                final Class<?> target = injection.getTarget();
+                if (target == null || !target.isAssignableFrom(clazz)) {
+                    continue;
+                }
+                steps.add(new Step(injection, writers(target, injection.getName())));
+            }
+        }
+        return new InjectionPlan(clazz, steps);
+    }
+
+    public Class<?> getBeanClass() {
+        return clazz;
+    }
+
+    public <T> T inject(final T instance, final Context context) throws OpenEJBException {
+        if (context == null) {
+            return instance;
+        }
+
+        ObjectRecipe recipe = null;
+        for (final Step step : steps) {
+            final Object value = step.value(context);
+            if (value == null) {
+                logger.warning("Injection data not found in JNDI context: jndiName='" + step.injection.getJndiName() + "', target=" + step.injection.getTarget().getName() + "/" + step.injection.getName());
+                continue;
+            }
+
+            if (!step.write(instance, value)) {
+                if (recipe == null) {
+                    recipe = PassthroughFactory.recipe(instance);
+                    recipe.allow(Option.FIELD_INJECTION);
+                    recipe.allow(Option.PRIVATE_PROPERTIES);
+                    recipe.allow(Option.IGNORE_MISSING_PROPERTIES);
+                    recipe.allow(Option.NAMED_PARAMETERS);
+                }
+                recipe.setProperty(step.injection.getTarget().getName() + "/" + step.injection.getName(), value);
+            }
+        }
+
+        if (recipe != null) {
+            try {
+                recipe.create(clazz.getClassLoader());
+            } catch (final Exception e) {
+                throw new OpenEJBException("Error while creating bean " + clazz.getName(), e);
+            }
+            for (final Object property : recipe.getUnsetProperties().keySet()) {
+                logger.warning("Injection: No such property '" + property + "' in class " + clazz.getName());
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Same lookup order than xbean-reflect: the setters then the field, starting from the injection target.
+     */
+    private static List<AccessibleObject> writers(final Class<?> target, final String name) {
+        final List<AccessibleObject> writers = new ArrayList<AccessibleObject>();
+        if (name == null || name.isEmpty()) {
+            return writers;
+        }
+
+        final String setter = "set" + Character.toUpperCase(name.charAt(0)) + name.substring(1);
+        for (Class<?> c = target; c != null && !Object.class.equals(c); c = c.getSuperclass()) {
+            for (final Method method : c.getDeclaredMethods()) {
+                if (method.getName().equals(setter) && method.getParameterTypes().length == 1
+                    && !Modifier.isStatic(method.getModifiers()) && !method.isBridge()) {
+                    writers.add(method);
+                }
+            }
+        }
+        for (Class<?> c = target; c != null && !Object.class.equals(c); c = c.getSuperclass()) {
+            try {
+                final Field field = c.getDeclaredField(name);
+                if (!Modifier.isStatic(field.getModifiers()) && !Modifier.isFinal(field.getModifiers())) {
+                    writers.add(field);
+                }
+                break;
+            } catch (final NoSuchFieldException e) {
+                // try the parent
+            }
+        }
+
+        for (final AccessibleObject writer : writers) {
+            try {
+                writer.setAccessible(true);
+            } catch (final SecurityException e) {
+                // xbean will try
+            }
+        }
+        return writers;
+    }
+
+    private static boolean isImmutable(final Object value) {
+        return value instanceof String || value instanceof Number && value.getClass().getName().startsWith("java.lang.")
+            || value instanceof Boolean || value instanceof Character || value instanceof Class || value instanceof Enum;
+    }
+
+    private static Class<?> boxed(final Class<?> type) {
+        if (!type.isPrimitive()) {
+            return type;
+        }
+        return PRIMITIVES.get(type);
+    }
+
+    private static class Step {
+        private final Injection injection;
+        private final List<AccessibleObject> writers;
+        private final Class<?>[] types;
+        private volatile Object immutableValue;
+
+        private Step(final Injection injection, final List<AccessibleObject> writers) {
+            this.injection = injection;
+            this.writers = writers;
+            this.types = new Class<?>[writers.size()];
+            for (int i = 0; i < types.length; i++) {
+                final AccessibleObject writer = writers.get(i);
+                if (writer instanceof Method) {
+                    types[i] = boxed(Method.class.cast(writer).getParameterTypes()[0]);
+                } else {
+                    types[i] = boxed(Field.class.cast(writer).getType());
+                }
+            }
+        }
+
+        private Object value(final Context context) {
+            final Object cached = immutableValue;
+            if (cached != null) {
+                return cached;
+            }
+
+            final Object value = InjectionProcessor.lookup(injection, context, NO_BINDING);
+            if (isImmutable(value)) {
+                immutableValue = value;
+            }
+            return value;
+        }
+
+        /**
+         * @return false if no writer accepts the value as it is
+         */
+        private boolean write(final Object instance, final Object value) throws OpenEJBException {
+            for (int i = 0; i < types.length; i++) {
+                if (!types[i].isInstance(value)) {
+                    continue;
+                }
+
+                final AccessibleObject writer = writers.get(i);
+                try {
+                    if (writer instanceof Method) {
+                        Method.class.cast(writer).invoke(instance, value);
+                    } else {
+                        Field.class.cast(writer).set(instance, value);
+                    }
+                    return true;
+                } catch (final IllegalAccessException e) {
+                    return false; // not accessible, let xbean try
+                } catch (final InvocationTargetException e) {
+                    throw new OpenEJBException("Error while creating bean " + instance.getClass().getName(), e.getCause());
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -210,34 +210,7 @@ public class InjectionProcessor<T> {
                     continue;
                 }
 
-                final String jndiName = injection.getJndiName();
-                Object value;
-                try {
-                    value = context.lookup(jndiName);
-                } catch (final NamingException ne) { // some fallback
-                    value = bindings.get(jndiName);
-                    if (value instanceof SimpleReference) {
-                        try {
-                            value = ((SimpleReference) value).getContent();
-                        } catch (final NamingException e) {
-                            if (value instanceof JndiUrlReference) {
-                                try {
-                                    value = SystemInstance.get().getComponent(ContainerSystem.class).getJNDIContext()
-                                                    .lookup(((JndiUrlReference) value).getJndiName());
-                                } catch (final NamingException e1) {
-                                    value = null;
-                                }
-                            }
-                        }
-                    }
-                }
-
-                if (value == null) { // used for testing/mocking
-                    final FallbackPropertyInjector fallback = SystemInstance.get().getComponent(FallbackPropertyInjector.class);
-                    if (fallback != null) {
-                        value = fallback.getValue(injection);
-                    }
-                }
+                final Object value = lookup(injection, context, bindings);
 
                 if (value != null) {
                     final String prefix;
@@ -255,6 +228,41 @@ public class InjectionProcessor<T> {
         }
     }
 
+    /**
+     * @return the value to inject or null if not found
+     */
+    static Object lookup(final Injection injection, final Context context, final Map<String, Object> bindings) {
+        final String jndiName = injection.getJndiName();
+        Object value;
+        try {
+            value = context.lookup(jndiName);
+        } catch (final NamingException ne) { // some fallback
+            value = bindings.get(jndiName);
+            if (value instanceof SimpleReference) {
+                try {
+                    value = ((SimpleReference) value).getContent();
+                } catch (final NamingException e) {
+                    if (value instanceof JndiUrlReference) {
+                        try {
+                            value = SystemInstance.get().getComponent(ContainerSystem.class).getJNDIContext()
+                                            .lookup(((JndiUrlReference) value).getJndiName());
+                        } catch (final NamingException e1) {
+                            value = null;
+                        }
+                    }
+                }
+            }
+        }
+
+        if (value == null) { // used for testing/mocking
+            final FallbackPropertyInjector fallback = SystemInstance.get().getComponent(FallbackPropertyInjector.class);
+            if (fallback != null) {
+                value = fallback.getValue(injection);
+            }
+        }
+        return value;
+    }
+
     public static Context unwrap(final Context context) {
 //        if (context == null) return null;
 //        try {
@@ -32,6 +32,7 @@ import org.apache.openejb.config.WebModule;
 import org.apache.openejb.config.sys.AdditionalDeployments;
 import org.apache.openejb.config.sys.Deployments;
 import org.apache.openejb.config.sys.JaxbOpenejb;
+import org.apache.openejb.core.BytecodeCache;
 import org.apache.openejb.loader.Files;
 import org.apache.openejb.loader.IO;
 import org.apache.openejb.loader.ProvisioningUtil;
@@ -176,6 +177,7 @@ public class DeployerEjb implements Deployer {
 
         AppInfo appInfo = null;
 
+        final boolean bytecodeScope = BytecodeCache.begin();
         try {
             appModule = deploymentLoader.load(file);
 
@@ -263,6 +265,9 @@ public class DeployerEjb implements Deployer {
                 throw (OpenEJBException) e;
             }
             throw new OpenEJBException(e);
+        } finally {
+            // the scanning may have filled it even if the application was not created
+            BytecodeCache.end(bytecodeScope);
         }
     }
 
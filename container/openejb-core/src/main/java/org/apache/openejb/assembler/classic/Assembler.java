@@ -65,6 +65,7 @@ import org.apache.openejb.config.ConfigurationFactory;
 import org.apache.openejb.config.NewLoaderLogic;
 import org.apache.openejb.config.QuickJarsTxtParser;
 import org.apache.openejb.config.TldScanner;
+import org.apache.openejb.core.BytecodeCache;
 import org.apache.openejb.core.ConnectorReference;
 import org.apache.openejb.core.CoreContainerSystem;
 import org.apache.openejb.core.CoreUserTransaction;
@@ -123,6 +124,7 @@ import org.apache.openejb.util.PropertiesHelper;
 import org.apache.openejb.util.PropertyPlaceHolderHelper;
 import org.apache.openejb.util.References;
 import org.apache.openejb.util.SafeToolkit;
+import org.apache.openejb.util.StartupTracer;
 import org.apache.openejb.util.SuperProperties;
 import org.apache.openejb.util.URLs;
 import org.apache.openejb.util.classloader.ClassLoaderAwareHandler;
@@ -204,8 +206,12 @@ import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -226,6 +232,11 @@ public class Assembler extends AssemblerTool implements org.apache.openejb.spi.A
     public static final String TIMER_STORE_CLASS = "timerStore.class";
     private static final ReentrantLock lock = new ReentrantLock(true);
     public static final String OPENEJB_TIMERS_ON = "openejb.timers.on";
+    public static final String OPENEJB_ASSEMBLER_PARALLEL = "openejb.assembler.parallel";
+    public static final String OPENEJB_ASSEMBLER_PARALLEL_THREADS = "openejb.assembler.parallel.threads";
+    public static final String OPENEJB_SINGLETON_STARTUP_PARALLEL = "openejb.singleton.startup.parallel";
+    public static final String OPENEJB_SINGLETON_STARTUP_THREADS = "openejb.singleton.startup.threads";
+    public static final String OPENEJB_LAZY_INITIALIZATION = "openejb.lazy.initialization";
 
     private final boolean skipLoaderIfPossible;
 
@@ -317,6 +328,10 @@ public class Assembler extends AssemblerTool implements org.apache.openejb.spi.A
 
         installExtensions();
 
+        if (StartupTracer.isActive()) {
+            system.addObserver(new StartupTracer.Reporter());
+        }
+
         system.fireEvent(new AssemblerCreated());
     }
 
@@ -635,6 +650,7 @@ public class Assembler extends AssemblerTool implements org.apache.openejb.spi.A
         Extensions.addExtensions(classLoader, appInfo.eventClassesNeedingAppClassloader);
 
         logger.info("createApplication.start", appInfo.path);
+        final StartupTracer.Span span = StartupTracer.start("assembler", appInfo.appId);
 
         //        try {
         //            Thread.sleep(5000);
@@ -678,6 +694,7 @@ public class Assembler extends AssemblerTool implements org.apache.openejb.spi.A
         final Map<String, Object> appBindings = appBuilder.buildBindings(JndiEncBuilder.JndiScope.app);
         final Context appJndiContext = appBuilder.build(appBindings);
 
+        final boolean bytecodeScope = BytecodeCache.begin();
         try {
             // Generate the cmp2/cmp1 concrete subclasses
             final CmpJarBuilder cmpJarBuilder = new CmpJarBuilder(appInfo, classLoader);
@@ -716,16 +733,28 @@ public class Assembler extends AssemblerTool implements org.apache.openejb.spi.A
                     vfs.add(webAppInfo);
                 }
 
-                final Map<String, ValidatorFactory> validatorFactories = new HashMap<String, ValidatorFactory>();
+                final List<Callable<ValidatorFactory>> validatorTasks = new ArrayList<Callable<ValidatorFactory>>(vfs.size());
                 for (final CommonInfoObject info : vfs) {
-                    ValidatorFactory factory = null;
-                    try {
-                        factory = ValidatorBuilder.buildFactory(classLoader, info.validationInfo);
-                    } catch (final ValidationException ve) {
-                        logger.warning("can't build the validation factory for module " + info.uniqueId, ve);
-                    }
+                    final ClassLoader loader = classLoader;
+                    validatorTasks.add(new Callable<ValidatorFactory>() {
+                        @Override
+                        public ValidatorFactory call() throws Exception {
+                            try {
+                                return ValidatorBuilder.buildFactory(loader, info.validationInfo);
+                            } catch (final ValidationException ve) {
+                                logger.warning("can't build the validation factory for module " + info.uniqueId, ve);
+                                return null;
+                            }
+                        }
+                    });
+                }
+
+                final List<ValidatorFactory> factories = invokeAll(validatorTasks);
+                final Map<String, ValidatorFactory> validatorFactories = new HashMap<String, ValidatorFactory>();
+                for (int i = 0; i < vfs.size(); i++) {
+                    final ValidatorFactory factory = factories.get(i);
                     if (factory != null) {
-                        validatorFactories.put(info.uniqueId, factory);
+                        validatorFactories.put(vfs.get(i).uniqueId, factory);
                     }
                 }
                 moduleIds.addAll(validatorFactories.keySet());
@@ -759,8 +788,17 @@ public class Assembler extends AssemblerTool implements org.apache.openejb.spi.A
             final PersistenceBuilder persistenceBuilder = new PersistenceBuilder(persistenceClassLoaderHandler);
             for (final PersistenceUnitInfo info : appInfo.persistenceUnits) {
                 final ReloadableEntityManagerFactory factory;
+                final StartupTracer.Span unitSpan = StartupTracer.start("persistence unit", info.name);
                 try {
                     factory = persistenceBuilder.createEntityManagerFactory(info, classLoader);
+                } catch (final OpenEJBException e) {
+                    throw e;
+                } catch (final Exception e) {
+                    throw new OpenEJBException(e);
+                } finally {
+                    unitSpan.stop();
+                }
+                try {
                     containerSystem.getJNDIContext().bind(PERSISTENCE_UNIT_NAMING_CONTEXT + info.id, factory);
                     units.put(info.name, PERSISTENCE_UNIT_NAMING_CONTEXT + info.id);
                 } catch (final NameAlreadyBoundException e) {
@@ -813,7 +851,12 @@ public class Assembler extends AssemblerTool implements org.apache.openejb.spi.A
                 appContext.getBindings().put("app/BeanManager", appContext.getBeanManager());
             }
 
-            startEjbs(start, allDeployments);
+            final StartupTracer.Span startSpan = StartupTracer.start("start ejbs", appInfo.appId);
+            try {
+                startEjbs(start, allDeployments);
+            } finally {
+                startSpan.stop();
+            }
 
             // App Client
             for (final ClientInfo clientInfo : appInfo.clients) {
@@ -892,6 +935,7 @@ public class Assembler extends AssemblerTool implements org.apache.openejb.spi.A
             deployedApplications.put(appInfo.path, appInfo);
             resumePersistentSchedulers(appContext);
 
+            span.stop(); // before the event to let observers report it
             systemInstance.fireEvent(new AssemblerAfterApplicationCreated(appInfo, appContext, allDeployments));
             logger.info("createApplication.success", appInfo.path);
 
@@ -899,12 +943,16 @@ public class Assembler extends AssemblerTool implements org.apache.openejb.spi.A
         } catch (final ValidationException ve) {
             throw ve;
         } catch (final Throwable t) {
+            span.stop();
             try {
                 destroyApplication(appInfo);
             } catch (final Exception e1) {
                 logger.debug("createApplication.undeployFailed", e1, appInfo.path);
             }
             throw new OpenEJBException(messages.format("createApplication.failed", appInfo.path), t);
+        } finally {
+            span.stop(); // no-op if already stopped, closes it on validation failures
+            BytecodeCache.end(bytecodeScope); // only useful while deploying
         }
     }
 
@@ -928,6 +976,61 @@ public class Assembler extends AssemblerTool implements org.apache.openejb.spi.A
         }
     }
 
+    /**
+     * Runs independent assembly tasks, concurrently if openejb.assembler.parallel is true.
+     *
+     * @return the results in the order of the tasks
+     */
+    private static <T> List<T> invokeAll(final List<Callable<T>> tasks) throws Exception {
+        final List<T> results = new ArrayList<T>(tasks.size());
+        if (tasks.size() < 2 || !SystemInstance.get().getOptions().get(OPENEJB_ASSEMBLER_PARALLEL, false)) {
+            for (final Callable<T> task : tasks) {
+                results.add(task.call());
+            }
+            return results;
+        }
+
+        final int threads = Math.min(tasks.size(),
+            SystemInstance.get().getOptions().get(OPENEJB_ASSEMBLER_PARALLEL_THREADS, Runtime.getRuntime().availableProcessors()));
+        final ExecutorService es = Executors.newFixedThreadPool(Math.max(1, threads), new DaemonThreadFactory("openejb-assembler-"));
+        final ClassLoader tccl = Thread.currentThread().getContextClassLoader();
+        try {
+            final List<Future<T>> futures = new ArrayList<Future<T>>(tasks.size());
+            for (final Callable<T> task : tasks) {
+                futures.add(es.submit(new Callable<T>() {
+                    @Override
+                    public T call() throws Exception {
+                        final Thread thread = Thread.currentThread();
+                        final ClassLoader old = thread.getContextClassLoader();
+                        thread.setContextClassLoader(tccl);
+                        try {
+                            return task.call();
+                        } finally {
+                            thread.setContextClassLoader(old);
+                        }
+                    }
+                }));
+            }
+            for (final Future<T> future : futures) {
+                try {
+                    results.add(future.get());
+                } catch (final ExecutionException ee) {
+                    final Throwable cause = ee.getCause();
+                    if (cause instanceof Exception) {
+                        throw (Exception) cause;
+                    }
+                    if (cause instanceof Error) {
+                        throw (Error) cause;
+                    }
+                    throw ee;
+                }
+            }
+            return results;
+        } finally {
+            es.shutdownNow();
+        }
+    }
+
     private void propagateApplicationExceptions(final AppInfo appInfo, final ClassLoader classLoader, final List<BeanContext> allDeployments) {
         for (final BeanContext context : allDeployments) {
             if (BeanContext.Comp.class.equals(context.getBeanClass())) {
@@ -1066,6 +1169,7 @@ public class Assembler extends AssemblerTool implements org.apache.openejb.spi.A
                 }
 
                 // if local bean or mdb generate proxy class now to avoid bottleneck on classloader later
+                // excepted in lazy initialization mode where it is generated on first use
                 if (beanContext.isLocalbean() && !beanContext.getComponentType().isMessageDriven() && !beanContext.isDynamicallyImplemented()) {
                     final List<Class> interfaces = new ArrayList<Class>(3);
                     interfaces.add(Serializable.class);
@@ -1079,7 +1183,8 @@ public class Assembler extends AssemblerTool implements org.apache.openejb.spi.A
                             BeanContext.ProxyClass.class,
                             new BeanContext.ProxyClass(
                                 beanContext,
-                                interfaces.toArray(new Class<?>[interfaces.size()])
+                                interfaces.toArray(new Class<?>[interfaces.size()]),
+                                isLazyInitialization(appInfo.properties)
                             ));
                 }
             }
@@ -1103,6 +1208,19 @@ public class Assembler extends AssemblerTool implements org.apache.openejb.spi.A
         return ejbs;
     }
 
+    /**
+     * In lazy initialization mode (development, scale to zero) the proxies of the beans are only created on first use.
+     *
+     * @param properties the application properties, they can override the global openejb.lazy.initialization
+     */
+    public static boolean isLazyInitialization(final Properties properties) {
+        final String value = properties.getProperty(OPENEJB_LAZY_INITIALIZATION);
+        if (value != null) {
+            return "true".equalsIgnoreCase(value.trim());
+        }
+        return SystemInstance.get().getOptions().get(OPENEJB_LAZY_INITIALIZATION, false);
+    }
+
     private static TimerStore newTimerStore(final BeanContext beanContext) {
         for (final DeploymentContext context : Arrays.asList(beanContext, beanContext.getModuleContext(), beanContext.getModuleContext().getAppContext())) {
             final String timerStoreClass = context.getProperties().getProperty(TIMER_STORE_CLASS);
@@ -1154,18 +1272,45 @@ public class Assembler extends AssemblerTool implements org.apache.openejb.spi.A
             }
 
             // start
+            final boolean parallelSingletons = SystemInstance.get().getOptions().get(OPENEJB_SINGLETON_STARTUP_PARALLEL, false);
+            final List<BeanContext> singletons = new ArrayList<BeanContext>();
             for (final BeanContext deployment : toStart) {
-                try {
-                    final Container container = deployment.getContainer();
-                    container.start(deployment);
-                    if (!((String) deployment.getDeploymentID()).endsWith(".Comp")
-                        && !deployment.isHidden()) {
-                        logger.info("createApplication.startedEjb", deployment.getDeploymentID(), deployment.getEjbName(), container.getContainerID());
-                    }
-                } catch (final Throwable t) {
-                    throw new OpenEJBException("Error starting '" + deployment.getEjbName() + "'.  Exception: " + t.getClass() + ": " + t.getMessage(), t);
+                if (parallelSingletons && deployment.getComponentType() == BeanType.SINGLETON) {
+                    singletons.add(deployment); // sorted contiguously, started as a batch
+                    continue;
                 }
+                startSingletons(singletons);
+                startEjb(deployment);
+            }
+            startSingletons(singletons);
+        }
+    }
+
+    private void startSingletons(final List<BeanContext> singletons) throws OpenEJBException {
+        if (singletons.isEmpty()) {
+            return;
+        }
+
+        final int threads = SystemInstance.get().getOptions().get(OPENEJB_SINGLETON_STARTUP_THREADS, Runtime.getRuntime().availableProcessors());
+        new ParallelSingletonStarter(threads).start(singletons, new ParallelSingletonStarter.Starter() {
+            @Override
+            public void start(final BeanContext beanContext) throws OpenEJBException {
+                startEjb(beanContext);
+            }
+        });
+        singletons.clear();
+    }
+
+    private void startEjb(final BeanContext deployment) throws OpenEJBException {
+        try {
+            final Container container = deployment.getContainer();
+            container.start(deployment);
+            if (!((String) deployment.getDeploymentID()).endsWith(".Comp")
+                && !deployment.isHidden()) {
+                logger.info("createApplication.startedEjb", deployment.getDeploymentID(), deployment.getEjbName(), container.getContainerID());
             }
+        } catch (final Throwable t) {
+            throw new OpenEJBException("Error starting '" + deployment.getEjbName() + "'.  Exception: " + t.getClass() + ": " + t.getMessage(), t);
         }
     }
 
@@ -2698,7 +2843,7 @@ public class Assembler extends AssemblerTool implements org.apache.openejb.spi.A
         private final Map<String, List<ClassFileTransformer>> transformers = new TreeMap<String, List<ClassFileTransformer>>();
 
         @Override
-        public void addTransformer(final String unitId, final ClassLoader classLoader, final ClassFileTransformer classFileTransformer) {
+        public synchronized void addTransformer(final String unitId, final ClassLoader classLoader, final ClassFileTransformer classFileTransformer) {
             final Instrumentation instrumentation = Agent.getInstrumentation();
             if (instrumentation != null) {
                 instrumentation.addTransformer(classFileTransformer);
@@ -2717,7 +2862,7 @@ public class Assembler extends AssemblerTool implements org.apache.openejb.spi.A
         }
 
         @Override
-        public void destroy(final String unitId) {
+        public synchronized void destroy(final String unitId) {
             final List<ClassFileTransformer> transformers = this.transformers.remove(unitId);
             if (transformers != null) {
                 final Instrumentation instrumentation = Agent.getInstrumentation();
@@ -19,6 +19,7 @@ package org.apache.openejb.assembler.classic;
 
 import org.apache.openejb.OpenEJBRuntimeException;
 import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.util.DaemonThreadFactory;
 import org.apache.openejb.util.LogCategory;
 import org.apache.openejb.util.Logger;
 
@@ -28,16 +29,26 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.net.URL;
+import java.sql.BatchUpdateException;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.SQLWarning;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class ImportSql {
     private static final Logger LOGGER = Logger.getInstance(LogCategory.OPENEJB, EntityManagerFactoryCallable.class.getName());
 
     public static final String OPENEJB_SQL_IMPORT = "openejb.sql.import";
+    public static final String OPENEJB_SQL_IMPORT_BATCH_SIZE = "openejb.sql.import.batch-size";
+    public static final String OPENEJB_SQL_IMPORT_PARALLEL = "openejb.sql.import.parallel";
 
     public static final String IMPORT_FILE_PREFIX = "import-";
     public static final String IMPORT_FILE_EXTENSION = ".sql";
@@ -45,6 +56,8 @@ public class ImportSql {
     private final DataSource dataSource;
     private boolean done;
     private final Enumeration<URL> imports;
+    private final int batchSize;
+    private final boolean parallel;
 
     public ImportSql(final ClassLoader cl, final String resource, final DataSource ds) {
         dataSource = ds;
@@ -59,6 +72,9 @@ public class ImportSql {
         } catch (final IOException e) {
             throw new OpenEJBRuntimeException("can't look for init sql script", e);
         }
+
+        batchSize = SystemInstance.get().getOptions().get(OPENEJB_SQL_IMPORT_BATCH_SIZE, 100);
+        parallel = SystemInstance.get().getOptions().get(OPENEJB_SQL_IMPORT_PARALLEL, false);
     }
 
     public boolean hasSomethingToImport() {
@@ -66,51 +82,102 @@ public class ImportSql {
     }
 
     public void doImport() {
-        final Statement statement;
         if (hasSomethingToImport()) {
-            Connection connection = null;
             try {
-                connection = dataSource.getConnection();
-                statement = connection.createStatement();
-            } catch (final SQLException e) {
-                LOGGER.error("can't create a statement, import scripts will be ignored", e);
-                if (connection != null) {
-                    try {
-                        connection.close();
-                    } catch (final SQLException ignored) {
-                        // no-op
-                    }
+                final List<URL> scripts = Collections.list(imports);
+                if (parallel && scripts.size() > 1) {
+                    parallelImport(scripts);
+                } else {
+                    sequentialImport(scripts);
                 }
-                return;
+            } finally {
+                done = true;
             }
+        }
+    }
 
-            try {
-                while (imports.hasMoreElements()) {
-                    final URL scriptToImport = imports.nextElement();
-                    LOGGER.info("importing " + scriptToImport.toExternalForm());
+    private void sequentialImport(final List<URL> scripts) {
+        final Connection connection;
+        try {
+            connection = dataSource.getConnection();
+        } catch (final SQLException e) {
+            LOGGER.error("can't get a connection, import scripts will be ignored", e);
+            return;
+        }
 
-                    importSql(scriptToImport, statement);
-                }
-            } finally {
+        try {
+            for (final URL scriptToImport : scripts) {
+                importSql(scriptToImport, connection);
+            }
+        } finally {
+            close(connection);
+        }
+    }
+
+    // scripts are independent so each of them uses its own connection
+    private void parallelImport(final List<URL> scripts) {
+        final ExecutorService es = Executors.newFixedThreadPool(Math.min(scripts.size(), Runtime.getRuntime().availableProcessors()),
+            new DaemonThreadFactory("OpenEJB-sql-import"));
+        try {
+            final List<Future<?>> futures = new ArrayList<Future<?>>(scripts.size());
+            for (final URL scriptToImport : scripts) {
+                futures.add(es.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        final Connection connection;
+                        try {
+                            connection = dataSource.getConnection();
+                        } catch (final SQLException e) {
+                            LOGGER.error("can't get a connection, " + scriptToImport.toExternalForm() + " will be ignored", e);
+                            return;
+                        }
+
+                        try {
+                            importSql(scriptToImport, connection);
+                        } finally {
+                            close(connection);
+                        }
+                    }
+                }));
+            }
+
+            for (final Future<?> future : futures) {
                 try {
-                    connection.close();
-                } catch (final SQLException e) {
-                    // ignored
+                    future.get();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    LOGGER.error("sql import interrupted", e);
+                    return;
+                } catch (final ExecutionException e) {
+                    LOGGER.error("can't import sql script", e.getCause());
                 }
-                done = true;
             }
+        } finally {
+            es.shutdownNow();
         }
     }
 
-    private void importSql(final URL script, final Statement statement) {
+    private void importSql(final URL script, final Connection connection) {
+        LOGGER.info("importing " + script.toExternalForm());
+
+        final Statement statement;
+        try {
+            statement = connection.createStatement();
+        } catch (final SQLException e) {
+            LOGGER.error("can't create a statement, " + script.toExternalForm() + " will be ignored", e);
+            return;
+        }
+
         final BufferedReader bufferedReader;
         try {
             bufferedReader = new BufferedReader(new InputStreamReader(new BufferedInputStream(script.openStream())));
         } catch (final IOException e) {
             LOGGER.error("can't open " + script.toExternalForm(), e);
+            close(statement);
             return;
         }
 
+        final Batch batch = new Batch(script, connection, statement, batchSize);
         try {
             for (String sql = bufferedReader.readLine(); sql != null; sql = bufferedReader.readLine()) {
                 String trimmedSql = sql.trim();
@@ -124,24 +191,233 @@ public class ImportSql {
                     trimmedSql = trimmedSql.substring(0, trimmedSql.length() - 1);
                 }
 
+                batch.add(trimmedSql);
+            }
+            batch.flush();
+        } catch (final IOException e) {
+            LOGGER.error("can't import " + script.toExternalForm(), e);
+        } finally {
+            batch.release();
+            try {
+                bufferedReader.close();
+            } catch (final IOException e) {
+                // no-op
+            }
+            close(statement);
+        }
+    }
+
+    private static void execute(final URL script, final Statement statement, final String sql) {
+        try {
+            if (!sql.toLowerCase().startsWith("select")) {
+                statement.executeUpdate(sql);
+            } else { // why could it be the case?
+                statement.executeQuery(sql);
+            }
+
+            logWarnings(statement);
+        } catch (final SQLException e) {
+            LOGGER.error("error importing script " + script.toExternalForm(), e);
+        }
+    }
+
+    private static void logWarnings(final Statement statement) throws SQLException {
+        SQLWarning warnings = statement.getWarnings();
+        while (warnings != null) {
+            LOGGER.warning(warnings.getMessage());
+            warnings = warnings.getNextWarning();
+        }
+    }
+
+    private static void close(final Statement statement) {
+        try {
+            statement.close();
+        } catch (final SQLException e) {
+            // no-op
+        }
+    }
+
+    private static void close(final Connection connection) {
+        try {
+            connection.close();
+        } catch (final SQLException e) {
+            // no-op
+        }
+    }
+
+    /**
+     * Groups DML statements in JDBC batches, each batch being committed in its own transaction.
+     * Other statements (DDL, queries) flush the pending batch and are executed alone since they can't be rolled back
+     * by all databases.
+     *
+     * If a statement of a batch fails the import resumes after it (using the update counts of the driver) to keep
+     * the "log and continue" behavior of the unbatched import without executing a statement twice.
+     */
+    private static class Batch {
+        private static final String[] DML = {"insert", "update", "delete", "merge"};
+
+        private final URL script;
+        private final Connection connection;
+        private final Statement statement;
+        private final int size;
+        private final List<String> pending;
+        private boolean enabled;
+        private boolean autoCommit = true;
+
+        private Batch(final URL script, final Connection connection, final Statement statement, final int size) {
+            this.script = script;
+            this.connection = connection;
+            this.statement = statement;
+            this.size = size;
+            this.pending = new ArrayList<String>(Math.max(1, size));
+
+            enabled = size > 1;
+            if (enabled) {
                 try {
-                    if (!trimmedSql.toLowerCase().startsWith("select")) {
-                        statement.executeUpdate(trimmedSql);
-                    } else { // why could it be the case?
-                        statement.executeQuery(trimmedSql);
+                    enabled = connection.getMetaData().supportsBatchUpdates();
+                    if (enabled) {
+                        autoCommit = connection.getAutoCommit();
+                        connection.setAutoCommit(false);
                     }
+                } catch (final SQLException e) {
+                    LOGGER.debug("can't use batch updates for " + script.toExternalForm() + ": " + e.getMessage());
+                    enabled = false;
+                }
+            }
+        }
+
+        public void add(final String sql) {
+            if (!enabled) {
+                execute(script, statement, sql);
+                return;
+            }
+
+            if (!isDml(sql)) {
+                flush();
+                execute(script, statement, sql);
+                commit();
+                return;
+            }
+
+            try {
+                statement.addBatch(sql);
+                pending.add(sql);
+            } catch (final SQLException e) {
+                LOGGER.error("error importing script " + script.toExternalForm(), e);
+                return;
+            }
+
+            if (pending.size() >= size) {
+                flush();
+            }
+        }
 
-                    SQLWarning warnings = statement.getWarnings();
-                    while (warnings != null) {
-                        LOGGER.warning(warnings.getMessage());
-                        warnings = warnings.getNextWarning();
+        public void flush() {
+            if (pending.isEmpty()) {
+                return;
+            }
+
+            try {
+                statement.executeBatch();
+                try {
+                    logWarnings(statement);
+                } catch (final SQLException ignored) {
+                    // no-op
+                }
+                if (!commit()) {
+                    replay(0, pending.size());
+                }
+            } catch (final BatchUpdateException e) {
+                clearBatch();
+                resume(e);
+            } catch (final SQLException e) { // the batch was not executed at all
+                LOGGER.debug("batch of " + script.toExternalForm() + " failed, replaying it statement by statement: " + e.getMessage());
+                clearBatch();
+                rollback();
+                replay(0, pending.size());
+            } finally {
+                pending.clear();
+            }
+        }
+
+        public void release() {
+            if (!enabled) {
+                return;
+            }
+
+            if (!pending.isEmpty()) { // import failed
+                rollback();
+                pending.clear();
+            }
+            try {
+                connection.setAutoCommit(autoCommit);
+            } catch (final SQLException e) {
+                // no-op
+            }
+        }
+
+        private void resume(final BatchUpdateException e) {
+            final int[] counts = e.getUpdateCounts();
+            if (counts != null && counts.length == pending.size()) { // the driver went on after the failures
+                for (int i = 0; i < counts.length; i++) {
+                    if (counts[i] == Statement.EXECUTE_FAILED) {
+                        LOGGER.error("error importing script " + script.toExternalForm() + ": " + pending.get(i), e);
                     }
-                } catch (final SQLException e) {
-                    LOGGER.error("error importing script " + script.toExternalForm(), e);
                 }
+                commit();
+                return;
             }
-        } catch (final IOException e) {
-            LOGGER.error("can't import " + script.toExternalForm(), e);
+
+            // the driver stopped at the failing statement, the previous ones were executed
+            final int failed = counts == null ? 0 : counts.length;
+            LOGGER.error("error importing script " + script.toExternalForm() + ": " + pending.get(failed), e);
+            if (!commit()) { // the database rolled back the transaction because of the failure
+                replay(0, failed);
+            }
+            replay(failed + 1, pending.size());
+        }
+
+        private void replay(final int from, final int to) {
+            for (int i = from; i < to; i++) {
+                execute(script, statement, pending.get(i));
+                commit();
+            }
+        }
+
+        private boolean commit() {
+            try {
+                connection.commit();
+                return true;
+            } catch (final SQLException e) {
+                LOGGER.error("can't commit import of " + script.toExternalForm(), e);
+                rollback();
+                return false;
+            }
+        }
+
+        private void rollback() {
+            try {
+                connection.rollback();
+            } catch (final SQLException e) {
+                // no-op
+            }
+        }
+
+        private void clearBatch() {
+            try {
+                statement.clearBatch();
+            } catch (final SQLException ignored) {
+                // no-op
+            }
+        }
+
+        private static boolean isDml(final String sql) {
+            for (final String prefix : DML) {
+                if (sql.regionMatches(true, 0, prefix, 0, prefix.length())) {
+                    return true;
+                }
+            }
+            return false;
         }
     }
 }
@@ -26,6 +26,7 @@ import org.apache.openejb.core.ivm.naming.BusinessLocalBeanReference;
 import org.apache.openejb.core.ivm.naming.BusinessLocalReference;
 import org.apache.openejb.core.ivm.naming.BusinessRemoteReference;
 import org.apache.openejb.core.ivm.naming.IntraVmJndiReference;
+import org.apache.openejb.core.ivm.naming.LazyReference;
 import org.apache.openejb.core.ivm.naming.ObjectReference;
 import org.apache.openejb.loader.Options;
 import org.apache.openejb.loader.SystemInstance;
@@ -51,6 +52,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
 
 import static org.apache.openejb.util.Classes.packageName;
 
@@ -399,6 +401,7 @@ public class JndiBuilder {
         Reference simpleNameRef = null;
 
         final Object id = bean.getDeploymentID();
+        final boolean lazy = Assembler.isLazyInitialization(bean.getModuleContext().getAppContext().getProperties());
 
         // Our openejb.jndiname.format concept works such that there doesn't need to be one explicit jndi name
         // for each view that the bean may offer.  If the user configured a name that results in few possible
@@ -420,8 +423,12 @@ public class JndiBuilder {
             if (bean.isLocalbean()) {
                 final Class beanClass = bean.getBeanClass();
 
-                final BeanContext.BusinessLocalBeanHome home = bean.getBusinessLocalBeanHome();
-                final BusinessLocalBeanReference ref = new BusinessLocalBeanReference(home);
+                final Reference ref = reference(lazy, id + "/" + beanClass.getName(), new Callable<Reference>() {
+                    @Override
+                    public Reference call() throws Exception {
+                        return new BusinessLocalBeanReference(bean.getBusinessLocalBeanHome());
+                    }
+                });
 
                 optionalBind(bindings, ref, "openejb/Deployment/" + format(id, beanClass.getName(), InterfaceType.LOCALBEAN));
 
@@ -452,8 +459,12 @@ public class JndiBuilder {
 
             for (final Class interfce : bean.getBusinessLocalInterfaces()) {
 
-                final BeanContext.BusinessLocalHome home = bean.getBusinessLocalHome(interfce);
-                final BusinessLocalReference ref = new BusinessLocalReference(home);
+                final Reference ref = reference(lazy, id + "/" + interfce.getName(), new Callable<Reference>() {
+                    @Override
+                    public Reference call() throws Exception {
+                        return new BusinessLocalReference(bean.getBusinessLocalHome(interfce));
+                    }
+                });
 
                 optionalBind(bindings, ref, "openejb/Deployment/" + format(id, interfce.getName()));
 
@@ -480,8 +491,12 @@ public class JndiBuilder {
 
             for (final Class interfce : bean.getBusinessRemoteInterfaces()) {
 
-                final BeanContext.BusinessRemoteHome home = bean.getBusinessRemoteHome(interfce);
-                final BusinessRemoteReference ref = new BusinessRemoteReference(home);
+                final Reference ref = reference(lazy, id + "/" + interfce.getName(), new Callable<Reference>() {
+                    @Override
+                    public Reference call() throws Exception {
+                        return new BusinessRemoteReference(bean.getBusinessRemoteHome(interfce));
+                    }
+                });
 
                 optionalBind(bindings, ref, "openejb/Deployment/" + format(id, interfce.getName(), null));
 
@@ -509,7 +524,12 @@ public class JndiBuilder {
             final Class localHomeInterface = bean.getLocalHomeInterface();
             if (localHomeInterface != null) {
 
-                final ObjectReference ref = new ObjectReference(bean.getEJBLocalHome());
+                final Reference ref = reference(lazy, id + "/" + localHomeInterface.getName(), new Callable<Reference>() {
+                    @Override
+                    public Reference call() throws Exception {
+                        return new ObjectReference(bean.getEJBLocalHome());
+                    }
+                });
 
                 String name = strategy.getName(bean.getLocalHomeInterface(), DEFAULT_NAME_KEY, JndiNameStrategy.Interface.LOCAL_HOME);
                 bind("openejb/local/" + name, ref, bindings, beanInfo, localHomeInterface);
@@ -535,7 +555,12 @@ public class JndiBuilder {
             final Class homeInterface = bean.getHomeInterface();
             if (homeInterface != null) {
 
-                final ObjectReference ref = new ObjectReference(bean.getEJBHome());
+                final Reference ref = reference(lazy, id + "/" + homeInterface.getName(), new Callable<Reference>() {
+                    @Override
+                    public Reference call() throws Exception {
+                        return new ObjectReference(bean.getEJBHome());
+                    }
+                });
 
                 String name = strategy.getName(homeInterface, DEFAULT_NAME_KEY, JndiNameStrategy.Interface.REMOTE_HOME);
                 bind("openejb/local/" + name, ref, bindings, beanInfo, homeInterface);
@@ -582,6 +607,20 @@ public class JndiBuilder {
         }
     }
 
+    // in lazy initialization mode the homes (proxies) are only created on first lookup
+    private static Reference reference(final boolean lazy, final String name, final Callable<Reference> creator) {
+        if (lazy) {
+            return new LazyReference(name, creator);
+        }
+        try {
+            return creator.call();
+        } catch (final RuntimeException e) {
+            throw e;
+        } catch (final Exception e) {
+            throw new OpenEJBRuntimeException(e);
+        }
+    }
+
     private void optionalBind(final Bindings bindings, final Reference ref, final String name) throws NamingException {
         try {
             openejbContext.bind(name, ref);
@@ -0,0 +1,171 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.assembler.classic;
+
+import org.apache.openejb.BeanContext;
+import org.apache.openejb.OpenEJBException;
+import org.apache.openejb.util.DaemonThreadFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Starts singletons on a bounded pool following the @DependsOn graph: a singleton is only
+ * started once all the singletons of the batch it depends on are started, independent ones
+ * are started concurrently.
+ */
+public class ParallelSingletonStarter {
+    public interface Starter {
+        void start(BeanContext beanContext) throws OpenEJBException;
+    }
+
+    private final int threads;
+
+    public ParallelSingletonStarter(final int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    public void start(final List<BeanContext> singletons, final Starter starter) throws OpenEJBException {
+        if (singletons.isEmpty()) {
+            return;
+        }
+
+        final Map<String, Node> nodes = new LinkedHashMap<String, Node>();
+        for (final BeanContext beanContext : singletons) {
+            nodes.put(String.valueOf(beanContext.getDeploymentID()), new Node(beanContext));
+        }
+        for (final Node node : nodes.values()) {
+            for (final String id : node.beanContext.getDependsOn()) {
+                final Node dependency = nodes.get(id);
+                if (dependency != null) { // else not in this batch so already started
+                    dependency.dependents.add(node);
+                    node.pending.incrementAndGet();
+                }
+            }
+        }
+        checkCycles(nodes.values());
+
+        final ExecutorService es = Executors.newFixedThreadPool(Math.min(threads, nodes.size()), new DaemonThreadFactory("openejb-singleton-startup-"));
+        final CountDownLatch done = new CountDownLatch(nodes.size());
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        try {
+            for (final Node node : nodes.values()) {
+                if (node.pending.get() == 0) {
+                    submit(es, node, starter, done, error);
+                }
+            }
+
+            try {
+                done.await();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new OpenEJBException("Interrupted while starting singletons", e);
+            }
+        } finally {
+            es.shutdownNow();
+        }
+
+        final Throwable throwable = error.get();
+        if (OpenEJBException.class.isInstance(throwable)) {
+            throw OpenEJBException.class.cast(throwable);
+        } else if (throwable != null) {
+            throw new OpenEJBException(throwable);
+        }
+    }
+
+    private static void submit(final ExecutorService es, final Node node, final Starter starter,
+                               final CountDownLatch done, final AtomicReference<Throwable> error) {
+        es.submit(new Runnable() {
+            @Override
+            public void run() {
+                final Thread thread = Thread.currentThread();
+                final ClassLoader old = thread.getContextClassLoader();
+                thread.setContextClassLoader(node.beanContext.getClassLoader());
+                try {
+                    if (error.get() == null) {
+                        starter.start(node.beanContext);
+                    }
+                } catch (final Throwable t) {
+                    error.compareAndSet(null, t);
+                } finally {
+                    thread.setContextClassLoader(old);
+                    // dependents are still released on failure to drain the latch, they are skipped anyway
+                    for (final Node dependent : node.dependents) {
+                        if (dependent.pending.decrementAndGet() == 0) {
+                            submit(es, dependent, starter, done, error);
+                        }
+                    }
+                    done.countDown();
+                }
+            }
+        });
+    }
+
+    // kahn algorithm, References.sort already rejected cycles but this is cheap and avoids a hang
+    private static void checkCycles(final Collection<Node> nodes) throws OpenEJBException {
+        final Map<Node, Integer> pending = new HashMap<Node, Integer>();
+        final List<Node> ready = new ArrayList<Node>();
+        for (final Node node : nodes) {
+            pending.put(node, node.pending.get());
+            if (node.pending.get() == 0) {
+                ready.add(node);
+            }
+        }
+
+        int visited = 0;
+        while (!ready.isEmpty()) {
+            final Node node = ready.remove(ready.size() - 1);
+            visited++;
+            for (final Node dependent : node.dependents) {
+                final int remaining = pending.get(dependent) - 1;
+                pending.put(dependent, remaining);
+                if (remaining == 0) {
+                    ready.add(dependent);
+                }
+            }
+        }
+
+        if (visited != nodes.size()) {
+            final List<Object> cycle = new ArrayList<Object>();
+            for (final Map.Entry<Node, Integer> entry : pending.entrySet()) {
+                if (entry.getValue() > 0) {
+                    cycle.add(entry.getKey().beanContext.getDeploymentID());
+                }
+            }
+            throw new OpenEJBException("Circular @DependsOn references between singletons: " + cycle);
+        }
+    }
+
+    private static class Node {
+        private final BeanContext beanContext;
+        private final List<Node> dependents = new ArrayList<Node>();
+        private final AtomicInteger pending = new AtomicInteger();
+
+        private Node(final BeanContext beanContext) {
+            this.beanContext = beanContext;
+        }
+    }
+}
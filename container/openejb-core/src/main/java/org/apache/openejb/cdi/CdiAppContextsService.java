@@ -58,7 +58,16 @@ public class CdiAppContextsService extends AbstractContextsService implements Co
 
     private static final Logger logger = Logger.getInstance(LogCategory.OPENEJB.createChild("cdi"), CdiAppContextsService.class);
 
-    private final ThreadLocal<RequestContext> requestContext = new ThreadLocal<RequestContext>();
+    /**
+     * The request context is only created when a request scoped bean is used, most requests don't use any
+     * so they don't pay for its creation and destruction. The holder is reused by the requests of a thread.
+     */
+    private final ThreadLocal<RequestHolder> requestContext = new ThreadLocal<RequestHolder>() {
+        @Override
+        protected RequestHolder initialValue() {
+            return new RequestHolder();
+        }
+    };
 
     private final ThreadLocal<SessionContext> sessionContext = new ThreadLocal<SessionContext>();
     private final UpdatableSessionContextManager sessionCtxManager = new UpdatableSessionContextManager();
@@ -76,12 +85,7 @@ public class CdiAppContextsService extends AbstractContextsService implements Co
 
     private final WebBeansContext webBeansContext;
 
-    private static final ThreadLocal<Collection<Runnable>> endRequestRunnables = new ThreadLocal<Collection<Runnable>>() {
-        @Override
-        protected Collection<Runnable> initialValue() {
-            return new ArrayList<Runnable>();
-        }
-    };
+    private static final ThreadLocal<Collection<Runnable>> endRequestRunnables = new ThreadLocal<Collection<Runnable>>();
 
 
     public CdiAppContextsService() {
@@ -106,7 +110,12 @@ public class CdiAppContextsService extends AbstractContextsService implements Co
     }
 
     private void endRequest() {
-        for (final Runnable r : endRequestRunnables.get()) {
+        final Collection<Runnable> runnables = endRequestRunnables.get();
+        if (runnables == null) {
+            return;
+        }
+
+        for (final Runnable r : runnables) {
             try {
                 r.run();
             } catch (final Exception e) {
@@ -117,7 +126,12 @@ public class CdiAppContextsService extends AbstractContextsService implements Co
     }
 
     public static void pushRequestReleasable(final Runnable runnable) {
-        endRequestRunnables.get().add(runnable);
+        Collection<Runnable> runnables = endRequestRunnables.get();
+        if (runnables == null) {
+            runnables = new ArrayList<Runnable>();
+            endRequestRunnables.set(runnables);
+        }
+        runnables.add(runnable);
     }
 
     @Override
@@ -141,9 +155,8 @@ public class CdiAppContextsService extends AbstractContextsService implements Co
 
     public void removeThreadLocals() {
         //Remove thread locals
-        //for preventing memory leaks
-        requestContext.set(null);
-        requestContext.remove();
+        //for preventing memory leaks, the request holder is only reset to be reused by the next request
+        requestContext.get().reset();
         sessionContext.set(null);
         sessionContext.remove();
 
@@ -244,23 +257,41 @@ public class CdiAppContextsService extends AbstractContextsService implements Co
     }
 
     private void initRequestContext(final ServletRequestEvent event) {
-        final RequestContext rq = new ServletRequestContext();
+        final RequestHolder holder = requestContext.get();
+        holder.reset();
+        holder.started = true;
+        if (event != null) {
+            holder.request = (HttpServletRequest) event.getServletRequest();
+        }
+    }
+
+    /**
+     * Creates the context of a started request, on its first use.
+     */
+    private RequestContext createRequestContext(final RequestHolder holder) {
+        final ServletRequestContext rq = new ServletRequestContext();
         rq.setActive(true);
+        holder.context = rq;
 
-        requestContext.set(rq);// set thread local
-        if (event != null) {
-            final HttpServletRequest request = (HttpServletRequest) event.getServletRequest();
-            ((ServletRequestContext) rq).setServletRequest(request);
+        final HttpServletRequest request = holder.request;
+        if (request != null) {
+            rq.setServletRequest(request);
 
-            if (request != null) {
-                //Re-initialize thread local for session
-                final HttpSession session = request.getSession(false);
+            //Re-initialize thread local for session
+            final HttpSession session = request.getSession(false);
 
-                if (session != null) {
-                    initSessionContext(session);
-                }
+            if (session != null) {
+                initSessionContext(session);
             }
         }
+        return rq;
+    }
+
+    /**
+     * @return true if a request context is started on the current thread, without creating it
+     */
+    public boolean hasRequestContext() {
+        return requestContext.get().started;
     }
 
     private void destroyRequestContext() {
@@ -271,8 +302,9 @@ public class CdiAppContextsService extends AbstractContextsService implements Co
             cleanupConversation();
         }
 
-        //Get context
-        final RequestContext context = getRequestContext();
+        //Get context, it was not created if no request scoped bean was used
+        final RequestHolder holder = requestContext.get();
+        final RequestContext context = holder.context;
 
         //Destroy context
         if (context != null) {
@@ -286,9 +318,11 @@ public class CdiAppContextsService extends AbstractContextsService implements Co
         }
 
         //Clear thread locals - only for request to let user do with deltaspike start(session, request)restart(request)...stop()
-        requestContext.remove();
+        holder.reset();
 
-        RequestScopedBeanInterceptorHandler.removeThreadLocals();
+        if (context != null) {
+            RequestScopedBeanInterceptorHandler.removeThreadLocals();
+        }
     }
 
     private void cleanupConversation() {
@@ -445,7 +479,11 @@ public class CdiAppContextsService extends AbstractContextsService implements Co
 
 
     private RequestContext getRequestContext() {
-        return requestContext.get();
+        final RequestHolder holder = requestContext.get();
+        if (holder.context == null && holder.started) {
+            return createRequestContext(holder);
+        }
+        return holder.context;
     }
 
     private Context getSessionContext() {
@@ -536,17 +574,33 @@ public class CdiAppContextsService extends AbstractContextsService implements Co
     }
 
     public State saveState() {
-        return new State(requestContext.get(), sessionContext.get(), conversationContext.get());
+        final RequestContext request = getRequestContext(); // the state is shared so the context needs to exist
+        return new State(request, sessionContext.get(), conversationContext.get());
     }
 
     public State restoreState(final State state) {
         final State old = saveState();
-        requestContext.set(state.request);
+        final RequestHolder holder = requestContext.get();
+        holder.reset();
+        holder.context = state.request;
+        holder.started = state.request != null;
         sessionContext.set(state.session);
         conversationContext.set(state.conversation);
         return old;
     }
 
+    private static final class RequestHolder {
+        private boolean started;
+        private HttpServletRequest request;
+        private RequestContext context;
+
+        private void reset() {
+            started = false;
+            request = null;
+            context = null;
+        }
+    }
+
     public static class State {
         private final RequestContext request;
         private final SessionContext session;
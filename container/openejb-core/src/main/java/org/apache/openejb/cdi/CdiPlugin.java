@@ -23,6 +23,7 @@ import org.apache.openejb.InterfaceType;
 import org.apache.openejb.OpenEJBException;
 import org.apache.openejb.OpenEJBRuntimeException;
 import org.apache.openejb.core.ivm.IntraVmProxy;
+import org.apache.openejb.util.proxy.LocalBeanProxyFactory;
 import org.apache.openejb.util.proxy.ProxyManager;
 import org.apache.webbeans.component.AbstractOwbBean;
 import org.apache.webbeans.component.InjectionTargetBean;
@@ -122,7 +123,10 @@ public class CdiPlugin extends AbstractOwbPlugin implements OpenWebBeansJavaEEPl
         for (final BeanContext deployment : ejbDeployments) {
             if (deployment.getComponentType().isSession()) {
                 if (deployment.isLocalbean() && !deployment.isDynamicallyImplemented()) {
-                    beans.put(deployment.get(BeanContext.ProxyClass.class).getProxy(), deployment);
+                    final BeanContext.ProxyClass proxyClass = deployment.get(BeanContext.ProxyClass.class);
+                    if (proxyClass.isGenerated()) { // else lazy initialization, see key()
+                        beans.put(proxyClass.getProxy(), deployment);
+                    }
                 }
                 beans.put(deployment.getBeanClass(), deployment);
             }
@@ -270,7 +274,7 @@ public class CdiPlugin extends AbstractOwbPlugin implements OpenWebBeansJavaEEPl
     @Override
     public boolean isSessionBean(final Class<?> clazz) {
         // this may be called from a web app without ejbs in which case beans will not have been initialized by openejb.
-        return beans != null && beans.containsKey(clazz);
+        return beans != null && beans.containsKey(key(clazz));
     }
 
     @Override
@@ -285,7 +289,15 @@ public class CdiPlugin extends AbstractOwbPlugin implements OpenWebBeansJavaEEPl
         }
 
         final Map<Class<?>, BeanContext> map = pluginBeans(ctx);
-        return map != null && (map.containsKey(clazz) || clazz.isInterface() && findBeanContext(ctx, clazz) != null);
+        return map != null && (map.containsKey(key(clazz)) || clazz.isInterface() && findBeanContext(ctx, clazz) != null);
+    }
+
+    // local bean proxies generated lazily are not registered, use their bean class
+    private static Class<?> key(final Class<?> clazz) {
+        if (LocalBeanProxyFactory.isProxy(clazz)) {
+            return clazz.getSuperclass();
+        }
+        return clazz;
     }
 
     private static WebBeansContext superContext(final WebBeansContext ctx) {
@@ -298,7 +310,7 @@ public class CdiPlugin extends AbstractOwbPlugin implements OpenWebBeansJavaEEPl
     private static BeanContext findBeanContext(final WebBeansContext ctx, final Class<?> clazz) {
         final Map<Class<?>, BeanContext> beans = pluginBeans(ctx);
 
-        final BeanContext b = beans.get(clazz);
+        final BeanContext b = beans.get(key(clazz));
         if (b != null) {
             return b;
         }
@@ -498,7 +510,7 @@ public class CdiPlugin extends AbstractOwbPlugin implements OpenWebBeansJavaEEPl
 
     @Override
     public boolean isStatefulBean(final Class<?> clazz) {
-        return BeanType.STATEFUL.equals(beans.get(clazz).getComponentType());
+        return BeanType.STATEFUL.equals(beans.get(key(clazz)).getComponentType());
     }
 
     @Override
@@ -24,6 +24,7 @@ import org.apache.openejb.assembler.classic.AppInfo;
 import org.apache.openejb.assembler.classic.Assembler;
 import org.apache.openejb.util.LogCategory;
 import org.apache.openejb.util.Logger;
+import org.apache.openejb.util.StartupTracer;
 import org.apache.webbeans.config.BeansDeployer;
 import org.apache.webbeans.config.OpenWebBeansConfiguration;
 import org.apache.webbeans.config.WebBeansContext;
@@ -127,6 +128,8 @@ public class OpenEJBLifecycle implements ContainerLifecycle {
         logger.info("OpenWebBeans Container is starting...");
 
         final long begin = System.currentTimeMillis();
+        final String module = stuff.getWebContext() != null ? stuff.getWebContext().getId() : stuff.getAppContext().getId();
+        final StartupTracer.Span span = StartupTracer.start("cdi", module);
 
         try {
             Thread.currentThread().setContextClassLoader(stuff.getClassLoader());
@@ -176,13 +179,23 @@ public class OpenEJBLifecycle implements ContainerLifecycle {
                 }
 
                 //Scan
-                this.scannerService.scan();
+                final StartupTracer.Span scanning = StartupTracer.start("cdi scanning", module);
+                try {
+                    this.scannerService.scan();
+                } finally {
+                    scanning.stop();
+                }
 
                 // just to let us write custom CDI Extension using our internals easily
                 CURRENT_APP_INFO.set(StartupObject.class.cast(startupObject).getAppInfo());
 
                 //Deploy bean from XML. Also configures deployments, interceptors, decorators.
-                deployer.deploy(scannerService);
+                final StartupTracer.Span deployment = StartupTracer.start("cdi deployment", module);
+                try {
+                    deployer.deploy(scannerService);
+                } finally {
+                    deployment.stop();
+                }
             } catch (final Exception e1) {
                 Assembler.logger.error("CDI Beans module deployment failed", e1);
                 throw new OpenEJBRuntimeException(e1);
@@ -208,6 +221,7 @@ public class OpenEJBLifecycle implements ContainerLifecycle {
             afterStartApplication(startupObject);
         } finally {
             Thread.currentThread().setContextClassLoader(oldCl);
+            span.stop();
 
             // cleanup threadlocal used to enrich cdi context manually
             OptimizedLoaderService.ADDITIONAL_EXTENSIONS.remove();
@@ -24,7 +24,6 @@ import org.apache.webbeans.config.WebBeansContext;
 import org.apache.webbeans.spi.ContextsService;
 
 import javax.enterprise.context.RequestScoped;
-import javax.enterprise.context.spi.Context;
 
 /**
  * @version $Rev$ $Date$
@@ -44,9 +43,14 @@ public class RequestScopedThreadContextListener implements ThreadContextListener
 
         final ContextsService contextsService = webBeansContext.getContextsService();
 
-        final Context requestContext = contextsService.getCurrentContext(RequestScoped.class);
+        final boolean started;
+        if (contextsService instanceof CdiAppContextsService) { // don't create the request context if it is not used
+            started = CdiAppContextsService.class.cast(contextsService).hasRequestContext();
+        } else {
+            started = contextsService.getCurrentContext(RequestScoped.class) != null;
+        }
 
-        if (requestContext == null) {
+        if (!started) {
             contextsService.startContext(RequestScoped.class, null);
             newContext.set(DestroyContext.class, new DestroyContext(contextsService, newContext));
         }
@@ -0,0 +1,447 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.config;
+
+import org.apache.openejb.loader.Files;
+import org.apache.openejb.loader.IO;
+import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.util.LogCategory;
+import org.apache.openejb.util.Logger;
+import org.apache.xbean.asm5.AnnotationVisitor;
+import org.apache.xbean.asm5.ClassReader;
+import org.apache.xbean.asm5.ClassVisitor;
+import org.apache.xbean.asm5.FieldVisitor;
+import org.apache.xbean.asm5.MethodVisitor;
+import org.apache.xbean.asm5.Opcodes;
+import org.apache.xbean.finder.filter.Filter;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Build time index of a jar or classes folder listing the classes which can't contribute to the annotation
+ * scanning: no annotation on the class or its members, no parent other than {@link Object} and no interface.
+ *
+ * Bean archives (with a META-INF/beans.xml or WEB-INF/beans.xml) are never filtered since any of their
+ * classes can be injected, so the index of a bean archive is ignored.
+ *
+ * When the index is present and up to date (its fingerprint is computed from the class entry names and sizes)
+ * these classes are filtered out of the archive so their bytecode is never read at deploy time.
+ *
+ * The index is generated by the tomee-maven-plugin index goal, it can be ignored at runtime with
+ * openejb.finder.index=false.
+ */
+public class AnnotationIndex {
+    private static final Logger logger = Logger.getInstance(LogCategory.OPENEJB_STARTUP_CONFIG, AnnotationIndex.class);
+
+    public static final String OPENEJB_FINDER_INDEX = "openejb.finder.index";
+    public static final String LOCATION = "META-INF/org.apache.openejb.annotation-index";
+
+    private static final int MAGIC = 0x4f454149;
+    private static final int VERSION = 2;
+    private static final String CLASS_EXTENSION = ".class";
+    private static final String OBJECT = "java/lang/Object";
+    private static final String[] BEANS_XML = {"META-INF/beans.xml", "WEB-INF/beans.xml"};
+    private static final int ASM_FLAGS = ClassReader.SKIP_CODE + ClassReader.SKIP_DEBUG + ClassReader.SKIP_FRAMES;
+
+    private final String fingerprint;
+    private final Set<String> skipped;
+
+    public AnnotationIndex(final String fingerprint, final Set<String> skipped) {
+        this.fingerprint = fingerprint;
+        this.skipped = skipped;
+    }
+
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public Set<String> getSkipped() {
+        return skipped;
+    }
+
+    public Filter filter() {
+        return new Filter() {
+            @Override
+            public boolean accept(final String name) {
+                return !skipped.contains(name);
+            }
+        };
+    }
+
+    /**
+     * @param location a jar or a classes folder
+     * @return the index of this location if activated, present and up to date, null otherwise
+     */
+    public static AnnotationIndex load(final URL location) {
+        if (!SystemInstance.get().getOptions().get(OPENEJB_FINDER_INDEX, true)) {
+            return null;
+        }
+
+        final File file;
+        try {
+            file = Files.toFile(location);
+        } catch (final RuntimeException e) {
+            return null; // not a local file
+        }
+
+        InputStream is = null;
+        ZipFile zip = null;
+        try {
+            if (file.isDirectory()) {
+                final File index = new File(file, LOCATION);
+                if (!index.isFile()) {
+                    return null;
+                }
+                is = IO.read(index);
+            } else if (file.isFile()) {
+                zip = new ZipFile(file);
+                final ZipEntry entry = zip.getEntry(LOCATION);
+                if (entry == null) {
+                    return null;
+                }
+                is = zip.getInputStream(entry);
+            } else {
+                return null;
+            }
+
+            final AnnotationIndex index = read(is);
+            if (index == null || !index.fingerprint.equals(fingerprint(file))) {
+                logger.debug("Ignoring stale annotation index of " + file.getAbsolutePath());
+                return null;
+            }
+            return index;
+        } catch (final IOException e) {
+            logger.debug("Can't read annotation index of " + file.getAbsolutePath() + ": " + e.getMessage());
+            return null;
+        } finally {
+            IO.close(is);
+            if (zip != null) {
+                try {
+                    zip.close();
+                } catch (final IOException e) {
+                    // no-op
+                }
+            }
+        }
+    }
+
+    /**
+     * @param location a jar or a classes folder
+     * @return true if the location is a CDI bean archive or can't be checked
+     */
+    public static boolean isBeanArchive(final URL location) {
+        final File file;
+        try {
+            file = Files.toFile(location);
+        } catch (final RuntimeException e) {
+            return true;
+        }
+
+        if (file.isDirectory()) {
+            for (final String beansXml : BEANS_XML) {
+                if (new File(file, beansXml).isFile()) {
+                    return true;
+                }
+            }
+            // WEB-INF/classes
+            final File parent = file.getParentFile();
+            return "classes".equals(file.getName()) && parent != null && "WEB-INF".equals(parent.getName())
+                    && new File(parent, "beans.xml").isFile();
+        }
+        if (!file.isFile()) {
+            return true;
+        }
+
+        try {
+            final ZipFile zip = new ZipFile(file);
+            try {
+                for (final String beansXml : BEANS_XML) {
+                    if (zip.getEntry(beansXml) != null) {
+                        return true;
+                    }
+                }
+                return false;
+            } finally {
+                zip.close();
+            }
+        } catch (final IOException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Scans the classes of a jar or a folder.
+     */
+    public static AnnotationIndex build(final File file) throws IOException {
+        final Set<String> skipped = new TreeSet<String>();
+        if (file.isDirectory()) {
+            final Map<String, File> classes = new TreeMap<String, File>();
+            listClasses(file, "", classes);
+            for (final Map.Entry<String, File> entry : classes.entrySet()) {
+                final InputStream is = IO.read(entry.getValue());
+                try {
+                    index(entry.getKey(), is, skipped);
+                } finally {
+                    IO.close(is);
+                }
+            }
+        } else {
+            final ZipInputStream zis = new ZipInputStream(IO.read(file));
+            try {
+                ZipEntry entry;
+                while ((entry = zis.getNextEntry()) != null) {
+                    if (isClass(entry.getName())) {
+                        index(entry.getName(), zis, skipped);
+                    }
+                }
+            } finally {
+                IO.close(zis);
+            }
+        }
+        return new AnnotationIndex(fingerprint(file), skipped);
+    }
+
+    /**
+     * Builds the index of a jar or a folder and adds it to it.
+     *
+     * @return the written index
+     */
+    public static AnnotationIndex write(final File file) throws IOException {
+        final AnnotationIndex index = build(file);
+        if (file.isDirectory()) {
+            final File out = new File(file, LOCATION);
+            Files.mkdirs(out.getParentFile());
+            final OutputStream os = IO.write(out);
+            try {
+                index.write(os);
+            } finally {
+                IO.close(os);
+            }
+            return index;
+        }
+
+        // rewrite the jar, class entries are untouched so the fingerprint stays valid
+        final File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+        final ZipInputStream zis = new ZipInputStream(IO.read(file));
+        final ZipOutputStream zos = new ZipOutputStream(IO.write(tmp));
+        try {
+            ZipEntry entry;
+            while ((entry = zis.getNextEntry()) != null) {
+                if (LOCATION.equals(entry.getName())) {
+                    continue;
+                }
+                final ZipEntry copy = new ZipEntry(entry.getName());
+                copy.setTime(entry.getTime());
+                zos.putNextEntry(copy);
+                IO.copy(zis, zos);
+                zos.closeEntry();
+            }
+            zos.putNextEntry(new ZipEntry(LOCATION));
+            index.write(zos);
+            zos.closeEntry();
+        } finally {
+            IO.close(zis);
+            IO.close(zos);
+        }
+
+        if (!file.delete() || !tmp.renameTo(file)) {
+            throw new IOException("can't replace " + file.getAbsolutePath() + " by " + tmp.getAbsolutePath());
+        }
+        return index;
+    }
+
+    public void write(final OutputStream os) throws IOException {
+        final DataOutputStream out = new DataOutputStream(os);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeUTF(fingerprint);
+        out.writeInt(skipped.size());
+        for (final String name : skipped) {
+            out.writeUTF(name);
+        }
+        out.flush();
+    }
+
+    public static AnnotationIndex read(final InputStream is) throws IOException {
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(is));
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            return null;
+        }
+
+        final String fingerprint = in.readUTF();
+        final int size = in.readInt();
+        final Set<String> skipped = new HashSet<String>(size * 4 / 3 + 1);
+        for (int i = 0; i < size; i++) {
+            skipped.add(in.readUTF());
+        }
+        return new AnnotationIndex(fingerprint, skipped);
+    }
+
+    /**
+     * Computed from the names and sizes (and CRC for jars) of the classes, cheap since no bytecode is read.
+     */
+    public static String fingerprint(final File file) throws IOException {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IOException(e.getMessage());
+        }
+
+        if (file.isDirectory()) {
+            final Map<String, File> classes = new TreeMap<String, File>();
+            listClasses(file, "", classes);
+            for (final Map.Entry<String, File> entry : classes.entrySet()) {
+                update(digest, entry.getKey());
+                update(digest, Long.toString(entry.getValue().length()));
+            }
+        } else {
+            final Map<String, String> classes = new TreeMap<String, String>();
+            final ZipFile zip = new ZipFile(file);
+            try {
+                final Enumeration<? extends ZipEntry> entries = zip.entries();
+                while (entries.hasMoreElements()) {
+                    final ZipEntry entry = entries.nextElement();
+                    if (isClass(entry.getName())) {
+                        classes.put(entry.getName(), entry.getSize() + ":" + entry.getCrc());
+                    }
+                }
+            } finally {
+                zip.close();
+            }
+            for (final Map.Entry<String, String> entry : classes.entrySet()) {
+                update(digest, entry.getKey());
+                update(digest, entry.getValue());
+            }
+        }
+
+        final StringBuilder sb = new StringBuilder();
+        for (final byte b : digest.digest()) { // hex convertion
+            sb.append(Integer.toString((b & 0xff) + 0x100, 16).substring(1));
+        }
+        return sb.toString();
+    }
+
+    private static void index(final String path, final InputStream is, final Collection<String> skipped) throws IOException {
+        final RelevanceVisitor visitor = new RelevanceVisitor();
+        new ClassReader(is).accept(visitor, ASM_FLAGS);
+        if (!visitor.relevant) {
+            // archive entries are named with the class name
+            skipped.add(path.substring(0, path.length() - CLASS_EXTENSION.length()).replace('/', '.'));
+        }
+    }
+
+    private static void listClasses(final File dir, final String prefix, final Map<String, File> classes) {
+        final File[] children = dir.listFiles();
+        if (children == null) {
+            return;
+        }
+        for (final File child : children) {
+            final String name = prefix + child.getName();
+            if (child.isDirectory()) {
+                listClasses(child, name + '/', classes);
+            } else if (isClass(name)) {
+                classes.put(name, child);
+            }
+        }
+    }
+
+    private static boolean isClass(final String name) {
+        return name.endsWith(CLASS_EXTENSION);
+    }
+
+    private static void update(final MessageDigest digest, final String value) throws IOException {
+        digest.update(value.getBytes("UTF-8"));
+        digest.update((byte) 0);
+    }
+
+    private static class RelevanceVisitor extends ClassVisitor {
+        private boolean relevant;
+
+        private final AnnotationVisitor annotationVisitor = new AnnotationVisitor(Opcodes.ASM5) {
+        };
+
+        private final FieldVisitor fieldVisitor = new FieldVisitor(Opcodes.ASM5) {
+            @Override
+            public AnnotationVisitor visitAnnotation(final String desc, final boolean visible) {
+                return annotation();
+            }
+        };
+
+        private final MethodVisitor methodVisitor = new MethodVisitor(Opcodes.ASM5) {
+            @Override
+            public AnnotationVisitor visitAnnotation(final String desc, final boolean visible) {
+                return annotation();
+            }
+
+            @Override
+            public AnnotationVisitor visitParameterAnnotation(final int parameter, final String desc, final boolean visible) {
+                return annotation();
+            }
+        };
+
+        private RelevanceVisitor() {
+            super(Opcodes.ASM5);
+        }
+
+        @Override
+        public void visit(final int version, final int access, final String name, final String signature,
+                          final String superName, final String[] interfaces) {
+            relevant = superName != null && !OBJECT.equals(superName) || interfaces != null && interfaces.length > 0;
+        }
+
+        @Override
+        public AnnotationVisitor visitAnnotation(final String desc, final boolean visible) {
+            return annotation();
+        }
+
+        @Override
+        public FieldVisitor visitField(final int access, final String name, final String desc, final String signature, final Object value) {
+            return relevant ? null : fieldVisitor;
+        }
+
+        @Override
+        public MethodVisitor visitMethod(final int access, final String name, final String desc, final String signature, final String[] exceptions) {
+            return relevant ? null : methodVisitor;
+        }
+
+        private AnnotationVisitor annotation() {
+            relevant = true;
+            return annotationVisitor;
+        }
+    }
+}
@@ -0,0 +1,260 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.config;
+
+import org.apache.openejb.assembler.classic.AppInfo;
+import org.apache.openejb.assembler.classic.ServiceInfo;
+import org.apache.openejb.loader.IO;
+import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.util.LogCategory;
+import org.apache.openejb.util.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * On disk cache of the {@link AppInfo} built for an archive, used to skip scanning, descriptor parsing and
+ * auto configuration when the same archive is deployed again (typically on restart).
+ *
+ * The key is a digest of the archive content (names and bytes), of the server configuration file and
+ * of the system properties so any change invalidates the entry. Containers and resources created by
+ * the auto configuration as well as the server extensions found in the archive are stored with the
+ * {@link AppInfo} to be installed again on a cache hit.
+ *
+ * Activated with openejb.deployment.cache=true, entries are stored in openejb.deployment.cache.dir
+ * (defaults to ${openejb.base}/data/appinfo).
+ */
+public class AppInfoCache {
+    private static final Logger logger = Logger.getInstance(LogCategory.OPENEJB_STARTUP_CONFIG, AppInfoCache.class);
+
+    public static final String OPENEJB_DEPLOYMENT_CACHE = "openejb.deployment.cache";
+    public static final String OPENEJB_DEPLOYMENT_CACHE_DIR = "openejb.deployment.cache.dir";
+
+    private static final String EXTENSION = ".appinfo";
+    private static final int BUFFER_SIZE = 8192;
+
+    private final File directory;
+
+    public AppInfoCache(final File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * @return the configured cache or null if the deployment cache is not activated
+     */
+    public static AppInfoCache get() {
+        if (!SystemInstance.get().getOptions().get(OPENEJB_DEPLOYMENT_CACHE, false)) {
+            return null;
+        }
+
+        final String dir = SystemInstance.get().getOptions().get(OPENEJB_DEPLOYMENT_CACHE_DIR, (String) null);
+        if (dir != null) {
+            return new AppInfoCache(new File(dir));
+        }
+
+        try {
+            return new AppInfoCache(new File(SystemInstance.get().getBase().getDirectory("data", true), "appinfo"));
+        } catch (final IOException e) {
+            logger.warning("Can't create deployment cache directory, deployment cache deactivated: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * @param archive the deployed file or directory
+     * @param configuration the server configuration file if any
+     * @return the key of this deployment or null if it can't be computed
+     */
+    public String key(final File archive, final String configuration) {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (final NoSuchAlgorithmException e) {
+            return null;
+        }
+
+        try {
+            update(digest, archive.getAbsolutePath());
+            digest(digest, archive, "");
+            if (configuration != null) {
+                final File config = new File(configuration);
+                if (config.isFile()) {
+                    digest(digest, config, "");
+                }
+            }
+
+            // sorted to get a stable key
+            final Map<String, String> properties = new TreeMap<String, String>();
+            collect(properties, System.getProperties());
+            collect(properties, SystemInstance.get().getProperties());
+            for (final Map.Entry<String, String> entry : properties.entrySet()) {
+                update(digest, entry.getKey());
+                update(digest, entry.getValue());
+            }
+        } catch (final IOException e) {
+            logger.debug("Can't compute deployment cache key of " + archive.getAbsolutePath() + ": " + e.getMessage());
+            return null;
+        }
+
+        final StringBuilder sb = new StringBuilder();
+        for (final byte b : digest.digest()) { // hex convertion
+            sb.append(Integer.toString((b & 0xff) + 0x100, 16).substring(1));
+        }
+        return sb.toString();
+    }
+
+    public Entry load(final String key) {
+        final File file = new File(directory, key + EXTENSION);
+        if (!file.isFile()) {
+            return null;
+        }
+
+        ObjectInputStream ois = null;
+        try {
+            ois = new ObjectInputStream(IO.read(file));
+            final Entry entry = (Entry) ois.readObject();
+
+            // an unpacked archive could have been deleted
+            for (final String path : entry.appInfo.paths) {
+                if (path != null && !new File(path).exists()) {
+                    return null;
+                }
+            }
+            return entry;
+        } catch (final Exception e) {
+            logger.warning("Can't read deployment cache entry " + file.getAbsolutePath() + ", ignoring it: " + e.getMessage());
+            IO.close(ois);
+            ois = null;
+            if (!file.delete()) {
+                file.deleteOnExit();
+            }
+            return null;
+        } finally {
+            IO.close(ois);
+        }
+    }
+
+    public void store(final String key, final Entry entry) {
+        if (!directory.exists() && !directory.mkdirs()) {
+            logger.warning("Can't create deployment cache directory " + directory.getAbsolutePath());
+            return;
+        }
+
+        final File file = new File(directory, key + EXTENSION);
+        final File tmp = new File(directory, key + EXTENSION + ".tmp");
+        ObjectOutputStream oos = null;
+        try {
+            oos = new ObjectOutputStream(IO.write(tmp));
+            oos.writeObject(entry);
+            oos.close();
+            oos = null;
+
+            if (file.exists() && !file.delete() || !tmp.renameTo(file)) {
+                throw new IOException("can't rename " + tmp.getAbsolutePath() + " to " + file.getAbsolutePath());
+            }
+        } catch (final IOException e) { // mainly not serializable properties
+            logger.debug("Can't store deployment cache entry for " + entry.appInfo.appId + ": " + e.getMessage());
+            IO.close(oos);
+            if (!tmp.delete()) {
+                tmp.deleteOnExit();
+            }
+        }
+    }
+
+    private static void collect(final Map<String, String> out, final Properties properties) {
+        for (final String name : properties.stringPropertyNames()) {
+            out.put(name, properties.getProperty(name));
+        }
+    }
+
+    private static void digest(final MessageDigest digest, final File file, final String name) throws IOException {
+        update(digest, name);
+        if (file.isDirectory()) {
+            final File[] children = file.listFiles();
+            if (children != null) {
+                Arrays.sort(children);
+                for (final File child : children) {
+                    digest(digest, child, name + '/' + child.getName());
+                }
+            }
+            return;
+        }
+
+        final InputStream is = IO.read(file);
+        try {
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = is.read(buffer)) >= 0) {
+                digest.update(buffer, 0, read);
+            }
+        } finally {
+            IO.close(is);
+        }
+    }
+
+    private static void update(final MessageDigest digest, final String value) throws IOException {
+        digest.update(String.valueOf(value).getBytes("UTF-8"));
+        digest.update((byte) 0);
+    }
+
+    public static class Entry implements Serializable {
+        public final AppInfo appInfo;
+        public final List<ServiceInfo> services; // containers and resources created by the auto configuration
+        public final List<String> extensions;
+
+        public Entry(final AppInfo appInfo, final Collection<ServiceInfo> services, final Collection<String> extensions) {
+            this.appInfo = appInfo;
+            this.services = new ArrayList<ServiceInfo>(services);
+            this.extensions = new ArrayList<String>(extensions);
+        }
+    }
+
+    /**
+     * Collects the side effects of an application configuration.
+     */
+    public static class Recorder {
+        private final List<ServiceInfo> services = new ArrayList<ServiceInfo>();
+        private final List<String> extensions = new ArrayList<String>();
+
+        public void service(final ServiceInfo info) {
+            services.add(info);
+        }
+
+        public void extensions(final Collection<Class<?>> classes) {
+            for (final Class<?> clazz : classes) {
+                extensions.add(clazz.getName());
+            }
+        }
+
+        public Entry toEntry(final AppInfo info) {
+            return new Entry(info, services, extensions);
+        }
+    }
+}
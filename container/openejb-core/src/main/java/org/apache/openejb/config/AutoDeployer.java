@@ -27,6 +27,7 @@ import org.apache.openejb.loader.Files;
 import org.apache.openejb.loader.Options;
 import org.apache.openejb.loader.SystemInstance;
 import org.apache.openejb.observer.Observes;
+import org.apache.openejb.util.DirectoryWatcher;
 import org.apache.openejb.util.Duration;
 import org.apache.openejb.util.LogCategory;
 import org.apache.openejb.util.Logger;
@@ -57,6 +58,7 @@ public class AutoDeployer {
     private final Map<String, FileInfo> files = new HashMap<String, FileInfo>();
     private final Timer timer;
     private final List<Deployments> deployments = new ArrayList<Deployments>();
+    private volatile DirectoryWatcher watcher;
 
     public AutoDeployer(final ConfigurationFactory factory, final List<Deployments> deployments) {
         final Options options = SystemInstance.get().getOptions();
@@ -183,6 +185,11 @@ public class AutoDeployer {
 
         timer.cancel();
 
+        final DirectoryWatcher current = watcher;
+        if (current != null) {
+            current.stop();
+        }
+
         try {
             //Will block if scanning
             SEMAPHORE.acquire();
@@ -206,6 +213,23 @@ public class AutoDeployer {
         try {
             initialize();
 
+            final List<File> roots = roots();
+            watcher = DirectoryWatcher.watch(getClass().getSimpleName(), roots, true, new DirectoryWatcher.Callback() {
+                @Override
+                public boolean changed() {
+                    try {
+                        return doScan();
+                    } catch (final Exception e) {
+                        logger.error("Scan failed.", e);
+                        return false;
+                    }
+                }
+            });
+            if (watcher != null) {
+                logger.info("Starting Auto-Deployer watching " + roots + " for changes");
+                return;
+            }
+
             logger.info("Starting Auto-Deployer with a polling interval of " + pollIntervalMillis + "ms");
 
             timer.scheduleAtFixedRate(new TimerTask() {
@@ -248,15 +272,23 @@ public class AutoDeployer {
     /**
      * Looks for changes to the immediate contents of the directory we're watching.
      */
-    public synchronized void scan() {
+    public void scan() {
+        doScan();
+    }
+
+    /**
+     * @return true if some files were discovered or are still changing, another scan is needed to see them stable
+     */
+    private synchronized boolean doScan() {
 
         try {
             SEMAPHORE.acquire();
         } catch (final InterruptedException e) {
             logger.warning("AutoDeployer.scan failed to obtain lock");
-            return;
+            return false;
         }
 
+        boolean settling = false;
         try {
             final List<File> files = list();
 
@@ -280,10 +312,12 @@ public class AutoDeployer {
                     // Brand new, but assume it's changing and
                     // wait a bit to make sure it's not still changing
                     logger.debug("File Discovered: " + newStatus);
+                    settling = true;
                 } else if (newStatus.isChanging()) {
                     // The two records are different -- record the latest as a file that's changing
                     // and later when it stops changing we'll do the add or update as appropriate.
                     logger.debug("File Changing: " + newStatus);
+                    settling = true;
                 } else if (oldStatus.isNewFile()) {
                     // Used to be changing, now in (hopefully) its final state
                     logger.info("New File: " + newStatus);
@@ -308,6 +342,7 @@ public class AutoDeployer {
         } finally {
             SEMAPHORE.release();
         }
+        return settling;
     }
 
     private List<File> list() {
@@ -323,6 +358,22 @@ public class AutoDeployer {
         return files;
     }
 
+    /**
+     * @return the hot deploy directories, and the files for file deployments
+     */
+    private List<File> roots() {
+        final List<File> roots = new ArrayList<File>();
+        final FileUtils base = SystemInstance.get().getBase();
+        for (final Deployments deployment : deployments) {
+            if (deployment.getDir() != null) {
+                roots.add(Files.path(base.getDirectory(), deployment.getDir()));
+            } else if (deployment.getFile() != null) {
+                roots.add(Files.path(base.getDirectory(), deployment.getFile()));
+            }
+        }
+        return roots;
+    }
+
     private FileInfo oldInfo(final File file) {
         return files.get(file.getAbsolutePath());
     }
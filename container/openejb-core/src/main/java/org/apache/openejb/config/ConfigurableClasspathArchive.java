@@ -17,6 +17,7 @@
 
 package org.apache.openejb.config;
 
+import org.apache.openejb.core.BytecodeCache;
 import org.apache.openejb.core.EmptyResourcesClassLoader;
 import org.apache.openejb.loader.SystemInstance;
 import org.apache.xbean.finder.archive.Archive;
@@ -81,7 +82,7 @@ public class ConfigurableClasspathArchive extends CompositeArchive implements Sc
         try {
             final URL scanXml = new URLClassLoader(new URL[] { location }, new EmptyResourcesClassLoader()).getResource(name);
             if (scanXml == null && !forceDescriptor) {
-                return ClasspathArchive.archive(loader, location);
+                return indexedArchive(loader, location);
             } else if (scanXml == null) {
                 return new ClassesArchive();
             }
@@ -101,10 +102,24 @@ public class ConfigurableClasspathArchive extends CompositeArchive implements Sc
             if (forceDescriptor) {
                 return new ClassesArchive();
             }
-            return ClasspathArchive.archive(loader, location);
+            return indexedArchive(loader, location);
         }
     }
 
+    // skip the classes a build time (or shared scan cache) index marked as useless for the scanning,
+    // except in bean archives where any class can be a CDI bean
+    private static Archive indexedArchive(final ClassLoader loader, final URL location) {
+        final Archive archive = BytecodeCache.get().archive(ClasspathArchive.archive(loader, location), location);
+        AnnotationIndex index = AnnotationIndex.load(location);
+        if (index == null) {
+            index = JarScanCache.index(location);
+        }
+        if (index == null || AnnotationIndex.isBeanArchive(location)) {
+            return archive;
+        }
+        return new FilteredArchive(archive, index.filter());
+    }
+
     private static String name() {
         return SystemInstance.get().getProperty(SCAN_XML_PROPERTY, SCAN_XML_NAME);
     }
@@ -64,6 +64,7 @@ import org.apache.openejb.config.sys.SecurityService;
 import org.apache.openejb.config.sys.Service;
 import org.apache.openejb.config.sys.ServiceProvider;
 import org.apache.openejb.config.sys.TransactionManager;
+import org.apache.openejb.core.BytecodeCache;
 import org.apache.openejb.core.ParentClassLoaderFinder;
 import org.apache.openejb.jee.Application;
 import org.apache.openejb.jee.EjbJar;
@@ -88,6 +89,7 @@ import org.apache.openejb.util.LogCategory;
 import org.apache.openejb.util.Logger;
 import org.apache.openejb.util.Messages;
 import org.apache.openejb.util.PropertyPlaceHolderHelper;
+import org.apache.openejb.util.StartupTracer;
 import org.apache.openejb.util.SuperProperties;
 import org.apache.openejb.util.URISupport;
 import org.apache.openejb.util.URLs;
@@ -144,6 +146,9 @@ public class ConfigurationFactory implements OpenEjbConfigurationFactory {
     private final boolean serviceTypeIsAdjustable; // offline is a bit different from this and offline could be off and this on
 
     private static final String CLASSPATH_AS_EAR = "openejb.deployments.classpath.ear";
+
+    // side effects of the application being configured, stored with its AppInfo in the deployment cache
+    private final ThreadLocal<AppInfoCache.Recorder> recorder = new ThreadLocal<AppInfoCache.Recorder>();
     static final String WEBSERVICES_ENABLED = "openejb.webservices.enabled";
     static final String OFFLINE_PROPERTY = "openejb.offline";
 
@@ -398,7 +403,12 @@ public class ConfigurationFactory implements OpenEjbConfigurationFactory {
         @Override
         public AppModule deploy(AppModule appModule) throws OpenEJBException {
             for (final DynamicDeployer deployer : chain) {
-                appModule = deployer.deploy(appModule);
+                final StartupTracer.Span span = StartupTracer.start(deployer.getClass().getSimpleName(), appModule.getModuleId());
+                try {
+                    appModule = deployer.deploy(appModule);
+                } finally {
+                    span.stop();
+                }
             }
             return appModule;
         }
@@ -420,6 +430,11 @@ public class ConfigurationFactory implements OpenEjbConfigurationFactory {
     }
 
     protected void install(final ContainerInfo serviceInfo) throws OpenEJBException {
+        final AppInfoCache.Recorder currentRecorder = recorder.get();
+        if (currentRecorder != null) {
+            currentRecorder.service(serviceInfo);
+        }
+
         if (sys != null) {
             sys.containerSystem.containers.add(serviceInfo);
         } else if (!offline) {
@@ -429,6 +444,11 @@ public class ConfigurationFactory implements OpenEjbConfigurationFactory {
     }
 
     protected void install(final ResourceInfo serviceInfo) throws OpenEJBException {
+        final AppInfoCache.Recorder currentRecorder = recorder.get();
+        if (currentRecorder != null) {
+            currentRecorder.service(serviceInfo);
+        }
+
         if (sys != null) {
             sys.facilities.resources.add(serviceInfo);
         } else if (!offline) {
@@ -787,13 +807,36 @@ public class ConfigurationFactory implements OpenEjbConfigurationFactory {
     public AppInfo configureApplication(final File jarFile) throws OpenEJBException {
         logger.debug("Beginning load: " + jarFile.getAbsolutePath());
 
+        final AppInfoCache cache = offline ? null : AppInfoCache.get();
+        final String cacheKey = cache != null ? cache.key(jarFile, configLocation) : null;
+        if (cacheKey != null) {
+            final AppInfoCache.Entry entry = cache.load(cacheKey);
+            if (entry != null) {
+                logger.info("Using cached configuration of " + jarFile.getAbsolutePath());
+                installCachedServices(entry);
+                return entry.appInfo;
+            }
+            recorder.set(new AppInfoCache.Recorder());
+        }
+
+        final boolean bytecodeScope = BytecodeCache.begin();
         try {
-            final AppModule appModule = deploymentLoader.load(jarFile);
+            final StartupTracer.Span span = StartupTracer.start("DeploymentLoader", jarFile.getName());
+            final AppModule appModule;
+            try {
+                appModule = deploymentLoader.load(jarFile);
+            } finally {
+                span.stop();
+            }
             final AppInfo appInfo = configureApplication(appModule);
 
             // TODO This is temporary -- we need to do this in AppInfoBuilder
             appInfo.paths.add(appInfo.path);
             appInfo.paths.add(jarFile.getAbsolutePath());
+
+            if (cacheKey != null) {
+                cache.store(cacheKey, recorder.get().toEntry(appInfo));
+            }
             return appInfo;
         } catch (final ValidationFailedException e) {
             logger.warning("configureApplication.loadFailed", jarFile.getAbsolutePath(), e.getMessage()); // DO not include the stacktrace in the message
@@ -803,6 +846,23 @@ public class ConfigurationFactory implements OpenEjbConfigurationFactory {
             // removing this message causes NO messages to be printed when embedded
             logger.warning("configureApplication.loadFailed", e, jarFile.getAbsolutePath(), e.getMessage());
             throw e;
+        } finally {
+            BytecodeCache.end(bytecodeScope);
+            recorder.remove();
+        }
+    }
+
+    private void installCachedServices(final AppInfoCache.Entry entry) throws OpenEJBException {
+        Extensions.addExtensions(Thread.currentThread().getContextClassLoader(), entry.extensions);
+
+        final List<String> containerIds = getContainerIds();
+        final List<String> resourceIds = getResourceIds();
+        for (final ServiceInfo service : entry.services) {
+            if (service instanceof ContainerInfo && !containerIds.contains(service.id)) {
+                install((ContainerInfo) service);
+            } else if (service instanceof ResourceInfo && !resourceIds.contains(service.id)) {
+                install((ResourceInfo) service);
+            }
         }
     }
 
@@ -956,13 +1016,23 @@ public class ConfigurationFactory implements OpenEjbConfigurationFactory {
 
         // add it as early as possible, the ones needing the app classloader will be added later
         Extensions.addExtensions(extensions);
+        final AppInfoCache.Recorder currentRecorder = recorder.get();
+        if (currentRecorder != null) {
+            currentRecorder.extensions(extensions);
+        }
 
         final String location = appModule.getJarLocation();
         logger.info("config.configApp", null != location ? location : appModule.getModuleId());
-        deployer.deploy(appModule);
-        final AppInfoBuilder appInfoBuilder = new AppInfoBuilder(this);
+        final StartupTracer.Span span = StartupTracer.start("configure", appModule.getModuleId());
+        final AppInfo info;
+        try {
+            deployer.deploy(appModule);
+            final AppInfoBuilder appInfoBuilder = new AppInfoBuilder(this);
 
-        final AppInfo info = appInfoBuilder.build(appModule);
+            info = appInfoBuilder.build(appModule);
+        } finally {
+            span.stop();
+        }
         info.eventClassesNeedingAppClassloader.addAll(notLoaded);
 
         return info;
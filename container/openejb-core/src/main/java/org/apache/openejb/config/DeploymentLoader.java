@@ -1011,12 +1011,23 @@ public class DeploymentLoader implements DeploymentFilterable {
 
     private void addBeansXmls(final WebModule webModule) {
         final List<URL> urls = webModule.getScannableUrls();
-        // parent returns nothing when calling getresources because we don't want here to be fooled by maven classloader
-        final URLClassLoader loader = new URLClassLoader(urls.toArray(new URL[urls.size()]), new EmptyResourcesClassLoader());
 
-        final ArrayList<URL> xmls;
+        // jars known by the scan cache don't need to be opened
+        final List<URL> unknown = new ArrayList<URL>(urls.size());
+        final ArrayList<URL> xmls = new ArrayList<URL>();
         try {
-            xmls = Collections.list(loader.getResources("META-INF/beans.xml"));
+            for (final URL url : urls) {
+                final JarScanCache.Entry entry = JarScanCache.entry(url);
+                if (entry == null) {
+                    unknown.add(url);
+                } else if (entry.hasResource("META-INF/beans.xml")) {
+                    xmls.add(new URL("jar", "", -1, URLs.toFile(url).toURI().toURL().toExternalForm() + "!/META-INF/beans.xml"));
+                }
+            }
+
+            // parent returns nothing when calling getresources because we don't want here to be fooled by maven classloader
+            final URLClassLoader loader = new URLClassLoader(unknown.toArray(new URL[unknown.size()]), new EmptyResourcesClassLoader());
+            xmls.addAll(Collections.list(loader.getResources("META-INF/beans.xml")));
             xmls.add((URL) webModule.getAltDDs().get("beans.xml"));
         } catch (final IOException e) {
 
@@ -1421,6 +1432,11 @@ public class DeploymentLoader implements DeploymentFilterable {
 
 
         for (final URL url : urls) {
+            final JarScanCache.Entry entry = JarScanCache.entry(url);
+            if (entry != null && !entry.hasResource("META-INF/" + WEB_FRAGMENT_XML)) {
+                continue; // no need to list the jar descriptors
+            }
+
             final ResourceFinder finder = new ResourceFinder("", webModule.getClassLoader(), url);
             final Map<String, URL> descriptors = getDescriptors(finder, false);
 
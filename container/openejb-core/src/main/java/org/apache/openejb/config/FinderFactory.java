@@ -19,6 +19,7 @@ package org.apache.openejb.config;
 
 import org.apache.openejb.OpenEJBRuntimeException;
 import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.util.StartupTracer;
 import org.apache.xbean.finder.Annotated;
 import org.apache.xbean.finder.AnnotationFinder;
 import org.apache.xbean.finder.AsynchronousInheritanceAnnotationFinder;
@@ -55,7 +56,12 @@ public class FinderFactory {
     }
 
     public static IAnnotationFinder createFinder(final DeploymentModule module) throws Exception {
-        return get().create(module);
+        final StartupTracer.Span span = StartupTracer.start("scanning", module.getModuleId());
+        try {
+            return get().create(module);
+        } finally {
+            span.stop();
+        }
     }
 
     public static AnnotationFinder getFinder(final ClassLoader classLoader, final URL url) {
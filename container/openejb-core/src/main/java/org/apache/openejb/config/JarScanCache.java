@@ -0,0 +1,345 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.config;
+
+import org.apache.openejb.loader.Files;
+import org.apache.openejb.loader.IO;
+import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.util.LogCategory;
+import org.apache.openejb.util.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * JVM wide cache of what the deployment looks for in the libraries: META-INF resources (TLDs, beans.xml,
+ * web-fragment.xml...) and the classes the annotation scanning can skip.
+ *
+ * Entries are keyed by the content of the jar (names, sizes and CRCs of the entries read from the zip
+ * central directory, no entry is inflated) so the same library shipped by several webapps is only
+ * inspected once. The annotation index is built the second time a content is scanned to not slow down
+ * the common single deployment case, never for bean archives (META-INF/beans.xml) since any of their
+ * classes can be a CDI bean.
+ *
+ * Deactivated by default, openejb.scan.cache=true activates it. Setting openejb.scan.cache.dir
+ * persists the entries across restarts. At most openejb.scan.cache.max-entries (512 by default)
+ * jars are kept in memory.
+ */
+public class JarScanCache {
+    private static final Logger logger = Logger.getInstance(LogCategory.OPENEJB_STARTUP_CONFIG, JarScanCache.class);
+
+    public static final String OPENEJB_SCAN_CACHE = "openejb.scan.cache";
+    public static final String OPENEJB_SCAN_CACHE_DIR = "openejb.scan.cache.dir";
+    public static final String OPENEJB_SCAN_CACHE_MAX_ENTRIES = "openejb.scan.cache.max-entries";
+
+    private static final String META_INF = "META-INF/";
+    private static final String EXTENSION = ".scan";
+    private static final String BEANS_XML = META_INF + "beans.xml";
+
+    private static final JarScanCache INSTANCE = new JarScanCache();
+
+    private final ConcurrentMap<String, Stamp> stamps = new ConcurrentHashMap<String, Stamp>();
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+    /**
+     * @return the cache or null if deactivated
+     */
+    public static JarScanCache get() {
+        if (!SystemInstance.get().getOptions().get(OPENEJB_SCAN_CACHE, false)) {
+            return null;
+        }
+        return INSTANCE;
+    }
+
+    /**
+     * @return the cached entry of a local jar url, null if the url is not a jar or can't be read
+     */
+    public static Entry entry(final URL url) {
+        final JarScanCache cache = get();
+        if (cache == null) {
+            return null;
+        }
+
+        final File file;
+        try {
+            file = Files.toFile(url);
+        } catch (final RuntimeException e) {
+            return null; // not a local file
+        }
+        return cache.entry(file);
+    }
+
+    /**
+     * @return the index of classes to skip while scanning this jar, null if not (yet) available or if the jar is a bean archive
+     */
+    public static AnnotationIndex index(final URL location) {
+        if (!SystemInstance.get().getOptions().get(AnnotationIndex.OPENEJB_FINDER_INDEX, true)) {
+            return null;
+        }
+
+        final JarScanCache cache = get();
+        final Entry entry = entry(location);
+        if (cache == null || entry == null || entry.hasResource(BEANS_XML)) {
+            return null;
+        }
+
+        if (entry.skipped == null && entry.scans.incrementAndGet() > 1) {
+            final File file = Files.toFile(location);
+            try {
+                entry.skipped = AnnotationIndex.build(file).getSkipped();
+                cache.store(entry);
+            } catch (final IOException e) {
+                logger.debug("Can't index " + file.getAbsolutePath() + ": " + e.getMessage());
+            }
+        }
+
+        final Set<String> skipped = entry.skipped;
+        if (skipped == null) {
+            return null;
+        }
+        return new AnnotationIndex(entry.fingerprint, skipped);
+    }
+
+    public Entry entry(final File file) {
+        if (!file.isFile() || !file.getName().endsWith(".jar")) {
+            return null;
+        }
+
+        final String path = file.getAbsolutePath();
+        final long length = file.length();
+        final long lastModified = file.lastModified();
+
+        final Stamp stamp = stamps.get(path);
+        if (stamp != null && stamp.length == length && stamp.lastModified == lastModified) {
+            return stamp.entry;
+        }
+
+        final Entry entry;
+        try {
+            entry = read(file);
+        } catch (final IOException e) {
+            logger.debug("Can't read " + path + ": " + e.getMessage());
+            return null;
+        }
+
+        final Entry existing = entries.get(entry.fingerprint);
+        final Entry shared;
+        if (existing != null) {
+            shared = existing;
+        } else {
+            final Entry stored = load(entry.fingerprint);
+            final Entry candidate = stored != null ? stored : entry;
+            final Entry raced = entries.putIfAbsent(entry.fingerprint, candidate);
+            shared = raced != null ? raced : candidate;
+            if (raced == null && stored == null) {
+                store(shared);
+            }
+            evict(entries, entry.fingerprint);
+        }
+
+        stamps.put(path, new Stamp(length, lastModified, shared));
+        evict(stamps, path);
+        return shared;
+    }
+
+    // undeployed or replaced jars are never removed explicitly so keep the maps bounded,
+    // an evicted jar is just read again (or loaded from the cache directory)
+    private static void evict(final Map<String, ?> map, final String added) {
+        final int max = SystemInstance.get().getOptions().get(OPENEJB_SCAN_CACHE_MAX_ENTRIES, 512);
+        final Iterator<String> keys = map.keySet().iterator();
+        while (map.size() > max && keys.hasNext()) {
+            if (!added.equals(keys.next())) {
+                keys.remove();
+            }
+        }
+    }
+
+    public void clear() {
+        stamps.clear();
+        entries.clear();
+    }
+
+    private static Entry read(final File file) throws IOException {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IOException(e.getMessage());
+        }
+
+        final Map<String, String> content = new TreeMap<String, String>(); // sorted for a stable fingerprint
+        final List<String> metaInf = new ArrayList<String>();
+        final ZipFile zip = new ZipFile(file);
+        try {
+            final Enumeration<? extends ZipEntry> zipEntries = zip.entries();
+            while (zipEntries.hasMoreElements()) {
+                final ZipEntry zipEntry = zipEntries.nextElement();
+                final String name = zipEntry.getName();
+                content.put(name, zipEntry.getSize() + ":" + zipEntry.getCrc());
+                if (name.startsWith(META_INF) && !zipEntry.isDirectory()) {
+                    metaInf.add(name);
+                }
+            }
+        } finally {
+            zip.close();
+        }
+
+        for (final Map.Entry<String, String> entry : content.entrySet()) {
+            digest.update(entry.getKey().getBytes("UTF-8"));
+            digest.update((byte) 0);
+            digest.update(entry.getValue().getBytes("UTF-8"));
+            digest.update((byte) 0);
+        }
+
+        final StringBuilder sb = new StringBuilder();
+        for (final byte b : digest.digest()) { // hex convertion
+            sb.append(Integer.toString((b & 0xff) + 0x100, 16).substring(1));
+        }
+        return new Entry(sb.toString(), metaInf);
+    }
+
+    private static File directory() {
+        final String dir = SystemInstance.get().getOptions().get(OPENEJB_SCAN_CACHE_DIR, (String) null);
+        if (dir == null) {
+            return null;
+        }
+        return new File(dir);
+    }
+
+    private Entry load(final String fingerprint) {
+        final File directory = directory();
+        if (directory == null) {
+            return null;
+        }
+
+        final File file = new File(directory, fingerprint + EXTENSION);
+        if (!file.isFile()) {
+            return null;
+        }
+
+        ObjectInputStream ois = null;
+        try {
+            ois = new ObjectInputStream(IO.read(file));
+            return (Entry) ois.readObject();
+        } catch (final Exception e) {
+            logger.debug("Can't read scan cache entry " + file.getAbsolutePath() + ", ignoring it: " + e.getMessage());
+            return null;
+        } finally {
+            IO.close(ois);
+        }
+    }
+
+    private void store(final Entry entry) {
+        final File directory = directory();
+        if (directory == null) {
+            return;
+        }
+        if (!directory.exists() && !directory.mkdirs()) {
+            logger.warning("Can't create scan cache directory " + directory.getAbsolutePath());
+            return;
+        }
+
+        final File file = new File(directory, entry.fingerprint + EXTENSION);
+        final File tmp = new File(directory, entry.fingerprint + EXTENSION + '.' + Thread.currentThread().getId() + ".tmp");
+        ObjectOutputStream oos = null;
+        try {
+            oos = new ObjectOutputStream(IO.write(tmp));
+            oos.writeObject(entry);
+            oos.close();
+            oos = null;
+
+            if (file.exists() && !file.delete() || !tmp.renameTo(file)) {
+                throw new IOException("can't rename " + tmp.getAbsolutePath() + " to " + file.getAbsolutePath());
+            }
+        } catch (final IOException e) {
+            logger.debug("Can't store scan cache entry " + file.getAbsolutePath() + ": " + e.getMessage());
+            IO.close(oos);
+            if (!tmp.delete()) {
+                tmp.deleteOnExit();
+            }
+        }
+    }
+
+    public static class Entry implements Serializable {
+        private final String fingerprint;
+        private final List<String> metaInf;
+        private volatile Set<String> skipped;
+        private transient AtomicInteger scans = new AtomicInteger();
+
+        public Entry(final String fingerprint, final List<String> metaInf) {
+            this.fingerprint = fingerprint;
+            this.metaInf = metaInf;
+        }
+
+        public String getFingerprint() {
+            return fingerprint;
+        }
+
+        public boolean hasResource(final String name) {
+            return metaInf.contains(name);
+        }
+
+        /**
+         * @return the entry names of the TLDs of the jar (under META-INF)
+         */
+        public Collection<String> getTlds() {
+            final Collection<String> tlds = new ArrayList<String>();
+            for (final String name : metaInf) {
+                if (name.endsWith(".tld")) {
+                    tlds.add(name);
+                }
+            }
+            return tlds;
+        }
+
+        private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+            in.defaultReadObject();
+            scans = new AtomicInteger();
+        }
+    }
+
+    private static class Stamp {
+        private final long length;
+        private final long lastModified;
+        private final Entry entry;
+
+        private Stamp(final long length, final long lastModified, final Entry entry) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.entry = entry;
+        }
+    }
+}
@@ -51,12 +51,15 @@ import org.apache.openejb.jee.oejb3.OpenejbJar;
 import org.apache.openejb.loader.IO;
 import org.apache.openejb.loader.SystemInstance;
 import org.apache.openejb.sxc.ApplicationClientXml;
+import org.apache.openejb.sxc.ConnectorXml;
 import org.apache.openejb.sxc.EjbJarXml;
 import org.apache.openejb.sxc.FacesConfigXml;
 import org.apache.openejb.sxc.HandlerChainsXml;
+import org.apache.openejb.sxc.JavaWsdlMappingXml;
 import org.apache.openejb.sxc.TldTaglibXml;
 import org.apache.openejb.sxc.WebXml;
 import org.apache.openejb.sxc.WebservicesXml;
+import org.apache.openejb.util.DaemonThreadFactory;
 import org.apache.openejb.util.LengthInputStream;
 import org.apache.openejb.util.LogCategory;
 import org.apache.openejb.util.Logger;
@@ -77,10 +80,17 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 public class ReadDescriptors implements DynamicDeployer {
     private static final Logger logger = Logger.getInstance(LogCategory.OPENEJB_STARTUP, ReadDescriptors.class);
@@ -538,29 +548,63 @@ public class ReadDescriptors implements DynamicDeployer {
     private void mergeWebFragments(final WebModule webModule) {
         // web-fragment.xml, to get jndi entries to merge, other stuff is done by tomcat ATM
         final Collection<URL> urls = Collection.class.cast(webModule.getAltDDs().get("web-fragment.xml"));
-        if (urls != null) {
-            for (final URL rawUrl : urls) {
-                if (rawUrl != null) {
-                    final Source url = getSource(rawUrl);
-                    try {
-                        final WebFragment webFragment = WebFragment.class.cast(JaxbJavaee.unmarshal(WebFragment.class, url.get(), false));
-
-                        // in tomcat if the env entry is already don't override it
-                        mergeOnlyMissingEntries(webModule.getWebApp().getPersistenceContextRefMap(), webFragment.getPersistenceContextRef());
-                        mergeOnlyMissingEntries(webModule.getWebApp().getPersistenceUnitRefMap(), webFragment.getPersistenceUnitRef());
-                        mergeOnlyMissingEntries(webModule.getWebApp().getMessageDestinationRefMap(), webFragment.getMessageDestinationRef());
-                        mergeOnlyMissingEntries(webModule.getWebApp().getDataSourceMap(), webFragment.getDataSource());
-                        mergeOnlyMissingEntries(webModule.getWebApp().getEjbLocalRefMap(), webFragment.getEjbLocalRef());
-                        mergeOnlyMissingEntries(webModule.getWebApp().getEjbRefMap(), webFragment.getEjbRef());
-                        mergeOnlyMissingEntries(webModule.getWebApp().getServiceRefMap(), webFragment.getServiceRef());
-                        mergeOnlyMissingEntries(webModule.getWebApp().getEnvEntryMap(), webFragment.getEnvEntry());
-                        mergeOnlyMissingEntries(webModule.getWebApp().getResourceEnvRefMap(), webFragment.getResourceEnvRef());
-                        mergeOnlyMissingEntries(webModule.getWebApp().getResourceRefMap(), webFragment.getResourceRef());
-                    } catch (final Exception e) {
-                        logger.warning("can't read " + url.toString(), e);
+        if (urls == null) {
+            return;
+        }
+
+        // parsing is independent so done concurrently, merging is done in the fragment order
+        final List<Source> sources = new ArrayList<Source>(urls.size());
+        for (final URL rawUrl : urls) {
+            if (rawUrl != null) {
+                sources.add(getSource(rawUrl));
+            }
+        }
+        final List<Future<WebFragment>> fragments = new ArrayList<Future<WebFragment>>(sources.size());
+        final ExecutorService es = sources.size() > 1 ?
+            Executors.newFixedThreadPool(Math.min(sources.size(), Runtime.getRuntime().availableProcessors()), new DaemonThreadFactory("openejb-web-fragment-")) : null;
+        try {
+            for (final Source url : sources) {
+                final Callable<WebFragment> task = new Callable<WebFragment>() {
+                    @Override
+                    public WebFragment call() throws Exception {
+                        return WebFragment.class.cast(JaxbJavaee.unmarshal(WebFragment.class, url.get(), false));
                     }
+                };
+                if (es != null) {
+                    fragments.add(es.submit(task));
+                } else {
+                    final FutureTask<WebFragment> future = new FutureTask<WebFragment>(task);
+                    future.run();
+                    fragments.add(future);
+                }
+            }
+
+            for (int i = 0; i < sources.size(); i++) {
+                try {
+                    final WebFragment webFragment = fragments.get(i).get();
+
+                    // in tomcat if the env entry is already don't override it
+                    mergeOnlyMissingEntries(webModule.getWebApp().getPersistenceContextRefMap(), webFragment.getPersistenceContextRef());
+                    mergeOnlyMissingEntries(webModule.getWebApp().getPersistenceUnitRefMap(), webFragment.getPersistenceUnitRef());
+                    mergeOnlyMissingEntries(webModule.getWebApp().getMessageDestinationRefMap(), webFragment.getMessageDestinationRef());
+                    mergeOnlyMissingEntries(webModule.getWebApp().getDataSourceMap(), webFragment.getDataSource());
+                    mergeOnlyMissingEntries(webModule.getWebApp().getEjbLocalRefMap(), webFragment.getEjbLocalRef());
+                    mergeOnlyMissingEntries(webModule.getWebApp().getEjbRefMap(), webFragment.getEjbRef());
+                    mergeOnlyMissingEntries(webModule.getWebApp().getServiceRefMap(), webFragment.getServiceRef());
+                    mergeOnlyMissingEntries(webModule.getWebApp().getEnvEntryMap(), webFragment.getEnvEntry());
+                    mergeOnlyMissingEntries(webModule.getWebApp().getResourceEnvRefMap(), webFragment.getResourceEnvRef());
+                    mergeOnlyMissingEntries(webModule.getWebApp().getResourceRefMap(), webFragment.getResourceRef());
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (final Exception e) {
+                    logger.warning("can't read " + sources.get(i).toString(), e instanceof ExecutionException ? e.getCause() : e);
                 }
             }
+        } finally {
+            if (es != null) {
+                es.shutdownNow();
+            }
         }
     }
 
@@ -722,7 +766,7 @@ public class ReadDescriptors implements DynamicDeployer {
     public static JavaWsdlMapping readJaxrpcMapping(final URL url) throws OpenEJBException {
         final JavaWsdlMapping wsdlMapping;
         try {
-            wsdlMapping = (JavaWsdlMapping) JaxbJavaee.unmarshalJavaee(JavaWsdlMapping.class, IO.read(url));
+            wsdlMapping = JavaWsdlMappingXml.unmarshal(url);
         } catch (final SAXException e) {
             throw new OpenEJBException("Cannot parse the JaxRPC mapping file: " + url.toExternalForm(), e);
         } catch (final JAXBException e) {
@@ -736,6 +780,21 @@ public class ReadDescriptors implements DynamicDeployer {
     }
 
     public static Connector readConnector(final URL url) throws OpenEJBException {
+        if (!isConnector10(url)) {
+            try {
+                return ConnectorXml.unmarshal(url);
+            } catch (final SAXException e) {
+                throw new OpenEJBException("Cannot parse the ra.xml file: " + url.toExternalForm(), e);
+            } catch (final JAXBException e) {
+                throw new OpenEJBException("Cannot unmarshall the ra.xml file: " + url.toExternalForm(), e);
+            } catch (final IOException e) {
+                throw new OpenEJBException("Cannot read the ra.xml file: " + url.toExternalForm(), e);
+            } catch (final Exception e) {
+                throw new OpenEJBException("Encountered unknown error parsing the ra.xml file: " + url.toExternalForm(), e);
+            }
+        }
+
+        // connector 1.0 (a DTD, no namespace): JAXB handles Connector10
         Connector connector;
         try {
             connector = (Connector) JaxbJavaee.unmarshalJavaee(Connector.class, IO.read(url));
@@ -762,6 +821,33 @@ public class ReadDescriptors implements DynamicDeployer {
         return connector;
     }
 
+    /**
+     * @return true if the root element has no namespace, the parsing errors are left to the reader
+     */
+    private static boolean isConnector10(final URL url) {
+        final String[] namespace = {null};
+        InputStream is = null;
+        try {
+            is = IO.read(url);
+            final SAXParser parser = Saxs.namespaceAwareFactory().newSAXParser();
+            parser.parse(new InputSource(is), new DefaultHandler() {
+                public void startElement(final String uri, final String localName, final String qName, final Attributes att) throws SAXException {
+                    namespace[0] = uri;
+                    throw new SAXException("root element read");
+                }
+
+                public InputSource resolveEntity(final String publicId, final String systemId) throws IOException, SAXException {
+                    return new InputSource(new ByteArrayInputStream(new byte[0]));
+                }
+            });
+        } catch (final Exception e) {
+            // no-op: stopped on the root element or not parseable
+        } finally {
+            IO.close(is);
+        }
+        return namespace[0] != null && namespace[0].isEmpty();
+    }
+
     public static WebApp readWebApp(final URL url) throws OpenEJBException {
         final WebApp webApp;
         try {
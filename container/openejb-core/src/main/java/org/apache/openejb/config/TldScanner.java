@@ -244,6 +244,21 @@ public class TldScanner {
             return urls;
         }
 
+        final JarScanCache cache = JarScanCache.get();
+        final JarScanCache.Entry entry = cache != null ? cache.entry(file) : null;
+        if (entry != null) { // already listed, no need to open the jar
+            try {
+                final URL jarFileUrl = new URL("jar", "", -1, file.toURI().toURL().toExternalForm() + "!/");
+                for (final String name : entry.getTlds()) {
+                    urls.add(new URL(jarFileUrl, name));
+                }
+                return urls;
+            } catch (final IOException e) {
+                DeploymentLoader.logger.warning("Error scanning jar for JSP tag libraries: " + file.getAbsolutePath(), e);
+                return urls;
+            }
+        }
+
         JarFile jarFile = null;
         try {
             jarFile = new JarFile(file);
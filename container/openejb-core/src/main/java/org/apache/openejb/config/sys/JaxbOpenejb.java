@@ -52,11 +52,11 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Enumeration;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public abstract class JaxbOpenejb {
 
@@ -268,7 +268,7 @@ public abstract class JaxbOpenejb {
 
     public static final ThreadLocal<Set<String>> currentPublicId = new ThreadLocal<Set<String>>();
 
-    private static Map<Class, JAXBContext> jaxbContexts = new HashMap<Class, JAXBContext>();
+    private static final ConcurrentMap<Class, JAXBContext> jaxbContexts = new ConcurrentHashMap<Class, JAXBContext>();
 
     public static <T> String marshal(final Class<T> type, final Object object) throws JAXBException {
         final ByteArrayOutputStream baos = new ByteArrayOutputStream();
@@ -291,7 +291,10 @@ public abstract class JaxbOpenejb {
         JAXBContext jaxbContext = jaxbContexts.get(type);
         if (jaxbContext == null) {
             jaxbContext = JAXBContextFactory.newInstance(type);
-            jaxbContexts.put(type, jaxbContext);
+            final JAXBContext existing = jaxbContexts.putIfAbsent(type, jaxbContext);
+            if (existing != null) {
+                jaxbContext = existing;
+            }
         }
         return jaxbContext;
     }
@@ -0,0 +1,299 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.core;
+
+import org.apache.openejb.loader.Files;
+import org.apache.openejb.loader.IO;
+import org.apache.openejb.loader.SystemInstance;
+import org.apache.xbean.finder.archive.Archive;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache of class files shared by the deployment time readers (annotation scanning
+ * and {@link TempClassLoader}) so a class file is read and inflated from its jar only once.
+ *
+ * Keys are the absolute path of the class file or jar path + "!/" + entry for jars, both
+ * suffixed with the last modification date and length of the file so a redeployed file
+ * is never served from the cache.
+ * The cache is not locked: once full arbitrary entries are evicted.
+ * A cache only lives for one deployment: {@link #begin()} binds it to the deploying thread and
+ * {@link #end(boolean)} drops it, outside of a deployment {@link #get()} returns an inactive cache
+ * so concurrent deployments never share (nor clear) the cache of each other.
+ * The size in bytes is configured with openejb.bytecode.cache.size (0 to deactivate).
+ */
+public class BytecodeCache {
+    public static final String OPENEJB_BYTECODE_CACHE_SIZE = "openejb.bytecode.cache.size";
+
+    private static final String CLASS_EXTENSION = ".class";
+
+    private static final BytecodeCache INACTIVE = new BytecodeCache(0);
+    private static final ThreadLocal<BytecodeCache> DEPLOYMENT = new ThreadLocal<BytecodeCache>();
+
+    private final long maxSize;
+    private volatile boolean closed;
+    private final AtomicLong size = new AtomicLong();
+    private final ConcurrentMap<String, byte[]> cache = new ConcurrentHashMap<String, byte[]>(256, 0.75f, 16);
+
+    public BytecodeCache(final long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @return the cache of the deployment running in the current thread, an inactive cache if none is running
+     */
+    public static BytecodeCache get() {
+        final BytecodeCache cache = DEPLOYMENT.get();
+        return cache != null ? cache : INACTIVE;
+    }
+
+    /**
+     * Binds a new cache to the current thread if no deployment is already running in it.
+     *
+     * @return true if the caller started the deployment scope and must call {@link #end(boolean)}
+     */
+    public static boolean begin() {
+        if (DEPLOYMENT.get() != null) {
+            return false;
+        }
+        DEPLOYMENT.set(new BytecodeCache(SystemInstance.get().getOptions().get(OPENEJB_BYTECODE_CACHE_SIZE, 16L * 1024 * 1024)));
+        return true;
+    }
+
+    /**
+     * Ends the deployment scope started by {@link #begin()}, readers still holding the cache
+     * (temp loaders) simply stop caching.
+     *
+     * @param owner the value returned by the matching {@link #begin()}
+     */
+    public static void end(final boolean owner) {
+        if (!owner) {
+            return;
+        }
+
+        final BytecodeCache cache = DEPLOYMENT.get();
+        DEPLOYMENT.remove();
+        if (cache != null) {
+            cache.closed = true;
+            cache.clear();
+        }
+    }
+
+    public boolean isActive() {
+        return maxSize > 0 && !closed;
+    }
+
+    public byte[] get(final String key) {
+        return cache.get(key);
+    }
+
+    public void put(final String key, final byte[] bytes) {
+        if (!isActive() || bytes.length > maxSize) {
+            return;
+        }
+
+        final byte[] old = cache.put(key, bytes);
+        size.addAndGet(old == null ? bytes.length : bytes.length - old.length);
+
+        final Iterator<Map.Entry<String, byte[]>> entries = cache.entrySet().iterator();
+        while (size.get() > maxSize && entries.hasNext()) {
+            final Map.Entry<String, byte[]> entry = entries.next();
+            if (!key.equals(entry.getKey())) {
+                remove(entry);
+            }
+        }
+    }
+
+    public void clear() {
+        for (final Map.Entry<String, byte[]> entry : cache.entrySet()) {
+            remove(entry);
+        }
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    private void remove(final Map.Entry<String, byte[]> entry) {
+        // only the thread really removing the entry updates the size
+        if (cache.remove(entry.getKey(), entry.getValue())) {
+            size.addAndGet(-entry.getValue().length);
+        }
+    }
+
+    /**
+     * @return the bytes of the resource, read through the cache
+     */
+    public byte[] read(final URL url) throws IOException {
+        final String key = isActive() ? key(url) : null;
+        if (key != null) {
+            final byte[] cached = get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        final byte[] bytes = read(url.openStream());
+        if (key != null) {
+            put(key, bytes);
+        }
+        return bytes;
+    }
+
+    /**
+     * @return the cache key of a file or jar entry url or null if the protocol is not supported
+     */
+    public static String key(final URL url) {
+        final String protocol = url.getProtocol();
+        try {
+            if ("jar".equals(protocol)) {
+                final String spec = url.getFile();
+                final int separator = spec.indexOf("!/");
+                if (separator < 0) {
+                    return null;
+                }
+                return stamped(Files.toFile(url)) + spec.substring(separator);
+            } else if ("file".equals(protocol)) {
+                return stamped(Files.toFile(url));
+            }
+        } catch (final RuntimeException e) {
+            // no-op: unsupported
+        }
+        return null;
+    }
+
+    private static String stamped(final File file) {
+        return file.getAbsolutePath() + '@' + file.lastModified() + ':' + file.length();
+    }
+
+    private static byte[] read(final InputStream stream) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(6 * 1024); // 80% of class files are smaller than 6k
+        try {
+            IO.copy(stream, out);
+        } finally {
+            IO.close(stream);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * @return an archive reading the bytecode of the location through the cache
+     */
+    public Archive archive(final Archive archive, final URL location) {
+        if (!isActive()) {
+            return archive;
+        }
+
+        final File file;
+        try {
+            file = Files.toFile(location);
+        } catch (final RuntimeException e) {
+            return archive;
+        }
+        return new CachingArchive(archive, file);
+    }
+
+    private class CachingArchive implements Archive {
+        private final Archive delegate;
+        private final File location;
+        private final boolean directory;
+        private final String jarKey;
+
+        private CachingArchive(final Archive delegate, final File location) {
+            this.delegate = delegate;
+            this.location = location;
+            this.directory = location.isDirectory();
+            this.jarKey = directory ? null : stamped(location);
+        }
+
+        private String key(final String className) {
+            final String path = className.replace('.', '/') + CLASS_EXTENSION;
+            if (directory) {
+                return stamped(new File(location, path));
+            }
+            return jarKey + "!/" + path;
+        }
+
+        @Override
+        public InputStream getBytecode(final String className) throws IOException, ClassNotFoundException {
+            return new ByteArrayInputStream(bytecode(className, null));
+        }
+
+        @Override
+        public Class<?> loadClass(final String className) throws ClassNotFoundException {
+            return delegate.loadClass(className);
+        }
+
+        @Override
+        public Iterator<Entry> iterator() {
+            final Iterator<Entry> iterator = delegate.iterator();
+            return new Iterator<Entry>() {
+                @Override
+                public boolean hasNext() {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                public Entry next() {
+                    final Entry entry = iterator.next();
+                    return new Entry() {
+                        @Override
+                        public String getName() {
+                            return entry.getName();
+                        }
+
+                        @Override
+                        public InputStream getBytecode() throws IOException {
+                            try {
+                                return new ByteArrayInputStream(bytecode(entry.getName(), entry));
+                            } catch (final ClassNotFoundException e) {
+                                throw new IOException(e.getMessage());
+                            }
+                        }
+                    };
+                }
+
+                @Override
+                public void remove() {
+                    iterator.remove();
+                }
+            };
+        }
+
+        private byte[] bytecode(final String className, final Entry entry) throws IOException, ClassNotFoundException {
+            final String key = key(className);
+            final byte[] cached = get(key);
+            if (cached != null) {
+                return cached;
+            }
+
+            final byte[] bytes = read(entry != null ? entry.getBytecode() : delegate.getBytecode(className));
+            put(key, bytes);
+            return bytes;
+        }
+    }
+}
@@ -17,21 +17,22 @@
 
 package org.apache.openejb.core;
 
-import org.apache.openejb.loader.IO;
 import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.util.LogCategory;
+import org.apache.openejb.util.Logger;
 import org.apache.openejb.util.classloader.URLClassLoaderFirst;
 import org.apache.xbean.asm5.ClassReader;
 import org.apache.xbean.asm5.Opcodes;
 import org.apache.xbean.asm5.shade.commons.EmptyVisitor;
 
-import java.io.BufferedInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.lang.reflect.Method;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.util.Enumeration;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * ClassLoader implementation that allows classes to be temporarily
@@ -49,12 +50,26 @@ import java.util.Set;
 public class TempClassLoader extends URLClassLoader {
     private static final ClassLoader PARENT_LOADER = ParentClassLoaderFinder.Helper.get();
 
+    static {
+        // java 7 api, on java 6 the loader is still safe thanks to the per class locks but the jvm locks the loader itself
+        try {
+            final Method register = ClassLoader.class.getDeclaredMethod("registerAsParallelCapable");
+            register.setAccessible(true);
+            register.invoke(null);
+        } catch (final NoSuchMethodException e) {
+            // no-op: java 6
+        } catch (final Exception e) {
+            // java 16+ doesn't open java.lang anymore, runs once per loader of this class so it is logged once
+            Logger.getInstance(LogCategory.OPENEJB, TempClassLoader.class)
+                .warning("TempClassLoader can't be registered as parallel capable, classes will be loaded holding the loader lock: " + e);
+        }
+    }
+
     private final Set<Skip> skip;
     private final ClassLoader system;
     private final boolean embedded;
-
-    // 80% of class files are smaller then 6k
-    private final ByteArrayOutputStream bout = new ByteArrayOutputStream(6 * 1024);
+    private final BytecodeCache bytecodeCache = BytecodeCache.get();
+    private final ConcurrentMap<String, Object> locks = new ConcurrentHashMap<String, Object>();
 
     public TempClassLoader(final ClassLoader parent) {
         super(new URL[0], parent);
@@ -81,12 +96,30 @@ public class TempClassLoader extends URLClassLoader {
     }
 
     @Override
-    protected synchronized Class loadClass(final String name, final boolean resolve) throws ClassNotFoundException {
+    protected Class loadClass(final String name, final boolean resolve) throws ClassNotFoundException {
         if (name == null) {
             throw new NullPointerException("name cannot be null");
         }
 
         // see if we've already loaded it
+        final Class c = this.findLoadedClass(name);
+        if (c != null) {
+            return c;
+        }
+
+        synchronized (lock(name)) {
+            return this.doLoadClass(name, resolve);
+        }
+    }
+
+    private Object lock(final String name) {
+        final Object lock = new Object();
+        final Object existing = this.locks.putIfAbsent(name, lock);
+        return existing != null ? existing : lock;
+    }
+
+    private Class doLoadClass(final String name, final boolean resolve) throws ClassNotFoundException {
+        // an other thread can have loaded it while we were waiting for the lock
         Class c = this.findLoadedClass(name);
         if (c != null) {
             return c;
@@ -129,30 +162,17 @@ public class TempClassLoader extends URLClassLoader {
 //        ( && !name.startsWith("javax.faces.") )||
         final String resourceName = name.replace('.', '/') + ".class";
 
-        //Copy the input stream into a byte array
-        final byte[] bytes;
-        this.bout.reset();
-        InputStream in = null;
+        // read the bytecode, shared with the annotation scanning through the cache
+        final URL resource = this.getResource(resourceName);
+        if (resource == null) {
+            throw new ClassNotFoundException(name);
+        }
 
+        final byte[] bytes;
         try {
-
-            in = this.getResourceAsStream(resourceName);
-
-            if (in != null && !(in instanceof BufferedInputStream)) {
-                in = new BufferedInputStream(in);
-            }
-
-            if (in == null) {
-                throw new ClassNotFoundException(name);
-            }
-
-            IO.copy(in, this.bout);
-            bytes = this.bout.toByteArray();
-
+            bytes = this.bytecodeCache.read(resource);
         } catch (final IOException e) {
             throw new ClassNotFoundException(name, e);
-        } finally {
-            IO.close(in);
         }
 
         // Annotation classes must be loaded by the normal classloader
@@ -170,7 +190,11 @@ public class TempClassLoader extends URLClassLoader {
         if (packageEndIndex != -1) {
             final String packageName = name.substring(0, packageEndIndex);
             if (this.getPackage(packageName) == null) {
-                this.definePackage(packageName, null, null, null, null, null, null, null);
+                try {
+                    this.definePackage(packageName, null, null, null, null, null, null, null);
+                } catch (final IllegalArgumentException iae) {
+                    // defined concurrently by an other class of the package
+                }
             }
         }
 
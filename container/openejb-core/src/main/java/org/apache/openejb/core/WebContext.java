@@ -19,6 +19,7 @@ package org.apache.openejb.core;
 
 import org.apache.openejb.AppContext;
 import org.apache.openejb.Injection;
+import org.apache.openejb.InjectionPlan;
 import org.apache.openejb.InjectionProcessor;
 import org.apache.openejb.OpenEJBException;
 import org.apache.openejb.cdi.ConstructorInjectionBean;
@@ -56,7 +57,9 @@ public class WebContext {
     private String contextRoot;
     private String host;
     private Context initialContext;
+    private volatile boolean initialContextProvided;
     private final Map<Class<?>, ConstructorInjectionBean<Object>> constructorInjectionBeanCache = new ConcurrentHashMap<Class<?>, ConstructorInjectionBean<Object>>();
+    private final Map<Class<?>, InjectionPlan> injectionPlans = new ConcurrentHashMap<Class<?>, InjectionPlan>();
 
     public Context getInitialContext() {
         if (initialContext != null) {
@@ -80,6 +83,7 @@ public class WebContext {
 
     public void setInitialContext(final Context initialContext) {
         this.initialContext = initialContext;
+        this.initialContextProvided = initialContext != null;
     }
 
     public WebContext(final AppContext appContext) {
@@ -139,10 +143,7 @@ public class WebContext {
         }
 
         // Create bean instance
-        final Context unwrap = InjectionProcessor.unwrap(getInitialContext());
-        final InjectionProcessor injectionProcessor = new InjectionProcessor(o, injections, unwrap);
-
-        final Object beanInstance = injectionProcessor.createInstance();
+        final Object beanInstance = getInjectionPlan(o.getClass()).inject(o, InjectionProcessor.unwrap(getInitialContext()));
 
         if (webBeansContext != null) {
             final InjectionTargetBean<Object> bean = InjectionTargetBean.class.cast(beanDefinition);
@@ -197,34 +198,48 @@ public class WebContext {
 
     public Object inject(final Object o) throws OpenEJBException {
 
-        try {
-            final WebBeansContext webBeansContext = getWebBeansContext();
-
-            // Create bean instance
-            final Context initialContext = (Context) new InitialContext().lookup("java:");
-            final Context unwrap = InjectionProcessor.unwrap(initialContext);
-            final InjectionProcessor injectionProcessor = new InjectionProcessor(o, injections, unwrap);
+        final WebBeansContext webBeansContext = getWebBeansContext();
 
-            final Object beanInstance = injectionProcessor.createInstance();
+        // Create bean instance, without a provided context the java: lookup depends on the calling thread
+        final Context context;
+        if (initialContextProvided) {
+            context = getInitialContext();
+        } else {
+            try {
+                context = (Context) new InitialContext().lookup("java:");
+            } catch (final NamingException e) {
+                throw new OpenEJBException(e);
+            }
+        }
+        final Object beanInstance = getInjectionPlan(o.getClass()).inject(o, InjectionProcessor.unwrap(context));
 
-            if (webBeansContext != null) {
-                final ConstructorInjectionBean<Object> beanDefinition = getConstructorInjectionBean(o.getClass(), webBeansContext);
-                final CreationalContext<Object> creationalContext = webBeansContext.getBeanManagerImpl().createCreationalContext(beanDefinition);
+        if (webBeansContext != null) {
+            final ConstructorInjectionBean<Object> beanDefinition = getConstructorInjectionBean(o.getClass(), webBeansContext);
+            final CreationalContext<Object> creationalContext = webBeansContext.getBeanManagerImpl().createCreationalContext(beanDefinition);
 
-                final InjectionTargetBean<Object> bean = InjectionTargetBean.class.cast(beanDefinition);
-                bean.getInjectionTarget().inject(beanInstance, creationalContext);
+            final InjectionTargetBean<Object> bean = InjectionTargetBean.class.cast(beanDefinition);
+            bean.getInjectionTarget().inject(beanInstance, creationalContext);
 
-                // if the bean is dependent simply cleanup the creational context once it is created
-                final Class<? extends Annotation> scope = beanDefinition.getScope();
-                if (scope == null || Dependent.class.equals(scope)) {
-                    creatonalContexts.put(beanInstance, creationalContext);
-                }
+            // if the bean is dependent simply cleanup the creational context once it is created
+            final Class<? extends Annotation> scope = beanDefinition.getScope();
+            if (scope == null || Dependent.class.equals(scope)) {
+                creatonalContexts.put(beanInstance, creationalContext);
             }
+        }
 
-            return beanInstance;
-        } catch (final NamingException e) {
-            throw new OpenEJBException(e);
+        return beanInstance;
+    }
+
+    /**
+     * @return the injections of the class compiled once, the injections are complete once the webapp is deployed
+     */
+    private InjectionPlan getInjectionPlan(final Class<?> clazz) {
+        InjectionPlan plan = injectionPlans.get(clazz);
+        if (plan == null) {
+            plan = InjectionPlan.compile(clazz, injections);
+            injectionPlans.put(clazz, plan); // a concurrent compilation gives the same plan
         }
+        return plan;
     }
 
     public void setBindings(final Map<String, Object> bindings) {
@@ -0,0 +1,62 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.core.ivm.naming;
+
+import org.apache.openejb.util.StartupTracer;
+
+import javax.naming.NamingException;
+import java.util.concurrent.Callable;
+
+/**
+ * Placeholder creating the actual reference on first lookup, unlike {@link LazyObjectReference}
+ * the looked up object is not cached so each lookup still gets a new proxy.
+ */
+public class LazyReference extends Reference {
+    private final String name;
+    private final Callable<Reference> creator;
+    private volatile Reference delegate;
+
+    public LazyReference(final String name, final Callable<Reference> creator) {
+        this.name = name;
+        this.creator = creator;
+    }
+
+    @Override
+    public Object getObject() throws NamingException {
+        Reference reference = delegate;
+        if (reference == null) {
+            synchronized (this) {
+                reference = delegate;
+                if (reference == null) {
+                    final StartupTracer.Span span = StartupTracer.start("lazy jndi reference", name);
+                    try {
+                        reference = creator.call();
+                    } catch (final Exception e) {
+                        final NamingException ne = new NamingException("Can't initialize " + name + ": " + e.getMessage());
+                        ne.setRootCause(e);
+                        throw ne;
+                    } finally {
+                        span.stop();
+                    }
+                    delegate = reference;
+                    StartupTracer.report("lazy initialization of " + name);
+                }
+            }
+        }
+        return reference.getObject();
+    }
+}
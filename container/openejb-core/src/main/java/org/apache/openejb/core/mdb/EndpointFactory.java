@@ -20,6 +20,9 @@ package org.apache.openejb.core.mdb;
 import org.apache.openejb.BeanContext;
 import org.apache.openejb.core.transaction.TransactionType;
 import org.apache.openejb.resource.XAResourceWrapper;
+import org.apache.openejb.util.DaemonThreadFactory;
+import org.apache.openejb.util.LogCategory;
+import org.apache.openejb.util.Logger;
 import org.apache.openejb.util.proxy.LocalBeanProxyFactory;
 
 import javax.management.ObjectName;
@@ -31,8 +34,12 @@ import javax.transaction.xa.XAResource;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class EndpointFactory implements MessageEndpointFactory {
+    private static final Logger logger = Logger.getInstance(LogCategory.OPENEJB, "org.apache.openejb.util.resources");
 
     private final ActivationSpec activationSpec;
     private final MdbContainer container;
@@ -43,8 +50,17 @@ public class EndpointFactory implements MessageEndpointFactory {
     private final XAResourceWrapper xaResourceWrapper;
     protected final List<ObjectName> jmxNames = new ArrayList<ObjectName>();
     private final Class<?> proxy;
+    private final int batchSize;
+    private final long batchTimeout;
+    private final ScheduledExecutorService batchFlusher;
+    private final AtomicBoolean nonXaWarned = new AtomicBoolean();
 
     public EndpointFactory(final ActivationSpec activationSpec, final MdbContainer container, final BeanContext beanContext, final MdbInstanceFactory instanceFactory, final XAResourceWrapper xaResourceWrapper) {
+        this(activationSpec, container, beanContext, instanceFactory, xaResourceWrapper, 1, 0);
+    }
+
+    public EndpointFactory(final ActivationSpec activationSpec, final MdbContainer container, final BeanContext beanContext, final MdbInstanceFactory instanceFactory, final XAResourceWrapper xaResourceWrapper,
+                           final int batchSize, final long batchTimeout) {
         this.activationSpec = activationSpec;
         this.container = container;
         this.beanContext = beanContext;
@@ -60,6 +76,23 @@ public class EndpointFactory implements MessageEndpointFactory {
         } else {
             proxy = proxyClass.getProxy();
         }
+
+        this.batchSize = batchSize;
+        this.batchTimeout = batchTimeout;
+        if (batchSize > 1) {
+            if (batchTimeout <= 0) {
+                throw new IllegalArgumentException(MdbContainer.DELIVERY_BATCH_TIMEOUT + " must be positive: " + batchTimeout);
+            }
+            batchFlusher = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("OpenEJB-mdb-batch-flusher", beanContext.getEjbName()));
+        } else {
+            batchFlusher = null;
+        }
+    }
+
+    public void stop() {
+        if (batchFlusher != null) {
+            batchFlusher.shutdown();
+        }
     }
 
     public ActivationSpec getActivationSpec() {
@@ -75,7 +108,10 @@ public class EndpointFactory implements MessageEndpointFactory {
         if (xaResource != null && xaResourceWrapper != null) {
             xaResource = xaResourceWrapper.wrap(xaResource, container.getContainerID().toString());
         }
-        final EndpointHandler endpointHandler = new EndpointHandler(container, beanContext, instanceFactory, xaResource);
+        if (xaResource == null && batchFlusher != null && nonXaWarned.compareAndSet(false, true)) {
+            logger.warning(MdbContainer.DELIVERY_BATCH_SIZE + " of " + beanContext.getDeploymentID() + " is ignored, the resource adapter doesn't provide an XAResource");
+        }
+        final EndpointHandler endpointHandler = new EndpointHandler(container, beanContext, instanceFactory, xaResource, batchSize, batchTimeout, batchFlusher);
         try {
             return (MessageEndpoint) LocalBeanProxyFactory.constructProxy(proxy, endpointHandler);
         } catch (final InternalError e) { // should be useless
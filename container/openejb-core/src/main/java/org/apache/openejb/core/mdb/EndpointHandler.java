@@ -20,6 +20,8 @@ package org.apache.openejb.core.mdb;
 import org.apache.openejb.ApplicationException;
 import org.apache.openejb.BeanContext;
 import org.apache.openejb.SystemException;
+import org.apache.openejb.util.LogCategory;
+import org.apache.openejb.util.Logger;
 
 import javax.ejb.EJBException;
 import javax.resource.spi.ApplicationServerInternalException;
@@ -29,8 +31,14 @@ import javax.transaction.xa.XAResource;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.util.Arrays;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 public class EndpointHandler implements InvocationHandler, MessageEndpoint {
+    private static final Logger logger = Logger.getInstance(LogCategory.OPENEJB, "org.apache.openejb.util.resources");
+
     private static enum State {
         /**
          * The handler has been initialized and is ready for invoation
@@ -67,14 +75,34 @@ public class EndpointHandler implements InvocationHandler, MessageEndpoint {
     private final MdbInstanceFactory instanceFactory;
     private final XAResource xaResource;
 
-    private State state = State.NONE;
+    private final int batchSize;
+    private final long batchTimeout;
+    private final ScheduledExecutorService batchFlusher;
+
+    private volatile State state = State.NONE;
     private Object instance;
 
+    // delivery batch, guarded by batchLock since the flusher completes a suspended batch from its own thread
+    private final Object batchLock = new Object();
+    private int batchCount;
+    private long batchStart;
+    private Object suspendedDelivery;
+    private ScheduledFuture<?> batchFlush;
+
     public EndpointHandler(final MdbContainer container, final BeanContext deployment, final MdbInstanceFactory instanceFactory, final XAResource xaResource) throws UnavailableException {
+        this(container, deployment, instanceFactory, xaResource, 1, 0, null);
+    }
+
+    public EndpointHandler(final MdbContainer container, final BeanContext deployment, final MdbInstanceFactory instanceFactory, final XAResource xaResource,
+                           final int batchSize, final long batchTimeout, final ScheduledExecutorService batchFlusher) throws UnavailableException {
         this.container = container;
         this.deployment = deployment;
         this.instanceFactory = instanceFactory;
         this.xaResource = xaResource;
+        this.batchSize = batchSize;
+        this.batchTimeout = batchTimeout;
+        // without XA the adapter acknowledges each message on its own so a batch rollback would lose them
+        this.batchFlusher = xaResource != null ? batchFlusher : null;
         instance = instanceFactory.createInstance(false);
     }
 
@@ -184,9 +212,17 @@ public class EndpointHandler implements InvocationHandler, MessageEndpoint {
                 throw new IllegalStateException("The last message delivery must be completed with an afterDeliver before beforeDeliver can be called again");
         }
 
-        // call beforeDelivery on the container
+        // call beforeDelivery on the container (or continue the open batch)
         try {
-            container.beforeDelivery(deployment, instance, method, xaResource);
+            if (!resumeBatch(method)) {
+                container.beforeDelivery(deployment, instance, method, xaResource);
+                if (batchFlusher != null) {
+                    synchronized (batchLock) {
+                        batchCount = 0;
+                        batchStart = System.currentTimeMillis();
+                    }
+                }
+            }
         } catch (final SystemException se) {
             final Throwable throwable = se.getRootCause() != null ? se.getRootCause() : se;
             throw new ApplicationServerInternalException(throwable);
@@ -267,10 +303,12 @@ public class EndpointHandler implements InvocationHandler, MessageEndpoint {
         }
 
 
-        // call afterDelivery on the container
+        // call afterDelivery on the container (or keep the batch open for next messages)
         boolean exceptionThrown = false;
         try {
-            container.afterDelivery(instance);
+            if (state == State.SYSTEM_EXCEPTION || !suspendBatch()) {
+                container.afterDelivery(instance);
+            }
         } catch (final SystemException se) {
             exceptionThrown = true;
 
@@ -301,10 +339,100 @@ public class EndpointHandler implements InvocationHandler, MessageEndpoint {
         }
     }
 
+    private boolean resumeBatch(final Method method) throws SystemException {
+        if (batchFlusher == null) {
+            return false;
+        }
+
+        synchronized (batchLock) {
+            if (suspendedDelivery == null) { // no batch or already flushed
+                return false;
+            }
+
+            batchFlush.cancel(false);
+            final Object delivery = suspendedDelivery;
+            suspendedDelivery = null;
+            batchFlush = null;
+            container.resumeDelivery(delivery, method);
+            return true;
+        }
+    }
+
+    private boolean suspendBatch() {
+        if (batchFlusher == null || batchFlusher.isShutdown()) {
+            return false;
+        }
+
+        synchronized (batchLock) {
+            batchCount++;
+            final long remaining = batchTimeout - (System.currentTimeMillis() - batchStart);
+            if (batchCount >= batchSize || remaining <= 0 || !container.isBatchable()) {
+                return false;
+            }
+
+            final Object delivery;
+            try {
+                delivery = container.suspendDelivery();
+            } catch (final SystemException se) {
+                logger.warning("Can't suspend delivery batch of " + deployment.getDeploymentID() + ", completing it: " + se.getMessage());
+                return false;
+            }
+
+            try {
+                batchFlush = batchFlusher.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        flushBatch(delivery);
+                    }
+                }, remaining, TimeUnit.MILLISECONDS);
+            } catch (final RejectedExecutionException ree) { // stopped meanwhile, complete the batch now
+                try {
+                    container.resumeDelivery(delivery, null);
+                } catch (final SystemException se) {
+                    logger.error("Can't resume delivery batch of " + deployment.getDeploymentID(), se);
+                    return true; // rolled back, nothing more to complete
+                }
+                return false;
+            }
+            suspendedDelivery = delivery;
+        }
+        return true;
+    }
+
+    private void flushBatch(final Object delivery) {
+        synchronized (batchLock) {
+            if (suspendedDelivery != delivery) { // resumed by a new message in between
+                return;
+            }
+
+            suspendedDelivery = null;
+            batchFlush = null;
+            try {
+                container.resumeDelivery(delivery, null);
+                container.afterDelivery(instance);
+            } catch (final SystemException se) {
+                final Throwable throwable = se.getRootCause() != null ? se.getRootCause() : se;
+                logger.error("Can't complete delivery batch of " + deployment.getDeploymentID(), throwable);
+            }
+        }
+    }
+
     public void release() {
         if (state == State.RELEASED) {
             return;
         }
+
+        final Object delivery;
+        synchronized (batchLock) {
+            delivery = suspendedDelivery;
+            if (batchFlush != null) {
+                batchFlush.cancel(false);
+            }
+        }
+        if (delivery != null) {
+            flushBatch(delivery);
+        }
+
         state = State.RELEASED;
 
         // notify the container
@@ -19,6 +19,7 @@ package org.apache.openejb.core.mdb;
 
 import javax.enterprise.context.spi.CreationalContext;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * @version $Rev$ $Date$
@@ -28,6 +29,9 @@ public class Instance {
     public final Map<String,Object> interceptors;
     public final CreationalContext creationalContext;
 
+    // true once given back to the MdbInstanceFactory, guards against freeing it twice
+    final AtomicBoolean free = new AtomicBoolean();
+
     public Instance(final Object bean, final Map<String, Object> interceptors, final CreationalContext creationalContext) {
         this.bean = bean;
         this.interceptors = interceptors;
@@ -51,6 +51,8 @@ import javax.resource.ResourceException;
 import javax.resource.spi.ActivationSpec;
 import javax.resource.spi.ResourceAdapter;
 import javax.resource.spi.UnavailableException;
+import javax.transaction.Transaction;
+import javax.transaction.TransactionManager;
 import javax.transaction.xa.XAResource;
 import javax.validation.ConstraintViolationException;
 import javax.validation.Validator;
@@ -73,6 +75,17 @@ public class MdbContainer implements RpcContainer {
     private static final Logger logger = Logger.getInstance(LogCategory.OPENEJB, "org.apache.openejb.util.resources");
     private static final Object[] NO_ARGS = new Object[0];
 
+    /**
+     * Activation (or bean) property to deliver up to N messages to the same instance in a single transaction.
+     * Only container started transactions of XA endpoints are batched and a system exception rolls back the whole batch.
+     */
+    public static final String DELIVERY_BATCH_SIZE = "DeliveryBatchSize";
+
+    /**
+     * Activation (or bean) property giving the max time in milliseconds a delivery batch stays open.
+     */
+    public static final String DELIVERY_BATCH_TIMEOUT = "DeliveryBatchTimeout";
+
     private final Object containerID;
     private final SecurityService securityService;
     private final ResourceAdapter resourceAdapter;
@@ -83,6 +96,7 @@ public class MdbContainer implements RpcContainer {
     private final ConcurrentMap<Object, BeanContext> deployments = new ConcurrentHashMap<Object, BeanContext>();
     private final XAResourceWrapper xaResourceWrapper;
     private final InboundRecovery inboundRecovery;
+    private final TransactionManager transactionManager;
 
     public MdbContainer(final Object containerID, final SecurityService securityService, final ResourceAdapter resourceAdapter, final Class messageListenerInterface, final Class activationSpecClass, final int instanceLimit) {
         this.containerID = containerID;
@@ -93,6 +107,7 @@ public class MdbContainer implements RpcContainer {
         this.instanceLimit = instanceLimit;
         xaResourceWrapper = SystemInstance.get().getComponent(XAResourceWrapper.class);
         inboundRecovery = SystemInstance.get().getComponent(InboundRecovery.class);
+        transactionManager = SystemInstance.get().getComponent(TransactionManager.class);
     }
 
     public BeanContext[] getBeanContexts() {
@@ -141,8 +156,15 @@ public class MdbContainer implements RpcContainer {
         final Options options = new Options(beanContext.getProperties());
         final int instanceLimit = options.get("InstanceLimit", this.instanceLimit);
         // create the message endpoint
-        final MdbInstanceFactory instanceFactory = new MdbInstanceFactory(beanContext, securityService, instanceLimit);
-        final EndpointFactory endpointFactory = new EndpointFactory(activationSpec, this, beanContext, instanceFactory, xaResourceWrapper);
+        final int batchSize = (int) activationProperty(beanContext, options, DELIVERY_BATCH_SIZE, 1);
+        long batchTimeout = activationProperty(beanContext, options, DELIVERY_BATCH_TIMEOUT, 1000);
+        if (batchSize > 1 && batchTimeout <= 0) {
+            logger.warning(DELIVERY_BATCH_TIMEOUT + " of " + deploymentId + " must be positive (" + batchTimeout + "), using 1000ms");
+            batchTimeout = 1000;
+        }
+        final int maxIdle = options.get("MaxIdle", instanceLimit > 0 ? instanceLimit : 10);
+        final MdbInstanceFactory instanceFactory = new MdbInstanceFactory(beanContext, securityService, instanceLimit, maxIdle);
+        final EndpointFactory endpointFactory = new EndpointFactory(activationSpec, this, beanContext, instanceFactory, xaResourceWrapper, batchSize, batchTimeout);
 
         // update the data structures
         // this must be done before activating the endpoint since the ra may immedately begin delivering messages
@@ -191,6 +213,14 @@ public class MdbContainer implements RpcContainer {
         }
     }
 
+    private static long activationProperty(final BeanContext beanContext, final Options options, final String key, final long defaultValue) {
+        final String value = beanContext.getActivationProperties().get(key);
+        if (value != null) {
+            return Long.parseLong(value.trim());
+        }
+        return options.get(key, defaultValue);
+    }
+
     private ActivationSpec createActivationSpec(final BeanContext beanContext)throws OpenEJBException {
         try {
             // initialize the object recipe
@@ -212,6 +242,8 @@ public class MdbContainer implements RpcContainer {
             unusedProperties.remove("destination");
             unusedProperties.remove("destinationType");
             unusedProperties.remove("beanClass");
+            unusedProperties.remove(DELIVERY_BATCH_SIZE);
+            unusedProperties.remove(DELIVERY_BATCH_TIMEOUT);
             if (!unusedProperties.isEmpty()) {
                 throw new IllegalArgumentException("No setter found for the activation spec properties: " + unusedProperties);
             }
@@ -264,7 +296,12 @@ public class MdbContainer implements RpcContainer {
         try {
             final EndpointFactory endpointFactory = (EndpointFactory) beanContext.getContainerData();
             if (endpointFactory != null) {
-                resourceAdapter.endpointDeactivation(endpointFactory, endpointFactory.getActivationSpec());
+                try {
+                    resourceAdapter.endpointDeactivation(endpointFactory, endpointFactory.getActivationSpec());
+                } finally {
+                    endpointFactory.stop();
+                    endpointFactory.getInstanceFactory().destroy();
+                }
 
                 final MBeanServer server = LocalMBeanServer.get();
                 for (final ObjectName objectName : endpointFactory.jmxNames) {
@@ -442,6 +479,71 @@ public class MdbContainer implements RpcContainer {
         }
     }
 
+    /**
+     * @return true if the delivery in progress can stay open to receive more messages,
+     * ie the container started its transaction and it can still be committed.
+     */
+    public boolean isBatchable() {
+        final ThreadContext callContext = ThreadContext.getThreadContext();
+        if (callContext == null || transactionManager == null) {
+            return false;
+        }
+
+        final MdbCallContext mdbCallContext = callContext.get(MdbCallContext.class);
+        return mdbCallContext != null && mdbCallContext.txPolicy.isNewTransaction()
+                && mdbCallContext.txPolicy.isTransactionActive() && !mdbCallContext.txPolicy.isRollbackOnly();
+    }
+
+    /**
+     * Detaches the delivery in progress (transaction and call context) from the current thread
+     * without completing it.
+     *
+     * @return the suspended delivery to give back to {@link #resumeDelivery(Object, Method)}
+     */
+    public Object suspendDelivery() throws SystemException {
+        final ThreadContext callContext = ThreadContext.getThreadContext();
+        final MdbCallContext mdbCallContext = callContext.get(MdbCallContext.class);
+
+        final Transaction transaction;
+        try {
+            transaction = transactionManager.suspend();
+        } catch (final javax.transaction.SystemException e) {
+            throw new SystemException("Unable to suspend the delivery transaction", e);
+        }
+
+        ThreadContext.exit(mdbCallContext.oldCallContext);
+        return new SuspendedDelivery(callContext, transaction);
+    }
+
+    /**
+     * Attaches back a delivery suspended by {@link #suspendDelivery()} to the current thread.
+     * If it can't be resumed the delivery transaction is rolled back.
+     *
+     * @param method the next delivery method or null if the delivery is just completed
+     */
+    public void resumeDelivery(final Object suspended, final Method method) throws SystemException {
+        final SuspendedDelivery delivery = (SuspendedDelivery) suspended;
+
+        final ThreadContext oldContext = ThreadContext.enter(delivery.callContext);
+        final MdbCallContext mdbCallContext = delivery.callContext.get(MdbCallContext.class);
+        mdbCallContext.oldCallContext = oldContext;
+        if (method != null) {
+            mdbCallContext.deliveryMethod = method;
+        }
+
+        try {
+            transactionManager.resume(delivery.transaction);
+        } catch (final Exception e) {
+            ThreadContext.exit(oldContext);
+            try {
+                delivery.transaction.rollback();
+            } catch (final Exception ignored) {
+                // no-op
+            }
+            throw new SystemException("Unable to resume the delivery transaction", e);
+        }
+    }
+
     public void release(final BeanContext deployInfo, final Object instance) {
         // get the mdb call context
         ThreadContext callContext = ThreadContext.getThreadContext();
@@ -460,10 +562,8 @@ public class MdbContainer implements RpcContainer {
                     afterInvoke(mdbCallContext.txPolicy, callContext);
                 } catch (final Exception e) {
                     logger.error("error while releasing message endpoint", e);
-                } finally {
-                    final EndpointFactory endpointFactory = (EndpointFactory) deployInfo.getContainerData();
-                    endpointFactory.getInstanceFactory().freeInstance((Instance) instance, false);
                 }
+                // the instance is freed by the endpoint itself, freeing it here too would pool it twice
             }
         } finally {
             if (contextExitRequired) {
@@ -477,4 +577,14 @@ public class MdbContainer implements RpcContainer {
         private TransactionPolicy txPolicy;
         private ThreadContext oldCallContext;
     }
+
+    private static class SuspendedDelivery {
+        private final ThreadContext callContext;
+        private final Transaction transaction;
+
+        private SuspendedDelivery(final ThreadContext callContext, final Transaction transaction) {
+            this.callContext = callContext;
+            this.transaction = transaction;
+        }
+    }
 }
@@ -40,14 +40,17 @@ import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A MdbInstanceFactory creates instances of message driven beans for a single instance. This class differs from other
- * instance managers in OpenEJB as it doesn't do pooling and it creates instances for only a single EJB deployment.
+ * instance managers in OpenEJB as it creates instances for only a single EJB deployment.
  * </p>
- * The MdbContainer assumes that the resouce adapter is pooling message endpoints so a second level of pooling in the
- * container would be inefficient.  This is true of all known resouce adapters in opensource (ActiveMQ), so if this is
- * a poor assumption for your resource adapter, contact the OpenEJB developers.
+ * The MdbContainer assumes that the resouce adapter is pooling message endpoints but resource adapters tend to release
+ * endpoints once idle so freed instances are kept in a small pool of constructed instances (at most maxIdle) and reused
+ * by the next endpoint instead of being destroyed and built again.
  * </p>
  * This class can optionally limit the number of bean instances and therefore the message endpoints available to the
  * resource adapter.
@@ -57,8 +60,12 @@ public class MdbInstanceFactory {
 
     private final BeanContext beanContext;
     private final int instanceLimit;
-    private int instanceCount;
+    private final int maxIdle;
+    private final AtomicInteger instanceCount = new AtomicInteger();
+    private final AtomicInteger idleCount = new AtomicInteger();
+    private final Queue<Instance> idle = new ConcurrentLinkedQueue<Instance>();
     private final MdbContext mdbContext;
+    private volatile boolean destroyed;
 
     /**
      * Creates a MdbInstanceFactory for a single specific deployment.
@@ -68,8 +75,21 @@ public class MdbInstanceFactory {
      * @param instanceLimit   the maximal number of instances or <= 0 if unlimited
      */
     public MdbInstanceFactory(final BeanContext beanContext, final SecurityService securityService, final int instanceLimit) throws OpenEJBException {
+        this(beanContext, securityService, instanceLimit, instanceLimit > 0 ? instanceLimit : 10);
+    }
+
+    /**
+     * Creates a MdbInstanceFactory for a single specific deployment.
+     *
+     * @param beanContext  the deployment for which instances will be created
+     * @param securityService the transaction manager for this container system
+     * @param instanceLimit   the maximal number of instances or <= 0 if unlimited
+     * @param maxIdle         the maximal number of freed instances kept for reuse, <= 0 to disable the pooling
+     */
+    public MdbInstanceFactory(final BeanContext beanContext, final SecurityService securityService, final int instanceLimit, final int maxIdle) throws OpenEJBException {
         this.beanContext = beanContext;
         this.instanceLimit = instanceLimit;
+        this.maxIdle = instanceLimit > 0 ? Math.min(maxIdle, instanceLimit) : maxIdle;
         mdbContext = new MdbContext(securityService);
 
         try {
@@ -97,8 +117,17 @@ public class MdbInstanceFactory {
      *
      * @return the current number of instances created
      */
-    public synchronized int getInstanceCount() {
-        return instanceCount;
+    public int getInstanceCount() {
+        return instanceCount.get();
+    }
+
+    /**
+     * Gets the current number of constructed instances waiting to be reused.
+     *
+     * @return the current number of pooled instances
+     */
+    public int getIdleCount() {
+        return idleCount.get();
     }
 
     /**
@@ -111,25 +140,33 @@ public class MdbInstanceFactory {
      */
     public Object createInstance(final boolean ignoreInstanceCount) throws UnavailableException {
         if (!ignoreInstanceCount) {
-            synchronized (this) {
+            while (true) {
+                final int count = instanceCount.get();
                 // check the instance limit
-                if (instanceLimit > 0 && instanceCount >= instanceLimit) {
+                if (instanceLimit > 0 && count >= instanceLimit) {
                     throw new UnavailableException("Only " + instanceLimit + " instances can be created");
                 }
                 // increment the instance count
-                instanceCount++;
+                if (instanceCount.compareAndSet(count, count + 1)) {
+                    break;
+                }
             }
         }
 
+        final Instance pooled = idle.poll();
+        if (pooled != null) {
+            idleCount.decrementAndGet();
+            pooled.free.set(false);
+            return pooled;
+        }
+
         try {
             final Object bean = constructBean();
             return bean;
         } catch (final UnavailableException e) {
             // decrement the instance count
             if (!ignoreInstanceCount) {
-                synchronized (this) {
-                    instanceCount--;
-                }
+                instanceCount.decrementAndGet();
             }
 
             throw e;
@@ -137,9 +174,10 @@ public class MdbInstanceFactory {
     }
 
     /**
-     * Frees an instance no longer needed by the resource adapter.  This method makes all the necessary lifecycle
-     * callbacks and decrements the instance count.  This method should not be used to disposed of beans that have
+     * Frees an instance no longer needed by the resource adapter.  This method decrements the instance count and
+     * either keeps the instance for reuse or makes all the necessary lifecycle callbacks if the pool is full.  This method should not be used to disposed of beans that have
      * thrown a system exception.  Instead the discardInstance method should be called.
+     * Freeing an instance twice is ignored.
      *
      * @param instance             the bean instance to free
      * @param ignoredInstanceCount
@@ -148,14 +186,64 @@ public class MdbInstanceFactory {
         if (instance == null) {
             throw new NullPointerException("bean is null");
         }
+        if (!instance.free.compareAndSet(false, true)) {
+            logger.warning("The bean instance " + instance.bean + " of " + beanContext.getDeploymentID() + " was already freed");
+            return;
+        }
 
         // decrement the instance count
         if (!ignoredInstanceCount) {
-            synchronized (this) {
-                instanceCount--;
+            instanceCount.decrementAndGet();
+        }
+
+        if (!destroyed) {
+            // keep it for the next endpoint if the pool is not full
+            if (idleCount.incrementAndGet() <= maxIdle) {
+                idle.add(instance);
+                if (destroyed) { // undeployed meanwhile, nobody would destroy it
+                    destroyIdleInstances();
+                }
+                return;
+            }
+            idleCount.decrementAndGet();
+
+            destroyInstance(instance);
+            return;
+        }
+
+        // released by the resource adapter after the undeployment
+        final ThreadContext oldContext = ThreadContext.enter(new ThreadContext(beanContext, null, Operation.PRE_DESTROY));
+        try {
+            destroyInstance(instance);
+        } finally {
+            ThreadContext.exit(oldContext);
+        }
+    }
+
+    /**
+     * Destroys the pooled instances, used when the deployment is undeployed. The instances freed later are destroyed
+     * instead of being pooled.
+     */
+    public void destroy() {
+        destroyed = true;
+        destroyIdleInstances();
+    }
+
+    private void destroyIdleInstances() {
+        final ThreadContext callContext = new ThreadContext(beanContext, null, Operation.PRE_DESTROY);
+        final ThreadContext oldContext = ThreadContext.enter(callContext);
+        try {
+            Instance instance;
+            while ((instance = idle.poll()) != null) {
+                idleCount.decrementAndGet();
+                destroyInstance(instance);
             }
+        } finally {
+            ThreadContext.exit(oldContext);
         }
+    }
 
+    private void destroyInstance(final Instance instance) {
         final ThreadContext callContext = ThreadContext.getThreadContext();
         
         final Operation originalOperation = callContext == null ? null : callContext.getCurrentOperation();
@@ -52,6 +52,7 @@ import java.util.Properties;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * This security service chooses a UUID as its token as this can be serialized
@@ -141,21 +142,21 @@ public abstract class AbstractSecurityService implements SecurityService<UUID>,
         final String moduleID = newContext.getBeanContext().getModuleID();
         PolicyContext.setContextID(moduleID);
 
-        Subject runAsSubject = getRunAsSubject(newContext.getBeanContext());
-        if (oldContext != null && runAsSubject == null) {
-            runAsSubject = getRunAsSubject(oldContext.getBeanContext());
+        SecurityContext runAsContext = getRunAsContext(newContext.getBeanContext());
+        if (oldContext != null && runAsContext == null) {
+            runAsContext = getRunAsContext(oldContext.getBeanContext());
         }
 
         SecurityContext securityContext = oldContext != null ? oldContext.get(SecurityContext.class) : null;
-        if (runAsSubject != null) {
+        if (runAsContext != null) {
 
-            securityContext = new SecurityContext(runAsSubject);
+            securityContext = runAsContext;
 
         } else if (securityContext == null) {
 
             final Identity identity = clientIdentity.get();
             if (identity != null) {
-                securityContext = new SecurityContext(identity.subject);
+                securityContext = identity.getSecurityContext();
             } else {
                 securityContext = defaultContext;
             }
@@ -168,7 +169,33 @@ public abstract class AbstractSecurityService implements SecurityService<UUID>,
         if (callingBeanContext == null) {
             return null;
         }
-        return createRunAsSubject(callingBeanContext.getRunAsUser(), callingBeanContext.getRunAs());
+        return getRunAs(callingBeanContext).subject;
+    }
+
+    // the run-as identity of a bean never changes so its subject and security context are created once
+    private RunAs getRunAs(final BeanContext beanContext) {
+        RunAs runAs = beanContext.get(RunAs.class);
+        if (runAs == null) {
+            runAs = new RunAs(createRunAsSubject(beanContext.getRunAsUser(), beanContext.getRunAs()));
+            beanContext.set(RunAs.class, runAs);
+        }
+        return runAs;
+    }
+
+    private SecurityContext getRunAsContext(final BeanContext beanContext) {
+        final Subject runAsSubject = getRunAsSubject(beanContext);
+        if (runAsSubject == null) {
+            return null;
+        }
+
+        if (beanContext != null) {
+            final RunAs runAs = getRunAs(beanContext);
+            if (runAs.subject == runAsSubject) {
+                return runAs.securityContext;
+            }
+        }
+        // a run-as subject not owned by the bean (from a subclass), short lived so decisions are not cached
+        return new SecurityContext(runAsSubject, false);
     }
 
     protected Subject createRunAsSubject(final String runAsUser, final String runAsRole) {
@@ -288,13 +315,28 @@ public abstract class AbstractSecurityService implements SecurityService<UUID>,
             if(currentIdentity == null) {
                 securityContext= threadContext.get(SecurityContext.class);
             } else {
-                securityContext = new SecurityContext(currentIdentity.getSubject());
+                securityContext = currentIdentity.getSecurityContext();
+            }
+
+            if (!securityContext.cacheable || !isDecisionCacheable()) {
+                securityContext.acc.checkPermission(new EJBMethodPermission(ejbName, name, method));
+                return true;
+            }
+
+            AuthorizationCache cache = beanContext.get(AuthorizationCache.class);
+            if (cache == null) {
+                cache = new AuthorizationCache();
+                beanContext.set(AuthorizationCache.class, cache);
             }
-            securityContext.acc.checkPermission(new EJBMethodPermission(ejbName, name, method));
+            return cache.isAuthorized(securityContext, ejbName, name, method);
         } catch (final AccessControlException e) {
             return false;
         }
-        return true;
+    }
+
+    // decisions only depend on the policy configurations when our own policy is used
+    private static boolean isDecisionCacheable() {
+        return Policy.getPolicy() instanceof JaccProvider.Policy && JaccProvider.get() instanceof BasicJaccProvider;
     }
 
     protected static void installJacc() {
@@ -364,10 +406,17 @@ public abstract class AbstractSecurityService implements SecurityService<UUID>,
 
         public final Subject subject;
         public final AccessControlContext acc;
+        // false for short lived contexts, authorization decisions are then not cached
+        public final boolean cacheable;
 
-        @SuppressWarnings("unchecked")
         public SecurityContext(final Subject subject) {
+            this(subject, true);
+        }
+
+        @SuppressWarnings("unchecked")
+        public SecurityContext(final Subject subject, final boolean cacheable) {
             this.subject = subject;
+            this.cacheable = cacheable;
             this.acc = (AccessControlContext) Subject.doAsPrivileged(subject, new PrivilegedAction() {
                 @Override
                 public Object run() {
@@ -382,6 +431,8 @@ public abstract class AbstractSecurityService implements SecurityService<UUID>,
         private final Subject subject;
         private final UUID token;
 
+        private transient volatile SecurityContext securityContext;
+
         public Identity(final Subject subject) {
             this.subject = subject;
             this.token = UUID.randomUUID();
@@ -399,6 +450,100 @@ public abstract class AbstractSecurityService implements SecurityService<UUID>,
         public UUID getToken() {
             return token;
         }
+
+        // created once to avoid to build an AccessControlContext for each invocation
+        protected SecurityContext getSecurityContext() {
+            SecurityContext context = securityContext;
+            if (context == null) {
+                context = new SecurityContext(subject);
+                securityContext = context;
+            }
+            return context;
+        }
+    }
+
+    private static final class RunAs {
+        private final Subject subject;
+        private final SecurityContext securityContext;
+
+        private RunAs(final Subject subject) {
+            this.subject = subject;
+            this.securityContext = subject == null ? null : new SecurityContext(subject);
+        }
+    }
+
+    /**
+     * Per bean cache of the authorization decisions keyed by security context and method.
+     * It is reset when a policy configuration changes and when it grows too much
+     * (security contexts are created per login).
+     */
+    protected static class AuthorizationCache {
+        private static final int MAX_SIZE = 4096;
+
+        private final ConcurrentMap<AuthorizationKey, Boolean> decisions = new ConcurrentHashMap<AuthorizationKey, Boolean>();
+        private volatile long version = -1;
+
+        public boolean isAuthorized(final SecurityContext securityContext, final String ejbName, final String name, final Method method) {
+            final long currentVersion = BasicPolicyConfiguration.getModificationCount();
+            if (currentVersion != version || decisions.size() > MAX_SIZE) {
+                decisions.clear();
+                version = currentVersion;
+            }
+
+            final AuthorizationKey key = new AuthorizationKey(securityContext, name, method);
+            Boolean decision = decisions.get(key);
+            if (decision == null) {
+                try {
+                    securityContext.acc.checkPermission(new EJBMethodPermission(ejbName, name, method));
+                    decision = Boolean.TRUE;
+                } catch (final AccessControlException e) {
+                    decision = Boolean.FALSE;
+                }
+
+                if (currentVersion == BasicPolicyConfiguration.getModificationCount()) {
+                    decisions.put(key, decision);
+                }
+            }
+            return decision;
+        }
+    }
+
+    private static final class AuthorizationKey {
+        private final SecurityContext securityContext;
+        private final String name;
+        private final Method method;
+        private final int hash;
+
+        private AuthorizationKey(final SecurityContext securityContext, final String name, final Method method) {
+            this.securityContext = securityContext;
+            this.name = name;
+            this.method = method;
+
+            int result = System.identityHashCode(securityContext);
+            result = 31 * result + (name != null ? name.hashCode() : 0);
+            result = 31 * result + method.hashCode();
+            hash = result;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+
+            final AuthorizationKey that = (AuthorizationKey) o;
+            return securityContext == that.securityContext
+                    && (name != null ? name.equals(that.name) : that.name == null)
+                    && method.equals(that.method);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
     }
 
     public static class Group implements java.security.acl.Group {
@@ -30,6 +30,7 @@ import java.util.Enumeration;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * @version $Rev$ $Date$
@@ -39,6 +40,8 @@ public class BasicPolicyConfiguration implements PolicyConfiguration {
     static final int IN_SERVICE = 2;
     static final int DELETED = 3;
 
+    private static final AtomicLong MODIFICATIONS = new AtomicLong();
+
     private final String contextID;
     private int state;
     protected final Map<String, PermissionCollection> rolePermissionsMap = new LinkedHashMap<String, PermissionCollection>();
@@ -50,6 +53,17 @@ public class BasicPolicyConfiguration implements PolicyConfiguration {
         this.state = OPEN;
     }
 
+    /**
+     * @return a counter incremented each time any policy configuration changes, used to invalidate cached decisions
+     */
+    public static long getModificationCount() {
+        return MODIFICATIONS.get();
+    }
+
+    protected static void modified() {
+        MODIFICATIONS.incrementAndGet();
+    }
+
     public String getContextID() throws PolicyContextException {
         return contextID;
     }
@@ -105,6 +119,7 @@ public class BasicPolicyConfiguration implements PolicyConfiguration {
             rolePermissionsMap.put(roleName, permissions);
         }
         permissions.add(permission);
+        modified();
     }
 
     public void addToUncheckedPolicy(final PermissionCollection permissions) throws PolicyContextException {
@@ -128,6 +143,7 @@ public class BasicPolicyConfiguration implements PolicyConfiguration {
         }
 
         unchecked.add(permission);
+        modified();
     }
 
     public void addToExcludedPolicy(final PermissionCollection permissions) throws PolicyContextException {
@@ -151,6 +167,7 @@ public class BasicPolicyConfiguration implements PolicyConfiguration {
         }
 
         excluded.add(permission);
+        modified();
     }
 
     public void removeRole(final String roleName) throws PolicyContextException {
@@ -159,6 +176,7 @@ public class BasicPolicyConfiguration implements PolicyConfiguration {
         }
 
         rolePermissionsMap.remove(roleName);
+        modified();
     }
 
     public void removeUncheckedPolicy() throws PolicyContextException {
@@ -167,6 +185,7 @@ public class BasicPolicyConfiguration implements PolicyConfiguration {
         }
 
         unchecked = null;
+        modified();
     }
 
     public void removeExcludedPolicy() throws PolicyContextException {
@@ -175,6 +194,7 @@ public class BasicPolicyConfiguration implements PolicyConfiguration {
         }
 
         excluded = null;
+        modified();
     }
 
     public void linkConfiguration(final PolicyConfiguration link) throws PolicyContextException {
@@ -185,6 +205,7 @@ public class BasicPolicyConfiguration implements PolicyConfiguration {
 
     public void delete() throws PolicyContextException {
         state = DELETED;
+        modified();
     }
 
     public void commit() throws PolicyContextException {
@@ -192,6 +213,7 @@ public class BasicPolicyConfiguration implements PolicyConfiguration {
             throw new UnsupportedOperationException("Not in an open state");
         }
         state = IN_SERVICE;
+        modified();
     }
 
     public boolean inService() throws PolicyContextException {
@@ -210,6 +232,7 @@ public class BasicPolicyConfiguration implements PolicyConfiguration {
             excluded = null;
         }
         state = OPEN;
+        modified();
     }
 
     int getState() {
@@ -157,7 +157,7 @@ public class SingletonInstanceManager {
         for (final String dependencyId : beanContext.getDependsOn()) {
             final BeanContext dependencyContext = containerSystem.getBeanContext(dependencyId);
             if (dependencyContext == null) {
-                throw new OpenEJBException("Deployment does not exist. Deployment(id='"+dependencyContext+"')");
+                throw new OpenEJBException("Deployment does not exist. Deployment(id='"+dependencyId+"')");
             }
 
             final Object containerData = dependencyContext.getContainerData();
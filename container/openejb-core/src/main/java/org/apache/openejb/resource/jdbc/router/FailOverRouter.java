@@ -46,9 +46,11 @@ public class FailOverRouter extends AbstractRouter {
     private static final Logger LOGGER = Logger.getInstance(LogCategory.OPENEJB_SERVER, FailOverRouter.class);
 
     public static final String DEFAULT_STRATEGY = "default";
+    public static final String LEAST_LATENCY_STRATEGY = "least-latency";
 
     private final AtomicReference<DataSource> facade = new AtomicReference<DataSource>();
     private final Collection<DataSource> dataSources = new CopyOnWriteArrayList<DataSource>();
+    private final LatencyTracker latencyTracker = new LatencyTracker();
 
     private String delimiter = ",";
     private String strategy = DEFAULT_STRATEGY;
@@ -78,6 +80,18 @@ public class FailOverRouter extends AbstractRouter {
         initFacade();
     }
 
+    public void setEjectionThreshold(final int ejectionThreshold) {
+        latencyTracker.setEjectionThreshold(ejectionThreshold);
+    }
+
+    public void setEjectionBackoff(final long ejectionBackoff) {
+        latencyTracker.setEjectionBackoff(ejectionBackoff);
+    }
+
+    public void setMaxEjectionBackoff(final long maxEjectionBackoff) {
+        latencyTracker.setMaxEjectionBackoff(maxEjectionBackoff);
+    }
+
     private void initDataSources() {
         dataSources.clear();
         for (final String ds : datasourceNames.split(Pattern.quote(delimiter))) {
@@ -107,15 +121,20 @@ public class FailOverRouter extends AbstractRouter {
             clazz = XADataSource.class;
         }
 
+        latencyTracker.retain(dataSources);
         facade.set(DataSource.class.cast(Proxy.newProxyInstance(
                 Thread.currentThread().getContextClassLoader(),
-                new Class<?>[]{ clazz }, new FacadeHandler(dataSources, strategy))));
+                new Class<?>[]{ clazz }, new FacadeHandler(dataSources, strategy, latencyTracker))));
     }
 
     public Collection<DataSource> getDataSources() {
         return dataSources;
     }
 
+    public LatencyTracker getLatencyTracker() {
+        return latencyTracker;
+    }
+
     public void updateDataSources(final Collection<DataSource> ds) {
         dataSources.clear();
         dataSources.addAll(ds);
@@ -128,11 +147,13 @@ public class FailOverRouter extends AbstractRouter {
 
         private final Collection<DataSource> delegates;
         private final String strategy;
+        private final LatencyTracker latencyTracker;
         private final AtomicInteger currentIdx = new AtomicInteger(0); // used by some strategies
 
-        public FacadeHandler(final Collection<DataSource> dataSources, final String strategy) {
+        public FacadeHandler(final Collection<DataSource> dataSources, final String strategy, final LatencyTracker latencyTracker) {
             this.delegates = dataSources;
             this.strategy = strategy;
+            this.latencyTracker = LEAST_LATENCY_STRATEGY.equals(strategy) ? latencyTracker : null;
         }
 
         @Override
@@ -161,7 +182,13 @@ public class FailOverRouter extends AbstractRouter {
             }
 
             int ex = 0;
-            final Collection<DataSource> sources = sortFollowingStrategy(strategy, delegates, currentIdx);
+            final LatencyTracker tracker = "getConnection".equals(method.getName()) ? latencyTracker : null;
+            final Collection<DataSource> sources;
+            if (tracker != null) {
+                sources = tracker.sort(delegates);
+            } else {
+                sources = sortFollowingStrategy(strategy, delegates, currentIdx);
+            }
             final int size = sources.size();
 
             Object out = null;
@@ -171,7 +198,11 @@ public class FailOverRouter extends AbstractRouter {
                     if (set) { // set on all datasources because of failover which can happen
                         method.invoke(ds, args);
                     } else { // getConnection methods are here
+                        final long start = System.nanoTime();
                         out = method.invoke(ds, args);
+                        if (tracker != null) {
+                            tracker.success(ds, System.nanoTime() - start);
+                        }
                     }
 
                     if (transaction != null) { // if a tx is in progress save the datasource to use for the tx
@@ -183,6 +214,9 @@ public class FailOverRouter extends AbstractRouter {
                         break;
                     }
                 } catch (final InvocationTargetException ite) {
+                    if (tracker != null) {
+                        tracker.failure(ds);
+                    }
                     ex++;
                     if (ex == size) { // all failed so throw the exception
                         throw ite.getCause();
@@ -0,0 +1,219 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.openejb.resource.jdbc.router;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps connection acquisition latency and error statistics per datasource
+ * and uses them to order the datasources of a {@link FailOverRouter}.
+ *
+ * Healthy datasources are ordered by a latency weighted random pick (lower latency means more chances
+ * to be first), then by latency. A datasource failing {@code ejectionThreshold} times in a row
+ * is ejected for an exponentially growing backoff. Once the backoff is elapsed it
+ * is probed first by a single caller: a success re-admits it, a failure ejects it for a longer time.
+ * Ejected datasources are still used as a last resort when all others failed.
+ */
+public class LatencyTracker {
+    private static final double EWMA_WEIGHT = 0.2;
+
+    private final Map<DataSource, Health> health = new IdentityHashMap<DataSource, Health>();
+    private final Random random = new Random();
+
+    private volatile int ejectionThreshold = 3;
+    private volatile long ejectionBackoff = TimeUnit.SECONDS.toNanos(1);
+    private volatile long maxEjectionBackoff = TimeUnit.MINUTES.toNanos(1);
+
+    public void setEjectionThreshold(final int ejectionThreshold) {
+        this.ejectionThreshold = Math.max(1, ejectionThreshold);
+    }
+
+    public void setEjectionBackoff(final long ejectionBackoff) {
+        this.ejectionBackoff = TimeUnit.MILLISECONDS.toNanos(Math.max(1, ejectionBackoff));
+    }
+
+    public void setMaxEjectionBackoff(final long maxEjectionBackoff) {
+        this.maxEjectionBackoff = TimeUnit.MILLISECONDS.toNanos(Math.max(1, maxEjectionBackoff));
+    }
+
+    public Health health(final DataSource ds) {
+        synchronized (health) {
+            Health h = health.get(ds);
+            if (h == null) {
+                h = new Health();
+                health.put(ds, h);
+            }
+            return h;
+        }
+    }
+
+    public void retain(final Collection<DataSource> dataSources) {
+        synchronized (health) {
+            health.keySet().retainAll(Collections.newSetFromMap(identityMap(dataSources)));
+        }
+    }
+
+    public List<DataSource> sort(final Collection<DataSource> delegates) {
+        final long now = System.nanoTime();
+        final List<Scored> available = new ArrayList<Scored>(delegates.size());
+        final List<DataSource> probes = new ArrayList<DataSource>();
+        final List<DataSource> ejected = new ArrayList<DataSource>();
+        for (final DataSource ds : delegates) {
+            final Health h = health(ds);
+            if (!h.isEjected()) {
+                available.add(new Scored(ds, h.score()));
+            } else if (h.acquireProbe(now)) {
+                probes.add(ds);
+            } else {
+                ejected.add(ds);
+            }
+        }
+
+        final List<DataSource> sorted = new ArrayList<DataSource>(delegates.size());
+        sorted.addAll(probes); // probes first to ensure they get a result
+        if (!available.isEmpty()) {
+            Collections.sort(available, ScoreComparator.INSTANCE);
+            final Scored first = pick(available);
+            sorted.add(first.dataSource);
+            for (final Scored s : available) {
+                if (s != first) {
+                    sorted.add(s.dataSource);
+                }
+            }
+        }
+        sorted.addAll(ejected);
+        return sorted;
+    }
+
+    public void success(final DataSource ds, final long latency) {
+        health(ds).success(latency);
+    }
+
+    public void failure(final DataSource ds) {
+        health(ds).failure(System.nanoTime(), ejectionThreshold, ejectionBackoff, maxEjectionBackoff);
+    }
+
+    private Scored pick(final List<Scored> sorted) {
+        if (sorted.size() == 1 || sorted.get(0).score <= 0) { // never measured datasources are tried first
+            return sorted.get(0);
+        }
+
+        double total = 0;
+        for (final Scored s : sorted) {
+            total += 1. / s.score;
+        }
+
+        double r;
+        synchronized (random) {
+            r = random.nextDouble() * total;
+        }
+        for (final Scored s : sorted) {
+            r -= 1. / s.score;
+            if (r <= 0) {
+                return s;
+            }
+        }
+        return sorted.get(0);
+    }
+
+    private static Map<DataSource, Boolean> identityMap(final Collection<DataSource> dataSources) {
+        final Map<DataSource, Boolean> map = new IdentityHashMap<DataSource, Boolean>();
+        for (final DataSource ds : dataSources) {
+            map.put(ds, Boolean.TRUE);
+        }
+        return map;
+    }
+
+    public static class Health {
+        private final AtomicInteger consecutiveErrors = new AtomicInteger();
+        private final AtomicInteger ejections = new AtomicInteger();
+        private final AtomicLong ejectedUntil = new AtomicLong(0);
+        private volatile double latency = -1;
+
+        public double getLatency() {
+            return latency;
+        }
+
+        public int getConsecutiveErrors() {
+            return consecutiveErrors.get();
+        }
+
+        public boolean isEjected() {
+            return ejections.get() > 0;
+        }
+
+        private double score() {
+            final double l = latency;
+            if (l < 0) {
+                return 0;
+            }
+            return Math.max(1., l) * (1 + consecutiveErrors.get());
+        }
+
+        // only one caller gets the probe once the backoff is elapsed
+        private boolean acquireProbe(final long now) {
+            final long until = ejectedUntil.get();
+            return now - until >= 0 && ejectedUntil.compareAndSet(until, now + TimeUnit.SECONDS.toNanos(30)); // probe window
+        }
+
+        private void success(final long duration) {
+            final double l = latency;
+            latency = l < 0 ? duration : l + EWMA_WEIGHT * (duration - l);
+            consecutiveErrors.set(0);
+            ejections.set(0);
+            ejectedUntil.set(0);
+        }
+
+        private void failure(final long now, final int threshold, final long backoff, final long maxBackoff) {
+            if (consecutiveErrors.incrementAndGet() >= threshold) {
+                final int times = Math.min(30, ejections.getAndIncrement());
+                ejectedUntil.set(now + Math.min(maxBackoff, backoff << times));
+            }
+        }
+    }
+
+    private static class Scored {
+        private final DataSource dataSource;
+        private final double score;
+
+        private Scored(final DataSource dataSource, final double score) {
+            this.dataSource = dataSource;
+            this.score = score;
+        }
+    }
+
+    private static class ScoreComparator implements Comparator<Scored> {
+        private static final ScoreComparator INSTANCE = new ScoreComparator();
+
+        @Override
+        public int compare(final Scored o1, final Scored o2) {
+            return Double.compare(o1.score, o2.score);
+        }
+    }
+}
@@ -19,6 +19,7 @@ package org.apache.openejb.util;
 
 import java.io.File;
 import java.io.Serializable;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -42,6 +43,8 @@ public class DirectoryMonitor {
 
     private final Timer timer;
 
+    private DirectoryWatcher watcher;
+
     public DirectoryMonitor(final File target, final Listener listener, final long pollIntervalMillis) {
         assert listener == null : "No listener specified";
         assert target.isDirectory() : "File specified is not a directory. " + target.getAbsolutePath();
@@ -74,11 +77,30 @@ public class DirectoryMonitor {
 
     public synchronized void stop() {
         timer.cancel();
+        if (watcher != null) {
+            watcher.stop();
+        }
     }
 
     public void start() {
         initialize();
 
+        watcher = DirectoryWatcher.watch(getClass().getSimpleName(), Collections.singleton(target), true, new DirectoryWatcher.Callback() {
+            @Override
+            public boolean changed() {
+                try {
+                    return doScan();
+                } catch (final Exception e) {
+                    getLogger().error("Scan failed.", e);
+                    return false;
+                }
+            }
+        });
+        if (watcher != null) {
+            getLogger().debug("Scanner running.  Watching " + target.getAbsolutePath() + " for changes.");
+            return;
+        }
+
         getLogger().debug("Scanner running.  Polling every " + pollIntervalMillis + " milliseconds.");
 
         timer.scheduleAtFixedRate(new TimerTask() {
@@ -133,6 +155,14 @@ public class DirectoryMonitor {
      * Looks for changes to the immediate contents of the directory we're watching.
      */
     public void scan() {
+        doScan();
+    }
+
+    /**
+     * @return true if some files were discovered or are still changing, another scan is needed to see them stable
+     */
+    private synchronized boolean doScan() {
+        boolean settling = false;
 
         final File[] files = target.isDirectory() ? target.listFiles() : new File[]{target};
 
@@ -157,10 +187,12 @@ public class DirectoryMonitor {
                     // Brand new, but assume it's changing and
                     // wait a bit to make sure it's not still changing
                     getLogger().debug("File Discovered: " + newStatus);
+                    settling = true;
                 } else if (newStatus.isChanging()) {
                     // The two records are different -- record the latest as a file that's changing
                     // and later when it stops changing we'll do the add or update as appropriate.
                     getLogger().debug("File Changing: " + newStatus);
+                    settling = true;
                 } else if (oldStatus.isNewFile()) {
                     // Used to be changing, now in (hopefully) its final state
                     getLogger().info("New File: " + newStatus);
@@ -183,6 +215,7 @@ public class DirectoryMonitor {
                 this.files.remove(path);
             }
         }
+        return settling;
     }
 
     private FileInfo oldInfo(final File file) {
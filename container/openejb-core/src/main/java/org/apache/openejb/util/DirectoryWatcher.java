@@ -0,0 +1,364 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.util;
+
+import org.apache.openejb.loader.Options;
+import org.apache.openejb.loader.SystemInstance;
+
+import java.io.File;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Event driven replacement of the polling timers (hot deployment, synchronization...) based on the
+ * java.nio.file.WatchService of Java 7, used through reflection since we still run on Java 6.
+ *
+ * Directories are watched with all their sub directories, a file is watched through its parent directory.
+ * Bursts of events are coalesced: the callback is only invoked once no event was received during the
+ * quiet period. If the callback returns true (files still changing) it is invoked again after another quiet
+ * period even without any new event.
+ *
+ * {@link #watch(String, Collection, long, boolean, Callback)} returns null when the JVM or the file system
+ * can't watch the roots (Java 6, polling WatchService implementation, network file systems...),
+ * callers then keep their timer.
+ *
+ * In the container openejb.watch=false forces the polling and openejb.watch.quiet-period (default 500 milliseconds)
+ * configures the quiet period.
+ */
+public final class DirectoryWatcher {
+    private static final Logger LOGGER = Logger.getInstance(LogCategory.OPENEJB_DEPLOY, DirectoryWatcher.class);
+
+    public static final String OPENEJB_WATCH = "openejb.watch";
+    public static final String OPENEJB_WATCH_QUIET_PERIOD = "openejb.watch.quiet-period";
+
+    private static final Collection<String> REMOTE_FILE_STORES = new HashSet<String>(Arrays.asList(
+        "nfs", "nfs4", "cifs", "smbfs", "fuse.sshfs", "afs", "webdav"));
+
+    private final Object watchService;
+    private final Map<Object, Boolean> keys = new HashMap<Object, Boolean>(); // key -> recursive
+    private final long quietPeriodMillis;
+    private final boolean initialPass;
+    private final Callback callback;
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    private DirectoryWatcher(final String name, final Object watchService, final long quietPeriodMillis,
+                             final boolean initialPass, final Callback callback) {
+        this.watchService = watchService;
+        this.quietPeriodMillis = quietPeriodMillis;
+        this.initialPass = initialPass;
+        this.callback = callback;
+        this.thread = new DaemonThreadFactory(name).newThread(new Runnable() {
+            @Override
+            public void run() {
+                loop();
+            }
+        });
+    }
+
+    /**
+     * {@link #watch(String, Collection, long, boolean, Callback)} with the container configuration.
+     *
+     * @return the started watcher or null if deactivated or if the roots can't be watched
+     */
+    public static DirectoryWatcher watch(final String name, final Collection<File> roots, final boolean initialPass, final Callback callback) {
+        final Options options = SystemInstance.get().getOptions();
+        if (!options.get(OPENEJB_WATCH, true)) {
+            return null;
+        }
+
+        final Duration quietPeriod = options.get(OPENEJB_WATCH_QUIET_PERIOD, new Duration(500, TimeUnit.MILLISECONDS));
+        if (quietPeriod.getUnit() == null) {
+            quietPeriod.setUnit(TimeUnit.MILLISECONDS);
+        }
+        return watch(name, roots, quietPeriod.getUnit().toMillis(quietPeriod.getTime()), initialPass, callback);
+    }
+
+    /**
+     * @param name              the watcher thread name
+     * @param roots             directories (watched recursively) or files (watched through their parent)
+     * @param quietPeriodMillis how long to wait without event before invoking the callback
+     * @param initialPass       true to invoke the callback once after the first quiet period, as a first poll would do
+     * @param callback          what to do once changes happened
+     * @return the started watcher or null if the roots can't be watched
+     */
+    public static DirectoryWatcher watch(final String name, final Collection<File> roots, final long quietPeriodMillis,
+                                         final boolean initialPass, final Callback callback) {
+        if (!Nio.AVAILABLE || roots.isEmpty()) {
+            return null;
+        }
+
+        final Object watchService;
+        try {
+            watchService = Nio.newWatchService();
+        } catch (final Exception e) {
+            LOGGER.debug("Can't create a WatchService: " + e.getMessage());
+            return null;
+        }
+        if (watchService.getClass().getName().endsWith(".PollingWatchService")) { // no native support, our timers are better
+            Nio.close(watchService);
+            return null;
+        }
+
+        final DirectoryWatcher watcher = new DirectoryWatcher(name, watchService, quietPeriodMillis, initialPass, callback);
+        try {
+            for (final File root : roots) {
+                final File dir = root.isDirectory() ? root : root.getAbsoluteFile().getParentFile();
+                if (dir == null || !dir.isDirectory()) {
+                    throw new IllegalArgumentException(root.getAbsolutePath() + " doesn't exist");
+                }
+                final String store = Nio.fileStoreType(dir);
+                if (store != null && REMOTE_FILE_STORES.contains(store.toLowerCase(Locale.ENGLISH))) {
+                    throw new IllegalArgumentException(dir.getAbsolutePath() + " is on a " + store + " file system");
+                }
+                watcher.register(dir, dir == root);
+            }
+        } catch (final Exception e) {
+            LOGGER.debug("Can't watch " + roots + ": " + e.getMessage());
+            Nio.close(watchService);
+            return null;
+        }
+
+        watcher.thread.start();
+        return watcher;
+    }
+
+    /**
+     * Stops watching, a running callback is not interrupted.
+     */
+    public void stop() {
+        running = false;
+        Nio.close(watchService); // wakes up the watcher thread
+    }
+
+    private void register(final File dir, final boolean recursive) throws Exception {
+        keys.put(Nio.register(watchService, dir), recursive);
+        if (!recursive) {
+            return;
+        }
+
+        final File[] children = dir.listFiles();
+        if (children != null) {
+            for (final File child : children) {
+                if (child.isDirectory()) {
+                    register(child, true);
+                }
+            }
+        }
+    }
+
+    private void loop() {
+        boolean pending = initialPass;
+        try {
+            while (running) {
+                Object key = pending ? Nio.poll(watchService, quietPeriodMillis) : Nio.take(watchService);
+                while (key != null) { // coalesce the burst
+                    handle(key);
+                    key = Nio.poll(watchService, quietPeriodMillis);
+                }
+
+                if (!running) {
+                    return;
+                }
+                try {
+                    pending = callback.changed();
+                } catch (final RuntimeException e) {
+                    LOGGER.error("Can't handle the changes", e);
+                    pending = false;
+                }
+            }
+        } catch (final InterruptedException e) {
+            // stopped
+        } catch (final Exception e) {
+            if (running) { // else closed by stop()
+                LOGGER.error("Watcher stopped", e);
+            }
+        }
+    }
+
+    private void handle(final Object key) throws Exception {
+        final Collection<?> events = Nio.pollEvents(key); // always drained, we only need the new directories
+        if (Boolean.TRUE.equals(keys.get(key))) {
+            for (final Object event : events) {
+                final File file = Nio.file(key, event);
+                if (file != null && file.isDirectory()) { // created (or moved in) directory
+                    try {
+                        register(file, true);
+                    } catch (final Exception e) {
+                        LOGGER.debug("Can't watch " + file.getAbsolutePath() + ": " + e.getMessage());
+                    }
+                }
+            }
+        }
+        if (!Nio.reset(key)) { // directory deleted
+            keys.remove(key);
+        }
+    }
+
+    public interface Callback {
+        /**
+         * @return true if some files are still changing and the callback should be invoked again after the quiet period
+         */
+        boolean changed();
+    }
+
+    /**
+     * Reflective access to java.nio.file.
+     */
+    private static final class Nio {
+        private static final boolean AVAILABLE;
+
+        private static Method getDefault;
+        private static Method newWatchService;
+        private static Method toPath;
+        private static Method register;
+        private static Method resolve;
+        private static Method pathToFile;
+        private static Method getFileStore;
+        private static Method type;
+        private static Method poll;
+        private static Method take;
+        private static Method close;
+        private static Method pollEvents;
+        private static Method watchable;
+        private static Method reset;
+        private static Method context;
+        private static Method kind;
+        private static Object overflow;
+        private static Object kinds;
+
+        static {
+            boolean available = false;
+            try {
+                final ClassLoader loader = ClassLoader.getSystemClassLoader();
+                final Class<?> fileSystems = loader.loadClass("java.nio.file.FileSystems");
+                final Class<?> fileSystem = loader.loadClass("java.nio.file.FileSystem");
+                final Class<?> files = loader.loadClass("java.nio.file.Files");
+                final Class<?> fileStore = loader.loadClass("java.nio.file.FileStore");
+                final Class<?> path = loader.loadClass("java.nio.file.Path");
+                final Class<?> watchService = loader.loadClass("java.nio.file.WatchService");
+                final Class<?> watchKey = loader.loadClass("java.nio.file.WatchKey");
+                final Class<?> watchEvent = loader.loadClass("java.nio.file.WatchEvent");
+                final Class<?> kindClass = loader.loadClass("java.nio.file.WatchEvent$Kind");
+                final Class<?> watchable = loader.loadClass("java.nio.file.Watchable");
+                final Class<?> standardKinds = loader.loadClass("java.nio.file.StandardWatchEventKinds");
+
+                getDefault = fileSystems.getMethod("getDefault");
+                newWatchService = fileSystem.getMethod("newWatchService");
+                toPath = File.class.getMethod("toPath");
+                register = watchable.getMethod("register", watchService, Array.newInstance(kindClass, 0).getClass());
+                resolve = path.getMethod("resolve", path);
+                pathToFile = path.getMethod("toFile");
+                getFileStore = files.getMethod("getFileStore", path);
+                type = fileStore.getMethod("type");
+                poll = watchService.getMethod("poll", long.class, TimeUnit.class);
+                take = watchService.getMethod("take");
+                close = watchService.getMethod("close");
+                pollEvents = watchKey.getMethod("pollEvents");
+                Nio.watchable = watchKey.getMethod("watchable");
+                reset = watchKey.getMethod("reset");
+                context = watchEvent.getMethod("context");
+                kind = watchEvent.getMethod("kind");
+
+                overflow = standardKinds.getField("OVERFLOW").get(null);
+                kinds = Array.newInstance(kindClass, 3);
+                Array.set(kinds, 0, standardKinds.getField("ENTRY_CREATE").get(null));
+                Array.set(kinds, 1, standardKinds.getField("ENTRY_DELETE").get(null));
+                Array.set(kinds, 2, standardKinds.getField("ENTRY_MODIFY").get(null));
+
+                available = true;
+            } catch (final Throwable e) {
+                // Java 6
+            }
+            AVAILABLE = available;
+        }
+
+        private Nio() {
+            // no-op
+        }
+
+        public static Object newWatchService() throws Exception {
+            return invoke(newWatchService, invoke(getDefault, null));
+        }
+
+        public static Object register(final Object watchService, final File dir) throws Exception {
+            return invoke(register, invoke(toPath, dir), watchService, kinds);
+        }
+
+        public static String fileStoreType(final File dir) {
+            try {
+                return (String) invoke(type, invoke(getFileStore, null, invoke(toPath, dir)));
+            } catch (final Exception e) {
+                return null;
+            }
+        }
+
+        public static Object poll(final Object watchService, final long timeout) throws Exception {
+            return invoke(poll, watchService, timeout, TimeUnit.MILLISECONDS);
+        }
+
+        public static Object take(final Object watchService) throws Exception {
+            return invoke(take, watchService);
+        }
+
+        public static void close(final Object watchService) {
+            try {
+                invoke(close, watchService);
+            } catch (final Exception e) {
+                // no-op
+            }
+        }
+
+        public static Collection<?> pollEvents(final Object key) throws Exception {
+            return (Collection<?>) invoke(pollEvents, key);
+        }
+
+        /**
+         * @return the file the event is about, null for an overflow
+         */
+        public static File file(final Object key, final Object event) throws Exception {
+            if (overflow.equals(invoke(kind, event))) {
+                return null;
+            }
+            return (File) invoke(pathToFile, invoke(resolve, invoke(watchable, key), invoke(context, event)));
+        }
+
+        public static boolean reset(final Object key) throws Exception {
+            return (Boolean) invoke(reset, key);
+        }
+
+        private static Object invoke(final Method method, final Object instance, final Object... args) throws Exception {
+            try {
+                return method.invoke(instance, args);
+            } catch (final InvocationTargetException e) {
+                final Throwable cause = e.getCause();
+                if (cause instanceof Exception) {
+                    throw (Exception) cause;
+                }
+                throw (Error) cause;
+            }
+        }
+    }
+}
@@ -0,0 +1,301 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.util;
+
+import org.apache.openejb.assembler.classic.event.AssemblerAfterApplicationCreated;
+import org.apache.openejb.assembler.classic.event.ContainerSystemPostCreate;
+import org.apache.openejb.loader.IO;
+import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.observer.Observes;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records nested startup spans (scanning, descriptors, deployers, assembly, CDI, JPA, web contexts...)
+ * with their thread and module.
+ *
+ * Activated with openejb.startup.trace=true. Each report writes the whole timeline as Chrome trace event
+ * json (chrome://tracing) in openejb.startup.trace.file (defaults to ${openejb.base}/logs/startup-trace.json)
+ * and logs a per phase and per module summary of the spans recorded since the previous report.
+ * The timeline keeps the last openejb.startup.trace.max-spans spans (10000 by default) so redeploying
+ * forever doesn't grow it without limit.
+ *
+ * Usage:
+ * <pre>
+ * final StartupTracer.Span span = StartupTracer.start("phase", moduleId);
+ * try {
+ *     ...
+ * } finally {
+ *     span.stop();
+ * }
+ * </pre>
+ */
+public final class StartupTracer {
+    private static final Logger LOGGER = Logger.getInstance(LogCategory.OPENEJB_STARTUP, StartupTracer.class);
+
+    public static final String OPENEJB_STARTUP_TRACE = "openejb.startup.trace";
+    public static final String OPENEJB_STARTUP_TRACE_FILE = "openejb.startup.trace.file";
+    public static final String OPENEJB_STARTUP_TRACE_MAX_SPANS = "openejb.startup.trace.max-spans";
+
+    private static final Span NOOP = new Span(null, null, false);
+    private static final long ORIGIN = System.nanoTime();
+
+    private static final Queue<Span> PENDING = new ConcurrentLinkedQueue<Span>();
+    private static final LinkedList<Span> REPORTED = new LinkedList<Span>();
+
+    private StartupTracer() {
+        // no-op
+    }
+
+    public static boolean isActive() {
+        return SystemInstance.get().getOptions().get(OPENEJB_STARTUP_TRACE, false);
+    }
+
+    public static Span start(final String phase, final String module) {
+        if (!isActive()) {
+            return NOOP;
+        }
+        return new Span(phase, module, true);
+    }
+
+    /**
+     * Writes the timeline and logs the summary of the spans stopped since the last report.
+     *
+     * @param title what was started, used in the summary header
+     */
+    public static synchronized void report(final String title) {
+        final List<Span> spans = new ArrayList<Span>();
+        Span span;
+        while ((span = PENDING.poll()) != null) {
+            spans.add(span);
+        }
+        if (spans.isEmpty()) {
+            return;
+        }
+        REPORTED.addAll(spans);
+        final int max = Math.max(1, SystemInstance.get().getOptions().get(OPENEJB_STARTUP_TRACE_MAX_SPANS, 10000));
+        while (REPORTED.size() > max) {
+            REPORTED.removeFirst();
+        }
+
+        final File file = file();
+        if (file != null) {
+            try {
+                write(REPORTED, file);
+            } catch (final IOException e) {
+                LOGGER.warning("Can't write startup trace " + file.getAbsolutePath() + ": " + e.getMessage());
+            }
+        }
+
+        LOGGER.info(summary(title, spans));
+    }
+
+    /**
+     * forget everything recorded, mainly for tests.
+     */
+    public static synchronized void reset() {
+        PENDING.clear();
+        REPORTED.clear();
+    }
+
+    private static File file() {
+        final String path = SystemInstance.get().getOptions().get(OPENEJB_STARTUP_TRACE_FILE, (String) null);
+        if (path != null) {
+            return new File(path);
+        }
+        try {
+            return new File(SystemInstance.get().getBase().getDirectory("logs", true), "startup-trace.json");
+        } catch (final IOException e) {
+            LOGGER.warning("Can't create logs directory, startup trace not written: " + e.getMessage());
+            return null;
+        }
+    }
+
+    public static void write(final Collection<Span> spans, final File file) throws IOException {
+        final File parent = file.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("can't create " + parent.getAbsolutePath());
+        }
+
+        final Writer writer = new OutputStreamWriter(IO.write(file), "UTF-8");
+        try {
+            writer.write("{\"traceEvents\":[");
+            final Map<Long, String> threads = new LinkedHashMap<Long, String>();
+            boolean first = true;
+            for (final Span span : spans) {
+                threads.put(span.threadId, span.threadName);
+                first = event(writer, first);
+                writer.write("{\"ph\":\"X\",\"pid\":1,\"tid\":" + span.threadId
+                    + ",\"ts\":" + TimeUnit.NANOSECONDS.toMicros(span.start - ORIGIN)
+                    + ",\"dur\":" + TimeUnit.NANOSECONDS.toMicros(span.end - span.start)
+                    + ",\"name\":\"" + escape(span.phase) + "\",\"cat\":\"openejb\"");
+                if (span.module != null) {
+                    writer.write(",\"args\":{\"module\":\"" + escape(span.module) + "\"}");
+                }
+                writer.write("}");
+            }
+            for (final Map.Entry<Long, String> thread : threads.entrySet()) {
+                first = event(writer, first);
+                writer.write("{\"ph\":\"M\",\"pid\":1,\"tid\":" + thread.getKey()
+                    + ",\"name\":\"thread_name\",\"args\":{\"name\":\"" + escape(thread.getValue()) + "\"}}");
+            }
+            writer.write("]}");
+        } finally {
+            IO.close(writer);
+        }
+    }
+
+    private static boolean event(final Writer writer, final boolean first) throws IOException {
+        if (!first) {
+            writer.write(",\n");
+        } else {
+            writer.write("\n");
+        }
+        return false;
+    }
+
+    private static String escape(final String value) {
+        final StringBuilder sb = new StringBuilder(value.length());
+        for (final char c : value.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < ' ') {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    public static String summary(final String title, final Collection<Span> spans) {
+        final Map<String, long[]> phases = new LinkedHashMap<String, long[]>(); // count, total, max
+        final Map<String, Map<String, Long>> modules = new LinkedHashMap<String, Map<String, Long>>();
+        for (final Span span : spans) {
+            final long duration = span.end - span.start;
+
+            long[] stats = phases.get(span.phase);
+            if (stats == null) {
+                stats = new long[3];
+                phases.put(span.phase, stats);
+            }
+            stats[0]++;
+            stats[1] += duration;
+            stats[2] = Math.max(stats[2], duration);
+
+            if (span.module != null) {
+                Map<String, Long> perPhase = modules.get(span.module);
+                if (perPhase == null) {
+                    perPhase = new LinkedHashMap<String, Long>();
+                    modules.put(span.module, perPhase);
+                }
+                final Long previous = perPhase.get(span.phase);
+                perPhase.put(span.phase, (previous != null ? previous : 0) + duration);
+            }
+        }
+
+        final StringBuilder sb = new StringBuilder("Startup trace of ").append(title).append(" (nested phases are included in their parent)\n");
+        sb.append(String.format("  %-40s %6s %10s %10s%n", "phase", "count", "total(ms)", "max(ms)"));
+        for (final Map.Entry<String, long[]> phase : phases.entrySet()) {
+            final long[] stats = phase.getValue();
+            sb.append(String.format("  %-40s %6d %10d %10d%n", phase.getKey(), stats[0], millis(stats[1]), millis(stats[2])));
+        }
+        for (final Map.Entry<String, Map<String, Long>> module : modules.entrySet()) {
+            sb.append("  ").append(module.getKey()).append(':');
+            for (final Map.Entry<String, Long> phase : module.getValue().entrySet()) {
+                sb.append(' ').append(phase.getKey()).append('=').append(millis(phase.getValue())).append("ms");
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static long millis(final long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    public static class Span {
+        private final String phase;
+        private final String module;
+        private final boolean record;
+        private final long threadId;
+        private final String threadName;
+        private final long start;
+        private long end;
+
+        private Span(final String phase, final String module, final boolean record) {
+            this.phase = phase;
+            this.module = module;
+            this.record = record;
+
+            final Thread thread = Thread.currentThread();
+            this.threadId = thread.getId();
+            this.threadName = thread.getName();
+            this.start = System.nanoTime();
+        }
+
+        public void stop() {
+            if (!record || end != 0) {
+                return;
+            }
+            end = System.nanoTime();
+            PENDING.add(this);
+        }
+
+        public String getPhase() {
+            return phase;
+        }
+
+        public String getModule() {
+            return module;
+        }
+
+        public long getDuration(final TimeUnit unit) {
+            return unit.convert(end - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Reports the boot once the container system is created and then each application deployed afterwards.
+     */
+    public static class Reporter {
+        private volatile boolean booted;
+
+        public void afterContainerSystemCreated(@Observes final ContainerSystemPostCreate event) {
+            booted = true;
+            report("container system");
+        }
+
+        public void afterApplicationCreated(@Observes final AssemblerAfterApplicationCreated event) {
+            if (booted) {
+                report(event.getApp().appId);
+            }
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb;
+
+import org.apache.openejb.core.ivm.naming.IvmContext;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.naming.Context;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class InjectionPlanTest {
+    private final Map<String, AtomicInteger> lookups = new HashMap<String, AtomicInteger>();
+    private Context context;
+
+    @Before
+    public void bind() throws Exception {
+        final IvmContext ivm = new IvmContext();
+        ivm.bind("comp/env/message", "hello");
+        ivm.bind("comp/env/count", 3);
+        ivm.bind("comp/env/timeout", "5");
+        ivm.bind("comp/env/parent", "from parent");
+        ivm.bind("comp/env/mutable", new ArrayList<String>());
+
+        context = (Context) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Context.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+                if ("lookup".equals(method.getName())) {
+                    final String name = String.valueOf(args[0]);
+                    AtomicInteger counter = lookups.get(name);
+                    if (counter == null) {
+                        counter = new AtomicInteger();
+                        lookups.put(name, counter);
+                    }
+                    counter.incrementAndGet();
+                }
+                try {
+                    return method.invoke(ivm, args);
+                } catch (final InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            }
+        });
+    }
+
+    @Test
+    public void inject() throws Exception {
+        final Collection<Injection> injections = Arrays.asList(
+            new Injection("comp/env/message", "message", Injected.class),
+            new Injection("comp/env/count", "count", Injected.class),
+            new Injection("comp/env/timeout", "timeout", Injected.class), // needs a conversion
+            new Injection("comp/env/parent", "parentValue", Parent.class),
+            new Injection("comp/env/mutable", "mutable", Injected.class),
+            new Injection("comp/env/message", "message", Other.class)); // not for this class
+
+        final InjectionPlan plan = InjectionPlan.compile(Injected.class, injections);
+
+        final Injected first = plan.inject(new Injected(), context);
+        assertEquals("hello", first.message);
+        assertEquals(3, first.count);
+        assertEquals(5, first.timeout);
+        assertEquals("from parent", first.getParentValue());
+
+        final Injected second = plan.inject(new Injected(), context);
+        assertEquals("hello", second.message);
+        assertEquals(3, second.count);
+
+        assertEquals(1, lookups.get("comp/env/message").get());
+        assertEquals(1, lookups.get("comp/env/count").get());
+        assertEquals(2, lookups.get("comp/env/mutable").get());
+    }
+
+    @Test
+    public void missingValue() throws Exception {
+        final Injected injected = InjectionPlan.compile(Injected.class, Arrays.asList(new Injection("comp/env/missing", "message", Injected.class)))
+            .inject(new Injected(), context);
+        assertNull(injected.message);
+    }
+
+    public static class Parent {
+        private String parentValue;
+
+        public String getParentValue() {
+            return parentValue;
+        }
+    }
+
+    public static class Injected extends Parent {
+        private String message;
+        private int count;
+        private long timeout;
+        private Object mutable;
+
+        public void setCount(final int count) {
+            this.count = count;
+        }
+    }
+
+    public static class Other {
+        private String message;
+    }
+}
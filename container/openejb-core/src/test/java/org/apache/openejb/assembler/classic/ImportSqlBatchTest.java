@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.assembler.classic;
+
+import org.apache.openejb.loader.Files;
+import org.apache.openejb.loader.IO;
+import org.apache.openejb.loader.SystemInstance;
+import org.hsqldb.jdbc.JDBCDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.Enumeration;
+
+import static org.junit.Assert.assertEquals;
+
+public class ImportSqlBatchTest {
+    private File dir;
+    private JDBCDataSource dataSource;
+
+    @Before
+    public void init() {
+        SystemInstance.get().setProperty(ImportSql.OPENEJB_SQL_IMPORT_BATCH_SIZE, "3");
+        dir = Files.tmpdir();
+
+        dataSource = new JDBCDataSource();
+        dataSource.setDatabase("jdbc:hsqldb:mem:ImportSqlBatchTest" + System.nanoTime());
+        dataSource.setUser("sa");
+        dataSource.setPassword("");
+    }
+
+    @After
+    public void reset() {
+        Files.delete(dir);
+        SystemInstance.reset();
+    }
+
+    @Test
+    public void batched() throws Exception {
+        importScript(
+            "create table batched (id int);",
+            "insert into batched values(1);",
+            "insert into batched values(2);",
+            "insert into batched values(3);",
+            "insert into batched values(4);",
+            "update batched set id = 5 where id = 4;");
+        assertEquals(4, count("batched"));
+        assertEquals(1, count("batched where id = 5"));
+    }
+
+    @Test
+    public void failingStatementIsSkippedAndOthersExecutedOnce() throws Exception {
+        importScript(
+            "create table failing (id int);",
+            "insert into failing values(1);",
+            "insert into failing values('not a number');",
+            "insert into failing values(2);",
+            "insert into failing values(3);",
+            "insert into failing values(4);");
+        assertEquals(4, count("failing"));
+        assertEquals(1, count("failing where id = 1"));
+    }
+
+    @Test
+    public void ddlIsNotBatched() throws Exception {
+        importScript(
+            "create table t_first (id int);",
+            "insert into t_first values(1);",
+            "create table t_second (id int);",
+            "insert into t_second values(1);",
+            "insert into missing values(1);",
+            "insert into t_first values(2);");
+        assertEquals(2, count("t_first"));
+        assertEquals(1, count("t_second"));
+    }
+
+    private void importScript(final String... lines) throws IOException {
+        final File script = new File(dir, "import-batch.sql");
+        final StringBuilder content = new StringBuilder();
+        for (final String line : lines) {
+            content.append(line).append('\n');
+        }
+        IO.copy(content.toString().getBytes("UTF-8"), script);
+
+        final URL url = script.toURI().toURL();
+        new ImportSql(new ClassLoader(getClass().getClassLoader()) {
+            @Override
+            public Enumeration<URL> getResources(final String name) throws IOException {
+                if ("import-batch.sql".equals(name)) {
+                    return Collections.enumeration(Collections.singletonList(url));
+                }
+                return super.getResources(name);
+            }
+        }, "batch", dataSource).doImport();
+    }
+
+    private int count(final String from) throws Exception {
+        final Connection connection = dataSource.getConnection();
+        try {
+            final Statement statement = connection.createStatement();
+            final ResultSet rs = statement.executeQuery("select count(*) from " + from);
+            rs.next();
+            return rs.getInt(1);
+        } finally {
+            connection.close();
+        }
+    }
+}
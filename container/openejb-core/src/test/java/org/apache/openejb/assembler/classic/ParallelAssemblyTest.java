@@ -0,0 +1,135 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.openejb.assembler.classic;
+
+import org.apache.openejb.jee.EjbJar;
+import org.apache.openejb.jee.StatelessBean;
+import org.apache.openejb.jee.jpa.unit.Persistence;
+import org.apache.openejb.jee.jpa.unit.PersistenceUnit;
+import org.apache.openejb.junit.ApplicationComposer;
+import org.apache.openejb.testing.Configuration;
+import org.apache.openejb.testing.Module;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import javax.annotation.Resource;
+import javax.ejb.EJB;
+import javax.persistence.EntityManagerFactory;
+import javax.validation.Validator;
+import javax.validation.constraints.NotNull;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * With openejb.assembler.parallel the validator factories of the modules are built concurrently,
+ * the rest of the application is assembled as usual.
+ */
+@RunWith(ApplicationComposer.class)
+public class ParallelAssemblyTest {
+    @EJB
+    private First first;
+
+    @EJB
+    private Second second;
+
+    @EJB
+    private Third third;
+
+    @Configuration
+    public Properties config() {
+        final Properties p = new Properties();
+        p.setProperty(Assembler.OPENEJB_ASSEMBLER_PARALLEL, "true");
+        p.setProperty(Assembler.OPENEJB_ASSEMBLER_PARALLEL_THREADS, "4");
+        p.setProperty("ParallelAssemblyTest", "new://Resource?type=DataSource");
+        p.setProperty("ParallelAssemblyTest.JdbcDriver", "org.hsqldb.jdbcDriver");
+        p.setProperty("ParallelAssemblyTest.JdbcUrl", "jdbc:hsqldb:mem:parallel-assembly");
+        return p;
+    }
+
+    @Module
+    public EjbJar first() {
+        return jar("first", First.class);
+    }
+
+    @Module
+    public EjbJar second() {
+        return jar("second", Second.class);
+    }
+
+    @Module
+    public EjbJar third() {
+        return jar("third", Third.class);
+    }
+
+    @Module
+    public Persistence persistence() {
+        final PersistenceUnit first = new PersistenceUnit("first-unit");
+        first.setJtaDataSource("ParallelAssemblyTest");
+        final PersistenceUnit second = new PersistenceUnit("second-unit");
+        second.setJtaDataSource("ParallelAssemblyTest");
+        return new Persistence(first, second);
+    }
+
+    @Test
+    public void modulesAreAssembled() {
+        for (final Base bean : new Base[]{first, second, third}) {
+            assertEquals(1, bean.violations());
+            assertTrue(bean.hasUnits());
+        }
+    }
+
+    private static EjbJar jar(final String id, final Class<?> bean) {
+        final EjbJar ejbJar = new EjbJar(id);
+        ejbJar.addEnterpriseBean(new StatelessBean(bean).localBean());
+        return ejbJar;
+    }
+
+    public abstract static class Base {
+        @Resource
+        private Validator validator;
+
+        @javax.persistence.PersistenceUnit(unitName = "first-unit")
+        private EntityManagerFactory firstUnit;
+
+        @javax.persistence.PersistenceUnit(unitName = "second-unit")
+        private EntityManagerFactory secondUnit;
+
+        public int violations() {
+            return validator.validate(new Value()).size();
+        }
+
+        public boolean hasUnits() {
+            return firstUnit != null && secondUnit != null;
+        }
+    }
+
+    public static class First extends Base {
+    }
+
+    public static class Second extends Base {
+    }
+
+    public static class Third extends Base {
+    }
+
+    public static class Value {
+        @NotNull
+        private String name;
+    }
+}
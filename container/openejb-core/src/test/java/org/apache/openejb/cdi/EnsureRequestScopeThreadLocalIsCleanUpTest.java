@@ -26,10 +26,12 @@ import javax.enterprise.context.RequestScoped;
 import javax.enterprise.context.SessionScoped;
 import javax.enterprise.context.spi.Context;
 
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 public class EnsureRequestScopeThreadLocalIsCleanUpTest {
     @Test
@@ -64,6 +66,29 @@ public class EnsureRequestScopeThreadLocalIsCleanUpTest {
         assertNull(contextsService.getCurrentContext(SessionScoped.class));
     }
 
+    @Test
+    public void requestContextIsCreatedOnFirstUse() throws Exception {
+        final ApplicationComposers composers = new ApplicationComposers(EnsureRequestScopeThreadLocalIsCleanUpTest.class);
+        composers.before(this);
+        final CdiAppContextsService contextsService = CdiAppContextsService.class.cast(WebBeansContext.currentInstance().getService(ContextsService.class));
+        contextsService.endContext(RequestScoped.class, null);
+        assertFalse(contextsService.hasRequestContext());
+
+        contextsService.startContext(RequestScoped.class, null);
+        assertTrue(contextsService.hasRequestContext());
+        contextsService.endContext(RequestScoped.class, null); // never used
+        assertFalse(contextsService.hasRequestContext());
+        assertNull(contextsService.getCurrentContext(RequestScoped.class));
+
+        contextsService.startContext(RequestScoped.class, null);
+        final Context req = contextsService.getCurrentContext(RequestScoped.class);
+        assertNotNull(req);
+        assertTrue(req.isActive());
+        assertSame(req, contextsService.getCurrentContext(RequestScoped.class));
+        composers.after();
+        assertNull(contextsService.getCurrentContext(RequestScoped.class));
+    }
+
     @Module
     public Class<?>[] clazz() {
         return new Class<?>[] { EnsureRequestScopeThreadLocalIsCleanUpTest.class };
@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.config;
+
+import org.apache.openejb.loader.Files;
+import org.apache.openejb.loader.IO;
+import org.junit.Test;
+
+import javax.ejb.Stateless;
+import javax.inject.Inject;
+import java.io.File;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class AnnotationIndexTest {
+    @Test
+    public void index() throws Exception {
+        final File classes = new File("target/AnnotationIndexTest");
+        Files.delete(classes);
+        copy(classes, Plain.class, AnnotatedClass.class, AnnotatedField.class, Child.class, Implementation.class,
+            NotABean.class, AbstractHelper.class);
+
+        final AnnotationIndex written = AnnotationIndex.write(classes);
+        assertEquals(new TreeSet<String>(Arrays.asList(Plain.class.getName(), AbstractHelper.class.getName(), NotABean.class.getName())),
+            new TreeSet<String>(written.getSkipped()));
+
+        final AnnotationIndex loaded = AnnotationIndex.load(classes.toURI().toURL());
+        assertNotNull(loaded);
+        assertEquals(written.getSkipped(), loaded.getSkipped());
+
+        // a new class makes the index stale
+        copy(classes, Other.class);
+        assertNull(AnnotationIndex.load(classes.toURI().toURL()));
+    }
+
+    @Test
+    public void beanArchive() throws Exception {
+        final File classes = new File("target/AnnotationIndexTest-beans");
+        Files.delete(classes);
+        copy(classes, Plain.class);
+        assertFalse(AnnotationIndex.isBeanArchive(classes.toURI().toURL()));
+
+        final File beansXml = new File(classes, "META-INF/beans.xml");
+        Files.mkdirs(beansXml.getParentFile());
+        IO.copy("<beans />".getBytes("UTF-8"), beansXml);
+        assertTrue(AnnotationIndex.isBeanArchive(classes.toURI().toURL()));
+    }
+
+    private static void copy(final File dir, final Class<?>... classes) throws Exception {
+        for (final Class<?> clazz : classes) {
+            final String name = clazz.getName().replace('.', '/') + ".class";
+            final File out = new File(dir, name);
+            Files.mkdirs(out.getParentFile());
+            final InputStream is = AnnotationIndexTest.class.getClassLoader().getResourceAsStream(name);
+            try {
+                IO.copy(is, out);
+            } finally {
+                IO.close(is);
+            }
+        }
+    }
+
+    public static class Plain {
+        private String value;
+
+        public String getValue() {
+            return value;
+        }
+    }
+
+    public static class Other {
+    }
+
+    @Stateless
+    public static class AnnotatedClass {
+    }
+
+    public static class AnnotatedField {
+        @Inject
+        private Plain plain;
+    }
+
+    public static class Child extends Plain {
+    }
+
+    public static class Implementation implements Serializable {
+    }
+
+    public static class NotABean {
+        private final String value;
+
+        public NotABean(final String value) {
+            this.value = value;
+        }
+
+        public String getValue() {
+            return value;
+        }
+    }
+
+    public abstract static class AbstractHelper {
+        public abstract String help();
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.config;
+
+import org.apache.openejb.assembler.classic.AppInfo;
+import org.apache.openejb.assembler.classic.ResourceInfo;
+import org.apache.openejb.assembler.classic.ServiceInfo;
+import org.apache.openejb.loader.Files;
+import org.apache.openejb.loader.IO;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class AppInfoCacheTest {
+    @Test
+    public void roundTrip() throws Exception {
+        final File base = Files.mkdirs(new File("target/AppInfoCacheTest"));
+        final File app = Files.mkdirs(new File(base, "app"));
+        IO.writeString(new File(app, "ejb-jar.xml"), "<ejb-jar />");
+
+        final AppInfoCache cache = new AppInfoCache(new File(base, "cache"));
+        final String key = cache.key(app, null);
+        assertNotNull(key);
+        assertNull(cache.load(key));
+
+        final AppInfo info = new AppInfo();
+        info.appId = "app";
+        info.paths.add(app.getAbsolutePath());
+        final ResourceInfo resource = new ResourceInfo();
+        resource.id = "auto-created";
+        cache.store(key, new AppInfoCache.Entry(info, Collections.<ServiceInfo>singletonList(resource), Collections.<String>emptyList()));
+
+        final AppInfoCache.Entry entry = cache.load(key);
+        assertNotNull(entry);
+        assertEquals("app", entry.appInfo.appId);
+        assertEquals("auto-created", entry.services.iterator().next().id);
+
+        IO.writeString(new File(app, "ejb-jar.xml"), "<ejb-jar metadata-complete=\"true\" />");
+        assertFalse(key.equals(cache.key(app, null)));
+    }
+}
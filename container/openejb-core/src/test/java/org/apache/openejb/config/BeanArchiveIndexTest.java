@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.config;
+
+import org.apache.openejb.assembler.classic.Assembler;
+import org.apache.openejb.assembler.classic.SecurityServiceInfo;
+import org.apache.openejb.assembler.classic.TransactionServiceInfo;
+import org.apache.openejb.loader.Files;
+import org.apache.openejb.loader.IO;
+import org.apache.openejb.loader.SystemInstance;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.annotation.PostConstruct;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.inject.Inject;
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * An annotation index can't hide unannotated classes of a bean archive: they are CDI managed beans.
+ */
+public class BeanArchiveIndexTest {
+    // public and untyped since the deployed classes can be loaded by the application loader
+    public static volatile Object injected;
+
+    private Assembler assembler;
+
+    @Before
+    public void reset() {
+        SystemInstance.reset();
+        injected = null;
+    }
+
+    @After
+    public void destroy() {
+        if (assembler != null) {
+            assembler.destroy();
+        }
+        SystemInstance.reset();
+    }
+
+    @Test
+    public void unannotatedClassesOfBeanArchivesAreInjectable() throws Exception {
+        final File classes = new File("target/BeanArchiveIndexTest");
+        Files.delete(classes);
+        copy(classes, Plain.class, Client.class);
+
+        final File beansXml = new File(classes, "META-INF/beans.xml");
+        Files.mkdirs(beansXml.getParentFile());
+        IO.copy("<beans />".getBytes("UTF-8"), beansXml);
+
+        // an up to date index hiding the unannotated class (as an index of a plain jar would)
+        final OutputStream os = IO.write(new File(classes, AnnotationIndex.LOCATION));
+        try {
+            new AnnotationIndex(AnnotationIndex.fingerprint(classes), new HashSet<String>(Collections.singleton(Plain.class.getName()))).write(os);
+        } finally {
+            IO.close(os);
+        }
+        assertNotNull(AnnotationIndex.load(classes.toURI().toURL()));
+
+        final ConfigurationFactory config = new ConfigurationFactory();
+        assembler = new Assembler();
+        assembler.createTransactionManager(config.configureService(TransactionServiceInfo.class));
+        assembler.createSecurityService(config.configureService(SecurityServiceInfo.class));
+        assembler.createApplication(config.configureApplication(classes));
+
+        assertNotNull(injected);
+        assertEquals("hello", injected.getClass().getMethod("hello").invoke(injected));
+    }
+
+    private static void copy(final File dir, final Class<?>... classes) throws Exception {
+        for (final Class<?> clazz : classes) {
+            final String name = clazz.getName().replace('.', '/') + ".class";
+            final File out = new File(dir, name);
+            Files.mkdirs(out.getParentFile());
+            final InputStream is = BeanArchiveIndexTest.class.getClassLoader().getResourceAsStream(name);
+            try {
+                IO.copy(is, out);
+            } finally {
+                IO.close(is);
+            }
+        }
+    }
+
+    public static class Plain {
+        public String hello() {
+            return "hello";
+        }
+    }
+
+    @Startup
+    @Singleton
+    public static class Client {
+        @Inject
+        private Plain plain;
+
+        @PostConstruct
+        public void init() {
+            BeanArchiveIndexTest.injected = plain;
+        }
+    }
+}
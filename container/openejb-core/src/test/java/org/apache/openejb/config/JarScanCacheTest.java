@@ -0,0 +1,167 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.config;
+
+import org.apache.openejb.loader.Files;
+import org.apache.openejb.loader.IO;
+import org.apache.openejb.loader.SystemInstance;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.ejb.Stateless;
+import java.io.File;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class JarScanCacheTest {
+    private File base;
+
+    @Before
+    public void init() {
+        base = new File("target/JarScanCacheTest");
+        Files.delete(base);
+        Files.mkdirs(base);
+        SystemInstance.get().setProperty(JarScanCache.OPENEJB_SCAN_CACHE, "true");
+        JarScanCache.get().clear();
+    }
+
+    @After
+    public void reset() {
+        JarScanCache.get().clear();
+        SystemInstance.reset();
+    }
+
+    @Test
+    public void deactivatedByDefault() {
+        SystemInstance.reset();
+        assertNull(JarScanCache.get());
+    }
+
+    @Test
+    public void sharedBetweenCopies() throws Exception {
+        final File first = jar(new File(base, "webapp1/lib.jar"), true);
+        final File second = jar(new File(base, "webapp2/lib.jar"), true);
+
+        final JarScanCache.Entry entry = JarScanCache.get().entry(first);
+        assertNotNull(entry);
+        assertSame(entry, JarScanCache.get().entry(second));
+
+        assertTrue(entry.hasResource("META-INF/beans.xml"));
+        assertFalse(entry.hasResource("META-INF/web-fragment.xml"));
+        assertEquals(1, entry.getTlds().size());
+        assertEquals("META-INF/tags/my.tld", entry.getTlds().iterator().next());
+
+        final Set<URL> tlds = TldScanner.scanJarForTagLibs(second);
+        assertEquals(1, tlds.size());
+        assertTrue(tlds.iterator().next().toExternalForm().endsWith("webapp2/lib.jar!/META-INF/tags/my.tld"));
+    }
+
+    @Test
+    public void indexBuiltOnSecondScan() throws Exception {
+        final URL first = jar(new File(base, "webapp1/lib.jar"), false).toURI().toURL();
+        final URL second = jar(new File(base, "webapp2/lib.jar"), false).toURI().toURL();
+
+        assertNull(JarScanCache.index(first));
+
+        final AnnotationIndex index = JarScanCache.index(second);
+        assertNotNull(index);
+        assertEquals(1, index.getSkipped().size());
+        assertEquals(Helper.class.getName(), index.getSkipped().iterator().next());
+    }
+
+    @Test
+    public void beanArchivesAreNeverIndexed() throws Exception {
+        final URL first = jar(new File(base, "webapp1/lib.jar"), true).toURI().toURL();
+        final URL second = jar(new File(base, "webapp2/lib.jar"), true).toURI().toURL();
+
+        assertNull(JarScanCache.index(first));
+        assertNull(JarScanCache.index(second));
+        assertNull(JarScanCache.index(second));
+    }
+
+    @Test
+    public void bounded() throws Exception {
+        SystemInstance.get().setProperty(JarScanCache.OPENEJB_SCAN_CACHE_MAX_ENTRIES, "1");
+
+        final File first = jar(new File(base, "webapp1/lib.jar"), true);
+        final File second = jar(new File(base, "webapp2/lib.jar"), false);
+
+        final JarScanCache.Entry entry = JarScanCache.get().entry(first);
+        assertNotNull(JarScanCache.get().entry(second));
+
+        // evicted, read again
+        final JarScanCache.Entry reread = JarScanCache.get().entry(first);
+        assertNotSame(entry, reread);
+        assertEquals(entry.getFingerprint(), reread.getFingerprint());
+    }
+
+    private static File jar(final File file, final boolean beanArchive) throws Exception {
+        Files.mkdirs(file.getParentFile());
+        final ZipOutputStream zos = new ZipOutputStream(IO.write(file));
+        try {
+            if (beanArchive) {
+                add(zos, "META-INF/beans.xml", "<beans />");
+            }
+            add(zos, "META-INF/tags/my.tld", "<taglib />");
+            for (final Class<?> clazz : new Class<?>[]{Plain.class, Helper.class, Bean.class}) {
+                final String name = clazz.getName().replace('.', '/') + ".class";
+                zos.putNextEntry(new ZipEntry(name));
+                final InputStream is = JarScanCacheTest.class.getClassLoader().getResourceAsStream(name);
+                try {
+                    IO.copy(is, zos);
+                } finally {
+                    IO.close(is);
+                }
+                zos.closeEntry();
+            }
+        } finally {
+            IO.close(zos);
+        }
+        return file;
+    }
+
+    private static void add(final ZipOutputStream zos, final String name, final String content) throws Exception {
+        zos.putNextEntry(new ZipEntry(name));
+        zos.write(content.getBytes("UTF-8"));
+        zos.closeEntry();
+    }
+
+    public static class Plain {
+    }
+
+    public static class Helper {
+        public Helper(final String name) {
+            // no-op
+        }
+    }
+
+    @Stateless
+    public static class Bean {
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.config;
+
+import org.apache.openejb.OpenEJBException;
+import org.apache.openejb.jee.Connector;
+import org.apache.openejb.loader.Files;
+import org.apache.openejb.loader.IO;
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class ReadConnectorTest {
+    @Test
+    public void connector16() throws Exception {
+        final Connector connector = ReadDescriptors.readConnector(getClass().getResource("ra-1.6.xml"));
+        assertEquals("1.6", connector.getVersion());
+        assertEquals("module-name0", connector.getModuleName());
+        assertEquals("vendor-name0", connector.getVendorName());
+        assertEquals("resourceadapter-class0", connector.getResourceAdapter().getResourceAdapterClass());
+    }
+
+    @Test
+    public void connector10() throws Exception {
+        final Connector connector = ReadDescriptors.readConnector(getClass().getResource("ra-1.0.xml"));
+        assertEquals("1.0", connector.getVersion());
+        assertEquals("vendor-name0", connector.getVendorName());
+        assertEquals("eis-type0", connector.getEisType());
+    }
+
+    @Test
+    public void invalid() throws Exception {
+        final File dir = Files.tmpdir();
+        try {
+            final File raXml = new File(dir, "ra.xml");
+            IO.copy("<connector xmlns=\"http://java.sun.com/xml/ns/javaee\" version=\"1.6\"><vendor-name>".getBytes("UTF-8"), raXml);
+            try {
+                ReadDescriptors.readConnector(raXml.toURI().toURL());
+                fail("invalid ra.xml read");
+            } catch (final OpenEJBException e) {
+                // expected
+            }
+        } finally {
+            Files.delete(dir);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.core;
+
+import org.apache.openejb.loader.Files;
+import org.apache.openejb.loader.IO;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.net.URL;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class BytecodeCacheTest {
+    private File dir;
+
+    @Before
+    public void init() {
+        dir = Files.tmpdir();
+    }
+
+    @After
+    public void reset() {
+        Files.delete(dir);
+    }
+
+    @Test
+    public void modifiedFileIsReadAgain() throws Exception {
+        final BytecodeCache cache = new BytecodeCache(1024);
+        final File file = new File(dir, "Foo.class");
+        IO.copy(new byte[]{1, 2, 3}, file);
+        final URL url = file.toURI().toURL();
+
+        assertEquals(3, cache.read(url).length);
+        final String key = BytecodeCache.key(url);
+
+        // redeployed file: other content and length
+        IO.copy(new byte[]{1, 2, 3, 4}, file);
+        assertNotEquals(key, BytecodeCache.key(url));
+        assertEquals(4, cache.read(url).length);
+    }
+
+    @Test
+    public void sizeIsBounded() throws Exception {
+        final BytecodeCache cache = new BytecodeCache(10);
+        for (int i = 0; i < 10; i++) {
+            cache.put("k" + i, new byte[4]);
+        }
+        assertTrue("entries: " + cache.size(), cache.size() <= 2);
+
+        // too big to be cached
+        cache.put("big", new byte[11]);
+        assertNull(cache.get("big"));
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        cache.put("a", new byte[5]);
+        cache.put("b", new byte[5]);
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void cacheIsScopedToTheDeployment() throws Exception {
+        assertFalse(BytecodeCache.get().isActive());
+
+        final boolean owner = BytecodeCache.begin();
+        final BytecodeCache cache = BytecodeCache.get();
+        try {
+            assertTrue(owner);
+            assertTrue(cache.isActive());
+            assertFalse(BytecodeCache.begin()); // nested deployment steps share the cache
+            assertSame(cache, BytecodeCache.get());
+
+            // an other deployment doesn't see (nor clear) this one
+            final BytecodeCache[] other = new BytecodeCache[1];
+            final Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    final boolean otherOwner = BytecodeCache.begin();
+                    other[0] = BytecodeCache.get();
+                    BytecodeCache.end(otherOwner);
+                }
+            };
+            cache.put("a", new byte[1]);
+            thread.start();
+            thread.join();
+            assertNotEquals(cache, other[0]);
+            assertEquals(1, cache.size());
+        } finally {
+            BytecodeCache.end(owner);
+        }
+
+        assertEquals(0, cache.size());
+        assertFalse(cache.isActive()); // a temp loader still referencing it stops caching
+        cache.put("b", new byte[1]);
+        assertEquals(0, cache.size());
+        assertFalse(BytecodeCache.get().isActive());
+    }
+}
@@ -23,6 +23,14 @@ import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertSame;
 
@@ -84,4 +92,33 @@ public class TempClassLoaderTest {
         clazz = tempCL.loadClass(SampleAnnotation.class.getName());
         assertNotSame(tempCL, clazz.getClassLoader());
     }
+
+    @Test
+    public void concurrentLoading() throws Exception {
+        final TempClassLoader tempCL = new TempClassLoader(this.getClass().getClassLoader());
+        final int threads = 8;
+        final CountDownLatch start = new CountDownLatch(1);
+        final ExecutorService es = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<Class<?>>> loaded = new ArrayList<Future<Class<?>>>();
+            for (int i = 0; i < threads; i++) {
+                loaded.add(es.submit(new Callable<Class<?>>() {
+                    @Override
+                    public Class<?> call() throws Exception {
+                        start.await();
+                        return tempCL.loadClass(TempClassLoaderTest.class.getName());
+                    }
+                }));
+            }
+            start.countDown();
+
+            final Class<?> first = loaded.get(0).get();
+            assertSame(tempCL, first.getClassLoader());
+            for (final Future<Class<?>> clazz : loaded) {
+                assertSame(first, clazz.get());
+            }
+        } finally {
+            es.shutdownNow();
+        }
+    }
 }
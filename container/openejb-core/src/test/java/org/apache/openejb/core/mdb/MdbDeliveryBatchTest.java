@@ -0,0 +1,298 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.core.mdb;
+
+import org.apache.openejb.assembler.classic.Assembler;
+import org.apache.openejb.assembler.classic.SecurityServiceInfo;
+import org.apache.openejb.assembler.classic.TransactionServiceInfo;
+import org.apache.openejb.config.AppModule;
+import org.apache.openejb.config.ConfigurationFactory;
+import org.apache.openejb.config.ConnectorModule;
+import org.apache.openejb.config.EjbModule;
+import org.apache.openejb.core.ivm.naming.InitContextFactory;
+import org.apache.openejb.jee.Connector;
+import org.apache.openejb.jee.EjbJar;
+import org.apache.openejb.jee.InboundResourceadapter;
+import org.apache.openejb.jee.MessageAdapter;
+import org.apache.openejb.jee.MessageDrivenBean;
+import org.apache.openejb.jee.MessageListener;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.annotation.Resource;
+import javax.ejb.ActivationConfigProperty;
+import javax.ejb.MessageDriven;
+import javax.naming.InitialContext;
+import javax.resource.ResourceException;
+import javax.resource.spi.ActivationSpec;
+import javax.resource.spi.BootstrapContext;
+import javax.resource.spi.InvalidPropertyException;
+import javax.resource.spi.ResourceAdapter;
+import javax.resource.spi.endpoint.MessageEndpoint;
+import javax.resource.spi.endpoint.MessageEndpointFactory;
+import javax.transaction.TransactionSynchronizationRegistry;
+import javax.transaction.xa.XAResource;
+import javax.transaction.xa.Xid;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class MdbDeliveryBatchTest {
+    private static final List<Object> XA_TRANSACTIONS = new CopyOnWriteArrayList<Object>();
+    private static final List<Object> PLAIN_TRANSACTIONS = new CopyOnWriteArrayList<Object>();
+    private static final RecordingXAResource XA_RESOURCE = new RecordingXAResource();
+
+    private Assembler assembler;
+    private BatchResourceAdapter ra;
+
+    @Before
+    public void deploy() throws Exception {
+        System.setProperty(javax.naming.Context.INITIAL_CONTEXT_FACTORY, InitContextFactory.class.getName());
+        XA_TRANSACTIONS.clear();
+        PLAIN_TRANSACTIONS.clear();
+        XA_RESOURCE.commits.set(0);
+
+        final ConfigurationFactory config = new ConfigurationFactory();
+        assembler = new Assembler();
+        assembler.createTransactionManager(config.configureService(TransactionServiceInfo.class));
+        assembler.createSecurityService(config.configureService(SecurityServiceInfo.class));
+
+        final AppModule app = new AppModule(getClass().getClassLoader(), "batch");
+
+        final Connector connector = new Connector("batch-ra");
+        final org.apache.openejb.jee.ResourceAdapter adapter = new org.apache.openejb.jee.ResourceAdapter(BatchResourceAdapter.class);
+        connector.setResourceAdapter(adapter);
+        final InboundResourceadapter inbound = adapter.setInboundResourceAdapter(new InboundResourceadapter());
+        final MessageAdapter messageAdapter = inbound.setMessageAdapter(new MessageAdapter());
+        final MessageListener listener = messageAdapter.addMessageListener(new MessageListener(Consumer.class, Account.class));
+        listener.getActivationSpec().addRequiredConfigProperty("address");
+        app.getConnectorModules().add(new ConnectorModule(connector));
+
+        final EjbJar ejbJar = new EjbJar();
+        ejbJar.addEnterpriseBean(new MessageDrivenBean(XaBean.class));
+        ejbJar.addEnterpriseBean(new MessageDrivenBean(PlainBean.class));
+        app.getEjbModules().add(new EjbModule(ejbJar));
+
+        assembler.createApplication(config.configureApplication(app));
+
+        ra = (BatchResourceAdapter) new InitialContext().lookup("java:openejb/Resource/batch-raRA");
+    }
+
+    @After
+    public void destroy() {
+        assembler.destroy();
+    }
+
+    @Test
+    public void xaDeliveriesAreBatched() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            ra.deliver("xa", "message-" + i);
+        }
+
+        assertEquals(5, XA_TRANSACTIONS.size());
+        assertSame(XA_TRANSACTIONS.get(0), XA_TRANSACTIONS.get(1));
+        assertSame(XA_TRANSACTIONS.get(0), XA_TRANSACTIONS.get(2));
+        assertNotSame(XA_TRANSACTIONS.get(2), XA_TRANSACTIONS.get(3));
+        assertSame(XA_TRANSACTIONS.get(3), XA_TRANSACTIONS.get(4));
+        assertEquals(1, XA_RESOURCE.commits.get());
+
+        // the last batch is not full, the flusher completes it after the timeout
+        final long end = System.currentTimeMillis() + 10000;
+        while (XA_RESOURCE.commits.get() < 2 && System.currentTimeMillis() < end) {
+            Thread.sleep(50);
+        }
+        assertEquals(2, XA_RESOURCE.commits.get());
+
+        // and the next delivery starts a new transaction on the delivery thread
+        ra.deliver("xa", "message-5");
+        assertNotSame(XA_TRANSACTIONS.get(4), XA_TRANSACTIONS.get(5));
+    }
+
+    @Test
+    public void nonXaDeliveriesAreNotBatched() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            ra.deliver("plain", "message-" + i);
+        }
+
+        assertEquals(3, PLAIN_TRANSACTIONS.size());
+        assertNotSame(PLAIN_TRANSACTIONS.get(0), PLAIN_TRANSACTIONS.get(1));
+        assertNotSame(PLAIN_TRANSACTIONS.get(1), PLAIN_TRANSACTIONS.get(2));
+    }
+
+    @MessageDriven(activationConfig = {
+        @ActivationConfigProperty(propertyName = "address", propertyValue = "xa"),
+        @ActivationConfigProperty(propertyName = MdbContainer.DELIVERY_BATCH_SIZE, propertyValue = "3"),
+        @ActivationConfigProperty(propertyName = MdbContainer.DELIVERY_BATCH_TIMEOUT, propertyValue = "200")
+    })
+    public static class XaBean implements Consumer {
+        @Resource
+        private TransactionSynchronizationRegistry registry;
+
+        @Override
+        public void receive(final String message) {
+            XA_TRANSACTIONS.add(registry.getTransactionKey());
+        }
+    }
+
+    @MessageDriven(activationConfig = {
+        @ActivationConfigProperty(propertyName = "address", propertyValue = "plain"),
+        @ActivationConfigProperty(propertyName = MdbContainer.DELIVERY_BATCH_SIZE, propertyValue = "3"),
+        @ActivationConfigProperty(propertyName = MdbContainer.DELIVERY_BATCH_TIMEOUT, propertyValue = "200")
+    })
+    public static class PlainBean implements Consumer {
+        @Resource
+        private TransactionSynchronizationRegistry registry;
+
+        @Override
+        public void receive(final String message) {
+            PLAIN_TRANSACTIONS.add(registry.getTransactionKey());
+        }
+    }
+
+    public static interface Consumer {
+        void receive(String message);
+    }
+
+    public static class BatchResourceAdapter implements ResourceAdapter {
+        private final Map<String, MessageEndpoint> endpoints = new ConcurrentHashMap<String, MessageEndpoint>();
+
+        @Override
+        public void start(final BootstrapContext bootstrapContext) {
+            // no-op
+        }
+
+        @Override
+        public void stop() {
+            // no-op
+        }
+
+        @Override
+        public void endpointActivation(final MessageEndpointFactory factory, final ActivationSpec activationSpec) throws ResourceException {
+            final String address = ((Account) activationSpec).getAddress();
+            endpoints.put(address, factory.createEndpoint("xa".equals(address) ? XA_RESOURCE : null));
+        }
+
+        @Override
+        public void endpointDeactivation(final MessageEndpointFactory factory, final ActivationSpec activationSpec) {
+            final MessageEndpoint endpoint = endpoints.remove(((Account) activationSpec).getAddress());
+            if (endpoint != null) {
+                endpoint.release();
+            }
+        }
+
+        @Override
+        public XAResource[] getXAResources(final ActivationSpec[] activationSpecs) {
+            return new XAResource[0];
+        }
+
+        public void deliver(final String address, final String message) throws Exception {
+            final MessageEndpoint endpoint = endpoints.get(address);
+            endpoint.beforeDelivery(Consumer.class.getMethod("receive", String.class));
+            ((Consumer) endpoint).receive(message);
+            endpoint.afterDelivery();
+        }
+    }
+
+    public static class Account implements ActivationSpec {
+        private ResourceAdapter resourceAdapter;
+        private String address;
+
+        @Override
+        public void validate() throws InvalidPropertyException {
+            // no-op
+        }
+
+        public String getAddress() {
+            return address;
+        }
+
+        public void setAddress(final String address) {
+            this.address = address;
+        }
+
+        @Override
+        public ResourceAdapter getResourceAdapter() {
+            return resourceAdapter;
+        }
+
+        @Override
+        public void setResourceAdapter(final ResourceAdapter resourceAdapter) {
+            this.resourceAdapter = resourceAdapter;
+        }
+    }
+
+    public static class RecordingXAResource implements XAResource {
+        private final AtomicInteger commits = new AtomicInteger();
+
+        @Override
+        public void commit(final Xid xid, final boolean onePhase) {
+            commits.incrementAndGet();
+        }
+
+        @Override
+        public void end(final Xid xid, final int flags) {
+            // no-op
+        }
+
+        @Override
+        public void forget(final Xid xid) {
+            // no-op
+        }
+
+        @Override
+        public int getTransactionTimeout() {
+            return 0;
+        }
+
+        @Override
+        public boolean isSameRM(final XAResource xaResource) {
+            return xaResource == this;
+        }
+
+        @Override
+        public int prepare(final Xid xid) {
+            return XA_OK;
+        }
+
+        @Override
+        public Xid[] recover(final int flag) {
+            return new Xid[0];
+        }
+
+        @Override
+        public void rollback(final Xid xid) {
+            // no-op
+        }
+
+        @Override
+        public boolean setTransactionTimeout(final int seconds) {
+            return false;
+        }
+
+        @Override
+        public void start(final Xid xid, final int flags) {
+            // no-op
+        }
+    }
+}
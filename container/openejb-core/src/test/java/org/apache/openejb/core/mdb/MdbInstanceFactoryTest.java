@@ -0,0 +1,282 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.core.mdb;
+
+import org.apache.openejb.BeanContext;
+import org.apache.openejb.assembler.classic.Assembler;
+import org.apache.openejb.assembler.classic.SecurityServiceInfo;
+import org.apache.openejb.assembler.classic.TransactionServiceInfo;
+import org.apache.openejb.config.AppModule;
+import org.apache.openejb.config.ConfigurationFactory;
+import org.apache.openejb.config.ConnectorModule;
+import org.apache.openejb.config.EjbModule;
+import org.apache.openejb.core.ivm.naming.InitContextFactory;
+import org.apache.openejb.jee.Connector;
+import org.apache.openejb.jee.EjbJar;
+import org.apache.openejb.jee.InboundResourceadapter;
+import org.apache.openejb.jee.MessageAdapter;
+import org.apache.openejb.jee.MessageDrivenBean;
+import org.apache.openejb.jee.MessageListener;
+import org.apache.openejb.jee.oejb3.EjbDeployment;
+import org.apache.openejb.jee.oejb3.OpenejbJar;
+import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.spi.ContainerSystem;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.annotation.PreDestroy;
+import javax.ejb.ActivationConfigProperty;
+import javax.ejb.MessageDriven;
+import javax.resource.spi.ActivationSpec;
+import javax.resource.spi.BootstrapContext;
+import javax.resource.spi.InvalidPropertyException;
+import javax.resource.spi.ResourceAdapter;
+import javax.resource.spi.UnavailableException;
+import javax.resource.spi.endpoint.MessageEndpointFactory;
+import javax.transaction.xa.XAResource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class MdbInstanceFactoryTest {
+    private Assembler assembler;
+    private MdbInstanceFactory factory;
+
+    @Before
+    public void deploy() throws Exception {
+        System.setProperty(javax.naming.Context.INITIAL_CONTEXT_FACTORY, InitContextFactory.class.getName());
+
+        final ConfigurationFactory config = new ConfigurationFactory();
+        assembler = new Assembler();
+        assembler.createTransactionManager(config.configureService(TransactionServiceInfo.class));
+        assembler.createSecurityService(config.configureService(SecurityServiceInfo.class));
+
+        final AppModule app = new AppModule(getClass().getClassLoader(), "pool");
+
+        final Connector connector = new Connector("pool-ra");
+        final org.apache.openejb.jee.ResourceAdapter adapter = new org.apache.openejb.jee.ResourceAdapter(NoopResourceAdapter.class);
+        connector.setResourceAdapter(adapter);
+        final InboundResourceadapter inbound = adapter.setInboundResourceAdapter(new InboundResourceadapter());
+        final MessageAdapter messageAdapter = inbound.setMessageAdapter(new MessageAdapter());
+        final MessageListener listener = messageAdapter.addMessageListener(new MessageListener(Listener.class, Spec.class));
+        listener.getActivationSpec().addRequiredConfigProperty("name");
+        app.getConnectorModules().add(new ConnectorModule(connector));
+
+        final EjbModule ejbModule = new EjbModule(new EjbJar(), new OpenejbJar());
+        final MessageDrivenBean bean = ejbModule.getEjbJar().addEnterpriseBean(new MessageDrivenBean(PooledBean.class));
+        final EjbDeployment deployment = ejbModule.getOpenejbJar().addEjbDeployment(bean);
+        deployment.getProperties().put("InstanceLimit", "5");
+        deployment.getProperties().put("MaxIdle", "2");
+        app.getEjbModules().add(ejbModule);
+
+        assembler.createApplication(config.configureApplication(app));
+
+        final BeanContext beanContext = SystemInstance.get().getComponent(ContainerSystem.class).getBeanContext("PooledBean");
+        factory = ((EndpointFactory) beanContext.getContainerData()).getInstanceFactory();
+    }
+
+    @After
+    public void destroy() {
+        assembler.destroy();
+    }
+
+    @Test
+    public void limitIsRespectedUnderConcurrency() throws Exception {
+        final int threads = 8;
+        final AtomicInteger live = new AtomicInteger();
+        final AtomicInteger maxLive = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+
+        final ExecutorService es = Executors.newFixedThreadPool(threads);
+        try {
+            final Collection<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(es.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws Exception {
+                        start.await();
+                        int refused = 0;
+                        for (int i = 0; i < 500; i++) {
+                            final Instance instance;
+                            try {
+                                instance = (Instance) factory.createInstance(false);
+                            } catch (final UnavailableException e) {
+                                refused++;
+                                continue;
+                            }
+
+                            final int current = live.incrementAndGet();
+                            int max;
+                            while (current > (max = maxLive.get()) && !maxLive.compareAndSet(max, current)) {
+                                // retry
+                            }
+                            Thread.yield();
+                            live.decrementAndGet();
+                            factory.freeInstance(instance, false);
+                        }
+                        return refused;
+                    }
+                }));
+            }
+            start.countDown();
+            for (final Future<Integer> future : futures) {
+                future.get();
+            }
+        } finally {
+            es.shutdownNow();
+        }
+
+        assertTrue("max live instances: " + maxLive.get(), maxLive.get() <= 5);
+        assertEquals(0, factory.getInstanceCount());
+        assertTrue("idle instances: " + factory.getIdleCount(), factory.getIdleCount() <= 2);
+    }
+
+    @Test
+    public void doubleFreeIsIgnored() throws Exception {
+        final Instance instance = (Instance) factory.createInstance(false);
+        assertEquals(1, factory.getInstanceCount());
+
+        factory.freeInstance(instance, false);
+        factory.freeInstance(instance, false);
+        assertEquals(0, factory.getInstanceCount());
+        assertEquals(1, factory.getIdleCount());
+
+        // the count didn't go below 0 so the limit still holds and the instance is pooled once
+        final List<Instance> instances = new ArrayList<Instance>();
+        for (int i = 0; i < 5; i++) {
+            instances.add((Instance) factory.createInstance(false));
+        }
+        try {
+            factory.createInstance(false);
+            fail("instance limit exceeded");
+        } catch (final UnavailableException e) {
+            // expected
+        }
+        assertNotSame(instances.get(0), instances.get(1));
+
+        for (final Instance created : instances) {
+            factory.freeInstance(created, false);
+        }
+        assertEquals(0, factory.getInstanceCount());
+        assertEquals(2, factory.getIdleCount());
+    }
+
+    @Test
+    public void instancesFreedAfterDestroyAreDestroyed() throws Exception {
+        final Instance pooled = (Instance) factory.createInstance(false);
+        final Instance used = (Instance) factory.createInstance(false);
+        factory.freeInstance(pooled, false);
+        assertEquals(1, factory.getIdleCount());
+
+        PooledBean.DESTROYED.set(0);
+        factory.destroy();
+        assertEquals(0, factory.getIdleCount());
+        assertEquals(1, PooledBean.DESTROYED.get());
+
+        // released by the resource adapter after the undeployment: not pooled anymore
+        factory.freeInstance(used, false);
+        assertEquals(0, factory.getInstanceCount());
+        assertEquals(0, factory.getIdleCount());
+        assertEquals(2, PooledBean.DESTROYED.get());
+    }
+
+    @MessageDriven(activationConfig = @ActivationConfigProperty(propertyName = "name", propertyValue = "pooled"))
+    public static class PooledBean implements Listener {
+        private static final AtomicInteger DESTROYED = new AtomicInteger();
+
+        @PreDestroy
+        public void destroy() {
+            DESTROYED.incrementAndGet();
+        }
+
+        @Override
+        public void onEvent(final String event) {
+            // no-op
+        }
+    }
+
+    public static interface Listener {
+        void onEvent(String event);
+    }
+
+    public static class NoopResourceAdapter implements ResourceAdapter {
+        @Override
+        public void start(final BootstrapContext bootstrapContext) {
+            // no-op
+        }
+
+        @Override
+        public void stop() {
+            // no-op
+        }
+
+        @Override
+        public void endpointActivation(final MessageEndpointFactory factory, final ActivationSpec activationSpec) {
+            // endpoints are not used, the test works on the instance factory directly
+        }
+
+        @Override
+        public void endpointDeactivation(final MessageEndpointFactory factory, final ActivationSpec activationSpec) {
+            // no-op
+        }
+
+        @Override
+        public XAResource[] getXAResources(final ActivationSpec[] activationSpecs) {
+            return new XAResource[0];
+        }
+    }
+
+    public static class Spec implements ActivationSpec {
+        private ResourceAdapter resourceAdapter;
+        private String name;
+
+        @Override
+        public void validate() throws InvalidPropertyException {
+            // no-op
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(final String name) {
+            this.name = name;
+        }
+
+        @Override
+        public ResourceAdapter getResourceAdapter() {
+            return resourceAdapter;
+        }
+
+        @Override
+        public void setResourceAdapter(final ResourceAdapter resourceAdapter) {
+            this.resourceAdapter = resourceAdapter;
+        }
+    }
+}
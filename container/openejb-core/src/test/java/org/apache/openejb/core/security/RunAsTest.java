@@ -16,25 +16,29 @@
  */
 package org.apache.openejb.core.security;
 
+import org.apache.openejb.core.ThreadContext;
 import org.apache.openejb.junit.ApplicationComposer;
 import org.apache.openejb.testing.Module;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
 import javax.annotation.Resource;
+import javax.annotation.security.RolesAllowed;
 import javax.annotation.security.RunAs;
 import javax.ejb.EJB;
 import javax.ejb.SessionContext;
 import javax.ejb.Singleton;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 @RunWith(ApplicationComposer.class)
 public class RunAsTest {
     @Module
     public Class<?>[] beans() {
-        return new Class<?>[] { MyRunAsBean.class };
+        return new Class<?>[] { MyRunAsBean.class, SecuredBean.class };
     }
 
     @EJB
@@ -46,12 +50,24 @@ public class RunAsTest {
         assertEquals("foo", bean.principal());
     }
 
+    @Test
+    public void runAsSecurityContextIsCreatedOnce() {
+        final Object first = bean.securedContext();
+        assertNotNull(first);
+        for (int i = 0; i < 10; i++) { // a new context per call would be a new authorization cache key each time
+            assertSame(first, bean.securedContext());
+        }
+    }
+
     @RunAs("foo")
     @Singleton
     public static class MyRunAsBean {
         @Resource
         private SessionContext ctx;
 
+        @EJB
+        private SecuredBean secured;
+
         public String principal() {
             return ctx.getCallerPrincipal().getName();
         }
@@ -59,5 +75,17 @@ public class RunAsTest {
         public boolean isInRole() {
             return ctx.isCallerInRole("foo");
         }
+
+        public Object securedContext() {
+            return secured.context();
+        }
+    }
+
+    @Singleton
+    public static class SecuredBean {
+        @RolesAllowed("foo")
+        public Object context() {
+            return ThreadContext.getThreadContext().get(AbstractSecurityService.SecurityContext.class);
+        }
     }
 }
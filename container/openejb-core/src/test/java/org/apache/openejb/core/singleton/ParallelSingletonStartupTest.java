@@ -0,0 +1,112 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.openejb.core.singleton;
+
+import org.apache.openejb.assembler.classic.Assembler;
+import org.apache.openejb.jee.EjbJar;
+import org.apache.openejb.jee.SingletonBean;
+import org.apache.openejb.junit.ApplicationComposer;
+import org.apache.openejb.testing.Configuration;
+import org.apache.openejb.testing.Module;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import javax.annotation.PostConstruct;
+import javax.ejb.DependsOn;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(ApplicationComposer.class)
+public class ParallelSingletonStartupTest {
+    private static final List<String> STARTED = new CopyOnWriteArrayList<String>();
+    private static final CountDownLatch BOTH_STARTING = new CountDownLatch(2);
+    private static volatile boolean concurrent = true;
+
+    @Configuration
+    public Properties config() {
+        final Properties p = new Properties();
+        p.setProperty(Assembler.OPENEJB_SINGLETON_STARTUP_PARALLEL, "true");
+        // the default is the number of cpus, the two independent singletons need two threads anywhere
+        p.setProperty(Assembler.OPENEJB_SINGLETON_STARTUP_THREADS, "4");
+        return p;
+    }
+
+    @Module
+    public EjbJar jar() {
+        final EjbJar ejbJar = new EjbJar();
+        ejbJar.addEnterpriseBean(new SingletonBean(Dependent.class).localBean());
+        ejbJar.addEnterpriseBean(new SingletonBean(First.class).localBean());
+        ejbJar.addEnterpriseBean(new SingletonBean(Second.class).localBean());
+        return ejbJar;
+    }
+
+    @Test
+    public void dependenciesFirstIndependentConcurrently() {
+        assertEquals(3, STARTED.size());
+        assertEquals("dependent", STARTED.get(2));
+        assertTrue(concurrent);
+    }
+
+    private static void waitOther() {
+        BOTH_STARTING.countDown();
+        try {
+            if (!BOTH_STARTING.await(10, TimeUnit.SECONDS)) {
+                concurrent = false;
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Startup
+    @Singleton
+    public static class First {
+        @PostConstruct
+        public void init() {
+            waitOther();
+            STARTED.add("first");
+        }
+    }
+
+    @Startup
+    @Singleton
+    public static class Second {
+        @PostConstruct
+        public void init() {
+            waitOther();
+            STARTED.add("second");
+        }
+    }
+
+    @Startup
+    @Singleton
+    @DependsOn({"First", "Second"})
+    public static class Dependent {
+        @PostConstruct
+        public void init() {
+            STARTED.add("dependent");
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.core.stateless;
+
+import org.apache.openejb.BeanContext;
+import org.apache.openejb.assembler.classic.Assembler;
+import org.apache.openejb.jee.EnterpriseBean;
+import org.apache.openejb.jee.StatelessBean;
+import org.apache.openejb.junit.ApplicationComposer;
+import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.spi.ContainerSystem;
+import org.apache.openejb.testing.AppResource;
+import org.apache.openejb.testing.Configuration;
+import org.apache.openejb.testing.Module;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import javax.naming.Context;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(ApplicationComposer.class)
+public class LazyInitializationTest {
+    @Configuration
+    public Properties config() {
+        final Properties p = new Properties();
+        p.setProperty(Assembler.OPENEJB_LAZY_INITIALIZATION, "true");
+        return p;
+    }
+
+    @Module
+    public EnterpriseBean bean() {
+        return new StatelessBean(LazyBean.class).localBean();
+    }
+
+    @AppResource
+    private Context context;
+
+    @Test
+    public void proxyCreatedOnFirstLookup() throws Exception {
+        final BeanContext beanContext = SystemInstance.get().getComponent(ContainerSystem.class).getBeanContext("LazyBean");
+        final BeanContext.ProxyClass proxyClass = beanContext.get(BeanContext.ProxyClass.class);
+        assertFalse(proxyClass.isGenerated());
+
+        assertEquals("ok", LazyBean.class.cast(context.lookup("LazyBeanLocalBean")).ok());
+        assertTrue(proxyClass.isGenerated());
+    }
+
+    public static class LazyBean {
+        public String ok() {
+            return "ok";
+        }
+    }
+}
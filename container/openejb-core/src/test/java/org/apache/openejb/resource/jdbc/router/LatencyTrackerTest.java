@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.resource.jdbc.router;
+
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyTrackerTest {
+    @Test
+    public void ejectAndReadmit() throws Exception {
+        final DataSource ds1 = dataSource();
+        final DataSource ds2 = dataSource();
+        final List<DataSource> all = Arrays.asList(ds1, ds2);
+
+        final LatencyTracker tracker = new LatencyTracker();
+        tracker.setEjectionThreshold(2);
+        tracker.setEjectionBackoff(100);
+        tracker.success(ds2, 1000);
+
+        tracker.failure(ds1);
+        assertFalse(tracker.health(ds1).isEjected());
+        tracker.failure(ds1);
+        assertTrue(tracker.health(ds1).isEjected());
+
+        for (int i = 0; i < 10; i++) { // ejected so last resort only
+            assertEquals(ds2, tracker.sort(all).get(0));
+        }
+
+        Thread.sleep(150);
+        assertEquals(ds1, tracker.sort(all).get(0)); // probe
+        assertEquals(ds2, tracker.sort(all).get(0)); // a single probe at a time
+
+        tracker.success(ds1, 10);
+        assertFalse(tracker.health(ds1).isEjected());
+        assertEquals(0, tracker.health(ds1).getConsecutiveErrors());
+    }
+
+    @Test
+    public void preferLowLatency() {
+        final DataSource fast = dataSource();
+        final DataSource slow = dataSource();
+        final List<DataSource> all = Arrays.asList(slow, fast);
+
+        final LatencyTracker tracker = new LatencyTracker();
+        tracker.success(fast, 1000);
+        tracker.success(slow, 1000000);
+
+        int fastFirst = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (tracker.sort(all).get(0) == fast) {
+                fastFirst++;
+            }
+        }
+        assertTrue(fastFirst > 900);
+    }
+
+    private static DataSource dataSource() {
+        return DataSource.class.cast(Proxy.newProxyInstance(LatencyTrackerTest.class.getClassLoader(), new Class<?>[]{DataSource.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+                if ("hashCode".equals(method.getName())) {
+                    return System.identityHashCode(proxy);
+                }
+                if ("equals".equals(method.getName())) {
+                    return proxy == args[0];
+                }
+                return null;
+            }
+        }));
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.util;
+
+import org.apache.openejb.loader.Files;
+import org.apache.openejb.loader.IO;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeNotNull;
+
+public class DirectoryWatcherTest {
+    private File base;
+    private DirectoryWatcher watcher;
+    private final Semaphore calls = new Semaphore(0);
+    private final AtomicInteger settling = new AtomicInteger();
+
+    @Before
+    public void init() {
+        base = new File("target/DirectoryWatcherTest");
+        Files.delete(base);
+        Files.mkdirs(base);
+
+        watcher = DirectoryWatcher.watch("test", Collections.singleton(base), 200, false, new DirectoryWatcher.Callback() {
+            @Override
+            public boolean changed() {
+                calls.release();
+                return settling.getAndDecrement() > 0;
+            }
+        });
+        assumeNotNull(watcher); // file system without native watch support
+    }
+
+    @After
+    public void stop() {
+        if (watcher != null) {
+            watcher.stop();
+        }
+        Files.delete(base);
+    }
+
+    @Test
+    public void burstCoalesced() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            IO.writeString(new File(base, "file" + i + ".txt"), "content");
+        }
+
+        assertTrue(calls.tryAcquire(10, TimeUnit.SECONDS));
+        Thread.sleep(500);
+        assertEquals(0, calls.availablePermits());
+    }
+
+    @Test
+    public void newSubDirectoryWatched() throws Exception {
+        final File dir = Files.mkdirs(new File(base, "sub"));
+        assertTrue(calls.tryAcquire(10, TimeUnit.SECONDS));
+
+        IO.writeString(new File(dir, "file.txt"), "content");
+        assertTrue(calls.tryAcquire(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void calledAgainWhileSettling() throws Exception {
+        settling.set(1);
+        IO.writeString(new File(base, "file.txt"), "content");
+
+        assertTrue(calls.tryAcquire(2, 10, TimeUnit.SECONDS));
+    }
+}
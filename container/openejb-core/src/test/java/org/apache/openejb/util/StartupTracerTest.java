@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.util;
+
+import org.apache.openejb.loader.IO;
+import org.apache.openejb.loader.SystemInstance;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class StartupTracerTest {
+    private File trace;
+
+    @Before
+    public void init() throws Exception {
+        trace = File.createTempFile("startup-trace", ".json");
+        SystemInstance.reset();
+        SystemInstance.get().setProperty(StartupTracer.OPENEJB_STARTUP_TRACE, "true");
+        SystemInstance.get().setProperty(StartupTracer.OPENEJB_STARTUP_TRACE_FILE, trace.getAbsolutePath());
+        StartupTracer.reset();
+    }
+
+    @After
+    public void reset() {
+        StartupTracer.reset();
+        SystemInstance.reset();
+        if (!trace.delete()) {
+            trace.deleteOnExit();
+        }
+    }
+
+    @Test
+    public void timeline() throws Exception {
+        final StartupTracer.Span app = StartupTracer.start("assembler", "my\"app");
+        final StartupTracer.Span unit = StartupTracer.start("persistence unit", "unit");
+        unit.stop();
+        app.stop();
+        app.stop(); // ignored
+
+        StartupTracer.report("test");
+
+        final String json = IO.slurp(trace);
+        assertTrue(json.startsWith("{\"traceEvents\":["));
+        assertTrue(json.contains("\"name\":\"assembler\""));
+        assertTrue(json.contains("\"module\":\"my\\\"app\""));
+        assertTrue(json.contains("\"name\":\"persistence unit\""));
+        assertTrue(json.contains("\"name\":\"thread_name\""));
+        assertEquals(2, json.split("\"ph\":\"X\"").length - 1);
+    }
+
+    @Test
+    public void timelineIsBounded() throws Exception {
+        SystemInstance.get().setProperty(StartupTracer.OPENEJB_STARTUP_TRACE_MAX_SPANS, "2");
+        for (int i = 0; i < 3; i++) {
+            StartupTracer.start("assembler", "app" + i).stop();
+            StartupTracer.report("app" + i);
+        }
+
+        final String json = IO.slurp(trace);
+        assertEquals(2, json.split("\"ph\":\"X\"").length - 1);
+        assertFalse(json.contains("\"app0\""));
+        assertTrue(json.contains("\"app2\""));
+    }
+
+    @Test
+    public void inactive() throws Exception {
+        SystemInstance.get().setProperty(StartupTracer.OPENEJB_STARTUP_TRACE, "false");
+        StartupTracer.start("assembler", "app").stop();
+        StartupTracer.report("test");
+        assertEquals(0, trace.length());
+    }
+
+    @Test
+    public void summary() {
+        final StartupTracer.Span first = StartupTracer.start("AnnotationDeployer", "app");
+        first.stop();
+        final StartupTracer.Span second = StartupTracer.start("AnnotationDeployer", "other");
+        second.stop();
+
+        final String summary = StartupTracer.summary("test", Arrays.asList(first, second));
+        assertTrue(summary.contains("AnnotationDeployer"));
+        assertTrue(summary.contains("app: AnnotationDeployer="));
+        assertTrue(summary.contains("other: AnnotationDeployer="));
+        assertFalse(summary.contains("null"));
+    }
+}
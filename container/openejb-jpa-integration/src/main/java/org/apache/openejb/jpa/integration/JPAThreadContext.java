@@ -16,10 +16,52 @@
  */
 package org.apache.openejb.jpa.integration;
 
+import java.util.AbstractMap;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 // use to store info while creating the EMF
 public class JPAThreadContext {
-    public static final Map<String, Object> infos = new HashMap<String, Object>();
+    // per thread since units can be created concurrently
+    public static final Map<String, Object> infos = new ThreadLocalMap();
+
+    private static class ThreadLocalMap extends AbstractMap<String, Object> {
+        private final ThreadLocal<Map<String, Object>> delegate = new ThreadLocal<Map<String, Object>>() {
+            @Override
+            protected Map<String, Object> initialValue() {
+                return new HashMap<String, Object>();
+            }
+        };
+
+        @Override
+        public Object put(final String key, final Object value) {
+            return delegate.get().put(key, value);
+        }
+
+        @Override
+        public Object get(final Object key) {
+            return delegate.get().get(key);
+        }
+
+        @Override
+        public boolean containsKey(final Object key) {
+            return delegate.get().containsKey(key);
+        }
+
+        @Override
+        public Object remove(final Object key) {
+            return delegate.get().remove(key);
+        }
+
+        @Override
+        public void clear() {
+            delegate.remove();
+        }
+
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+            return delegate.get().entrySet();
+        }
+    }
 }
@@ -0,0 +1,56 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package org.apache.openejb.maven.plugin;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.openejb.config.AnnotationIndex;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Writes the annotation index of the project classes, used by TomEE to skip the classes
+ * which can't contribute to the annotation scanning at deploy time.
+ */
+@Mojo(name = "index", defaultPhase = LifecyclePhase.PROCESS_CLASSES)
+public class IndexMojo extends AbstractMojo {
+    @Parameter(property = "tomee-plugin.index.classes", defaultValue = "${project.build.outputDirectory}")
+    protected File classes;
+
+    @Parameter(property = "tomee-plugin.index.skip", defaultValue = "false")
+    protected boolean skip;
+
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        if (skip || !classes.exists()) {
+            getLog().info("Skipping annotation index");
+            return;
+        }
+
+        try {
+            final AnnotationIndex index = AnnotationIndex.write(classes);
+            getLog().info("Annotation index written in " + classes.getAbsolutePath() + ", " + index.getSkipped().size() + " classes skipped");
+        } catch (final IOException e) {
+            throw new MojoExecutionException(e.getMessage(), e);
+        }
+    }
+}
@@ -22,6 +22,7 @@ import org.apache.openejb.assembler.Deployer;
 import org.apache.openejb.client.RemoteInitialContextFactory;
 import org.apache.openejb.config.RemoteServer;
 import org.apache.openejb.loader.Files;
+import org.apache.openejb.util.DirectoryWatcher;
 import org.codehaus.plexus.util.FileUtils;
 
 import javax.naming.Context;
@@ -47,6 +48,7 @@ import java.util.regex.Pattern;
 public abstract class UpdatableTomEEMojo extends AbstractTomEEMojo {
     public static final int INITIAL_DELAY = 5000;
     public static final String RELOAD_CMD = "reload";
+    public static final long QUIET_PERIOD = 500;
 
     @Parameter
     private Synchronization synchronization;
@@ -63,8 +65,12 @@ public abstract class UpdatableTomEEMojo extends AbstractTomEEMojo {
     @Parameter(property = "tomee-plugin.reload-on-update", defaultValue = "false")
     private boolean reloadOnUpdate;
 
+    @Parameter(property = "tomee-plugin.watch", defaultValue = "true")
+    private boolean watch;
+
     private Timer timer;
     private SynchronizerRedeployer task;
+    private DirectoryWatcher watcher;
 
     @Override
     protected void run() {
@@ -144,6 +150,9 @@ public abstract class UpdatableTomEEMojo extends AbstractTomEEMojo {
             Runtime.getRuntime().addShutdownHook(new Thread() {
                 @Override
                 public void run() {
+                    if (watcher != null) {
+                        watcher.stop();
+                    }
                     task.cancel();
                     timer.cancel();
                 }
@@ -175,6 +184,26 @@ public abstract class UpdatableTomEEMojo extends AbstractTomEEMojo {
         // serializing synchronizers to avoid multiple updates at the same time and reload a single time the app
         if (!synchronizers.isEmpty()) {
             task = new SynchronizerRedeployer(synchronizers);
+
+            if (watch) {
+                final Collection<File> sources = new ArrayList<File>();
+                for (final Synchronizer s : synchronizers) {
+                    sources.addAll(s.synchronization.updates().keySet());
+                }
+                watcher = DirectoryWatcher.watch("tomee-maven-plugin-synchronizer", sources, QUIET_PERIOD, false, new DirectoryWatcher.Callback() {
+                    @Override
+                    public boolean changed() {
+                        task.run();
+                        return false;
+                    }
+                });
+                if (watcher != null) {
+                    getLog().info("Starting synchronizer watching " + sources);
+                    return true;
+                }
+                getLog().debug("Can't watch " + sources + ", polling them");
+            }
+
             getLog().info("Starting synchronizer with an update interval of " + interval);
             if (interval > INITIAL_DELAY) {
                 timer.scheduleAtFixedRate(task, interval, interval);
@@ -19,7 +19,6 @@ package org.apache.openejb.server.cxf.rs;
 import org.apache.cxf.common.logging.LogUtils;
 import org.apache.cxf.endpoint.Server;
 import org.apache.cxf.endpoint.ServerImpl;
-import org.apache.cxf.helpers.IOUtils;
 import org.apache.cxf.jaxrs.JAXRSServerFactoryBean;
 import org.apache.cxf.jaxrs.JAXRSServiceImpl;
 import org.apache.cxf.jaxrs.ext.RequestHandler;
@@ -68,7 +67,6 @@ import javax.management.ObjectName;
 import javax.management.openmbean.TabularData;
 import javax.naming.Context;
 import javax.servlet.ServletException;
-import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.ws.rs.core.Application;
@@ -115,6 +113,8 @@ public class CxfRsHttpListener implements RsHttpListener {
     private String context = "";
     private String servlet = "";
     private final Collection<Pattern> staticResourcesList = new CopyOnWriteArrayList<Pattern>();
+    private final StaticResourceCache staticResources = new StaticResourceCache();
+    private ProviderCache providerCache;
     private final List<ObjectName> jmxNames = new ArrayList<ObjectName>();
 
     static {
@@ -206,25 +206,21 @@ public class CxfRsHttpListener implements RsHttpListener {
     protected void serveStaticContent(final HttpServletRequest request,
                                       final HttpServletResponse response,
                                       final String pathInfo) throws ServletException {
-        final InputStream is = request.getServletContext().getResourceAsStream(pathInfo);
-        if (is == null) {
-            throw new ServletException("Static resource " + pathInfo + " is not available");
+        String type = null;
+        final int ind = pathInfo.lastIndexOf(".");
+        if (ind != -1 && ind < pathInfo.length()) {
+            type = STATIC_CONTENT_TYPES.get(pathInfo.substring(ind + 1));
         }
-        try {
-            final int ind = pathInfo.lastIndexOf(".");
-            if (ind != -1 && ind < pathInfo.length()) {
-                final String type = STATIC_CONTENT_TYPES.get(pathInfo.substring(ind + 1));
-                if (type != null) {
-                    response.setContentType(type);
-                }
-            }
 
-            final ServletOutputStream os = response.getOutputStream();
-            IOUtils.copy(is, os);
-            os.flush();
+        final boolean served;
+        try {
+            served = staticResources.serve(request, response, pathInfo, type);
         } catch (final IOException ex) {
             throw new ServletException("Static resource " + pathInfo + " can not be written to the output stream");
         }
+        if (!served) {
+            throw new ServletException("Static resource " + pathInfo + " is not available");
+        }
 
     }
 
@@ -266,6 +262,8 @@ public class CxfRsHttpListener implements RsHttpListener {
         final ClassLoader oldLoader = Thread.currentThread().getContextClassLoader();
         Thread.currentThread().setContextClassLoader(CxfUtil.initBusLoader());
         try {
+            providerCache = ProviderCache.of(clazz.getClassLoader());
+
             final JAXRSServerFactoryBean factory = newFactory(address);
             configureFactory(additionalProviders, configuration, factory);
             factory.setResourceClasses(clazz);
@@ -324,11 +322,13 @@ public class CxfRsHttpListener implements RsHttpListener {
     }
 
     private Object newProvider(final Class<?> clazz) throws IllegalAccessException, InstantiationException {
-        return clazz.newInstance();
+        return providerCache.provider(clazz);
     }
 
     @Override
     public void undeploy() {
+        staticResources.clear();
+
         // unregister all MBeans
         for (final ObjectName objectName : jmxNames) {
             LocalMBeanServer.unregisterSilently(objectName);
@@ -359,6 +359,8 @@ public class CxfRsHttpListener implements RsHttpListener {
         final ClassLoader oldLoader = Thread.currentThread().getContextClassLoader();
         Thread.currentThread().setContextClassLoader(CxfUtil.initBusLoader());
         try {
+            providerCache = ProviderCache.of(classLoader);
+
             final JAXRSServerFactoryBean factory = newFactory(prefix);
             configureFactory(additionalProviders, serviceConfiguration, factory);
             factory.setApplication(application);
@@ -618,6 +620,7 @@ public class CxfRsHttpListener implements RsHttpListener {
                 providers.addAll(providers(services, additionalProviders));
             } else {
                 providers.addAll(defaultProviders());
+                providers.add(providerCache.getJAXBContextResolver());
             }
             factory.setProviders(providers);
         } else {
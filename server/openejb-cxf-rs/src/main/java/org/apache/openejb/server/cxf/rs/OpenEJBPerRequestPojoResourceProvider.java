@@ -21,7 +21,7 @@ import org.apache.cxf.jaxrs.utils.InjectionUtils;
 import org.apache.cxf.jaxrs.utils.ResourceUtils;
 import org.apache.cxf.message.Message;
 import org.apache.openejb.Injection;
-import org.apache.openejb.InjectionProcessor;
+import org.apache.openejb.InjectionPlan;
 import org.apache.openejb.OpenEJBException;
 import org.apache.webbeans.component.InjectionTargetBean;
 import org.apache.webbeans.config.WebBeansContext;
@@ -45,7 +45,6 @@ import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Set;
@@ -59,6 +58,7 @@ public class OpenEJBPerRequestPojoResourceProvider implements ResourceProvider {
     protected final Method postConstructMethod;
     protected final Method preDestroyMethod;
     protected final ClassLoader classLoader;
+    protected final InjectionPlan injectionPlan;
 
     private final Collection<Class<?>> contextTypes = new HashSet<Class<?>>();
     private final BeanManagerImpl bm;
@@ -77,6 +77,7 @@ public class OpenEJBPerRequestPojoResourceProvider implements ResourceProvider {
         }
         postConstructMethod = ResourceUtils.findPostConstructMethod(clazz);
         preDestroyMethod = ResourceUtils.findPreDestroyMethod(clazz);
+        injectionPlan = InjectionPlan.compile(constructor.getDeclaringClass(), injections);
 
         bm = webbeansContext.getBeanManagerImpl();
         if (bm.isInUse()) {
@@ -268,7 +269,6 @@ public class OpenEJBPerRequestPojoResourceProvider implements ResourceProvider {
 
     private class DefaultBeanCreator implements BeanCreator {
         private final Message m;
-        private InjectionProcessor<?> injector;
         private CreationalContext creationalContext;
         private Object instance;
 
@@ -282,8 +282,7 @@ public class OpenEJBPerRequestPojoResourceProvider implements ResourceProvider {
             try {
                 instance = constructor.newInstance(values);
 
-                injector = new InjectionProcessor<Object>(instance, new ArrayList<Injection>(injections), InjectionProcessor.unwrap(context));
-                instance = injector.createInstance();
+                instance = injectionPlan.inject(instance, context);
 
                 final BeanManager bm = webbeansContext.getBeanManagerImpl();
                 creationalContext = bm.createCreationalContext(null);
@@ -294,7 +293,6 @@ public class OpenEJBPerRequestPojoResourceProvider implements ResourceProvider {
                     // ignored
                 }
 
-                // injector.postConstruct(); // it doesn't know it
                 InjectionUtils.invokeLifeCycleMethod(instance, postConstructMethod);
                 return instance;
             } catch (final InstantiationException ex) {
@@ -321,9 +319,6 @@ public class OpenEJBPerRequestPojoResourceProvider implements ResourceProvider {
             try {
                 InjectionUtils.invokeLifeCycleMethod(instance, preDestroyMethod);
             } finally {
-                if (injector != null) {
-                    injector.preDestroy();
-                }
                 if (creationalContext != null) {
                     creationalContext.release();
                 }
@@ -0,0 +1,200 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.server.cxf.rs;
+
+import org.apache.openejb.util.LogCategory;
+import org.apache.openejb.util.Logger;
+
+import javax.ws.rs.core.Context;
+import javax.ws.rs.ext.ContextResolver;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.XmlType;
+import java.lang.annotation.Annotation;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * What the endpoints of an application (a classloader) can share: the providers without any @Context injection
+ * point (CXF binds the injected proxies per endpoint so the other ones can't be shared) and the JAXB contexts
+ * of the default JAXB/JSON providers.
+ *
+ * A cache lives as long as a listener of the application references it.
+ */
+class ProviderCache {
+    private static final Logger LOGGER = Logger.getInstance(LogCategory.OPENEJB_RS, ProviderCache.class);
+
+    private static final Map<ClassLoader, WeakReference<ProviderCache>> CACHES = new WeakHashMap<ClassLoader, WeakReference<ProviderCache>>();
+
+    private final Map<Class<?>, Object> providers = new HashMap<Class<?>, Object>();
+    private final Map<Class<?>, Boolean> shareable = new HashMap<Class<?>, Boolean>();
+    private final JAXBContextResolver jaxbContextResolver = new JAXBContextResolver();
+
+    static ProviderCache of(final ClassLoader loader) {
+        synchronized (CACHES) {
+            final WeakReference<ProviderCache> reference = CACHES.get(loader);
+            ProviderCache cache = reference != null ? reference.get() : null;
+            if (cache == null) {
+                cache = new ProviderCache();
+                CACHES.put(loader, new WeakReference<ProviderCache>(cache));
+            }
+            return cache;
+        }
+    }
+
+    /**
+     * @return the shared instance of the provider if it can be shared, a new one otherwise
+     */
+    synchronized Object provider(final Class<?> clazz) throws IllegalAccessException, InstantiationException {
+        Object provider = providers.get(clazz);
+        if (provider != null) {
+            return provider;
+        }
+
+        provider = clazz.newInstance();
+        if (isShareable(clazz)) {
+            providers.put(clazz, provider);
+        }
+        return provider;
+    }
+
+    ContextResolver<JAXBContext> getJAXBContextResolver() {
+        return jaxbContextResolver;
+    }
+
+    private boolean isShareable(final Class<?> clazz) {
+        Boolean value = shareable.get(clazz);
+        if (value == null) {
+            value = !hasContextInjection(clazz);
+            shareable.put(clazz, value);
+        }
+        return value;
+    }
+
+    private static boolean hasContextInjection(final Class<?> clazz) {
+        for (final Constructor<?> constructor : clazz.getConstructors()) {
+            for (final Annotation[] annotations : constructor.getParameterAnnotations()) {
+                for (final Annotation annotation : annotations) {
+                    if (Context.class.equals(annotation.annotationType())) {
+                        return true;
+                    }
+                }
+            }
+        }
+        for (Class<?> c = clazz; c != null && !Object.class.equals(c); c = c.getSuperclass()) {
+            for (final Field field : c.getDeclaredFields()) {
+                if (field.isAnnotationPresent(Context.class)) {
+                    return true;
+                }
+            }
+            for (final Method method : c.getDeclaredMethods()) {
+                if (method.isAnnotationPresent(Context.class)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Creates the contexts as CXF does (a package context when the package has an ObjectFactory or a jaxb.index,
+     * a context for the class otherwise) but only once for all the endpoints of the application.
+     * Types which are not JAXB beans are left to the providers, as the types JAXB fails on: the failure is cached too.
+     *
+     * Lock free: two requests can create the first context of a type concurrently but only one is kept.
+     */
+    private static class JAXBContextResolver implements ContextResolver<JAXBContext> {
+        private static final Object NO_CONTEXT = new Object();
+
+        private final ConcurrentMap<Class<?>, Object> classContexts = new ConcurrentHashMap<Class<?>, Object>();
+        private final ConcurrentMap<String, Object> packageContexts = new ConcurrentHashMap<String, Object>();
+
+        @Override
+        public JAXBContext getContext(final Class<?> type) {
+            if (type == null || !type.isAnnotationPresent(XmlRootElement.class) && !type.isAnnotationPresent(XmlType.class)) {
+                return null;
+            }
+
+            Object context = classContexts.get(type);
+            if (context == null) {
+                context = packageContext(type);
+                if (context == null) {
+                    try {
+                        context = JAXBContext.newInstance(type);
+                    } catch (final JAXBException e) {
+                        LOGGER.debug("Can't create a JAXB context for " + type.getName() + ", the provider will", e);
+                        context = NO_CONTEXT;
+                    }
+                }
+                final Object existing = classContexts.putIfAbsent(type, context);
+                if (existing != null) {
+                    context = existing;
+                }
+            }
+            return context != NO_CONTEXT ? (JAXBContext) context : null;
+        }
+
+        private JAXBContext packageContext(final Class<?> type) {
+            final String name = type.getName();
+            final int dot = name.lastIndexOf('.');
+            if (dot < 0) {
+                return null;
+            }
+
+            final String packageName = name.substring(0, dot);
+            Object context = packageContexts.get(packageName);
+            if (context == null) {
+                context = NO_CONTEXT;
+                final ClassLoader loader = type.getClassLoader();
+                if (loader != null && hasPackageDescription(loader, packageName)) {
+                    try {
+                        context = JAXBContext.newInstance(packageName, loader);
+                    } catch (final JAXBException e) {
+                        LOGGER.debug("Can't create a JAXB context for the package " + packageName, e);
+                    }
+                }
+                final Object existing = packageContexts.putIfAbsent(packageName, context);
+                if (existing != null) {
+                    context = existing;
+                }
+            }
+            return context != NO_CONTEXT ? (JAXBContext) context : null;
+        }
+
+        private static boolean hasPackageDescription(final ClassLoader loader, final String packageName) {
+            if (loader.getResource(packageName.replace('.', '/') + "/jaxb.index") != null) {
+                return true;
+            }
+            try {
+                loader.loadClass(packageName + ".ObjectFactory");
+                return true;
+            } catch (final ClassNotFoundException e) {
+                return false;
+            } catch (final NoClassDefFoundError e) {
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,415 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.server.cxf.rs;
+
+import org.apache.openejb.loader.IO;
+import org.apache.openejb.loader.SystemInstance;
+
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Method;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Static resources of a JAX-RS application: the small ones are kept in memory (LRU, bounded by their total size),
+ * the large files are memory-mapped (bounded by their total size too) and the others are streamed as before.
+ * Resources get an ETag honoring If-None-Match and a precompressed "resource.gz" is served to the clients
+ * accepting gzip.
+ *
+ * Resources backed by a file are reloaded when the file changes. A mapping is released as soon as its resource
+ * is evicted and no request is writing it, so the file can be deleted on undeploy even on Windows.
+ */
+class StaticResourceCache {
+    public static final String CACHE_SIZE = "openejb.cxf-rs.static-resources.cache-size";
+    public static final String MAX_CACHED_RESOURCE_SIZE = "openejb.cxf-rs.static-resources.max-cached-size";
+    public static final String MAX_MAPPED_SIZE = "openejb.cxf-rs.static-resources.max-mapped-size";
+
+    private static final int COPY_BUFFER_SIZE = 8192;
+
+    private final long cacheSize;
+    private final long maxCachedSize;
+    private final long maxMappedSize;
+    private final Map<String, Resource> resources = new LinkedHashMap<String, Resource>(16, 0.75f, true);
+    private long size;
+    private long mappedSize; // guarded by this, like the users and cached flags of the resources
+
+    StaticResourceCache() {
+        this(SystemInstance.get().getOptions().get(CACHE_SIZE, 10L * 1024 * 1024),
+            SystemInstance.get().getOptions().get(MAX_CACHED_RESOURCE_SIZE, 64L * 1024),
+            SystemInstance.get().getOptions().get(MAX_MAPPED_SIZE, 64L * 1024 * 1024));
+    }
+
+    StaticResourceCache(final long cacheSize, final long maxCachedSize, final long maxMappedSize) {
+        this.cacheSize = cacheSize;
+        this.maxCachedSize = Math.min(maxCachedSize, cacheSize);
+        this.maxMappedSize = maxMappedSize;
+    }
+
+    /**
+     * @return false if the resource doesn't exist
+     */
+    boolean serve(final HttpServletRequest request, final HttpServletResponse response, final String path, final String contentType) throws IOException {
+        final ServletContext servletContext = request.getServletContext();
+        final Resource resource = find(servletContext, path);
+        if (resource == null) {
+            return false;
+        }
+
+        try {
+            response.setHeader("ETag", resource.etag);
+            if (resource.lastModified > 0) {
+                response.setDateHeader("Last-Modified", resource.lastModified);
+            }
+            if (contentType != null) {
+                response.setContentType(contentType);
+            }
+
+            Resource body = resource;
+            if (resource.gzip != null) {
+                response.setHeader("Vary", "Accept-Encoding");
+                if (acceptsGzip(request)) {
+                    response.setHeader("Content-Encoding", "gzip");
+                    response.setHeader("ETag", resource.gzip.etag);
+                    body = resource.gzip;
+                }
+            }
+
+            if (matches(request.getHeader("If-None-Match"), body.etag)) {
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return true;
+            }
+
+            if (body.length >= 0 && body.length <= Integer.MAX_VALUE) {
+                response.setContentLength((int) body.length);
+            }
+            final OutputStream os = response.getOutputStream();
+            body.write(os);
+            os.flush();
+            return true;
+        } finally {
+            release(resource);
+        }
+    }
+
+    synchronized void clear() {
+        for (final Resource resource : resources.values()) {
+            evicted(resource);
+        }
+        resources.clear();
+        size = 0;
+    }
+
+    synchronized long getMappedSize() {
+        return mappedSize;
+    }
+
+    /**
+     * @return the resource, to release once served
+     */
+    private Resource find(final ServletContext servletContext, final String path) throws IOException {
+        Resource resource;
+        synchronized (this) {
+            resource = resources.get(path);
+            if (resource != null) {
+                resource.users++;
+            }
+        }
+        if (resource != null) {
+            if (!resource.isModified()) {
+                return resource;
+            }
+            release(resource);
+        }
+
+        final URL url = servletContext.getResource(path);
+        if (url == null) {
+            if (resource != null) {
+                remove(path);
+            }
+            return null;
+        }
+
+        resource = load(url);
+        final URL gzipUrl = servletContext.getResource(path + ".gz");
+        if (gzipUrl != null) {
+            try {
+                resource.gzip = load(gzipUrl);
+            } catch (final IOException e) {
+                release(resource);
+                throw e;
+            }
+        }
+
+        if (resource.isCacheable()) {
+            put(path, resource);
+        } else {
+            remove(path);
+        }
+        return resource;
+    }
+
+    private Resource load(final URL url) throws IOException {
+        final File file = toFile(url);
+        if (file != null) {
+            final long length = file.length();
+            final long lastModified = file.lastModified();
+            if (length <= maxCachedSize) {
+                return new Resource(url, file, length, lastModified, readBytes(IO.read(file)), null, null);
+            }
+            return new Resource(url, file, length, lastModified, null, map(file), null);
+        }
+
+        // opened once: read if small enough to be cached, else streamed by the request loading it
+        final URLConnection connection = url.openConnection();
+        final long length = connection.getContentLength();
+        final long lastModified = connection.getLastModified();
+        final InputStream is = connection.getInputStream();
+        if (length >= 0 && length <= maxCachedSize) {
+            final byte[] content = readBytes(is);
+            return new Resource(url, null, content.length, lastModified, content, null, null);
+        }
+        return new Resource(url, null, length, lastModified, null, null, is);
+    }
+
+    private static byte[] readBytes(final InputStream is) throws IOException {
+        try {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            IO.copy(is, out);
+            return out.toByteArray();
+        } finally {
+            IO.close(is);
+        }
+    }
+
+    private synchronized void put(final String path, final Resource resource) {
+        resource.cached = true;
+        final Resource old = resources.put(path, resource);
+        if (old != null) {
+            size -= old.heapSize();
+            evicted(old);
+        }
+        size += resource.heapSize();
+
+        final Iterator<Resource> eldest = resources.values().iterator();
+        while (size > cacheSize && eldest.hasNext()) {
+            final Resource evicted = eldest.next();
+            if (evicted == resource) {
+                continue;
+            }
+            size -= evicted.heapSize();
+            eldest.remove();
+            evicted(evicted);
+        }
+    }
+
+    private synchronized void remove(final String path) {
+        final Resource old = resources.remove(path);
+        if (old != null) {
+            size -= old.heapSize();
+            evicted(old);
+        }
+    }
+
+    private synchronized void release(final Resource resource) {
+        resource.users--;
+        if (!resource.cached && resource.users == 0) {
+            dispose(resource);
+        }
+    }
+
+    private void evicted(final Resource resource) {
+        resource.cached = false;
+        if (resource.users == 0) {
+            dispose(resource);
+        }
+    }
+
+    private void dispose(final Resource resource) {
+        for (Resource r = resource; r != null; r = r.gzip) {
+            if (r.mapped != null) {
+                mappedSize -= r.length;
+                unmap(r.mapped);
+            }
+            if (r.stream != null) {
+                IO.close(r.stream);
+            }
+        }
+    }
+
+    private static File toFile(final URL url) {
+        if (!"file".equals(url.getProtocol())) {
+            return null;
+        }
+        try {
+            final File file = new File(url.toURI());
+            return file.isFile() ? file : null;
+        } catch (final URISyntaxException e) {
+            return null;
+        } catch (final IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return the mapped file or null if mapping it would exceed the mapped size, the file is then streamed
+     */
+    private ByteBuffer map(final File file) throws IOException {
+        final long length = file.length();
+        synchronized (this) {
+            if (length > Integer.MAX_VALUE || mappedSize + length > maxMappedSize) {
+                return null;
+            }
+            mappedSize += length;
+        }
+
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+        boolean mapped = false;
+        try {
+            final ByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, length);
+            mapped = true;
+            return buffer;
+        } finally {
+            raf.close();
+            if (!mapped) {
+                synchronized (this) {
+                    mappedSize -= length;
+                }
+            }
+        }
+    }
+
+    /**
+     * Releases the mapping now instead of when the buffer is garbage collected, no request uses it anymore.
+     */
+    private static void unmap(final ByteBuffer buffer) {
+        try {
+            final Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            final Object cleaner = cleanerMethod.invoke(buffer);
+            if (cleaner != null) {
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+            }
+        } catch (final Exception e) {
+            // not a sun jvm, left to the garbage collector
+        }
+    }
+
+    private static boolean acceptsGzip(final HttpServletRequest request) {
+        final String acceptEncoding = request.getHeader("Accept-Encoding");
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (final String encoding : acceptEncoding.split(",")) {
+            final String[] parts = encoding.trim().split(";");
+            if ("gzip".equalsIgnoreCase(parts[0].trim())) {
+                return parts.length == 1 || !parts[1].trim().replace(" ", "").matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+
+    private static boolean matches(final String ifNoneMatch, final String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (final String value : ifNoneMatch.split(",")) {
+            final String trimmed = value.trim();
+            if ("*".equals(trimmed) || etag.equals(trimmed) || etag.equals("W/" + trimmed) || trimmed.equals("W/" + etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class Resource {
+        private final URL url;
+        private final File file;
+        private final long length;
+        private final long lastModified;
+        private final byte[] content; // small resources
+        private final ByteBuffer mapped; // large files
+        private final InputStream stream; // other resources, opened while loading them, not cached
+        private final String etag;
+        private Resource gzip; // the precompressed variant, set before the resource is shared
+        private int users = 1; // the request loading it
+        private boolean cached;
+
+        private Resource(final URL url, final File file, final long length, final long lastModified, final byte[] content, final ByteBuffer mapped, final InputStream stream) {
+            this.url = url;
+            this.file = file;
+            this.length = length;
+            this.lastModified = lastModified;
+            this.content = content;
+            this.mapped = mapped;
+            this.stream = stream;
+            this.etag = "W/\"" + length + "-" + lastModified + "\"";
+        }
+
+        private boolean isCacheable() {
+            return (content != null || mapped != null) && (gzip == null || gzip.isCacheable());
+        }
+
+        private boolean isModified() {
+            return file != null && (file.lastModified() != lastModified || file.length() != length)
+                || gzip != null && gzip.isModified();
+        }
+
+        /**
+         * Mapped files are not counted, they are not on the heap.
+         */
+        private long heapSize() {
+            return (content != null ? content.length : 0) + (gzip != null ? gzip.heapSize() : 0);
+        }
+
+        private void write(final OutputStream os) throws IOException {
+            if (content != null) {
+                os.write(content);
+            } else if (mapped != null) {
+                final ByteBuffer buffer = mapped.duplicate();
+                final byte[] bytes = new byte[(int) Math.min(COPY_BUFFER_SIZE, buffer.remaining())];
+                while (buffer.hasRemaining()) {
+                    final int count = Math.min(bytes.length, buffer.remaining());
+                    buffer.get(bytes, 0, count);
+                    os.write(bytes, 0, count);
+                }
+            } else if (stream != null) {
+                IO.copy(stream, os);
+            } else { // a file larger than the mapped size left
+                final InputStream is = IO.read(file);
+                try {
+                    IO.copy(is, os);
+                } finally {
+                    IO.close(is);
+                }
+            }
+        }
+    }
+}
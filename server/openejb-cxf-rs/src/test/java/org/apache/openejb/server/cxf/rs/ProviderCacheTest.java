@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.server.cxf.rs;
+
+import org.junit.Test;
+
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.UriInfo;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.annotation.XmlRootElement;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class ProviderCacheTest {
+    @Test
+    public void sharedPerClassLoader() {
+        final ClassLoader loader = new ClassLoader(getClass().getClassLoader()) {
+        };
+        assertSame(ProviderCache.of(loader), ProviderCache.of(loader));
+    }
+
+    @Test
+    public void statelessProvidersAreShared() throws Exception {
+        final ProviderCache cache = new ProviderCache();
+        assertSame(cache.provider(Stateless.class), cache.provider(Stateless.class));
+        assertNotSame(cache.provider(Contextual.class), cache.provider(Contextual.class));
+    }
+
+    @Test
+    public void jaxbContexts() throws Exception {
+        final ProviderCache cache = new ProviderCache();
+        final JAXBContext context = cache.getJAXBContextResolver().getContext(Bean.class);
+        assertNotNull(context);
+        assertSame(context, cache.getJAXBContextResolver().getContext(Bean.class));
+        assertNull(cache.getJAXBContextResolver().getContext(String.class));
+    }
+
+    @Test
+    public void failuresAreLeftToTheProviders() throws Exception {
+        final ProviderCache cache = new ProviderCache();
+        assertNull(cache.getJAXBContextResolver().getContext(Invalid.class));
+        assertNull(cache.getJAXBContextResolver().getContext(Invalid.class));
+    }
+
+    @Test
+    public void concurrentRequestsShareTheContext() throws Exception {
+        final ProviderCache cache = new ProviderCache();
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final List<Future<JAXBContext>> contexts = executor.invokeAll(Collections.nCopies(32, new Callable<JAXBContext>() {
+                @Override
+                public JAXBContext call() throws Exception {
+                    return cache.getJAXBContextResolver().getContext(Bean.class);
+                }
+            }));
+            final JAXBContext context = cache.getJAXBContextResolver().getContext(Bean.class);
+            assertNotNull(context);
+            for (final Future<JAXBContext> future : contexts) {
+                assertSame(context, future.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public static class Stateless {
+    }
+
+    public static class Contextual {
+        @Context
+        private UriInfo info;
+    }
+
+    @XmlRootElement
+    public static class Bean {
+        private String value;
+
+        public String getValue() {
+            return value;
+        }
+
+        public void setValue(final String value) {
+            this.value = value;
+        }
+    }
+
+    @XmlRootElement
+    public static class Invalid { // JAXB can't bind an interface
+        private List<Runnable> tasks;
+
+        public List<Runnable> getTasks() {
+            return tasks;
+        }
+
+        public void setTasks(final List<Runnable> tasks) {
+            this.tasks = tasks;
+        }
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.server.cxf.rs;
+
+import org.apache.openejb.loader.Files;
+import org.apache.openejb.loader.IO;
+import org.apache.openejb.server.httpd.ServletByteArrayOutputStream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class StaticResourceCacheTest {
+    private File root;
+    private StaticResourceCache cache;
+
+    private final Map<String, URL> urls = new HashMap<String, URL>(); // resources not backed by a file
+    private final Map<String, String> requestHeaders = new HashMap<String, String>();
+    private Map<String, Object> responseHeaders;
+    private int status;
+    private ServletByteArrayOutputStream body;
+
+    @Before
+    public void init() throws Exception {
+        root = Files.tmpdir();
+        IO.copy("body { color: red; }".getBytes("UTF-8"), new File(root, "app.css"));
+        IO.copy(new byte[]{1, 2, 3}, new File(root, "app.css.gz"));
+
+        final byte[] big = new byte[100 * 1024];
+        Arrays.fill(big, (byte) 'x');
+        IO.copy(big, new File(root, "big.txt"));
+        IO.copy(big, new File(root, "other.txt"));
+
+        cache = new StaticResourceCache(1024 * 1024, 1024, 150 * 1024);
+    }
+
+    @After
+    public void clean() {
+        cache.clear();
+        Files.delete(root);
+    }
+
+    @Test
+    public void missing() throws Exception {
+        assertFalse(serve("/missing.css"));
+    }
+
+    @Test
+    public void cached() throws Exception {
+        assertTrue(serve("/app.css"));
+        assertEquals("body { color: red; }", new String(body.getOutputStream().toByteArray(), "UTF-8"));
+        assertEquals("Accept-Encoding", responseHeaders.get("Vary"));
+        assertNull(responseHeaders.get("Content-Encoding"));
+
+        final String etag = (String) responseHeaders.get("ETag");
+        assertNotNull(etag);
+
+        requestHeaders.put("If-None-Match", etag);
+        assertTrue(serve("/app.css"));
+        assertEquals(HttpServletResponse.SC_NOT_MODIFIED, status);
+        assertEquals(0, body.getOutputStream().size());
+    }
+
+    @Test
+    public void precompressed() throws Exception {
+        requestHeaders.put("Accept-Encoding", "deflate, gzip");
+        assertTrue(serve("/app.css"));
+        assertEquals("gzip", responseHeaders.get("Content-Encoding"));
+        assertArrayEquals(new byte[]{1, 2, 3}, body.getOutputStream().toByteArray());
+
+        requestHeaders.put("Accept-Encoding", "gzip;q=0");
+        assertTrue(serve("/app.css"));
+        assertNull(responseHeaders.get("Content-Encoding"));
+    }
+
+    @Test
+    public void mapped() throws Exception {
+        assertTrue(serve("/big.txt"));
+        assertEquals(100 * 1024, body.getOutputStream().size());
+        assertEquals(100 * 1024, responseHeaders.get("Content-Length"));
+    }
+
+    @Test
+    public void mappedSizeIsBounded() throws Exception {
+        assertTrue(serve("/big.txt"));
+        assertEquals(100 * 1024, cache.getMappedSize());
+
+        // doesn't fit in the mapped size left: streamed from the file
+        assertTrue(serve("/other.txt"));
+        assertEquals(100 * 1024, body.getOutputStream().size());
+        assertEquals(100 * 1024, cache.getMappedSize());
+    }
+
+    @Test
+    public void clearReleasesTheMappings() throws Exception {
+        assertTrue(serve("/big.txt"));
+        assertEquals(100 * 1024, cache.getMappedSize());
+
+        cache.clear();
+        assertEquals(0, cache.getMappedSize());
+        assertTrue(new File(root, "big.txt").delete());
+        assertFalse(serve("/big.txt"));
+    }
+
+    @Test
+    public void urlResourceIsOpenedOnce() throws Exception {
+        final byte[] content = new byte[10 * 1024];
+        Arrays.fill(content, (byte) 'y');
+        final AtomicInteger opened = new AtomicInteger();
+        urls.put("/remote.txt", new URL(null, "test:/remote.txt", new URLStreamHandler() {
+            @Override
+            protected URLConnection openConnection(final URL u) throws IOException {
+                opened.incrementAndGet();
+                return new URLConnection(u) {
+                    @Override
+                    public void connect() {
+                        // no-op
+                    }
+
+                    @Override
+                    public int getContentLength() {
+                        return content.length;
+                    }
+
+                    @Override
+                    public InputStream getInputStream() {
+                        return new ByteArrayInputStream(content);
+                    }
+                };
+            }
+        }));
+
+        assertTrue(serve("/remote.txt"));
+        assertArrayEquals(content, body.getOutputStream().toByteArray());
+        assertEquals(1, opened.get());
+    }
+
+    @Test
+    public void reloaded() throws Exception {
+        assertTrue(serve("/app.css"));
+
+        final File css = new File(root, "app.css");
+        IO.copy("body { color: blue; }".getBytes("UTF-8"), css);
+        assertTrue(css.setLastModified(css.lastModified() + 10000));
+
+        assertTrue(serve("/app.css"));
+        assertEquals("body { color: blue; }", new String(body.getOutputStream().toByteArray(), "UTF-8"));
+    }
+
+    private boolean serve(final String path) throws Exception {
+        responseHeaders = new HashMap<String, Object>();
+        status = HttpServletResponse.SC_OK;
+        body = new ServletByteArrayOutputStream();
+        return cache.serve(request(), response(), path, "text/css");
+    }
+
+    private HttpServletRequest request() {
+        final ServletContext context = proxy(ServletContext.class, new InvocationHandler() {
+            @Override
+            public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+                if ("getResource".equals(method.getName())) {
+                    if (urls.containsKey(args[0])) {
+                        return urls.get(args[0]);
+                    }
+                    final File file = new File(root, String.valueOf(args[0]));
+                    return file.isFile() ? file.toURI().toURL() : null;
+                }
+                throw new UnsupportedOperationException(method.getName());
+            }
+        });
+        return proxy(HttpServletRequest.class, new InvocationHandler() {
+            @Override
+            public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+                if ("getServletContext".equals(method.getName())) {
+                    return context;
+                }
+                if ("getHeader".equals(method.getName())) {
+                    return requestHeaders.get(args[0]);
+                }
+                throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    private HttpServletResponse response() {
+        return proxy(HttpServletResponse.class, new InvocationHandler() {
+            @Override
+            public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+                final String name = method.getName();
+                if ("setHeader".equals(name) || "setDateHeader".equals(name)) {
+                    responseHeaders.put(String.valueOf(args[0]), args[1]);
+                } else if ("setContentLength".equals(name)) {
+                    responseHeaders.put("Content-Length", args[0]);
+                } else if ("setContentType".equals(name)) {
+                    responseHeaders.put("Content-Type", args[0]);
+                } else if ("setStatus".equals(name)) {
+                    status = (Integer) args[0];
+                } else if ("getOutputStream".equals(name)) {
+                    return body;
+                } else {
+                    throw new UnsupportedOperationException(name);
+                }
+                return null;
+            }
+        });
+    }
+
+    private static <T> T proxy(final Class<T> api, final InvocationHandler handler) {
+        return api.cast(Proxy.newProxyInstance(StaticResourceCacheTest.class.getClassLoader(), new Class<?>[]{api}, handler));
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.server.httpd;
+
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Decodes a chunked request body (Transfer-Encoding: chunked) as the listener consumes it.
+ */
+class ChunkedInputStream extends FilterInputStream {
+    private static final int MAX_LINE_LENGTH = 8192; // chunk size with its extensions or a trailer
+
+    private long remaining;
+    private boolean first = true;
+    private boolean done;
+
+    ChunkedInputStream(final InputStream in) {
+        super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!nextChunk()) {
+            return -1;
+        }
+        final int b = in.read();
+        if (b < 0) {
+            throw new EOFException("Connection closed in the middle of a chunk");
+        }
+        remaining--;
+        return b;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!nextChunk()) {
+            return -1;
+        }
+        final int read = in.read(b, off, (int) Math.min(len, remaining));
+        if (read < 0) {
+            throw new EOFException("Connection closed in the middle of a chunk");
+        }
+        remaining -= read;
+        return read;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return done ? 0 : (int) Math.min(in.available(), remaining);
+    }
+
+    @Override
+    public void close() throws IOException {
+        // the connection is not ours
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    /**
+     * @return false at the end of the body
+     */
+    private boolean nextChunk() throws IOException {
+        if (done) {
+            return false;
+        }
+        if (remaining > 0) {
+            return true;
+        }
+
+        if (!first) {
+            readLine(); // CRLF ending the previous chunk
+        }
+        first = false;
+
+        final String line = readLine();
+        final int extension = line.indexOf(';');
+        final String size = (extension < 0 ? line : line.substring(0, extension)).trim();
+        if (size.length() == 0 || Character.digit(size.charAt(0), 16) < 0) { // parseLong accepts a sign
+            throw new IOException("Invalid chunk size: " + line);
+        }
+        try {
+            remaining = Long.parseLong(size, 16);
+        } catch (final NumberFormatException e) { // including an overflow
+            throw new IOException("Invalid chunk size: " + line);
+        }
+
+        if (remaining == 0) {
+            while (readLine().length() > 0) {
+                // trailers are ignored
+            }
+            done = true;
+            return false;
+        }
+        return true;
+    }
+
+    private String readLine() throws IOException {
+        final StringBuilder line = new StringBuilder();
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b < 0) {
+                throw new EOFException("Connection closed before the end of the chunked body");
+            }
+            if (b != '\r') {
+                if (line.length() == MAX_LINE_LENGTH) {
+                    throw new IOException("Chunked body line longer than " + MAX_LINE_LENGTH + " characters");
+                }
+                line.append((char) b);
+            }
+        }
+        return line.toString();
+    }
+}
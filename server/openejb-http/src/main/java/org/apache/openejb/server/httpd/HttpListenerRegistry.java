@@ -20,15 +20,26 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.regex.Pattern;
 
 /**
+ * Listeners and filters are registered with a regex. Registrations are rare so each one rebuilds an immutable
+ * {@link Routes} snapshot, requests are then dispatched without locking:
+ * <ul>
+ *     <li>literal patterns ("/app/servlet") and literal prefixes ("/app/.*", "/ejb/?.*") are looked up in a trie
+ *     (exact match first, then the longest prefix)</li>
+ *     <li>other patterns are precompiled and tried in registration order</li>
+ * </ul>
+ *
  * @version $Revision$ $Date$
  */
 public class HttpListenerRegistry implements HttpListener {
     private final Map<String, HttpListener> registry = new LinkedHashMap<String, HttpListener>();
     private final Map<String, Collection<HttpListener>> filterRegistry = new LinkedHashMap<String, Collection<HttpListener>>();
     private final ThreadLocal<FilterListener> currentFilterListener = new ThreadLocal<FilterListener>();
+    private volatile Routes routes = new Routes(registry, filterRegistry);
 
     public HttpListenerRegistry() {
         // no-op
@@ -38,39 +49,20 @@ public class HttpListenerRegistry implements HttpListener {
     public void onMessage(HttpRequest request, HttpResponse response) throws Exception {
         final String path = request.getURI().getPath();
         final FilterListener currentFL = currentFilterListener.get();
-
-        // first look filters
-        Map<String, Collection<HttpListener>> filters;
-        synchronized (filterRegistry) {
-            filters = new HashMap<String, Collection<HttpListener>>(filterRegistry);
-        }
+        final Routes current = routes;
 
         try {
-            boolean lastWasCurrent = false;
-            for (Map.Entry<String, Collection<HttpListener>> entry : filters.entrySet()) {
-                String pattern = entry.getKey();
-                for (HttpListener listener : entry.getValue()) {
-                    if ((lastWasCurrent || currentFL == null) && path.matches(pattern)) {
-                        listener.onMessage(request, response);
-                        return;
-                    }
-                    lastWasCurrent = listener == currentFL;
-                }
+            // first look filters
+            final HttpListener filter = current.filter(path, currentFL);
+            if (filter != null) {
+                filter.onMessage(request, response);
+                return;
             }
 
-
             // then others
-            Map<String, HttpListener> listeners;
-            synchronized (registry) {
-                listeners = new HashMap<String, HttpListener>(registry);
-            }
-
-            for (final Map.Entry<String, HttpListener> entry : listeners.entrySet()) {
-                final String pattern = entry.getKey();
-                if (path.matches(pattern) || path.equals(pattern)) {
-                    entry.getValue().onMessage(request, response);
-                    break;
-                }
+            final HttpListener listener = current.listener(path);
+            if (listener != null) {
+                listener.onMessage(request, response);
             }
         } finally {
             if (currentFL == null) {
@@ -82,6 +74,7 @@ public class HttpListenerRegistry implements HttpListener {
     public void addHttpListener(HttpListener listener, String regex) {
         synchronized (registry) {
             registry.put(regex, listener);
+            refresh();
         }
     }
 
@@ -89,22 +82,26 @@ public class HttpListenerRegistry implements HttpListener {
         HttpListener listener;
         synchronized (registry) {
             listener = registry.remove(regex);
+            refresh();
         }
         return listener;
     }
 
     public void addHttpFilter(HttpListener listener, String regex) {
-        synchronized (filterRegistry) {
+        synchronized (registry) {
             if (!filterRegistry.containsKey(regex)) {
                 filterRegistry.put(regex, new ArrayList<HttpListener>());
             }
             filterRegistry.get(regex).add(listener);
+            refresh();
         }
     }
 
     public Collection<HttpListener> removeHttpFilter(String regex) {
-        synchronized (filterRegistry) {
-            return filterRegistry.remove(regex);
+        synchronized (registry) {
+            final Collection<HttpListener> removed = filterRegistry.remove(regex);
+            refresh();
+            return removed;
         }
     }
 
@@ -115,4 +112,160 @@ public class HttpListenerRegistry implements HttpListener {
             currentFilterListener.set(origin);
         }
     }
+
+    // guarded by registry
+    private void refresh() {
+        routes = new Routes(registry, filterRegistry);
+    }
+
+    /**
+     * Immutable routing snapshot.
+     */
+    private static class Routes {
+        private final Node trie = new Node();
+        private final List<Route> regexes = new ArrayList<Route>();
+        private final List<Route> filters = new ArrayList<Route>();
+
+        private Routes(final Map<String, HttpListener> listeners, final Map<String, Collection<HttpListener>> filters) {
+            for (final Map.Entry<String, HttpListener> entry : listeners.entrySet()) {
+                final String pattern = entry.getKey();
+                final String prefix = prefix(pattern);
+                if (prefix != null) {
+                    trie.add(prefix).prefix = entry.getValue();
+                } else if (isLiteral(pattern)) {
+                    trie.add(pattern).exact = entry.getValue();
+                } else {
+                    regexes.add(new Route(pattern, entry.getValue()));
+                }
+            }
+            for (final Map.Entry<String, Collection<HttpListener>> entry : filters.entrySet()) {
+                for (final HttpListener listener : entry.getValue()) {
+                    this.filters.add(new Route(entry.getKey(), listener));
+                }
+            }
+        }
+
+        /**
+         * @return the first filter matching the path registered after the current one (the filter chain)
+         */
+        private HttpListener filter(final String path, final FilterListener currentFL) {
+            boolean afterCurrent = currentFL == null;
+            for (final Route route : filters) {
+                if (afterCurrent && route.matches(path)) {
+                    return route.listener;
+                }
+                afterCurrent = afterCurrent || route.listener == currentFL;
+            }
+            return null;
+        }
+
+        private HttpListener listener(final String path) {
+            final HttpListener listener = trie.find(path);
+            if (listener != null) {
+                return listener;
+            }
+            for (final Route route : regexes) {
+                if (route.matches(path)) {
+                    return route.listener;
+                }
+            }
+            return null;
+        }
+    }
+
+    private static class Route {
+        private final String value;
+        private final String prefix;
+        private final Pattern pattern;
+        private final HttpListener listener;
+
+        private Route(final String regex, final HttpListener listener) {
+            this.listener = listener;
+            this.prefix = prefix(regex);
+            if (prefix != null) {
+                value = null;
+                pattern = null;
+            } else if (isLiteral(regex)) {
+                value = regex;
+                pattern = null;
+            } else {
+                value = regex;
+                pattern = Pattern.compile(regex);
+            }
+        }
+
+        private boolean matches(final String path) {
+            if (prefix != null) {
+                return path.startsWith(prefix);
+            }
+            return path.equals(value) || pattern != null && pattern.matcher(path).matches();
+        }
+    }
+
+    /**
+     * Char trie over the literal paths, a node holds the listener of the path ending there and the one of the
+     * prefix ending there.
+     */
+    private static class Node {
+        private final Map<Character, Node> children = new HashMap<Character, Node>();
+        private HttpListener exact;
+        private HttpListener prefix;
+
+        private Node add(final String path) {
+            Node node = this;
+            for (int i = 0; i < path.length(); i++) {
+                final Character c = path.charAt(i);
+                Node child = node.children.get(c);
+                if (child == null) {
+                    child = new Node();
+                    node.children.put(c, child);
+                }
+                node = child;
+            }
+            return node;
+        }
+
+        private HttpListener find(final String path) {
+            Node node = this;
+            HttpListener longestPrefix = node.prefix;
+            for (int i = 0; i < path.length(); i++) {
+                node = node.children.get(path.charAt(i));
+                if (node == null) {
+                    return longestPrefix;
+                }
+                if (node.prefix != null) {
+                    longestPrefix = node.prefix;
+                }
+            }
+            if (node.exact != null) {
+                return node.exact;
+            }
+            return longestPrefix;
+        }
+    }
+
+    /**
+     * @return the literal prefix of "literal.*" and "literal/?.*" patterns, null for other patterns
+     */
+    private static String prefix(final String regex) {
+        String prefix = null;
+        if (regex.endsWith("/?.*")) {
+            prefix = regex.substring(0, regex.length() - "/?.*".length());
+        } else if (regex.endsWith(".*")) {
+            prefix = regex.substring(0, regex.length() - ".*".length());
+        }
+        if (prefix != null && isLiteral(prefix)) {
+            return prefix;
+        }
+        return null;
+    }
+
+    private static boolean isLiteral(final String regex) {
+        for (int i = 0; i < regex.length(); i++) {
+            if ("\\.[]{}()*+?^$|".indexOf(regex.charAt(i)) >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
 }
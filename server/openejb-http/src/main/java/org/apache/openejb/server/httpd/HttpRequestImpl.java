@@ -17,6 +17,7 @@
 package org.apache.openejb.server.httpd;
 
 import org.apache.openejb.core.security.jaas.UserPrincipal;
+import org.apache.openejb.loader.IO;
 import org.apache.openejb.loader.SystemInstance;
 import org.apache.openejb.util.ArrayEnumeration;
 import org.apache.openejb.util.Logger;
@@ -121,10 +122,10 @@ public class HttpRequestImpl implements HttpRequest {
     private Map<String,String> cookies;
 
     /**
-     * the content of the body of the request
+     * the content of the body of the request, null while it is streamed from the connection
      */
     private byte[] body;
-    private ServletByteArrayIntputStream in;
+    private ServletInputStream in;
     private int length;
     private String contentType;
 
@@ -133,6 +134,11 @@ public class HttpRequestImpl implements HttpRequest {
      */
     private final URI socketURI;
 
+    /**
+     * the HTTP version of the request line
+     */
+    private String version;
+
     /**
      * Request scoped data which is set and used by application code.
      */
@@ -343,7 +349,7 @@ public class HttpRequestImpl implements HttpRequest {
      * @throws java.io.IOException if an exception is thrown
      */
     protected void readMessage(InputStream input) throws IOException {
-        final DataInput di = new DataInputStream(input);
+        final DataInputStream di = new DataInputStream(input);
 
         readRequestLine(di);
         readHeaders(di);
@@ -376,7 +382,12 @@ public class HttpRequestImpl implements HttpRequest {
             }
             builder.append("\n");
 
-            final String text = new String(body);
+            String text;
+            try {
+                text = new String(bufferBody());
+            } catch (final IOException e) {
+                text = "Could not read the body: " + e.getMessage();
+            }
             if (formatXml && OpenEJBHttpServer.isTextXml(headers)) {
                 builder.append(OpenEJBHttpServer.reformat(text)).append("\n");
             } else {
@@ -410,6 +421,30 @@ public class HttpRequestImpl implements HttpRequest {
         parseMethod(lineParts);
         /* [2] Parse the URI */
         parseURI(lineParts);
+        /* [3] Parse the version */
+        if (lineParts.hasMoreTokens()) {
+            version = lineParts.nextToken();
+        }
+    }
+
+    /**
+     * @return true if the client understands HTTP/1.1 and then chunked responses
+     */
+    boolean isHttp11() {
+        return "HTTP/1.1".equalsIgnoreCase(version);
+    }
+
+    /**
+     * reads a streamed body in memory, to be able to read it more than once
+     */
+    private byte[] bufferBody() throws IOException {
+        if (body == null) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            IO.copy(in, out);
+            body = out.toByteArray();
+            in = new ServletByteArrayIntputStream(body);
+        }
+        return body;
     }
 
     /**
@@ -599,10 +634,13 @@ public class HttpRequestImpl implements HttpRequest {
     /**
      * reads the body from the data input passed in
      *
+     * The body is not read here but streamed from the connection by the listener through {@link #getInputStream()},
+     * except for forms (parsed as parameters) and bodies without length nor chunked encoding.
+     *
      * @param in the data input with the body of the page
      * @throws java.io.IOException if an exception is thrown
      */
-    private void readBody(DataInput in) throws IOException {
+    private void readBody(DataInputStream in) throws IOException {
         //System.out.println("Body Length: " + body.length);
         // Content-type: application/x-www-form-urlencoded
         // or multipart/form-data
@@ -648,29 +686,9 @@ public class HttpRequestImpl implements HttpRequest {
                     //System.out.println(name + ": " + value);
             }
         } else if (hasBody && CHUNKED.equals(headers.get(TRANSFER_ENCODING))) {
-            try {
-                ByteArrayOutputStream out = new ByteArrayOutputStream(4096);
-                for (String line = in.readLine(); line != null; line = in.readLine()) {
-                    // read the size line which is in hex
-                    String sizeString = line.split(";", 2)[0];
-                    int size = Integer.parseInt(sizeString, 16);
-
-                    // if size is 0 we are done
-                    if (size == 0) break;
-
-                    // read the chunk and append to byte array
-                    byte[] chunk = new byte[size];
-                    in.readFully(chunk);
-                    out.write(chunk);
-
-                    // read off the trailing new line characters after the chunk
-                    in.readLine();
-                }
-                body = out.toByteArray();
-                this.in = new ServletByteArrayIntputStream(body);
-            } catch (Exception e) {
-                throw (IOException)new IOException("Unable to read chunked body").initCause(e);
-            }
+            this.in = new ServletIntputStreamAdapter(new ChunkedInputStream(in));
+        } else if (hasBody && length >= 0) {
+            this.in = new ServletIntputStreamAdapter(new ContentLengthInputStream(in, length));
         } else if (hasBody){
             // TODO This really is terrible
             body = readContent(in);
@@ -0,0 +1,281 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.server.httpd;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Finds where a HTTP/1.1 request ends in the bytes read so far, without copying nor decoding them:
+ * each call only scans the bytes received since the previous one and only the headers framing the
+ * message (Content-Length, Transfer-Encoding and Connection) are looked at. The request itself is
+ * then read by {@link HttpRequestImpl}.
+ *
+ * The parsed bytes of the body can be handed to the reader before the end of the request with
+ * {@link #consumed()} and {@link #rebase(int)}.
+ *
+ * The buffer is a heap buffer in fill mode: the bytes read are between 0 and its position.
+ */
+class HttpRequestParser {
+    private static final byte CR = '\r';
+    private static final byte LF = '\n';
+
+    private enum State {
+        REQUEST_LINE, HEADERS, BODY, CHUNK_SIZE, CHUNK_DATA, TRAILERS, DONE
+    }
+
+    private final int maxHeaderSize;
+
+    private State state;
+    private int position;
+    private int lineStart;
+    private long remaining;
+    private long contentLength;
+    private boolean chunked;
+    private boolean keepAlive;
+
+    HttpRequestParser(final int maxHeaderSize) {
+        this.maxHeaderSize = maxHeaderSize;
+        next();
+    }
+
+    /**
+     * @return true when a whole request is between 0 and {@link #end()}
+     * @throws IOException if the request is malformed
+     */
+    boolean parse(final ByteBuffer buffer) throws IOException {
+        final byte[] bytes = buffer.array();
+        final int limit = buffer.position();
+
+        while (state != State.DONE && position < limit) {
+            switch (state) {
+                case BODY:
+                case CHUNK_DATA:
+                    final int read = (int) Math.min(remaining, limit - position);
+                    position += read;
+                    remaining -= read;
+                    if (remaining == 0) {
+                        state = state == State.BODY ? State.DONE : State.CHUNK_SIZE;
+                        lineStart = position;
+                    }
+                    break;
+
+                default:
+                    final int end = lineEnd(bytes, limit);
+                    if ((state == State.REQUEST_LINE || state == State.HEADERS) && position > maxHeaderSize) {
+                        throw new IOException("Request header is larger than " + maxHeaderSize + " bytes");
+                    }
+                    if (end < 0) {
+                        return false;
+                    }
+                    line(bytes, lineStart, end);
+                    lineStart = position;
+            }
+        }
+        return state == State.DONE;
+    }
+
+    /**
+     * @return the length of the parsed request
+     */
+    int end() {
+        return position;
+    }
+
+    boolean isKeepAlive() {
+        return keepAlive;
+    }
+
+    /**
+     * @return true once the headers are parsed, the body can then be streamed
+     */
+    boolean isHeaderParsed() {
+        return state != State.REQUEST_LINE && state != State.HEADERS;
+    }
+
+    /**
+     * @return the number of bytes parsed at the beginning of the buffer which are not needed anymore
+     */
+    int consumed() {
+        return state == State.BODY || state == State.CHUNK_DATA || state == State.DONE ? position : lineStart;
+    }
+
+    /**
+     * The caller removed the first bytes of the buffer.
+     *
+     * @param count at most {@link #consumed()}
+     */
+    void rebase(final int count) {
+        position -= count;
+        lineStart -= count;
+    }
+
+    /**
+     * Prepares the parsing of the next request, the caller having moved the remaining bytes at the beginning of the buffer.
+     */
+    void next() {
+        state = State.REQUEST_LINE;
+        position = 0;
+        lineStart = 0;
+        remaining = 0;
+        contentLength = -1;
+        chunked = false;
+        keepAlive = false;
+    }
+
+    /**
+     * @return the end of the line without the line terminator or -1 if the line is not complete,
+     * the position is moved after the line terminator
+     */
+    private int lineEnd(final byte[] bytes, final int limit) {
+        for (int i = position; i < limit; i++) {
+            if (bytes[i] == LF) {
+                position = i + 1;
+                return i > lineStart && bytes[i - 1] == CR ? i - 1 : i;
+            }
+        }
+        position = limit;
+        return -1;
+    }
+
+    private void line(final byte[] bytes, final int start, final int end) throws IOException {
+        switch (state) {
+            case REQUEST_LINE:
+                if (start == end) {
+                    return; // robustness, empty lines before the request line are ignored
+                }
+                keepAlive = endsWith(bytes, start, end, "HTTP/1.1");
+                state = State.HEADERS;
+                return;
+
+            case HEADERS:
+                if (start == end) {
+                    if (chunked) {
+                        state = State.CHUNK_SIZE;
+                    } else if (contentLength > 0) {
+                        remaining = contentLength;
+                        state = State.BODY;
+                    } else {
+                        state = State.DONE;
+                    }
+                    return;
+                }
+                header(bytes, start, end);
+                return;
+
+            case CHUNK_SIZE:
+                final long size = chunkSize(bytes, start, end);
+                if (size == 0) {
+                    state = State.TRAILERS;
+                } else {
+                    remaining = size + 2; // the data then CRLF
+                    state = State.CHUNK_DATA;
+                }
+                return;
+
+            case TRAILERS:
+                if (start == end) {
+                    state = State.DONE;
+                }
+                return;
+
+            default:
+                throw new IllegalStateException(state.name());
+        }
+    }
+
+    private void header(final byte[] bytes, final int start, final int end) throws IOException {
+        int colon = start;
+        while (colon < end && bytes[colon] != ':') {
+            colon++;
+        }
+        if (colon == end) {
+            throw new IOException("Malformed header: " + new String(bytes, start, end - start, "ISO-8859-1"));
+        }
+
+        int valueStart = colon + 1;
+        while (valueStart < end && (bytes[valueStart] == ' ' || bytes[valueStart] == '\t')) {
+            valueStart++;
+        }
+
+        if (equalsIgnoreCase(bytes, start, colon, "content-length")) {
+            contentLength = 0;
+            for (int i = valueStart; i < end && bytes[i] != ' '; i++) {
+                final int digit = bytes[i] - '0';
+                if (digit < 0 || digit > 9) {
+                    throw new IOException("Invalid Content-Length");
+                }
+                if (contentLength > (Long.MAX_VALUE - digit) / 10) { // a negative length would desynchronize the requests
+                    throw new IOException("Content-Length is too large");
+                }
+                contentLength = contentLength * 10 + digit;
+            }
+        } else if (equalsIgnoreCase(bytes, start, colon, "transfer-encoding")) {
+            chunked = contains(bytes, valueStart, end, "chunked");
+        } else if (equalsIgnoreCase(bytes, start, colon, "connection")) {
+            if (contains(bytes, valueStart, end, "close")) {
+                keepAlive = false;
+            } else if (contains(bytes, valueStart, end, "keep-alive")) {
+                keepAlive = true;
+            }
+        }
+    }
+
+    private static long chunkSize(final byte[] bytes, final int start, final int end) throws IOException {
+        long size = 0;
+        int i = start;
+        for (; i < end && bytes[i] != ';' && bytes[i] != ' '; i++) {
+            final int digit = Character.digit(bytes[i], 16);
+            if (digit < 0) {
+                throw new IOException("Invalid chunk size");
+            }
+            if (size > (Long.MAX_VALUE - 2 - digit) / 16) { // the data and its CRLF must stay a positive count
+                throw new IOException("Chunk size is too large");
+            }
+            size = size * 16 + digit;
+        }
+        if (i == start) {
+            throw new IOException("Missing chunk size");
+        }
+        return size;
+    }
+
+    private static boolean equalsIgnoreCase(final byte[] bytes, final int start, final int end, final String lowerCase) {
+        if (end - start != lowerCase.length()) {
+            return false;
+        }
+        for (int i = 0; i < lowerCase.length(); i++) {
+            if (Character.toLowerCase(bytes[start + i]) != lowerCase.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean contains(final byte[] bytes, final int start, final int end, final String lowerCase) {
+        for (int i = start; i <= end - lowerCase.length(); i++) {
+            if (equalsIgnoreCase(bytes, i, i + lowerCase.length(), lowerCase)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean endsWith(final byte[] bytes, final int start, final int end, final String suffix) {
+        return end - start >= suffix.length() && equalsIgnoreCase(bytes, end - suffix.length(), end, suffix.toLowerCase());
+    }
+}
@@ -56,6 +56,15 @@ public class HttpResponseImpl implements HttpResponse {
     /** the raw body */
     private transient ServletByteArrayOutputStream sosi;
 
+    /** the connection, the body is streamed to it once larger than the buffer */
+    private transient OutputStream output;
+    /** the connection or the chunked encoding of it once the headers are sent */
+    private transient OutputStream wire;
+    private int bufferSize = DEFAULT_BUFFER_SIZE;
+
+    /** the default size of the body buffer */
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+
     /** the HTTP version */
     public static final String HTTP_VERSION = "HTTP/1.1";
     /** a line feed character */
@@ -78,6 +87,28 @@ public class HttpResponseImpl implements HttpResponse {
         this.request = request;
     }
 
+    /** Lets the body be streamed to the connection when it does not fit in the buffer
+     * instead of being sent at once by {@link #writeMessage(java.io.OutputStream, boolean)}
+     * @param output the connection
+     */
+    protected void setOutput(OutputStream output){
+        this.output = output;
+    }
+
+    /**
+     * @return true if the status line and the headers are already sent
+     */
+    protected boolean isStreaming() {
+        return wire != null;
+    }
+
+    /**
+     * @return true if the connection can be used for another request after this response
+     */
+    protected boolean isKeepAlive() {
+        return "keep-alive".equalsIgnoreCase(headers.get("Connection"));
+    }
+
     /** sets a header to be sent back to the browser
      * @param name the name of the header
      * @param value the value of the header
@@ -209,16 +240,21 @@ public class HttpResponseImpl implements HttpResponse {
 
     @Override
     public boolean isCommitted() {
-        return commited;
+        return commited || isStreaming();
     }
 
     public void flushBuffer() throws IOException {
-        // there is really no way to flush
+        if (output == null) { // the whole response is sent at the end of the request
+            return;
+        }
+        writer.flush();
+        stream();
+        output.flush();
     }
 
     @Override
     public int getBufferSize() {
-        return sosi.getOutputStream().size();
+        return bufferSize;
     }
 
     @Override
@@ -289,12 +325,18 @@ public class HttpResponseImpl implements HttpResponse {
 
     @Override
     public void resetBuffer() {
+        if (isStreaming()) {
+            throw new IllegalStateException("Response already committed");
+        }
         sosi.getOutputStream().reset();
     }
 
     @Override
     public void setBufferSize(int i) {
-        // no-op
+        if (isStreaming()) {
+            throw new IllegalStateException("Response already committed");
+        }
+        bufferSize = i;
     }
 
     @Override
@@ -356,25 +398,59 @@ public class HttpResponseImpl implements HttpResponse {
      * @throws java.io.IOException if an exception is thrown
      */
     protected void writeMessage(OutputStream output, boolean indent) throws IOException{
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-    	DataOutputStream out = new DataOutputStream(baos);
-        //DataOutput log = new DataOutputStream(System.out);
-        //System.out.println("\nRESPONSE");
+        writer.flush(); // can start the streaming
+        if (isStreaming()) { // only the end of the body is left
+            stream();
+            if (wire instanceof ChunkedOutputStream) {
+                ((ChunkedOutputStream) wire).finish();
+            }
+            this.output.flush();
+            return;
+        }
+
         closeMessage();
-//        writeResponseLine(log);
-//        writeHeaders(log);
-//        writeBody(log);
+        writeHead(output);
+        writeBody(output, indent);
+        output.flush();
+    }
+
+    /** Sends the status line and the headers then what is buffered of the body. The body is chunked
+     * if the client supports it, otherwise its end is the end of the connection.
+     */
+    private void stream() throws IOException {
+        if (wire == null) {
+            headers.remove("Content-Length");
+            if (request != null && request.isHttp11()) {
+                setHeader("Transfer-Encoding", "chunked");
+                wire = new ChunkedOutputStream(output);
+            } else {
+                setHeader("Connection", "close");
+                wire = output;
+            }
+            setCookieHeader();
+            writeHead(output);
+        }
+
+        final ByteArrayOutputStream buffer = sosi.getOutputStream();
+        if (buffer.size() > 0) {
+            buffer.writeTo(wire);
+            buffer.reset();
+        }
+    }
+
+    private void writeHead(OutputStream output) throws IOException {
+        final ByteArrayOutputStream head = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(head);
         writeResponseLine(out);
         writeHeaders(out);
-        writeBody(out, indent);
+        out.writeBytes(CRLF);
         out.flush();
-        output.write(baos.toByteArray());
-        output.flush();
+        head.writeTo(output);
     }
 
      /** initalizes the body */
     private void initBody(){
-        sosi = new ServletByteArrayOutputStream();
+        sosi = new BodyOutputStream();
         writer = new PrintWriter(sosi);
     }
 
@@ -454,18 +530,17 @@ public class HttpResponseImpl implements HttpResponse {
      * @param indent format xml
      * @throws java.io.IOException if an exception is thrown
      */
-    private void writeBody(DataOutput out, boolean indent) throws IOException{
-        out.writeBytes(CRLF);
+    private void writeBody(OutputStream out, boolean indent) throws IOException{
         if (content == null){
             if (indent && OpenEJBHttpServer.isTextXml(headers)) {
                 final String xml = new String(sosi.getOutputStream().toByteArray());
                 out.write(OpenEJBHttpServer.reformat(xml).getBytes());
             } else {
-                out.write(sosi.getOutputStream().toByteArray());
+                sosi.getOutputStream().writeTo(out);
             }
         } else {
             InputStream in = content.getInputStream();
-            byte buf[] = new byte[1024];
+            byte buf[] = new byte[bufferSize];
 
             int i;
             while ((i = in.read(buf)) != -1) {
@@ -623,6 +698,32 @@ public class HttpResponseImpl implements HttpResponse {
         writer = new PrintWriter(sosi);
 
     }
+    /**
+     * Keeps the body in memory until it is larger than the buffer, then streams it to the connection if there is one.
+     * Flushing does not commit the response so small responses keep their Content-Length.
+     */
+    private class BodyOutputStream extends ServletByteArrayOutputStream {
+        @Override
+        public void write(int b) throws IOException {
+            super.write(b);
+            if (output != null && getOutputStream().size() >= bufferSize) {
+                stream();
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (output != null && getOutputStream().size() + len > bufferSize) {
+                stream();
+                if (len >= bufferSize) { // no need to copy it
+                    wire.write(b, off, len);
+                    return;
+                }
+            }
+            getOutputStream().write(b, off, len);
+        }
+    }
+
     /**
      * @param content The content to set.
      */
@@ -16,11 +16,18 @@
  */
 package org.apache.openejb.server.httpd;
 
+import org.apache.openejb.loader.SystemInstance;
 import org.apache.openejb.server.ServerService;
 
 public class HttpServerFactory {
 
+    public static final String NIO = "httpejbd.nio";
+
     public static ServerService createServerService() {
+        if (SystemInstance.get().getOptions().get(NIO, false)) {
+            return new NioHttpEjbServer();
+        }
+
         try {
             ClassLoader cl = Thread.currentThread().getContextClassLoader();
             cl.loadClass("org.mortbay.jetty.Connector");
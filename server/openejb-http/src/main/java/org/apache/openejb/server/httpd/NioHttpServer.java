@@ -0,0 +1,720 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.server.httpd;
+
+import org.apache.openejb.loader.Options;
+import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.server.ServiceException;
+import org.apache.openejb.server.context.RequestInfos;
+import org.apache.openejb.util.DaemonThreadFactory;
+import org.apache.openejb.util.Duration;
+import org.apache.openejb.util.LogCategory;
+import org.apache.openejb.util.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Properties;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Non blocking flavor of {@link OpenEJBHttpServer}: a single selector thread accepts the connections, reads the
+ * requests and writes the responses, the threads of the pool only run the listener. Connections are kept alive
+ * between requests (HTTP/1.1 or Connection: keep-alive) and pipelined requests are served in order, one at a
+ * time per connection.
+ *
+ * A request is handed to the pool once its headers are received, its body and the response body are then
+ * streamed through queues of at most nio.body-buffer-size bytes: the selector stops reading a body the listener
+ * does not consume and the listener waits while the client does not read the response, up to the
+ * nio.keep-alive-timeout. A slow client costs a few buffers whatever the size of the bodies.
+ *
+ * Read buffers are pooled and only held while a request is being received: an idle keep-alive connection only
+ * costs its socket.
+ */
+public class NioHttpServer extends OpenEJBHttpServer {
+
+    private static final Logger log = Logger.getInstance(LogCategory.HTTPSERVER, NioHttpServer.class);
+
+    private String host;
+    private int port;
+    private int threads;
+    private int bufferSize;
+    private int bodyBufferSize;
+    private int maxHeaderSize;
+    private long keepAliveTimeout;
+
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private Thread selectorThread;
+    private ExecutorService executor;
+    private volatile boolean running;
+
+    private final Queue<Connection> updates = new ConcurrentLinkedQueue<Connection>();
+    private final Deque<ByteBuffer> buffers = new ArrayDeque<ByteBuffer>();
+
+    public NioHttpServer() {
+        super();
+    }
+
+    public NioHttpServer(final HttpListener listener) {
+        super(listener);
+    }
+
+    @Override
+    public void init(final Properties props) throws Exception {
+        super.init(props);
+
+        final Options options = new Options(props);
+        host = options.get("bind", "127.0.0.1");
+        port = options.get("port", 4204);
+        threads = options.get("threads", 200);
+        bufferSize = options.get("nio.buffer-size", 8192);
+        bodyBufferSize = options.get("nio.body-buffer-size", 65536);
+        maxHeaderSize = options.get("nio.max-header-size", 8192);
+        final Duration timeout = options.get("nio.keep-alive-timeout", new Duration(30, TimeUnit.SECONDS));
+        keepAliveTimeout = timeout.getUnit().toMillis(timeout.getTime());
+    }
+
+    @Override
+    public void start() throws ServiceException {
+        try {
+            selector = Selector.open();
+            serverChannel = ServerSocketChannel.open();
+            serverChannel.socket().setReuseAddress(true);
+            serverChannel.socket().bind(new InetSocketAddress(host, port));
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (final IOException e) {
+            throw new ServiceException("Service failed to open socket", e);
+        }
+
+        if (port == 0) {
+            port = serverChannel.socket().getLocalPort();
+            SystemInstance.get().getProperties().put("httpejbd.port", Integer.toString(port));
+        }
+
+        executor = Executors.newFixedThreadPool(threads, new DaemonThreadFactory("httpd", port));
+        running = true;
+
+        selectorThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                select();
+            }
+        });
+        selectorThread.setName("httpd-selector@" + port);
+        selectorThread.setDaemon(true);
+        selectorThread.start();
+    }
+
+    @Override
+    public void stop() throws ServiceException {
+        if (!running) {
+            return;
+        }
+
+        running = false;
+        selector.wakeup();
+        try {
+            selectorThread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        executor.shutdownNow();
+    }
+
+    @Override
+    public String getName() {
+        return "httpd";
+    }
+
+    @Override
+    public int getPort() {
+        return port;
+    }
+
+    @Override
+    public String getIP() {
+        return host;
+    }
+
+    private void select() {
+        long lastExpiration = System.currentTimeMillis();
+        while (running) {
+            try {
+                selector.select(1000);
+
+                Connection connection;
+                while ((connection = updates.poll()) != null) {
+                    connection.update();
+                }
+
+                final Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    final SelectionKey key = keys.next();
+                    keys.remove();
+
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+
+                    connection = (Connection) key.attachment();
+                    try {
+                        if (key.isReadable()) {
+                            connection.read();
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            connection.update();
+                        }
+                    } catch (final IOException e) {
+                        connection.close();
+                    }
+                }
+
+                final long now = System.currentTimeMillis();
+                if (now - lastExpiration > 1000) {
+                    lastExpiration = now;
+                    expire(now);
+                }
+            } catch (final Throwable t) {
+                log.error("Unexpected error", t);
+            }
+        }
+
+        for (final SelectionKey key : selector.keys()) {
+            if (key.attachment() instanceof Connection) {
+                Connection.class.cast(key.attachment()).close();
+            }
+        }
+        try {
+            serverChannel.close();
+        } catch (final IOException e) {
+            // no-op
+        }
+        try {
+            selector.close();
+        } catch (final IOException e) {
+            // no-op
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            try {
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+                new Connection(channel);
+            } catch (final IOException e) {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Closes the idle connections, the ones processing a request are left to the timeouts of the listener side.
+     */
+    private void expire(final long now) {
+        for (final SelectionKey key : selector.keys()) {
+            if (key.attachment() instanceof Connection) {
+                final Connection connection = (Connection) key.attachment();
+                if ((connection.exchange == null || connection.exchange.response.isFinished())
+                    && now - connection.lastActivity > keepAliveTimeout) {
+                    connection.close();
+                }
+            }
+        }
+    }
+
+    private ByteBuffer acquire() {
+        final ByteBuffer buffer = buffers.poll();
+        if (buffer != null) {
+            return buffer;
+        }
+        return ByteBuffer.allocate(bufferSize);
+    }
+
+    private void release(final ByteBuffer buffer) {
+        if (buffer.capacity() == bufferSize && buffers.size() < threads) {
+            buffer.clear();
+            buffers.push(buffer);
+        }
+    }
+
+    /**
+     * Everything but the streams of the exchange is called by the selector thread.
+     */
+    private final class Connection {
+        private final SocketChannel channel;
+        private final SelectionKey key;
+        private final URI socketURI;
+        private final HttpRequestParser parser = new HttpRequestParser(maxHeaderSize);
+
+        private ByteBuffer in;
+        private Exchange exchange;
+        private long lastActivity = System.currentTimeMillis();
+
+        private Connection(final SocketChannel channel) throws IOException {
+            this.channel = channel;
+
+            final Socket socket = channel.socket();
+            try {
+                socketURI = new URI("http://" + socket.getLocalAddress().getHostAddress() + ":" + socket.getLocalPort());
+            } catch (final Exception e) {
+                throw new IOException(e.getMessage());
+            }
+            key = channel.register(selector, SelectionKey.OP_READ, this);
+        }
+
+        private void read() throws IOException {
+            if (in == null) {
+                in = acquire();
+            }
+
+            final int read = channel.read(in);
+            if (read < 0) {
+                close();
+                return;
+            }
+            lastActivity = System.currentTimeMillis();
+
+            if (exchange == null) {
+                next();
+            } else if (!exchange.request.isEnded()) { // else a pipelined request, parsed once the response is sent
+                final boolean complete;
+                try {
+                    complete = parser.parse(in);
+                } catch (final IOException e) { // the headers are already handed to the listener
+                    close();
+                    return;
+                }
+                if (transfer(complete)) {
+                    interest();
+                }
+            }
+        }
+
+        /**
+         * Starts the next buffered request if its headers are there.
+         */
+        private void next() {
+            if (in == null) {
+                interest();
+                return;
+            }
+
+            final boolean complete;
+            try {
+                complete = parser.parse(in);
+            } catch (final IOException e) {
+                badRequest(e);
+                return;
+            }
+
+            if (!parser.isHeaderParsed()) {
+                if (!in.hasRemaining()) { // only if the buffer is smaller than the max header size
+                    final ByteBuffer bigger = ByteBuffer.allocate(in.capacity() * 2);
+                    in.flip();
+                    bigger.put(in);
+                    release(in);
+                    in = bigger;
+                } else if (in.position() == 0) {
+                    release(in);
+                    in = null;
+                }
+                interest();
+                return;
+            }
+
+            exchange = new Exchange(parser.isKeepAlive());
+            if (!transfer(complete)) {
+                return;
+            }
+            try {
+                executor.execute(exchange);
+            } catch (final RejectedExecutionException e) {
+                close();
+                return;
+            }
+            interest();
+        }
+
+        /**
+         * Hands the parsed bytes of the request to the listener.
+         *
+         * @return false if the connection was closed
+         */
+        private boolean transfer(final boolean complete) {
+            final int count = complete ? parser.end() : parser.consumed();
+            if (count > 0) {
+                final byte[] bytes = new byte[count];
+                in.flip();
+                in.get(bytes);
+                in.compact();
+                exchange.request.offer(bytes);
+            }
+
+            if (complete) {
+                parser.next();
+                exchange.request.end();
+            } else {
+                parser.rebase(count);
+                if (!in.hasRemaining()) { // a chunk size line larger than the buffer
+                    close();
+                    return false;
+                }
+            }
+
+            if (in.position() == 0) {
+                release(in);
+                in = null;
+            }
+            return true;
+        }
+
+        /**
+         * Writes what the listener produced, ends the exchange once the response is written.
+         */
+        private void update() {
+            if (!channel.isOpen() || exchange == null) {
+                return;
+            }
+
+            final boolean written;
+            try {
+                written = exchange.response.writeTo(channel);
+            } catch (final IOException e) {
+                close();
+                return;
+            }
+            lastActivity = System.currentTimeMillis();
+
+            if (written && exchange.response.isFinished()) {
+                final boolean keepAlive = exchange.keepAlive && exchange.request.isEnded();
+                exchange = null;
+                if (keepAlive) {
+                    next();
+                } else {
+                    close();
+                }
+                return;
+            }
+            interest();
+        }
+
+        private void interest() {
+            if (!key.isValid()) {
+                return;
+            }
+
+            int ops = 0;
+            if (exchange == null || !exchange.request.isEnded() && !exchange.request.isFull()) {
+                ops |= SelectionKey.OP_READ;
+            }
+            if (exchange != null && exchange.response.isPending()) {
+                ops |= SelectionKey.OP_WRITE;
+            }
+            key.interestOps(ops);
+        }
+
+        private void signal() {
+            updates.add(this);
+            selector.wakeup();
+        }
+
+        private void badRequest(final IOException e) {
+            if (log.isDebugEnabled()) {
+                log.debug("Bad request: " + e.getMessage());
+            }
+
+            final HttpResponseImpl response = new HttpResponseImpl(400, "Bad Request", "text/plain");
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try {
+                response.getWriter().println(e.getMessage());
+                response.writeMessage(bytes, false);
+            } catch (final IOException ignored) {
+                // in memory
+            }
+
+            release(in);
+            in = null;
+            exchange = new Exchange(false);
+            exchange.request.end();
+            try {
+                exchange.response.offer(bytes.toByteArray());
+            } catch (final IOException ignored) {
+                // not aborted, it is a new exchange
+            }
+            exchange.response.finish();
+            update();
+        }
+
+        private void close() {
+            key.cancel();
+            try {
+                channel.close();
+            } catch (final IOException e) {
+                // no-op
+            }
+            if (exchange != null) {
+                exchange.request.abort();
+                exchange.response.abort();
+                exchange = null;
+            }
+            if (in != null) {
+                release(in);
+                in = null;
+            }
+        }
+
+        /**
+         * A request and its response, run by a thread of the pool.
+         */
+        private final class Exchange implements Runnable {
+            private final RequestBody request = new RequestBody();
+            private final ResponseBody response = new ResponseBody();
+            private volatile boolean keepAlive;
+
+            private Exchange(final boolean keepAlive) {
+                this.keepAlive = keepAlive;
+            }
+
+            @Override
+            public void run() {
+                final OutputStream out = new BufferedOutputStream(response, bufferSize);
+                try {
+                    RequestInfos.initRequestInfo(channel.socket());
+                    keepAlive = processRequest(socketURI, new BufferedInputStream(request, bufferSize), out, keepAlive) && running;
+                    out.flush();
+                } catch (final IOException e) {
+                    keepAlive = false;
+                } finally {
+                    RequestInfos.clearRequestInfo();
+                    response.finish();
+                }
+            }
+        }
+
+        /**
+         * The bytes of the request queued by the selector for the listener.
+         */
+        private final class RequestBody extends InputStream {
+            private final Deque<byte[]> chunks = new ArrayDeque<byte[]>();
+            private byte[] current;
+            private int offset;
+            private int queued;
+            private boolean ended;
+            private boolean aborted;
+
+            private synchronized void offer(final byte[] bytes) {
+                chunks.add(bytes);
+                queued += bytes.length;
+                notifyAll();
+            }
+
+            private synchronized void end() {
+                ended = true;
+                notifyAll();
+            }
+
+            private synchronized void abort() {
+                aborted = true;
+                notifyAll();
+            }
+
+            private synchronized boolean isEnded() {
+                return ended;
+            }
+
+            private synchronized boolean isFull() {
+                return queued >= bodyBufferSize;
+            }
+
+            @Override
+            public int read() throws IOException {
+                final byte[] b = new byte[1];
+                return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+            }
+
+            @Override
+            public synchronized int read(final byte[] b, final int off, final int len) throws IOException {
+                if (len == 0) {
+                    return 0;
+                }
+
+                long deadline = 0;
+                while (current == null) {
+                    if (aborted) {
+                        throw new IOException("Connection closed");
+                    }
+                    current = chunks.poll();
+                    offset = 0;
+                    if (current == null) {
+                        if (ended) {
+                            return -1;
+                        }
+                        deadline = await(this, deadline);
+                    }
+                }
+
+                final int read = Math.min(len, current.length - offset);
+                System.arraycopy(current, offset, b, off, read);
+                offset += read;
+                if (offset == current.length) {
+                    current = null;
+                }
+
+                final boolean full = queued >= bodyBufferSize;
+                queued -= read;
+                if (full && queued < bodyBufferSize) { // the selector stopped reading
+                    signal();
+                }
+                return read;
+            }
+
+            @Override
+            public synchronized int available() {
+                return current == null ? 0 : current.length - offset;
+            }
+        }
+
+        /**
+         * The bytes of the response queued by the listener for the selector.
+         */
+        private final class ResponseBody extends OutputStream {
+            private final Deque<ByteBuffer> chunks = new ArrayDeque<ByteBuffer>();
+            private int queued;
+            private boolean finished;
+            private boolean aborted;
+
+            @Override
+            public void write(final int b) throws IOException {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public synchronized void write(final byte[] b, final int off, final int len) throws IOException {
+                if (len == 0) {
+                    return;
+                }
+
+                final byte[] copy = new byte[len];
+                System.arraycopy(b, off, copy, 0, len);
+                offer(copy);
+
+                long deadline = 0;
+                while (queued > bodyBufferSize && !aborted) {
+                    deadline = await(this, deadline);
+                }
+                if (aborted) {
+                    throw new IOException("Connection closed");
+                }
+            }
+
+            private synchronized void offer(final byte[] bytes) throws IOException {
+                if (aborted) {
+                    throw new IOException("Connection closed");
+                }
+                final boolean empty = chunks.isEmpty();
+                chunks.add(ByteBuffer.wrap(bytes));
+                queued += bytes.length;
+                if (empty) {
+                    signal();
+                }
+            }
+
+            private synchronized void finish() {
+                finished = true;
+                signal();
+            }
+
+            private synchronized void abort() {
+                aborted = true;
+                notifyAll();
+            }
+
+            private synchronized boolean isFinished() {
+                return finished;
+            }
+
+            private synchronized boolean isPending() {
+                return !chunks.isEmpty();
+            }
+
+            /**
+             * @return true if everything queued is written
+             */
+            private synchronized boolean writeTo(final SocketChannel channel) throws IOException {
+                ByteBuffer chunk;
+                while ((chunk = chunks.peek()) != null) {
+                    queued -= channel.write(chunk);
+                    if (chunk.hasRemaining()) {
+                        break;
+                    }
+                    chunks.poll();
+                }
+                notifyAll();
+                return chunks.isEmpty();
+            }
+        }
+    }
+
+    /**
+     * Waits for the other side of a body queue, the caller owning the monitor of the queue.
+     *
+     * @return the deadline, computed at the first call
+     */
+    private long await(final Object queue, final long deadline) throws IOException {
+        final long end = deadline == 0 ? System.currentTimeMillis() + keepAliveTimeout : deadline;
+        final long wait = end - System.currentTimeMillis();
+        if (wait <= 0) {
+            throw new SocketTimeoutException("No progress of the client for " + keepAliveTimeout + "ms");
+        }
+        try {
+            queue.wait(wait);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+        return end;
+    }
+}
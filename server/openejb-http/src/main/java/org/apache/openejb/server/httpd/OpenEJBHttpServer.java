@@ -33,6 +33,8 @@ import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -101,8 +103,8 @@ public class OpenEJBHttpServer implements HttpServer {
         try {
             RequestInfos.initRequestInfo(socket);
 
-            in = new CountingInputStream(socket.getInputStream());
-            out = new CountingOutputStream(socket.getOutputStream());
+            in = new BufferedInputStream(new CountingInputStream(socket.getInputStream()));
+            out = new BufferedOutputStream(new CountingOutputStream(socket.getOutputStream()));
 
             //TODO: if ssl change to https
             final URI socketURI = new URI("http://" + socket.getLocalAddress().getHostAddress() + ":" + socket.getLocalPort());
@@ -189,39 +191,55 @@ public class OpenEJBHttpServer implements HttpServer {
      * @param out the output stream to the browser
      */
     private void processRequest(final URI socketURI, final InputStream in, final OutputStream out) {
-        HttpResponseImpl response = null;
-        try {
-            response = process(socketURI, in);
+        processRequest(socketURI, in, out, false);
+    }
 
+    /**
+     * @param keepAlive true if the client asked to keep the connection open after this request
+     * @return true if the response was written and the connection can be kept open for the next request
+     */
+    boolean processRequest(final URI socketURI, final InputStream in, final OutputStream out, final boolean keepAlive) {
+        HttpResponseImpl response = new HttpResponseImpl();
+        if (keepAlive) {
+            response.setHeader("Connection", "keep-alive");
+        }
+        if (!print.contains(Output.RESPONSE)) { // large bodies are streamed
+            response.setOutput(out);
+        }
+
+        try {
+            process(socketURI, in, response);
         } catch (Throwable t) {
+            if (response.isStreaming()) { // too late for an error page, the client will get a truncated body
+                log.error("Error while streaming the response", t);
+                return false;
+            }
             response = HttpResponseImpl.createError(t.getMessage(), t);
-        } finally {
-            try {
-                if (response != null) {
-                    response.writeMessage(out, false);
+        }
 
-                    if (print.size() > 0 && print.contains(Output.RESPONSE)) {
-                        response.writeMessage(new LoggerOutputStream(log, "debug"), indent);
-                    }
-                }
-            } catch (Throwable t2) {
-
-                if (log.isDebugEnabled()) {
-                    log.debug("Could not write response", t2);
-                } else {
-                    //SocketException is something a client can cause, so do not log it (potential DOS)
-                    if (!SocketException.class.isInstance(t2)) {
-                        log.warning("Could not write response:" + t2);
-                    }
-                }
+        try {
+            response.writeMessage(out, false);
 
+            if (print.size() > 0 && print.contains(Output.RESPONSE)) {
+                response.writeMessage(new LoggerOutputStream(log, "debug"), indent);
+            }
+            return response.isKeepAlive();
+        } catch (Throwable t2) {
+
+            if (log.isDebugEnabled()) {
+                log.debug("Could not write response", t2);
+            } else {
+                //SocketException is something a client can cause, so do not log it (potential DOS)
+                if (!SocketException.class.isInstance(t2)) {
+                    log.warning("Could not write response:" + t2);
+                }
             }
+            return false;
         }
     }
 
-    private HttpResponseImpl process(final URI socketURI, final InputStream in) throws OpenEJBException {
+    private void process(final URI socketURI, final InputStream in, final HttpResponseImpl res) throws OpenEJBException {
         final HttpRequestImpl req = new HttpRequestImpl(socketURI);
-        final HttpResponseImpl res = new HttpResponseImpl();
 
         try {
             req.readMessage(in);
@@ -262,8 +280,6 @@ public class OpenEJBHttpServer implements HttpServer {
         } catch (Throwable t) {
             throw new OpenEJBException("Error occurred while executing the module " + location + "\n" + t.getClass().getName() + ":\n" + t.getMessage(), t);
         }
-
-        return res;
     }
 
     public static String reformat(final String raw) {
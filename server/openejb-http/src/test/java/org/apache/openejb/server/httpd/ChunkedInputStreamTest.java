@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.server.httpd;
+
+import org.apache.openejb.loader.IO;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.Assert.assertEquals;
+
+public class ChunkedInputStreamTest {
+    @Test
+    public void roundTrip() throws Exception {
+        final ByteArrayOutputStream wire = new ByteArrayOutputStream();
+        final ChunkedOutputStream out = new ChunkedOutputStream(wire);
+        out.write("hello".getBytes());
+        out.write(new byte[0]);
+        out.write(" world".getBytes());
+        out.finish();
+        wire.write("GET /next HTTP/1.1\r\n".getBytes());
+
+        final InputStream connection = new ByteArrayInputStream(wire.toByteArray());
+        assertEquals("hello world", IO.slurp(new ChunkedInputStream(connection)));
+        assertEquals("GET /next HTTP/1.1\r\n", IO.slurp(connection)); // nothing read after the body
+    }
+
+    @Test
+    public void extensionsAndTrailers() throws Exception {
+        final String body = "5;name=value\r\nhello\r\n0\r\nTrailer: value\r\n\r\n";
+        assertEquals("hello", IO.slurp(new ChunkedInputStream(new ByteArrayInputStream(body.getBytes()))));
+    }
+
+    @Test(expected = IOException.class)
+    public void negativeChunkSize() throws Exception {
+        IO.slurp(new ChunkedInputStream(new ByteArrayInputStream("-5\r\nhello\r\n0\r\n\r\n".getBytes())));
+    }
+
+    @Test(expected = IOException.class)
+    public void lineTooLong() throws Exception {
+        final StringBuilder body = new StringBuilder("5;");
+        while (body.length() < 10000) {
+            body.append("extension=value;");
+        }
+        body.append("\r\nhello\r\n0\r\n\r\n");
+        IO.slurp(new ChunkedInputStream(new ByteArrayInputStream(body.toString().getBytes())));
+    }
+
+    @Test
+    public void contentLength() throws Exception {
+        final InputStream connection = new ByteArrayInputStream("hello world".getBytes());
+        assertEquals("hello", IO.slurp(new ContentLengthInputStream(connection, 5)));
+        assertEquals(" world", IO.slurp(connection));
+    }
+
+    @Test(expected = EOFException.class)
+    public void truncated() throws Exception {
+        IO.slurp(new ContentLengthInputStream(new ByteArrayInputStream("hello".getBytes()), 10));
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.server.httpd;
+
+import org.apache.openejb.loader.SystemInstance;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class HttpListenerRegistryTest {
+    private HttpListenerRegistry registry;
+    private String called;
+    private final List<String> chain = new ArrayList<String>();
+
+    @Before
+    public void init() {
+        registry = new HttpListenerRegistry();
+        SystemInstance.get().setComponent(HttpListenerRegistry.class, registry); // used by the filter chain
+        registry.addHttpListener(new Named("ejb"), "/ejb/?.*");
+        registry.addHttpListener(new Named("app"), "/app/.*");
+        registry.addHttpListener(new Named("servlet"), "/app/servlet");
+        registry.addHttpListener(new Named("rest"), "/app/rest/.*");
+        registry.addHttpListener(new Named("regex"), "/[a-z]+\\.do");
+        registry.addHttpListener(new Named("dotted"), "/my.app/servlet");
+    }
+
+    @Test
+    public void routing() throws Exception {
+        assertEquals("ejb", call("/ejb"));
+        assertEquals("ejb", call("/ejb/foo"));
+        assertEquals("servlet", call("/app/servlet"));
+        assertEquals("app", call("/app/servlet/more"));
+        assertEquals("rest", call("/app/rest/resource"));
+        assertEquals("app", call("/app/"));
+        assertEquals("regex", call("/foo.do"));
+        assertEquals("dotted", call("/my.app/servlet"));
+        assertNull(call("/other"));
+    }
+
+    @After
+    public void reset() {
+        SystemInstance.reset();
+    }
+
+    @Test
+    public void filterChain() throws Exception {
+        registry.addHttpFilter(new FilterListener(new Chained("first"), "/app"), "/app/.*");
+        registry.addHttpFilter(new FilterListener(new Chained("other"), "/other"), "/other/.*");
+        registry.addHttpFilter(new FilterListener(new Chained("second"), "/app"), "/app/serv.*");
+        registry.addHttpFilter(new FilterListener(new Chained("third"), "/app"), "/app/servlet");
+
+        for (int i = 0; i < 2; i++) { // the origin of the chain is reset after each request
+            chain.clear();
+            assertEquals("servlet", call("/app/servlet"));
+            assertEquals(Arrays.asList("first", "second", "third", "servlet"), chain);
+        }
+
+        chain.clear();
+        assertEquals("rest", call("/app/rest/resource"));
+        assertEquals(Arrays.asList("first", "rest"), chain);
+    }
+
+    @Test
+    public void unregister() throws Exception {
+        registry.removeHttpListener("/app/servlet");
+        assertEquals("app", call("/app/servlet"));
+
+        registry.removeHttpListener("/app/.*");
+        assertNull(call("/app/servlet"));
+    }
+
+    private String call(final String path) throws Exception {
+        called = null;
+        registry.onMessage(request(path), null);
+        return called;
+    }
+
+    private static HttpRequest request(final String path) {
+        return (HttpRequest) Proxy.newProxyInstance(HttpListenerRegistryTest.class.getClassLoader(), new Class<?>[]{HttpRequest.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+                if ("getURI".equals(method.getName())) {
+                    return new URI("http://localhost:4204" + path);
+                }
+                throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    private class Named implements HttpListener {
+        private final String name;
+
+        private Named(final String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void onMessage(final HttpRequest request, final HttpResponse response) throws Exception {
+            called = name;
+            chain.add(name);
+        }
+    }
+
+    private class Chained implements Filter {
+        private final String name;
+
+        private Chained(final String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void init(final FilterConfig filterConfig) throws ServletException {
+            // no-op
+        }
+
+        @Override
+        public void doFilter(final ServletRequest request, final ServletResponse response, final FilterChain filterChain) throws IOException, ServletException {
+            chain.add(name);
+            filterChain.doFilter(request, response);
+        }
+
+        @Override
+        public void destroy() {
+            // no-op
+        }
+    }
+}
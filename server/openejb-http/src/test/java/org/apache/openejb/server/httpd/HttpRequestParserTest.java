@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.server.httpd;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class HttpRequestParserTest {
+    private final HttpRequestParser parser = new HttpRequestParser(1024);
+
+    @Test
+    public void byteByByte() throws Exception {
+        final String request = "POST /ejb HTTP/1.1\r\nHost: localhost\r\ncontent-length: 5\r\n\r\nhello";
+        final ByteBuffer buffer = ByteBuffer.allocate(128);
+        for (int i = 0; i < request.length() - 1; i++) {
+            buffer.put((byte) request.charAt(i));
+            assertFalse(parser.parse(buffer));
+        }
+        buffer.put((byte) request.charAt(request.length() - 1));
+        assertTrue(parser.parse(buffer));
+        assertEquals(request.length(), parser.end());
+        assertTrue(parser.isKeepAlive());
+    }
+
+    @Test
+    public void pipelined() throws Exception {
+        final String first = "GET /a HTTP/1.1\r\nConnection: close\r\n\r\n";
+        final ByteBuffer buffer = buffer(first + "GET /b HTTP/1.0\r\n\r\n");
+        assertTrue(parser.parse(buffer));
+        assertEquals(first.length(), parser.end());
+        assertFalse(parser.isKeepAlive());
+
+        buffer.flip();
+        buffer.position(first.length());
+        buffer.compact();
+        parser.next();
+
+        assertTrue(parser.parse(buffer));
+        assertEquals(buffer.position(), parser.end());
+        assertFalse(parser.isKeepAlive());
+    }
+
+    @Test
+    public void chunked() throws Exception {
+        final String request = "POST /a HTTP/1.1\r\nTransfer-Encoding: chunked\r\n\r\n5\r\nhello\r\n6;ext=1\r\n world\r\n0\r\nTrailer: x\r\n\r\n";
+        final ByteBuffer buffer = buffer(request + "GET");
+        assertTrue(parser.parse(buffer));
+        assertEquals(request.length(), parser.end());
+    }
+
+    @Test(expected = IOException.class)
+    public void overflowingContentLength() throws Exception {
+        parser.parse(buffer("POST /a HTTP/1.1\r\nContent-Length: 9223372036854775808\r\n\r\n"));
+    }
+
+    @Test(expected = IOException.class)
+    public void overflowingChunkSize() throws Exception {
+        parser.parse(buffer("POST /a HTTP/1.1\r\nTransfer-Encoding: chunked\r\n\r\nffffffffffff0000\r\nhello\r\n"));
+    }
+
+    @Test(expected = IOException.class)
+    public void headerTooLarge() throws Exception {
+        final StringBuilder request = new StringBuilder("GET / HTTP/1.1\r\n");
+        while (request.length() < 2048) {
+            request.append("X-Header: value\r\n");
+        }
+        parser.parse(buffer(request.toString()));
+    }
+
+    private static ByteBuffer buffer(final String content) {
+        final ByteBuffer buffer = ByteBuffer.allocate(4096);
+        buffer.put(content.getBytes());
+        return buffer;
+    }
+}
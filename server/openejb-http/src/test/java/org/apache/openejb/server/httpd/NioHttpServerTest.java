@@ -0,0 +1,333 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.server.httpd;
+
+import org.apache.openejb.loader.SystemInstance;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class NioHttpServerTest {
+    private NioHttpServer server;
+
+    @Before
+    public void start() throws Exception {
+        start("30 seconds");
+    }
+
+    private void start(final String keepAliveTimeout) throws Exception {
+        server = new NioHttpServer(new HttpListener() {
+            @Override
+            public void onMessage(final HttpRequest request, final HttpResponse response) throws Exception {
+                final String uri = request.getRequestURI();
+                if ("/upload".equals(uri)) { // reads slowly, in pieces much smaller than the queue
+                    final InputStream is = request.getInputStream();
+                    final byte[] buffer = new byte[100];
+                    long count = 0;
+                    boolean valid = true;
+                    int read;
+                    while ((read = is.read(buffer)) >= 0) {
+                        for (int i = 0; i < read; i++) {
+                            valid &= buffer[i] == (byte) (count++ % 251);
+                        }
+                    }
+                    response.getWriter().print(count + " " + valid);
+                } else if ("/stream".equals(uri)) {
+                    final OutputStream os = response.getOutputStream();
+                    final byte[] line = new byte[1000];
+                    Arrays.fill(line, (byte) 'x');
+                    for (int i = 0; i < 100; i++) {
+                        os.write(line);
+                    }
+                } else {
+                    response.getWriter().print("hello " + uri);
+                }
+            }
+        });
+
+        final Properties properties = new Properties();
+        properties.setProperty("port", "0");
+        properties.setProperty("nio.body-buffer-size", "1024");
+        properties.setProperty("nio.keep-alive-timeout", keepAliveTimeout);
+        server.init(properties);
+        server.start();
+    }
+
+    @After
+    public void stop() throws Exception {
+        server.stop();
+        SystemInstance.reset();
+    }
+
+    @Test
+    public void keepAliveReusesTheConnection() throws Exception {
+        final Client client = new Client(server.getPort());
+        try {
+            for (int i = 0; i < 3; i++) {
+                client.send("GET /request" + i + " HTTP/1.1\r\nHost: localhost\r\n\r\n");
+                final Response response = client.read();
+                assertEquals(200, response.status);
+                assertEquals("keep-alive", response.headers.get("connection"));
+                assertEquals("hello /request" + i, response.body);
+            }
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test
+    public void connectionClose() throws Exception {
+        final Client client = new Client(server.getPort());
+        try {
+            client.send("GET /first HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n");
+            final Response response = client.read();
+            assertEquals("hello /first", response.body);
+            assertEquals("close", response.headers.get("connection"));
+            assertEquals(-1, client.in.read());
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test
+    public void http10IsClosedByDefault() throws Exception {
+        final Client client = new Client(server.getPort());
+        try {
+            client.send("GET /old HTTP/1.0\r\n\r\n");
+            assertEquals("hello /old", client.read().body);
+            assertEquals(-1, client.in.read());
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void requestBodyLargerThanTheQueue() throws Exception {
+        final int length = 1024 * 1024;
+        final byte[] body = new byte[length];
+        for (int i = 0; i < length; i++) {
+            body[i] = (byte) (i % 251);
+        }
+
+        final Client client = new Client(server.getPort());
+        try {
+            client.send("POST /upload HTTP/1.1\r\nHost: localhost\r\nContent-Length: " + length + "\r\n\r\n");
+            client.out.write(body);
+            client.out.flush();
+            assertEquals(length + " true", client.read().body);
+
+            // the connection is still usable
+            client.send("GET /after HTTP/1.1\r\nHost: localhost\r\n\r\n");
+            assertEquals("hello /after", client.read().body);
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void streamedResponse() throws Exception {
+        final Client client = new Client(server.getPort());
+        try {
+            client.send("GET /stream HTTP/1.1\r\nHost: localhost\r\n\r\n");
+            Thread.sleep(200); // the listener waits for the client once the queue is full
+
+            final Response response = client.read();
+            assertEquals(200, response.status);
+            assertEquals("chunked", response.headers.get("transfer-encoding"));
+            assertNull(response.headers.get("content-length"));
+            assertTrue("chunks: " + response.chunks, response.chunks > 1);
+            assertEquals(100000, response.body.length());
+
+            client.send("GET /after HTTP/1.1\r\nHost: localhost\r\n\r\n");
+            assertEquals("hello /after", client.read().body);
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void pipelinedRequests() throws Exception {
+        final Client client = new Client(server.getPort());
+        try {
+            client.send("GET /a HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                + "GET /b HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                + "GET /c HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n");
+            assertEquals("hello /a", client.read().body);
+            assertEquals("hello /b", client.read().body);
+            assertEquals("hello /c", client.read().body);
+            assertEquals(-1, client.in.read());
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void overflowingContentLengthIsABadRequest() throws Exception {
+        final Client client = new Client(server.getPort());
+        try {
+            client.send("POST /upload HTTP/1.1\r\nHost: localhost\r\nContent-Length: 99999999999999999999\r\n\r\nhello");
+            final String response = client.readAll();
+            assertTrue(response, response.startsWith("HTTP/1.1 400 "));
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void overflowingChunkSizeClosesTheConnection() throws Exception {
+        final Client client = new Client(server.getPort());
+        try {
+            client.send("POST /upload HTTP/1.1\r\nHost: localhost\r\nTransfer-Encoding: chunked\r\n\r\nffffffffffff0000\r\nhello\r\n");
+            // a bad request if the chunk size is parsed with the headers, else the connection is just closed
+            final String response = client.readAll();
+            assertTrue(response, response.isEmpty() || response.startsWith("HTTP/1.1 400 "));
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void idleConnectionsAreClosedAfterTheKeepAliveTimeout() throws Exception {
+        server.stop();
+        start("1 second");
+
+        final Client client = new Client(server.getPort());
+        try {
+            client.send("GET /first HTTP/1.1\r\nHost: localhost\r\n\r\n");
+            assertEquals("keep-alive", client.read().headers.get("connection"));
+
+            final long start = System.currentTimeMillis();
+            assertEquals(-1, client.in.read());
+            assertTrue(System.currentTimeMillis() - start >= 900);
+        } finally {
+            client.close();
+        }
+    }
+
+    /**
+     * A raw HTTP/1.1 client, the JDK one pools and hides the connections.
+     */
+    private static final class Client {
+        private final Socket socket;
+        private final InputStream in;
+        private final OutputStream out;
+
+        private Client(final int port) throws IOException {
+            socket = new Socket("127.0.0.1", port);
+            socket.setSoTimeout(10000);
+            in = socket.getInputStream();
+            out = socket.getOutputStream();
+        }
+
+        private void send(final String request) throws IOException {
+            out.write(request.getBytes("ISO-8859-1"));
+            out.flush();
+        }
+
+        private Response read() throws IOException {
+            final Response response = new Response();
+            final String status = line();
+            response.status = Integer.parseInt(status.split(" ")[1]);
+
+            String header;
+            while (!(header = line()).isEmpty()) {
+                final int colon = header.indexOf(':');
+                response.headers.put(header.substring(0, colon).trim().toLowerCase(), header.substring(colon + 1).trim());
+            }
+
+            final ByteArrayOutputStream body = new ByteArrayOutputStream();
+            if ("chunked".equalsIgnoreCase(response.headers.get("transfer-encoding"))) {
+                int size;
+                while ((size = Integer.parseInt(line().split(";")[0].trim(), 16)) > 0) {
+                    copy(size, body);
+                    line();
+                    response.chunks++;
+                }
+                line(); // no trailer
+            } else {
+                copy(Integer.parseInt(response.headers.get("content-length")), body);
+            }
+            response.body = new String(body.toByteArray(), "UTF-8");
+            return response;
+        }
+
+        /**
+         * @return everything sent until the server closes the connection
+         */
+        private String readAll() throws IOException {
+            final ByteArrayOutputStream all = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                all.write(buffer, 0, read);
+            }
+            return new String(all.toByteArray(), "ISO-8859-1");
+        }
+
+        private void copy(final int length, final OutputStream body) throws IOException {
+            final byte[] buffer = new byte[4096];
+            int remaining = length;
+            while (remaining > 0) {
+                final int read = in.read(buffer, 0, Math.min(buffer.length, remaining));
+                if (read < 0) {
+                    throw new IOException("Connection closed after " + (length - remaining) + " of " + length + " bytes");
+                }
+                body.write(buffer, 0, read);
+                remaining -= read;
+            }
+        }
+
+        private String line() throws IOException {
+            final StringBuilder line = new StringBuilder();
+            int c;
+            while ((c = in.read()) != '\n') {
+                if (c < 0) {
+                    throw new IOException("Connection closed");
+                }
+                if (c != '\r') {
+                    line.append((char) c);
+                }
+            }
+            return line.toString();
+        }
+
+        private void close() throws IOException {
+            socket.close();
+        }
+    }
+
+    private static final class Response {
+        private int status;
+        private final Map<String, String> headers = new TreeMap<String, String>();
+        private String body;
+        private int chunks;
+    }
+}
@@ -27,6 +27,7 @@ import org.apache.catalina.core.StandardEngine;
 import org.apache.catalina.core.StandardHost;
 import org.apache.catalina.core.StandardServer;
 import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.util.StartupTracer;
 import org.apache.tomee.catalina.cluster.TomEEClusterListener;
 import org.apache.tomee.catalina.remote.TomEERemoteWebapp;
 import org.apache.tomee.loader.TomcatHelper;
@@ -36,6 +37,8 @@ import java.beans.PropertyChangeListener;
 import java.lang.reflect.Field;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Observers events from Tomcat to configure
@@ -70,6 +73,11 @@ public class GlobalListenerSupport implements PropertyChangeListener, LifecycleL
      */
     private final ContextListener contextListener;
 
+    /**
+     * Startup trace spans of the contexts being started
+     */
+    private final ConcurrentMap<StandardContext, StartupTracer.Span> startSpans = new ConcurrentHashMap<StandardContext, StartupTracer.Span>();
+
     /**
      * Creates a new instance.
      *
@@ -103,6 +111,9 @@ public class GlobalListenerSupport implements PropertyChangeListener, LifecycleL
             if (INIT_EVENT.equals(type) || Lifecycle.BEFORE_INIT_EVENT.equals(type)) {
                 contextListener.init(standardContext);
             } else if (Lifecycle.BEFORE_START_EVENT.equals(type)) {
+                if (StartupTracer.isActive()) {
+                    startSpans.put(standardContext, StartupTracer.start("tomcat context", standardContext.getName()));
+                }
                 contextListener.beforeStart(standardContext);
             } else if (Lifecycle.START_EVENT.equals(type)) {
                 if (TomcatHelper.isTomcat7()) {
@@ -113,6 +124,11 @@ public class GlobalListenerSupport implements PropertyChangeListener, LifecycleL
             } else if (Lifecycle.AFTER_START_EVENT.equals(type)) {
                 contextListener.afterStart(standardContext);
 
+                final StartupTracer.Span span = startSpans.remove(standardContext);
+                if (span != null) {
+                    span.stop();
+                }
+
                 if (TomcatHelper.isTomcat7()) {
                     standardContext.removeParameter("openejb.start.late");
                 }
@@ -123,6 +139,7 @@ public class GlobalListenerSupport implements PropertyChangeListener, LifecycleL
             } else if (Lifecycle.AFTER_STOP_EVENT.equals(type)) {
                 contextListener.afterStop(standardContext);
             } else if (DESTROY_EVENT.equals(type) || Lifecycle.AFTER_DESTROY_EVENT.equals(type)) {
+                startSpans.remove(standardContext); // failed start
                 contextListener.destroy(standardContext);
             } else if (Lifecycle.CONFIGURE_START_EVENT.equals(type)) {
                 contextListener.configureStart(standardContext);
@@ -146,6 +163,10 @@ public class GlobalListenerSupport implements PropertyChangeListener, LifecycleL
                 contextListener.start(standardServer);
             }
 
+            if (Lifecycle.AFTER_START_EVENT.equals(type) && StartupTracer.isActive()) {
+                StartupTracer.report("tomee");
+            }
+
             if (Lifecycle.BEFORE_STOP_EVENT.equals(type)) {
                 TomcatHelper.setStopping(true);
                 TomEEClusterListener.stop();
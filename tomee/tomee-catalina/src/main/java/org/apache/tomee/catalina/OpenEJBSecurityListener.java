@@ -33,6 +33,25 @@ public class OpenEJBSecurityListener implements AsyncListener {
         request = req;
     }
 
+    /**
+     * Reuses this listener for another synchronous request.
+     */
+    OpenEJBSecurityListener reset(final TomcatSecurityService service, final Request req) {
+        securityService = service;
+        request = req;
+        oldState = null;
+        return this;
+    }
+
+    void release() {
+        request = null;
+        oldState = null;
+    }
+
+    boolean isInUse() {
+        return request != null;
+    }
+
     @Override
     public void onComplete(AsyncEvent asyncEvent) throws IOException {
         exit();
@@ -16,6 +16,7 @@
  */
 package org.apache.tomee.catalina;
 
+import org.apache.catalina.Wrapper;
 import org.apache.catalina.connector.Request;
 import org.apache.catalina.connector.Response;
 import org.apache.catalina.valves.ValveBase;
@@ -27,6 +28,8 @@ import javax.servlet.ServletException;
 import java.io.IOException;
 
 public class OpenEJBValve extends ValveBase {
+    private static final ThreadLocal<OpenEJBSecurityListener> LISTENERS = new ThreadLocal<OpenEJBSecurityListener>();
+
     protected TomcatSecurityService securityService;
     protected static final String info = OpenEJBValve.class.getName() + "/" + OpenEjbVersion.get().getVersion();
 
@@ -36,14 +39,29 @@ public class OpenEJBValve extends ValveBase {
     }
 
     public void invoke(Request request, Response response) throws IOException, ServletException {
-        OpenEJBSecurityListener listener = new OpenEJBSecurityListener(securityService, request);
-
         if (!request.isAsync()) {
+            if (!needsSecurityContext(request)) {
+                try {
+                    getNext().invoke(request, response);
+                } finally {
+                    if (securityService != null) {
+                        // a programmatic login (TomEERealm) gave an identity to the anonymous thread
+                        securityService.exitAnonymousWebApp();
+                    }
+                }
+                return;
+            }
+
+            final OpenEJBSecurityListener listener = listener(request);
             listener.enter();
             try {
                 getNext().invoke(request, response);
             } finally {
-                listener.exit();
+                try {
+                    listener.exit();
+                } finally {
+                    listener.release();
+                }
             }
         } else {
             request.getAsyncContext().addListener(new OpenEJBSecurityListener(securityService, request));
@@ -51,6 +69,35 @@ public class OpenEJBValve extends ValveBase {
         }
     }
 
+    /**
+     * The security context only has something to propagate for an authenticated request, a servlet with a run-as
+     * or a thread already carrying an identity, an anonymous request would enter and exit it without changing it.
+     */
+    private boolean needsSecurityContext(final Request request) {
+        if (securityService == null) {
+            return false;
+        }
+
+        final Wrapper wrapper = request.getWrapper();
+        if (wrapper == null) {
+            return false; // the listener would not enter anything
+        }
+        return request.getPrincipal() != null || wrapper.getRunAs() != null || !securityService.isAnonymous();
+    }
+
+    private OpenEJBSecurityListener listener(final Request request) {
+        final OpenEJBSecurityListener listener = LISTENERS.get();
+        if (listener == null) {
+            final OpenEJBSecurityListener created = new OpenEJBSecurityListener(securityService, request);
+            LISTENERS.set(created);
+            return created;
+        }
+        if (listener.isInUse()) { // nested invocation on the same thread
+            return new OpenEJBSecurityListener(securityService, request);
+        }
+        return listener.reset(securityService, request);
+    }
+
     private TomcatSecurityService getSecurityService() {
         SecurityService securityService = SystemInstance.get().getComponent(SecurityService.class);
         if (securityService instanceof TomcatSecurityService) {
@@ -174,6 +174,24 @@ public class TomcatSecurityService extends AbstractSecurityService {
         return webAppState;
     }
 
+    /**
+     * @return true if no identity is associated with the current thread, entering a web app
+     * anonymously and without run-as would then leave the security context unchanged
+     */
+    public boolean isAnonymous() {
+        return clientIdentity.get() == null;
+    }
+
+    /**
+     * Ends a request which entered the web app anonymously: forgets the identity a programmatic login
+     * could have associated with the thread during the request.
+     */
+    public void exitAnonymousWebApp() {
+        if (clientIdentity.get() != null) {
+            clientIdentity.remove();
+        }
+    }
+
     public void exitWebApp(Object state) {
         if (state instanceof WebAppState) {
             final WebAppState webAppState = (WebAppState) state;
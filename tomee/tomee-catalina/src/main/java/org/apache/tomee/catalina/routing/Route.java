@@ -17,23 +17,28 @@
 
 package org.apache.tomee.catalina.routing;
 
-import java.util.ArrayList;
-import java.util.Collection;
+import java.util.regex.MatchResult;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+/**
+ * A route is stateless, a match only lives during the call routing the uri, so a route can be shared by
+ * all the requests.
+ */
 public class Route {
-    private static final String[] EMPTY_CONTEXT = new String[0];
-
-    private final ThreadLocal<Matcher> matcher = new ThreadLocal<Matcher>();
+    private static final String META_CHARACTERS = "\\.[]{}()*+?^$|";
 
     private Pattern originPattern;
     private String origin;
+    private String literalPrefix;
+    private int groupCount;
     private String destination;
 
     public Route from(final String value) {
         origin = value;
         originPattern = Pattern.compile(value);
+        literalPrefix = literalPrefix(value);
+        groupCount = originPattern.matcher("").groupCount();
         return this;
     }
 
@@ -42,18 +47,31 @@ public class Route {
         return this;
     }
 
-    public String cleanDestination(final String prefix) {
-        String destination = this.destination;
-
-        final Matcher matcher = this.matcher.get();
-        if (matcher != null) {
-            final String[] context = currentContext();
-            for (int i = 0; i < context.length; i++) {
-                destination = destination.replace("$" + (i + 1), context[i]);
-            }
+    /**
+     * @param uri    the requested uri
+     * @param prefix the prefix to remove from the destination
+     * @return the destination of the uri or null if this route does not match it
+     */
+    public String route(final String uri, final String prefix) {
+        final Matcher matcher = originPattern.matcher(uri);
+        if (!matcher.matches()) {
+            return null;
         }
+        return cleanDestination(matcher, 1, prefix);
+    }
 
-        this.matcher.remove(); // single call to this method
+    /**
+     * @param match      the match of the origin
+     * @param firstGroup the group of the match holding the first group of the origin
+     * @param prefix     the prefix to remove from the destination
+     * @return the destination with $n replaced by the groups of the origin
+     */
+    String cleanDestination(final MatchResult match, final int firstGroup, final String prefix) {
+        String destination = this.destination;
+        for (int i = 0; i < groupCount; i++) {
+            final String value = match.group(firstGroup + i);
+            destination = destination.replace("$" + (i + 1), value == null ? "" : value);
+        }
 
         if (prefix == null) {
             return destination;
@@ -66,33 +84,66 @@ public class Route {
     }
 
     public boolean matches(final String uri) {
-        final Matcher matcher = originPattern.matcher(uri);
-        final boolean ok = matcher.matches();
+        return originPattern.matcher(uri).matches();
+    }
 
-        if (ok) {
-            this.matcher.set(matcher);
-        }
+    public String getRawDestination() {
+        return destination;
+    }
 
-        return ok;
+    Pattern getOriginPattern() {
+        return originPattern;
     }
 
-    private String[] currentContext() {
-        if (matcher.get().groupCount() > 0) {
-            return buildContext(matcher.get());
-        } else {
-            return EMPTY_CONTEXT;
-        }
+    int getGroupCount() {
+        return groupCount;
     }
 
-    private String[] buildContext(final Matcher matcher) {
-        final Collection<String> values = new ArrayList<String>();
-        for (int i = 1; i < matcher.groupCount() + 1; i++) {
-            values.add(matcher.group(i));
+    /**
+     * @return the start of every uri this route can match
+     */
+    String getLiteralPrefix() {
+        return literalPrefix;
+    }
+
+    private static String literalPrefix(final String regex) {
+        if (hasTopLevelAlternative(regex)) {
+            return "";
+        }
+
+        final StringBuilder prefix = new StringBuilder();
+        for (int i = 0; i < regex.length(); i++) {
+            final char c = regex.charAt(i);
+            if (META_CHARACTERS.indexOf(c) >= 0) {
+                if ((c == '*' || c == '?' || c == '{') && prefix.length() > 0) {
+                    prefix.setLength(prefix.length() - 1); // the previous character is optional
+                }
+                break;
+            }
+            prefix.append(c);
         }
-        return values.toArray(new String[values.size()]);
+        return prefix.toString();
     }
 
-    public String getRawDestination() {
-        return destination;
+    private static boolean hasTopLevelAlternative(final String regex) {
+        int depth = 0;
+        boolean characterClass = false;
+        for (int i = 0; i < regex.length(); i++) {
+            final char c = regex.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (characterClass) {
+                characterClass = c != ']';
+            } else if (c == '[') {
+                characterClass = true;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (c == '|' && depth == 0) {
+                return true;
+            }
+        }
+        return false;
     }
 }
@@ -17,6 +17,7 @@
 
 package org.apache.tomee.catalina.routing;
 
+import org.apache.openejb.loader.SystemInstance;
 import org.apache.openejb.monitoring.DynamicMBeanWrapper;
 import org.apache.openejb.monitoring.LocalMBeanServer;
 import org.apache.openejb.monitoring.ObjectNameBuilder;
@@ -40,18 +41,37 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
+/**
+ * Routes are indexed by the literal start of their origin in a trie and the routes which can match a uri are
+ * compiled together into a single pattern, so routing a uri walks the trie once and runs a single match
+ * whatever the number of routes. The first route matching, in registration order, still wins.
+ *
+ * The index is an immutable snapshot rebuilt when the routes change, the routed uris are kept in a bounded
+ * LRU cache ({@value #CACHE_SIZE}, 0 to disable it).
+ */
 public class SimpleRouter {
+    public static final String CACHE_SIZE = "tomee.router.cache-size";
+
     private static final Pattern PATTERN = Pattern.compile("(.*)->(.*)");
+    private static final Pattern BACK_REFERENCE = Pattern.compile("\\\\([1-9]|k<)");
+    private static final String NO_ROUTE = new String(""); // identity marks the cached misses
+    private static final int CACHE_SEGMENTS = 16;
+
+    private final int cacheSize = SystemInstance.get().getOptions().get(CACHE_SIZE, 1000);
 
     private String prefix = "";
     private ObjectName objectName = null;
-    private Route[] routes = new Route[0];
-    private final Map<String, Route> cache = new ConcurrentHashMap<String, Route>();
+    private volatile Snapshot snapshot = new Snapshot(new Route[0], cacheSize);
 
     public SimpleRouter readConfiguration(final URL url) {
         if (url == null) {
@@ -89,43 +109,37 @@ public class SimpleRouter {
             return null;
         }
 
-        final Route cachedRoute = cache.get(uri);
-        if (cachedRoute != null) {
-            cachedRoute.matches(uri);
-            return cachedRoute.cleanDestination(prefix);
-        }
-
-        for (Route route : routes) {
-            if (route.matches(uri)) {
-                if (route.getOrigin().equals(uri)) {
-                    cache.put(uri, route);
-                }
-                return route.cleanDestination(prefix);
-            }
+        final Snapshot current = snapshot;
+        final String cached = current.cache.get(uri);
+        if (cached != null) {
+            return cached == NO_ROUTE ? null : cached;
         }
 
-        return null;
+        final String destination = current.route(uri, prefix);
+        current.cache.put(uri, destination == null ? NO_ROUTE : destination);
+        return destination;
     }
 
     public synchronized void addRoute(final Route route) {
+        final Route[] routes = snapshot.routes;
         final Route[] newRoutes = new Route[routes.length + 1];
         System.arraycopy(routes, 0, newRoutes, 0, routes.length);
         newRoutes[routes.length] = route;
-        routes = newRoutes;
+        snapshot = new Snapshot(newRoutes, cacheSize);
     }
 
-    public void cleanUp() {
+    public synchronized void cleanUp() {
         JMXOff();
-        routes = null;
-        cache.clear();
+        snapshot = new Snapshot(new Route[0], 0);
     }
 
-    public void setPrefix(final String prefix) {
+    public synchronized void setPrefix(final String prefix) {
         if (prefix == null || prefix.isEmpty() || prefix.equals("/")) {
             this.prefix = "";
         } else {
             this.prefix = prefix;
         }
+        snapshot = new Snapshot(snapshot.routes, cacheSize); // cached destinations depend on the prefix
     }
 
     private String prefix(final String value) {
@@ -161,6 +175,7 @@ public class SimpleRouter {
 
     @ManagedAttribute
     public TabularData getActiveRoutes() {
+        final Route[] routes = snapshot.routes;
         if (routes.length == 0) {
             return null;
         }
@@ -194,18 +209,17 @@ public class SimpleRouter {
     }
 
     @ManagedOperation
-    public void removeRoute(final String from, final String to) {
-        if (routes.length == 0) {
-            return;
+    public synchronized void removeRoute(final String from, final String to) {
+        final Route[] routes = snapshot.routes;
+        final List<Route> newRoutes = new ArrayList<Route>(routes.length);
+        for (final Route route : routes) {
+            if (!route.getOrigin().equals(from) || !route.getRawDestination().endsWith(to)) {
+                newRoutes.add(route);
+            }
         }
 
-        for (int i = 0; i < routes.length; i++) {
-            if (routes[i].getOrigin().equals(from) && routes[i].getRawDestination().endsWith(to)) {
-                final Route[] newRoutes = new Route[routes.length - 1];
-                System.arraycopy(routes, 0, newRoutes, 0, i);
-                System.arraycopy(routes, i + 1, newRoutes, i, routes.length - i - 1);
-                routes = newRoutes;
-            }
+        if (newRoutes.size() != routes.length) {
+            snapshot = new Snapshot(newRoutes.toArray(new Route[newRoutes.size()]), cacheSize);
         }
     }
 
@@ -216,4 +230,251 @@ public class SimpleRouter {
     public String getPrefix() {
         return prefix;
     }
+
+    int getCachedRouteCount() {
+        return snapshot.cache.size();
+    }
+
+    boolean isCached(final String uri) {
+        return snapshot.cache.contains(uri);
+    }
+
+    /**
+     * The routes, their index and the uris routed with them.
+     */
+    private static class Snapshot {
+        private final Route[] routes;
+        private final Node root = new Node();
+        private final RouteCache cache;
+
+        private Snapshot(final Route[] routes, final int cacheSize) {
+            this.routes = routes;
+            this.cache = new RouteCache(cacheSize);
+
+            final Map<Node, List<Integer>> attached = new LinkedHashMap<Node, List<Integer>>();
+            for (int i = 0; i < routes.length; i++) {
+                final Node node = root.child(routes[i].getLiteralPrefix());
+                List<Integer> indexes = attached.get(node);
+                if (indexes == null) {
+                    indexes = new ArrayList<Integer>();
+                    attached.put(node, indexes);
+                }
+                indexes.add(i);
+            }
+            compile(root, attached, new ArrayList<Integer>());
+        }
+
+        /**
+         * A node gets the routes attached to it and to its parents, sorted by registration order.
+         */
+        private void compile(final Node node, final Map<Node, List<Integer>> attached, final List<Integer> inherited) {
+            List<Integer> indexes = inherited;
+            final List<Integer> own = attached.get(node);
+            if (own != null) {
+                indexes = new ArrayList<Integer>(inherited);
+                indexes.addAll(own);
+                Collections.sort(indexes);
+
+                final Route[] candidates = new Route[indexes.size()];
+                for (int i = 0; i < candidates.length; i++) {
+                    candidates[i] = routes[indexes.get(i)];
+                }
+                node.candidates = new Candidates(candidates);
+            }
+
+            if (node.children != null) {
+                for (final Node child : node.children.values()) {
+                    compile(child, attached, indexes);
+                }
+            }
+        }
+
+        private String route(final String uri, final String prefix) {
+            Node node = root;
+            Candidates candidates = root.candidates;
+            for (int i = 0; i < uri.length() && node.children != null; i++) {
+                node = node.children.get(uri.charAt(i));
+                if (node == null) {
+                    break;
+                }
+                if (node.candidates != null) {
+                    candidates = node.candidates;
+                }
+            }
+
+            if (candidates == null) {
+                return null;
+            }
+            return candidates.route(uri, prefix);
+        }
+    }
+
+    private static class Node {
+        private Map<Character, Node> children;
+        private Candidates candidates;
+
+        private Node child(final String path) {
+            Node node = this;
+            for (int i = 0; i < path.length(); i++) {
+                if (node.children == null) {
+                    node.children = new HashMap<Character, Node>();
+                }
+
+                final Character c = path.charAt(i);
+                Node child = node.children.get(c);
+                if (child == null) {
+                    child = new Node();
+                    node.children.put(c, child);
+                }
+                node = child;
+            }
+            return node;
+        }
+    }
+
+    /**
+     * The routes which can match the uris starting with a given literal, as a single alternation where
+     * route i is the group {@code groups[i]}, or one by one when the origins can't be combined (back
+     * references would be renumbered).
+     */
+    private static class Candidates {
+        private final Route[] routes;
+        private final Pattern pattern;
+        private final int[] groups;
+
+        private Candidates(final Route[] routes) {
+            this.routes = routes;
+            this.groups = new int[routes.length];
+
+            final StringBuilder alternation = new StringBuilder("(?:");
+            int group = 1;
+            boolean combinable = true;
+            for (int i = 0; i < routes.length; i++) {
+                final String origin = routes[i].getOrigin();
+                if (BACK_REFERENCE.matcher(origin).find()) {
+                    combinable = false;
+                    break;
+                }
+
+                if (i > 0) {
+                    alternation.append('|');
+                }
+                alternation.append('(').append(origin).append(')');
+                groups[i] = group;
+                group += 1 + routes[i].getGroupCount();
+            }
+            alternation.append(')');
+
+            Pattern combined = null;
+            if (combinable && routes.length > 1) {
+                try {
+                    combined = Pattern.compile(alternation.toString());
+                } catch (final PatternSyntaxException e) {
+                    // duplicated named groups for instance, match the routes one by one
+                }
+            }
+            this.pattern = combined;
+        }
+
+        private String route(final String uri, final String prefix) {
+            if (pattern == null) {
+                for (final Route route : routes) {
+                    final String destination = route.route(uri, prefix);
+                    if (destination != null) {
+                        return destination;
+                    }
+                }
+                return null;
+            }
+
+            final Matcher matcher = pattern.matcher(uri);
+            if (!matcher.matches()) {
+                return null;
+            }
+            for (int i = 0; i < routes.length; i++) {
+                if (matcher.start(groups[i]) >= 0) {
+                    return routes[i].cleanDestination(matcher, groups[i] + 1, prefix);
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * A LRU cache split in segments to limit the contention between the requests.
+     */
+    private static class RouteCache {
+        private final Map<String, String>[] segments;
+
+        @SuppressWarnings("unchecked")
+        private RouteCache(final int size) {
+            if (size <= 0) {
+                segments = null;
+                return;
+            }
+
+            final int segmentSize = Math.max(1, size / CACHE_SEGMENTS);
+            segments = new Map[CACHE_SEGMENTS];
+            for (int i = 0; i < segments.length; i++) {
+                segments[i] = new LinkedHashMap<String, String>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(final Map.Entry<String, String> eldest) {
+                        return size() > segmentSize;
+                    }
+                };
+            }
+        }
+
+        private String get(final String uri) {
+            if (segments == null) {
+                return null;
+            }
+
+            final Map<String, String> segment = segment(uri);
+            synchronized (segment) {
+                return segment.get(uri);
+            }
+        }
+
+        private void put(final String uri, final String destination) {
+            if (segments == null) {
+                return;
+            }
+
+            final Map<String, String> segment = segment(uri);
+            synchronized (segment) {
+                segment.put(uri, destination);
+            }
+        }
+
+        private boolean contains(final String uri) {
+            if (segments == null) {
+                return false;
+            }
+
+            final Map<String, String> segment = segment(uri);
+            synchronized (segment) {
+                return segment.containsKey(uri); // doesn't change the access order
+            }
+        }
+
+        private int size() {
+            if (segments == null) {
+                return 0;
+            }
+
+            int size = 0;
+            for (final Map<String, String> segment : segments) {
+                synchronized (segment) {
+                    size += segment.size();
+                }
+            }
+            return size;
+        }
+
+        private Map<String, String> segment(final String uri) {
+            final int hash = uri.hashCode();
+            return segments[(hash ^ (hash >>> 16)) & (CACHE_SEGMENTS - 1)];
+        }
+    }
 }
@@ -0,0 +1,250 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomee.catalina.session;
+
+import org.apache.catalina.Manager;
+import org.apache.catalina.Session;
+import org.apache.catalina.Store;
+import org.apache.catalina.security.SecurityUtil;
+import org.apache.catalina.session.PersistentManagerBase;
+import org.apache.catalina.session.StandardSession;
+import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.util.LogCategory;
+import org.apache.openejb.util.Logger;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A persistent manager keeping only the hot sessions on the heap, the idle ones are swapped out to an
+ * {@link OffHeapStore} and transparently swapped in when they are accessed again.
+ *
+ * Sessions are swapped out when they are idle for more than maxIdleSwap seconds and, the least recently used
+ * first, when there are more than maxHotSessions sessions on the heap. Sessions holding a non serializable
+ * attribute or used by a request stay on the heap, as the sessions which don't fit in a full store.
+ *
+ * It can be used with openejb.session.manager (defaults from tomee.session.off-heap.* system properties) or
+ * configured as any Tomcat manager, with a nested Store element to configure the OffHeapStore:
+ * {@code <Manager className="org.apache.tomee.catalina.session.OffHeapSessionManager" maxIdleSwap="60" maxHotSessions="10000"/>}.
+ */
+public class OffHeapSessionManager extends PersistentManagerBase {
+    private static final Logger logger = Logger.getInstance(LogCategory.OPENEJB.createChild("tomcat"), OffHeapSessionManager.class);
+
+    private static final String INFO = "OffHeapSessionManager/1.0";
+    private static final String NAME = "OffHeapSessionManager";
+
+    private static final Comparator<Candidate> LEAST_RECENTLY_ACCESSED = new Comparator<Candidate>() {
+        @Override
+        public int compare(final Candidate o1, final Candidate o2) {
+            return o1.accessedTime < o2.accessedTime ? -1 : (o1.accessedTime == o2.accessedTime ? 0 : 1);
+        }
+    };
+
+    private int maxHotSessions = SystemInstance.get().getOptions().get("tomee.session.off-heap.max-hot-sessions", -1);
+
+    public OffHeapSessionManager() {
+        setMaxIdleSwap(SystemInstance.get().getOptions().get("tomee.session.off-heap.max-idle-swap", 60));
+        setSaveOnRestart(false); // the store doesn't survive a restart
+
+        final OffHeapStore store = new OffHeapStore();
+        store.setCapacity(SystemInstance.get().getOptions().get("tomee.session.off-heap.capacity", store.getCapacity()));
+        store.setDirectory(SystemInstance.get().getOptions().get("tomee.session.off-heap.directory", (String) null));
+        setStore(store);
+    }
+
+    @Override
+    public String getInfo() {
+        return INFO;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    public int getMaxHotSessions() {
+        return maxHotSessions;
+    }
+
+    /**
+     * @param maxHotSessions the number of sessions kept on the heap before swapping out the least recently used, -1 for no limit
+     */
+    public void setMaxHotSessions(final int maxHotSessions) {
+        this.maxHotSessions = maxHotSessions;
+    }
+
+    @Override
+    public void processPersistenceChecks() {
+        super.processPersistenceChecks();
+        processMaxHotSwaps();
+    }
+
+    @Override
+    protected StandardSession getNewSession() {
+        return new OffHeapSession(this);
+    }
+
+    @Override
+    protected void swapOut(final Session session) throws IOException {
+        if (isInUse(session) || !isSerializable(session)) {
+            return;
+        }
+
+        final Store store = getStore();
+        if (store instanceof OffHeapStore && ((OffHeapStore) store).isFull()) {
+            throw new OffHeapStore.FullException(((OffHeapStore) store).getCapacity()); // not passivated, nothing to undo
+        }
+        try {
+            super.swapOut(session);
+        } catch (final IOException e) {
+            // passivated but not stored (too big for what is left of the store or not serializable): stays on the heap
+            ((StandardSession) session).activate();
+            throw e;
+        }
+    }
+
+    /**
+     * Same as PersistentManagerBase but a full store is not logged for each session, the store logs it once.
+     */
+    @Override
+    protected void writeSession(final Session session) throws IOException {
+        final Store store = getStore();
+        if (store == null || !session.isValid() || SecurityUtil.isPackageProtectionEnabled()) {
+            super.writeSession(session);
+            return;
+        }
+
+        try {
+            store.save(session);
+        } catch (final OffHeapStore.FullException e) {
+            throw e;
+        } catch (final IOException e) {
+            logger.error("Can't save the session " + session.getIdInternal(), e);
+            throw e;
+        }
+    }
+
+    protected void processMaxHotSwaps() {
+        if (!getState().isAvailable() || maxHotSessions < 0) {
+            return;
+        }
+
+        final Session[] sessions = findSessions();
+        int toSwap = sessions.length - maxHotSessions;
+        if (toSwap <= 0) {
+            return;
+        }
+
+        // snapshot the access times, they can change while sorting
+        final Candidate[] candidates = new Candidate[sessions.length];
+        for (int i = 0; i < sessions.length; i++) {
+            candidates[i] = new Candidate((StandardSession) sessions[i]);
+        }
+        Arrays.sort(candidates, LEAST_RECENTLY_ACCESSED);
+
+        final long now = System.currentTimeMillis();
+        for (int i = 0; i < candidates.length && toSwap > 0; i++) {
+            final StandardSession session = candidates[i].session;
+            synchronized (session) {
+                if (!session.isValid() || isInUse(session)) {
+                    continue;
+                }
+
+                final int timeIdle = (int) ((now - session.getThisAccessedTimeInternal()) / 1000L);
+                if (timeIdle < getMinIdleSwap() || !isSerializable(session)) {
+                    continue;
+                }
+
+                try {
+                    swapOut(session);
+                    toSwap--;
+                } catch (final OffHeapStore.FullException e) { // logged by the store
+                    if (((OffHeapStore) getStore()).isFull()) {
+                        return;
+                    }
+                    // a smaller session can still fit
+                } catch (final IOException e) {
+                    logger.warning("Can't swap out the session " + session.getIdInternal() + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * @return true if a request is using the session, between its access() and its endAccess()
+     */
+    private static boolean isInUse(final Session session) {
+        return session instanceof OffHeapSession && ((OffHeapSession) session).requests.get() > 0;
+    }
+
+    private static boolean isSerializable(final Session session) {
+        final StandardSession standardSession = (StandardSession) session;
+        if (!standardSession.isValid()) {
+            return true; // not swapped anyway
+        }
+
+        try {
+            final Enumeration<String> names = standardSession.getAttributeNames();
+            while (names.hasMoreElements()) {
+                final Object value = standardSession.getAttribute(names.nextElement());
+                if (value != null && !(value instanceof Serializable)) {
+                    return false;
+                }
+            }
+        } catch (final IllegalStateException e) {
+            // invalidated meanwhile
+        }
+        return true;
+    }
+
+    /**
+     * Counts the requests using it whatever org.apache.catalina.session.StandardSession.ACTIVITY_CHECK is.
+     */
+    private static final class OffHeapSession extends StandardSession {
+        private final transient AtomicInteger requests = new AtomicInteger();
+
+        private OffHeapSession(final Manager manager) {
+            super(manager);
+        }
+
+        @Override
+        public void access() {
+            super.access();
+            requests.incrementAndGet();
+        }
+
+        @Override
+        public void endAccess() {
+            super.endAccess();
+            requests.decrementAndGet();
+        }
+    }
+
+    private static final class Candidate {
+        private final StandardSession session;
+        private final long accessedTime;
+
+        private Candidate(final StandardSession session) {
+            this.session = session;
+            this.accessedTime = session.getThisAccessedTimeInternal();
+        }
+    }
+}
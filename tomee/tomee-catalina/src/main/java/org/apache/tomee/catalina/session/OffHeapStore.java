@@ -0,0 +1,419 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomee.catalina.session;
+
+import org.apache.catalina.Container;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.Loader;
+import org.apache.catalina.Session;
+import org.apache.catalina.session.PersistentManagerBase;
+import org.apache.catalina.session.StandardSession;
+import org.apache.catalina.session.StoreBase;
+import org.apache.catalina.util.CustomObjectInputStream;
+import org.apache.openejb.util.LogCategory;
+import org.apache.openejb.util.Logger;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the swapped out sessions serialized outside of the java heap, in direct buffers or, when a directory is
+ * configured, in a memory-mapped file. The memory is allocated by slabs (up to the capacity) split in blocks,
+ * a session uses as many blocks as its serialized form needs so freed blocks are reused without fragmentation.
+ *
+ * Only the id, the blocks and the expiration data of a session stay on the heap, so expired sessions are found
+ * without deserializing all the stored ones.
+ *
+ * The content doesn't survive a restart.
+ */
+public class OffHeapStore extends StoreBase {
+    private static final Logger logger = Logger.getInstance(LogCategory.OPENEJB.createChild("tomcat"), OffHeapStore.class);
+
+    private static final String INFO = "OffHeapStore/1.0";
+    private static final String STORE_NAME = "offHeapStore";
+
+    private long capacity = 256L * 1024 * 1024;
+    private int slabSize = 16 * 1024 * 1024;
+    private int blockSize = 1024;
+    private String directory;
+
+    private final Map<String, Entry> entries = new HashMap<String, Entry>();
+    private final List<ByteBuffer> slabs = new ArrayList<ByteBuffer>();
+    private int[] freeBlocks = new int[0];
+    private int freeCount;
+    private boolean full; // logged once, until a session fits again
+    private File file;
+    private RandomAccessFile mappedFile;
+
+    @Override
+    public String getInfo() {
+        return INFO;
+    }
+
+    @Override
+    public String getStoreName() {
+        return STORE_NAME;
+    }
+
+    public long getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @param capacity the maximum number of bytes used to store the sessions
+     */
+    public void setCapacity(final long capacity) {
+        this.capacity = capacity;
+    }
+
+    public int getSlabSize() {
+        return slabSize;
+    }
+
+    public void setSlabSize(final int slabSize) {
+        this.slabSize = slabSize;
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    public void setBlockSize(final int blockSize) {
+        this.blockSize = blockSize;
+    }
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @param directory where to create the memory-mapped file, direct buffers are used if not set
+     */
+    public void setDirectory(final String directory) {
+        this.directory = directory;
+    }
+
+    @Override
+    public synchronized int getSize() throws IOException {
+        return entries.size();
+    }
+
+    @Override
+    public synchronized String[] keys() throws IOException {
+        return entries.keySet().toArray(new String[entries.size()]);
+    }
+
+    @Override
+    public Session load(final String id) throws ClassNotFoundException, IOException {
+        final byte[] data;
+        synchronized (this) {
+            final Entry entry = entries.get(id);
+            if (entry == null) {
+                return null;
+            }
+            data = read(entry);
+        }
+
+        ClassLoader classLoader = null;
+        final Container container = manager.getContainer();
+        if (container != null) {
+            final Loader loader = container.getLoader();
+            if (loader != null) {
+                classLoader = loader.getClassLoader();
+            }
+        }
+
+        final ObjectInputStream ois;
+        if (classLoader != null) {
+            ois = new CustomObjectInputStream(new ByteArrayInputStream(data), classLoader);
+        } else {
+            ois = new ObjectInputStream(new ByteArrayInputStream(data));
+        }
+        try {
+            final StandardSession session = (StandardSession) manager.createEmptySession();
+            session.readObjectData(ois);
+            session.setManager(manager);
+            return session;
+        } finally {
+            ois.close();
+        }
+    }
+
+    @Override
+    public void save(final Session session) throws IOException {
+        final StandardSession standardSession = (StandardSession) session;
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(bytes));
+        try {
+            standardSession.writeObjectData(oos);
+        } finally {
+            oos.close();
+        }
+        final byte[] data = bytes.toByteArray();
+
+        synchronized (this) {
+            // allocated first: if the store is full the previous copy is kept
+            final Entry entry = new Entry(allocate((data.length + blockSize - 1) / blockSize), data.length,
+                standardSession.getThisAccessedTimeInternal(), standardSession.getMaxInactiveInterval());
+            write(entry, data);
+            release(entries.put(session.getIdInternal(), entry));
+        }
+    }
+
+    /**
+     * @return true if not even a block is left, a session can't be stored before one is removed
+     */
+    synchronized boolean isFull() {
+        return freeCount == 0 && (long) (slabs.size() + 1) * slabSize > capacity;
+    }
+
+    synchronized int getSlabCount() {
+        return slabs.size();
+    }
+
+    synchronized int getFreeBlockCount() {
+        return freeCount;
+    }
+
+    @Override
+    public synchronized void remove(final String id) throws IOException {
+        release(entries.remove(id));
+    }
+
+    @Override
+    public synchronized void clear() throws IOException {
+        entries.clear();
+        freeCount = 0;
+        for (int i = 0; i < slabs.size(); i++) {
+            pushSlabBlocks(i);
+        }
+    }
+
+    /**
+     * Same as StoreBase but only the sessions which may have expired are deserialized.
+     */
+    @Override
+    public void processExpires() {
+        if (!getState().isAvailable()) {
+            return;
+        }
+
+        final long now = System.currentTimeMillis();
+        final List<String> candidates = new ArrayList<String>();
+        synchronized (this) {
+            for (final Map.Entry<String, Entry> entry : entries.entrySet()) {
+                if (entry.getValue().isExpired(now)) {
+                    candidates.add(entry.getKey());
+                }
+            }
+        }
+
+        for (final String id : candidates) {
+            try {
+                final StandardSession session = (StandardSession) load(id);
+                if (session == null) {
+                    continue;
+                }
+
+                final int timeIdle = (int) ((now - session.getThisAccessedTimeInternal()) / 1000L);
+                if (timeIdle < session.getMaxInactiveInterval()) {
+                    continue;
+                }
+                if (((PersistentManagerBase) manager).isLoaded(id)) {
+                    // recycle old backup session
+                    session.recycle();
+                } else {
+                    // expire swapped out session
+                    session.expire();
+                }
+                remove(id);
+            } catch (final Exception e) {
+                logger.error("Can't expire the session " + id + ", removing it", e);
+                try {
+                    remove(id);
+                } catch (final IOException ignored) {
+                    // no-op
+                }
+            }
+        }
+    }
+
+    @Override
+    protected synchronized void startInternal() throws LifecycleException {
+        if (blockSize <= 0 || capacity < blockSize) {
+            throw new LifecycleException("Invalid off-heap store sizes: capacity=" + capacity + ", blockSize=" + blockSize);
+        }
+        // a slab is a whole number of blocks and fits in the capacity
+        slabSize = (int) (Math.min(Math.max(slabSize, blockSize), capacity) / blockSize * blockSize);
+
+        super.startInternal();
+    }
+
+    @Override
+    protected synchronized void stopInternal() throws LifecycleException {
+        super.stopInternal();
+
+        entries.clear();
+        slabs.clear();
+        freeBlocks = new int[0];
+        freeCount = 0;
+        if (mappedFile != null) {
+            try {
+                mappedFile.close();
+            } catch (final IOException e) {
+                // no-op
+            }
+            mappedFile = null;
+        }
+        if (file != null) {
+            if (!file.delete()) {
+                file.deleteOnExit();
+            }
+            file = null;
+        }
+    }
+
+    private int[] allocate(final int count) throws IOException {
+        final int blocksPerSlab = slabSize / blockSize;
+        while (freeCount < count && (long) (slabs.size() + 1) * blocksPerSlab * blockSize <= capacity) {
+            slabs.add(newSlab(slabs.size()));
+            pushSlabBlocks(slabs.size() - 1);
+        }
+        if (freeCount < count) {
+            if (!full) {
+                full = true;
+                logger.warning("Off-heap session store is full (" + capacity + " bytes), the sessions which can't be swapped out stay on the heap");
+            }
+            throw new FullException(capacity);
+        }
+        full = false;
+
+        final int[] blocks = new int[count];
+        for (int i = 0; i < count; i++) {
+            blocks[i] = freeBlocks[--freeCount];
+        }
+        return blocks;
+    }
+
+    private void release(final Entry entry) {
+        if (entry == null) {
+            return;
+        }
+        for (final int block : entry.blocks) {
+            freeBlocks[freeCount++] = block;
+        }
+    }
+
+    private void pushSlabBlocks(final int slab) {
+        final int blocksPerSlab = slabSize / blockSize;
+        if (freeBlocks.length < (slab + 1) * blocksPerSlab) {
+            final int[] newFreeBlocks = new int[slabs.size() * blocksPerSlab];
+            System.arraycopy(freeBlocks, 0, newFreeBlocks, 0, freeCount);
+            freeBlocks = newFreeBlocks;
+        }
+        for (int i = blocksPerSlab - 1; i >= 0; i--) {
+            freeBlocks[freeCount++] = slab * blocksPerSlab + i;
+        }
+    }
+
+    private ByteBuffer newSlab(final int index) throws IOException {
+        if (directory == null) {
+            return ByteBuffer.allocateDirect(slabSize);
+        }
+
+        if (mappedFile == null) {
+            final File dir = new File(directory);
+            if (!dir.isDirectory() && !dir.mkdirs()) {
+                throw new IOException("Can't create " + dir.getAbsolutePath());
+            }
+            file = File.createTempFile("sessions-", ".offheap", dir);
+            mappedFile = new RandomAccessFile(file, "rw");
+        }
+        return mappedFile.getChannel().map(FileChannel.MapMode.READ_WRITE, (long) index * slabSize, slabSize);
+    }
+
+    private void write(final Entry entry, final byte[] data) {
+        int offset = 0;
+        for (final int block : entry.blocks) {
+            final int length = Math.min(blockSize, data.length - offset);
+            final ByteBuffer slab = slab(block);
+            slab.put(data, offset, length);
+            offset += length;
+        }
+    }
+
+    private byte[] read(final Entry entry) {
+        final byte[] data = new byte[entry.length];
+        int offset = 0;
+        for (final int block : entry.blocks) {
+            final int length = Math.min(blockSize, data.length - offset);
+            slab(block).get(data, offset, length);
+            offset += length;
+        }
+        return data;
+    }
+
+    /**
+     * @return a view of the slab holding the block, positioned at the block
+     */
+    private ByteBuffer slab(final int block) {
+        final int blocksPerSlab = slabSize / blockSize;
+        final ByteBuffer slab = slabs.get(block / blocksPerSlab).duplicate();
+        slab.position((block % blocksPerSlab) * blockSize);
+        return slab;
+    }
+
+    /**
+     * Not logged by the manager, the store logs once that it is full.
+     */
+    static final class FullException extends IOException {
+        FullException(final long capacity) {
+            super("Off-heap session store is full (" + capacity + " bytes)");
+        }
+    }
+
+    private static final class Entry {
+        private final int[] blocks;
+        private final int length;
+        private final long thisAccessedTime;
+        private final int maxInactiveInterval;
+
+        private Entry(final int[] blocks, final int length, final long thisAccessedTime, final int maxInactiveInterval) {
+            this.blocks = blocks;
+            this.length = length;
+            this.thisAccessedTime = thisAccessedTime;
+            this.maxInactiveInterval = maxInactiveInterval;
+        }
+
+        private boolean isExpired(final long now) {
+            return maxInactiveInterval > 0 && (now - thisAccessedTime) / 1000L >= maxInactiveInterval;
+        }
+    }
+}
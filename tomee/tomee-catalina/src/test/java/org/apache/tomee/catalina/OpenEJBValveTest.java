@@ -0,0 +1,171 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomee.catalina;
+
+import org.apache.catalina.Realm;
+import org.apache.catalina.connector.Request;
+import org.apache.catalina.connector.Response;
+import org.apache.catalina.core.StandardContext;
+import org.apache.catalina.core.StandardServer;
+import org.apache.catalina.core.StandardWrapper;
+import org.apache.catalina.realm.GenericPrincipal;
+import org.apache.catalina.realm.LockOutRealm;
+import org.apache.catalina.realm.RealmBase;
+import org.apache.catalina.valves.ValveBase;
+import org.apache.openejb.core.ThreadContext;
+import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.spi.SecurityService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.servlet.ServletException;
+import java.io.IOException;
+import java.security.Principal;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class OpenEJBValveTest {
+    private RecordingSecurityService securityService;
+    private OpenEJBValve valve;
+    private Next next;
+    private StandardContext context;
+    private StandardWrapper wrapper;
+
+    @Before
+    public void init() {
+        SystemInstance.get().setComponent(StandardServer.class, new StandardServer());
+        securityService = new RecordingSecurityService();
+        SystemInstance.get().setComponent(SecurityService.class, securityService);
+
+        valve = new OpenEJBValve();
+        next = new Next();
+        valve.setNext(next);
+
+        context = new StandardContext();
+        wrapper = new StandardWrapper();
+        wrapper.setParent(context);
+    }
+
+    @After
+    public void reset() {
+        ThreadContext.removeThreadContextListener(securityService);
+        SystemInstance.reset();
+    }
+
+    @Test
+    public void anonymousRequestSkipsTheSecurityContext() throws Exception {
+        // the default realm of a TomEE context
+        final TomEERealm realm = new TomEERealm();
+        realm.addRealm(new LockOutRealm());
+        context.setRealm(realm);
+
+        valve.invoke(request(null), null);
+
+        assertEquals(1, next.invocations);
+        assertTrue(next.anonymous);
+        assertEquals(0, securityService.entered);
+    }
+
+    @Test
+    public void authenticatedRequestIsPropagated() throws Exception {
+        context.setRealm(new SimpleRealm());
+
+        valve.invoke(request(new GenericPrincipal("user", "secret", Collections.singletonList("role"))), null);
+
+        assertEquals(1, next.invocations);
+        assertFalse(next.anonymous);
+        assertEquals(1, securityService.entered);
+        assertTrue(securityService.isAnonymous());
+    }
+
+    @Test
+    public void runAsIsPropagated() throws Exception {
+        context.setRealm(new SimpleRealm());
+        wrapper.setRunAs("admin");
+
+        valve.invoke(request(null), null);
+
+        assertEquals(1, securityService.entered);
+    }
+
+    @Test
+    public void programmaticLoginOfAnAnonymousRequestDoesNotLeak() throws Exception {
+        final SimpleRealm realm = new SimpleRealm();
+        context.setRealm(realm);
+        next.login = realm;
+
+        valve.invoke(request(null), null);
+
+        assertFalse(next.anonymous);
+        assertTrue(securityService.isAnonymous());
+    }
+
+    private Request request(final Principal principal) {
+        final Request request = new Request();
+        request.setCoyoteRequest(new org.apache.coyote.Request());
+        request.setContext(context);
+        request.setWrapper(wrapper);
+        request.setUserPrincipal(principal);
+        return request;
+    }
+
+    private class Next extends ValveBase {
+        private int invocations;
+        private boolean anonymous;
+        private Realm login;
+
+        @Override
+        public void invoke(final Request request, final Response response) throws IOException, ServletException {
+            invocations++;
+            if (login != null) { // what TomEERealm does for a request.login()
+                securityService.enterWebApp(login, new GenericPrincipal("user", "secret", Collections.singletonList("role")), null);
+            }
+            anonymous = securityService.isAnonymous();
+        }
+    }
+
+    private static class RecordingSecurityService extends TomcatSecurityService {
+        private int entered;
+
+        @Override
+        public Object enterWebApp(final Realm realm, final Principal principal, final String runAs) {
+            entered++;
+            return super.enterWebApp(realm, principal, runAs);
+        }
+    }
+
+    private static class SimpleRealm extends RealmBase {
+        @Override
+        protected String getName() {
+            return "simple";
+        }
+
+        @Override
+        protected String getPassword(final String username) {
+            return null;
+        }
+
+        @Override
+        protected Principal getPrincipal(final String username) {
+            return null;
+        }
+    }
+}
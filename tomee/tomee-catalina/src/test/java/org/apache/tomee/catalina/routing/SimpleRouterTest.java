@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomee.catalina.routing;
+
+import org.apache.openejb.loader.SystemInstance;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.PatternSyntaxException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SimpleRouterTest {
+    @After
+    public void reset() {
+        SystemInstance.reset();
+    }
+
+    @Test
+    public void firstRegisteredRouteWins() throws Exception {
+        final SimpleRouter generic = new SimpleRouter();
+        generic.addRoute("/app/.*", "/generic");
+        generic.addRoute("/app/special", "/special");
+        assertEquals("/generic", generic.route("/app/special"));
+
+        final SimpleRouter specific = new SimpleRouter();
+        specific.addRoute("/app/special", "/special");
+        specific.addRoute("/app/.*", "/generic");
+        assertEquals("/special", specific.route("/app/special"));
+        assertEquals("/generic", specific.route("/app/other"));
+
+        // a route with a shorter literal start registered first still wins
+        final SimpleRouter all = new SimpleRouter();
+        all.addRoute("/.*", "/all");
+        all.addRoute("/app/special", "/special");
+        assertEquals("/all", all.route("/app/special"));
+    }
+
+    @Test
+    public void groupsOfCombinedRoutes() throws Exception {
+        final SimpleRouter router = new SimpleRouter();
+        router.addRoute("/shop/(\\d+)", "/item?id=$1");
+        router.addRoute("/shop/(\\w+)/(\\d+)", "/category/$1/$2");
+        router.addRoute("/shop/(\\w+)-(\\w+)/(.*)", "/$3/$2/$1");
+
+        assertEquals("/item?id=42", router.route("/shop/42"));
+        assertEquals("/category/books/42", router.route("/shop/books/42"));
+        assertEquals("/c/b/a", router.route("/shop/a-b/c"));
+        assertNull(router.route("/shop/books"));
+    }
+
+    @Test
+    public void backReferences() throws Exception {
+        final SimpleRouter router = new SimpleRouter();
+        router.addRoute("/(\\w+)/\\1", "/twice/$1");
+        router.addRoute("/(\\w+)/other", "/other/$1");
+
+        assertEquals("/twice/foo", router.route("/foo/foo"));
+        assertEquals("/other/foo", router.route("/foo/other"));
+        assertNull(router.route("/foo/bar"));
+    }
+
+    @Test
+    public void invalidPattern() throws Exception {
+        final SimpleRouter router = new SimpleRouter();
+        router.addRoute("/valid/(.*)", "/$1");
+        try {
+            router.addRoute("/broken(", "/nowhere");
+            fail("invalid pattern accepted");
+        } catch (final PatternSyntaxException e) {
+            // expected
+        }
+        assertEquals("/ok", router.route("/valid/ok"));
+    }
+
+    @Test
+    public void missesAreCachedUntilTheRoutesChange() throws Exception {
+        final SimpleRouter router = new SimpleRouter();
+        router.addRoute("/a/(.*)", "/b/$1");
+
+        assertNull(router.route("/c/d"));
+        assertTrue(router.isCached("/c/d"));
+        assertNull(router.route("/c/d"));
+
+        router.addRoute("/c/(.*)", "/e/$1");
+        assertFalse(router.isCached("/c/d"));
+        assertEquals("/e/d", router.route("/c/d"));
+    }
+
+    @Test
+    public void leastRecentlyUsedUrisAreEvicted() throws Exception {
+        SystemInstance.get().setProperty(SimpleRouter.CACHE_SIZE, "32"); // 16 segments of 2 uris
+        final SimpleRouter router = new SimpleRouter();
+        router.addRoute("/(.*)", "/routed/$1");
+
+        for (int i = 0; i < 1000; i++) {
+            router.route("/uri" + i);
+        }
+        assertTrue("cached: " + router.getCachedRouteCount(), router.getCachedRouteCount() <= 32);
+
+        // three uris of the same segment: the least recently used one is evicted
+        final List<String> uris = sameSegment(3);
+        router.route(uris.get(0));
+        router.route(uris.get(1));
+        router.route(uris.get(0));
+        router.route(uris.get(2));
+        assertTrue(router.isCached(uris.get(0)));
+        assertFalse(router.isCached(uris.get(1)));
+        assertTrue(router.isCached(uris.get(2)));
+    }
+
+    @Test
+    public void cacheCanBeDisabled() throws Exception {
+        SystemInstance.get().setProperty(SimpleRouter.CACHE_SIZE, "0");
+        final SimpleRouter router = new SimpleRouter();
+        router.addRoute("/(.*)", "/routed/$1");
+        assertEquals("/routed/x", router.route("/x"));
+        assertEquals(0, router.getCachedRouteCount());
+    }
+
+    private static List<String> sameSegment(final int count) {
+        final List<String> uris = new ArrayList<String>();
+        for (int i = 0; uris.size() < count; i++) {
+            final String uri = "/segment" + i;
+            final int hash = uri.hashCode();
+            if (((hash ^ (hash >>> 16)) & 15) == 0) {
+                uris.add(uri);
+            }
+        }
+        return uris;
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomee.catalina.session;
+
+import org.apache.catalina.Session;
+import org.apache.catalina.core.StandardContext;
+import org.apache.catalina.core.StandardHost;
+import org.apache.openejb.loader.SystemInstance;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.servlet.http.HttpSessionActivationListener;
+import javax.servlet.http.HttpSessionEvent;
+import java.io.Serializable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class OffHeapSessionManagerTest {
+    private OffHeapSessionManager manager;
+    private OffHeapStore store;
+
+    @Before
+    public void init() {
+        final StandardHost host = new StandardHost();
+        host.setName("localhost");
+        final StandardContext context = new StandardContext();
+        context.setName("/offheap");
+        context.setPath("/offheap");
+        context.setParent(host);
+
+        manager = new OffHeapSessionManager();
+        manager.setContainer(context);
+        manager.setMaxIdleSwap(-1);
+        store = (OffHeapStore) manager.getStore();
+        store.setBlockSize(1024);
+        store.setSlabSize(4 * 1024);
+        store.setCapacity(4 * 1024);
+    }
+
+    @After
+    public void reset() throws Exception {
+        if (manager.getState().isAvailable()) {
+            manager.stop();
+        }
+        manager.destroy();
+        SystemInstance.reset();
+    }
+
+    @Test
+    public void idleSessionsAreSwappedOutAndBackIn() throws Exception {
+        manager.setMaxIdleSwap(0);
+        manager.start();
+
+        final Session session = manager.createSession(null);
+        final String id = session.getId();
+        session.getSession().setAttribute("name", "value");
+
+        manager.processPersistenceChecks();
+        assertFalse(manager.isLoaded(id));
+        assertEquals(1, store.getSize());
+
+        final Session swappedIn = manager.findSession(id);
+        assertNotNull(swappedIn);
+        assertTrue(manager.isLoaded(id));
+        assertEquals("value", swappedIn.getSession().getAttribute("name"));
+    }
+
+    @Test
+    public void leastRecentlyUsedSessionsAreSwappedOut() throws Exception {
+        manager.setMaxHotSessions(2);
+        manager.start();
+
+        final long now = System.currentTimeMillis();
+        final String[] ids = new String[4];
+        for (int i = 0; i < ids.length; i++) {
+            final Session session = manager.createSession(null);
+            session.setCreationTime(now - (ids.length - i) * 1000L); // ids[0] is the least recently used
+            ids[i] = session.getId();
+        }
+
+        manager.processPersistenceChecks();
+        assertFalse(manager.isLoaded(ids[0]));
+        assertFalse(manager.isLoaded(ids[1]));
+        assertTrue(manager.isLoaded(ids[2]));
+        assertTrue(manager.isLoaded(ids[3]));
+
+        assertNotNull(manager.findSession(ids[0]));
+        assertTrue(manager.isLoaded(ids[0]));
+    }
+
+    @Test
+    public void sessionsInUseAreNotSwappedOut() throws Exception {
+        manager.setMaxHotSessions(0);
+        manager.start();
+
+        // accessed in the same millisecond they are created, as the requests creating them
+        final Session used = manager.createSession(null);
+        used.access();
+        final Session released = manager.createSession(null);
+        released.access();
+        released.endAccess();
+
+        manager.processPersistenceChecks();
+        assertTrue(manager.isLoaded(used.getId()));
+        assertFalse(manager.isLoaded(released.getId()));
+
+        used.endAccess();
+        manager.processPersistenceChecks();
+        assertFalse(manager.isLoaded(used.getId()));
+    }
+
+    @Test
+    public void sessionsNotFittingInTheStoreStayActive() throws Exception {
+        manager.setMaxHotSessions(0);
+        manager.start();
+
+        final Session session = manager.createSession(null);
+        final Listener listener = new Listener();
+        session.getSession().setAttribute("listener", listener);
+        session.getSession().setAttribute("data", new byte[8 * 1024]);
+
+        manager.processPersistenceChecks();
+        assertTrue(manager.isLoaded(session.getId()));
+        assertEquals(1, listener.passivated);
+        assertEquals(1, listener.activated);
+        assertEquals(0, store.getSize());
+
+        // the sessions which fit are still swapped out
+        final Session small = manager.createSession(null);
+        manager.processPersistenceChecks();
+        assertFalse(manager.isLoaded(small.getId()));
+        assertTrue(manager.isLoaded(session.getId()));
+    }
+
+    public static class Listener implements HttpSessionActivationListener, Serializable {
+        private int passivated;
+        private int activated;
+
+        @Override
+        public void sessionWillPassivate(final HttpSessionEvent se) {
+            passivated++;
+        }
+
+        @Override
+        public void sessionDidActivate(final HttpSessionEvent se) {
+            activated++;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomee.catalina.session;
+
+import org.apache.catalina.Session;
+import org.apache.catalina.core.StandardContext;
+import org.apache.catalina.session.StandardSession;
+import org.apache.openejb.loader.SystemInstance;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class OffHeapStoreTest {
+    private CountingManager manager;
+    private OffHeapStore store;
+
+    @Before
+    public void init() throws Exception {
+        manager = new CountingManager();
+        manager.setContainer(new StandardContext());
+
+        // slabs of 4 blocks of 1KB, at most 2 slabs
+        store = (OffHeapStore) manager.getStore();
+        store.setBlockSize(1024);
+        store.setSlabSize(4 * 1024);
+        store.setCapacity(8 * 1024);
+        store.start();
+    }
+
+    @After
+    public void reset() throws Exception {
+        store.stop();
+        SystemInstance.reset();
+    }
+
+    @Test
+    public void releasedBlocksAreReused() throws Exception {
+        store.save(session("a", 2500)); // 3 blocks
+        assertEquals(1, store.getSlabCount());
+        assertEquals(1, store.getFreeBlockCount());
+
+        store.remove("a");
+        assertEquals(4, store.getFreeBlockCount());
+
+        store.save(session("b", 2500));
+        store.save(session("c", 100));
+        assertEquals(1, store.getSlabCount());
+        assertEquals(0, store.getFreeBlockCount());
+        assertAttribute("b", 2500);
+        assertAttribute("c", 100);
+
+        // saved again: allocated before the blocks of the previous copy are released
+        store.save(session("c", 100));
+        assertEquals(2, store.getSlabCount());
+        assertEquals(4, store.getFreeBlockCount());
+        assertAttribute("c", 100);
+    }
+
+    @Test
+    public void sessionsSpanningBlocksAndSlabs() throws Exception {
+        store.save(session("a", 2500)); // blocks 0 to 2 of the first slab
+        store.save(session("b", 2500)); // doesn't fit in the block left: a second slab is allocated
+        assertEquals(2, store.getSlabCount());
+        assertEquals(2, store.getFreeBlockCount());
+
+        store.save(session("c", 1200)); // the last block of each slab
+        assertEquals(0, store.getFreeBlockCount());
+
+        assertAttribute("a", 2500);
+        assertAttribute("b", 2500);
+        assertAttribute("c", 1200);
+        assertEquals(3, store.getSize());
+    }
+
+    @Test
+    public void full() throws Exception {
+        store.save(session("a", 100));
+        try {
+            store.save(session("a", 10 * 1024));
+            fail("stored more than the capacity");
+        } catch (final OffHeapStore.FullException e) {
+            // expected
+        }
+
+        // the previous copy is kept and the blocks of the failed save are still free
+        assertAttribute("a", 100);
+        assertEquals(7, store.getFreeBlockCount());
+        assertFalse(store.isFull());
+
+        for (int i = 0; i < 7; i++) {
+            store.save(session("s" + i, 100));
+        }
+        assertTrue(store.isFull());
+        try {
+            store.save(session("more", 100));
+            fail("stored more than the capacity");
+        } catch (final OffHeapStore.FullException e) {
+            // expected
+        }
+        assertNull(store.load("more"));
+
+        store.clear();
+        assertEquals(0, store.getSize());
+        assertEquals(8, store.getFreeBlockCount());
+    }
+
+    @Test
+    public void onlyExpiredSessionsAreDeserialized() throws Exception {
+        final StandardSession expired = session("expired", 100);
+        expired.setCreationTime(System.currentTimeMillis() - 3600 * 1000L);
+        expired.setMaxInactiveInterval(60);
+        store.save(expired);
+        store.save(session("active1", 100));
+        store.save(session("active2", 100));
+
+        manager.created = 0;
+        store.processExpires();
+
+        assertEquals(1, manager.created);
+        assertEquals(2, store.getSize());
+        assertNull(store.load("expired"));
+    }
+
+    private StandardSession session(final String id, final int attributeSize) {
+        final StandardSession session = (StandardSession) manager.createEmptySession();
+        session.setValid(true);
+        session.setCreationTime(System.currentTimeMillis());
+        session.setMaxInactiveInterval(1800);
+        session.setId(id, false);
+        session.setAttribute("data", data(attributeSize));
+        return session;
+    }
+
+    private void assertAttribute(final String id, final int attributeSize) throws IOException, ClassNotFoundException {
+        final Session session = store.load(id);
+        assertEquals(id, session.getIdInternal());
+        assertArrayEquals(data(attributeSize), (byte[]) ((StandardSession) session).getAttribute("data"));
+    }
+
+    private static byte[] data(final int size) {
+        final byte[] data = new byte[size];
+        Arrays.fill(data, (byte) size);
+        return data;
+    }
+
+    private static class CountingManager extends OffHeapSessionManager {
+        private int created;
+
+        @Override
+        protected StandardSession getNewSession() {
+            created++;
+            return super.getNewSession();
+        }
+    }
+}